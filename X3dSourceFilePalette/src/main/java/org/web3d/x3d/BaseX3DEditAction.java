@@ -34,7 +34,6 @@
 package org.web3d.x3d;
 
 import java.io.IOException;
-import java.util.Vector;
 
 import javax.swing.JEditorPane;
 import javax.swing.text.AbstractDocument;
@@ -58,7 +57,6 @@ import org.w3c.dom.ls.DOMImplementationLS;
 import org.w3c.dom.ls.LSInput;
 import org.w3c.dom.ls.LSParser;
 
-import org.web3d.x3d.X3DEditorSupport.X3dEditor;
 import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom;
 import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom.ElementLocation;
 
@@ -85,7 +83,6 @@ abstract public class BaseX3DEditAction extends CookieAction
   protected AbstractDocument abstractDocument;       // init in actionPreamble
   protected BaseDocument baseDocument;
 
-  Vector<ElementLocation> saxLocations;              // init in actionPreamble
   protected JEditorPane documentEditorPane;          // init in actionPreamble
 
   @Override
@@ -111,16 +108,12 @@ abstract public class BaseX3DEditAction extends CookieAction
     if (x3dDataObject != null) {
         x3dEditorSupport = x3dDataObject.getLookup().lookup(org.web3d.x3d.X3DEditorSupport.class);
         documentEditorPane = x3dEditorSupport.getOpenedPanes()[0];
-        X3DPaletteUtilitiesJdom.buildJdom(documentEditorPane);  // rebuild jdom tree
-
-        X3dEditor x3dEditor = (X3dEditor)X3DPaletteUtilitiesJdom.getTopComponent(documentEditorPane);
-        saxLocations = x3dEditor.getJdomSaxLocations();
+        X3DPaletteUtilitiesJdom.buildJdom(documentEditorPane);  // bring jdom tree up to date
 
         abstractDocument = (AbstractDocument) x3dEditorSupport.getDocument();
     } else {
         x3dEditorSupport = null;
         documentEditorPane = null;
-        saxLocations = null;
         abstractDocument = null;
     }
   }
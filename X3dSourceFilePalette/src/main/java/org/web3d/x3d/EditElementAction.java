@@ -56,6 +56,7 @@ import org.web3d.x3d.options.X3dEditUserPreferences;
 import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom;
 import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom.ElementLocation;
 import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom.ValidateThread;
+import org.web3d.x3d.palette.X3DSceneSnapshot;
 import org.web3d.x3d.palette.items.BaseCustomizer;
 import org.web3d.x3d.palette.items.BaseX3DElement;
 import org.web3d.x3d.palette.items.EXTRUSION;
@@ -82,6 +83,7 @@ import org.web3d.x3d.palette.items.PROTOTYPE_ExtrusionCrossSection;
 public class EditElementAction extends BaseX3DEditAction //CookieAction
 {
   protected ElementLocation selectedElement;
+  private X3DSceneSnapshot selectedSnapshot; // snapshot selected location was found in
 
   protected org.jdom.Document getSelectedElementAsJdom(String elementString) throws Exception
   {
@@ -99,7 +101,8 @@ public class EditElementAction extends BaseX3DEditAction //CookieAction
   {
     int selectedStringLength;
     try {
-      ElementLocation selectedLocation = X3DPaletteUtilitiesJdom.findSelectedElement(documentEditorPane); //findSelectedElement();
+      selectedSnapshot = X3DPaletteUtilitiesJdom.getSnapshotForEdit(documentEditorPane);
+      ElementLocation selectedLocation = X3DPaletteUtilitiesJdom.findSelectedElement(documentEditorPane, selectedSnapshot); //findSelectedElement();
       selectedLocation = changeIfSpecialCase(selectedLocation);       // special case edits
       highlightSelectedElement(selectedLocation);
 
@@ -155,9 +158,9 @@ public class EditElementAction extends BaseX3DEditAction //CookieAction
           PROTOTYPE_ExtrusionCrossSection extrusionCrossSection = new PROTOTYPE_ExtrusionCrossSection();
           extrusionCrossSection.setExtrusion((EXTRUSION) x3dElement);
 
-          // determine where to put the change
-          selectedLocation.docOffsetStart += shapeOffset; // newString.length() +
-          selectedLocation.docOffsetEnd = selectedLocation.docOffsetStart; // same start and end, not replacing any text at this point
+          // determine where to put the change; not replacing any text at this point
+          // local copy since cached element locations are maintained by the JDOM model
+          int insertionOffset = selectedLocation.docOffsetStart + shapeOffset; // newString.length() +
 
           prototypeInsertion.append("\n");
           prototypeInsertion.append("  <!-- ==================== -->\n");
@@ -172,7 +175,7 @@ public class EditElementAction extends BaseX3DEditAction //CookieAction
           if (!externProtoDeclareFound) {
             prototypeInsertion.append(extrusionCrossSection.getExternProtoDeclare()); // OK for this to be nested inside Switch
           } // ExternProtoDeclare already found, determine if change goes sooner or later
-          else if (locationOriginalExtrusionCrossSection > selectedLocation.docOffsetStart) {
+          else if (locationOriginalExtrusionCrossSection > insertionOffset) {
             int returnValue = JOptionPane.showConfirmDialog(documentEditorPane,
                 "<html><p align='center'>Move ExternProtoDeclare here from later location?</p><p>Note that ExternProtoDeclare must precede ProtoInstance.</p>",
                 "Confirm...", JOptionPane.YES_NO_OPTION);
@@ -194,7 +197,7 @@ public class EditElementAction extends BaseX3DEditAction //CookieAction
           prototypeInsertion.append("  </Switch>\n");
           prototypeInsertion.append("  <!-- ==================== -->\n");
 
-          abstractDocument.insertString(selectedLocation.docOffsetStart, prototypeInsertion.toString(), null);
+          abstractDocument.insertString(insertionOffset, prototypeInsertion.toString(), null);
           handlerInsertionMade = true;
           x3dElement.setAppendExtrusionCrossSection(false); // insertion complete, clear flag
         }
@@ -340,7 +343,7 @@ public class EditElementAction extends BaseX3DEditAction //CookieAction
     Constructor<? extends BaseX3DElement> dobjConstr = dobjCls.getDeclaredConstructor();
 
     x3dElement = dobjConstr.newInstance();
-    x3dElement.setLocation(elemLoc);
+    x3dElement.setLocation(elemLoc, selectedSnapshot);
     x3dElement.initializeFromJdom(/*elemLoc.element,*/jdoc.getRootElement(), pane); // the first is an in-dtd-context element, w/ default attrs
     // expanded; not what we want; it fills out all attributes when written out.
     Class<? extends BaseCustomizer> bcustCls = x3dElement.getCustomizer();
@@ -128,6 +128,27 @@ public class InputOutputReporter implements CookieObserver {
         out().println(message);
     }
     
+    /**
+     * Print message to given output writer, hyperlinked to a line of the data object when known,
+     * so that selecting the message marks and shows its source line.
+     * @param out output window writer
+     * @param message string for output window
+     * @param dobj data object holding the line, or null for plain output
+     * @param line 1-based line number, or -1 if unknown
+     * @param column 1-based column number, or -1 if unknown
+     */
+    public static void println(OutputWriter out, String message, DataObject dobj, int line, int column) {
+        if ((dobj == null) || (line < 1)) {
+            out.println(message);
+            return;
+        }
+        try {
+            out.println(message, new Hyperlink(message, dobj, line - 1, Math.max(column - 1, 0)));
+        } catch (IOException catchIt) {
+            out.println(message);     // print without controller
+        }
+    }
+
     /**
      * Try to move InputOutput to front. Suitable for first message.
      */
@@ -37,7 +37,6 @@ import java.io.IOException;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.JTextComponent;
 import org.jdom.JDOMException;
-import org.jdom.output.XMLOutputter;
 import org.openide.DialogDescriptor;
 import org.openide.DialogDisplayer;
 import org.openide.awt.ActionID;
@@ -86,9 +85,12 @@ public final class RenameElementAction extends BaseX3DEditAction //CookieAction
       String selectedText = documentEditorPane.getText(selectedLocation.docOffsetStart,textBlockLength);
       org.jdom.Document jdoc = X3DPaletteUtilitiesJdom.buildJdomFromString(selectedText);
 
-      String returnValue = doDialog(jdoc,documentEditorPane);
-      if(returnValue != null)
-        abstractDocument.replace(selectedLocation.docOffsetStart,textBlockLength,returnValue,null);
+      org.jdom.Element renamedElement = doDialog(jdoc,documentEditorPane);
+      if(renamedElement != null) {
+        // stream serialized element into document rather than building intermediate String, within atomic edit of doWork
+        abstractDocument.remove(selectedLocation.docOffsetStart,textBlockLength);
+        new X3DXMLOutputter().output(renamedElement,abstractDocument,selectedLocation.docOffsetStart);
+      }
 
       Node n = activatedNodes[0];
       //doValidate(n);
@@ -102,7 +104,7 @@ public final class RenameElementAction extends BaseX3DEditAction //CookieAction
     }
   }
 
-  private String doDialog(org.jdom.Document jdoc, JTextComponent pane)
+  private org.jdom.Element doDialog(org.jdom.Document jdoc, JTextComponent pane)
   {
     org.jdom.Element root = jdoc.getRootElement();
 //    JPanel pan = new JPanel();
@@ -129,8 +131,7 @@ public final class RenameElementAction extends BaseX3DEditAction //CookieAction
     if (nodeName.length() > 0)
     {
         root.setName(nodeName);
-        XMLOutputter renamedElementBlock = new X3DXMLOutputter();
-        return renamedElementBlock.outputString(root);    
+        return root;
     }
     else return null;
   }
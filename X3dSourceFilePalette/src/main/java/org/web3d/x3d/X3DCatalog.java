@@ -33,24 +33,55 @@
  */
 package org.web3d.x3d;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.XMLConstants;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.URIResolver;
 import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
 
 import org.netbeans.modules.xml.catalog.spi.*;
 
 import org.openide.ErrorManager;
 
+import org.openide.filesystems.FileChangeAdapter;
+import org.openide.filesystems.FileChangeListener;
+import org.openide.filesystems.FileEvent;
 import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileRenameEvent;
 import org.openide.filesystems.FileStateInvalidException;
 import org.openide.filesystems.FileUtil;
 
 import org.openide.util.NbBundle;
 
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 /** Catalog for X3d DTDs and Schemas...based on:
  *  org.netbeans.modules.j2ee.ddloaders.web.DDCatalog.java
@@ -72,6 +103,9 @@ public class X3DCatalog implements CatalogReader, CatalogDescriptor2, org.xml.sa
 {
   private static final String LOCAL_DIR = "nbres:/org/web3d/x3d/specifications/";
 
+  /** module resource folders holding stylesheets, used when NetBeans layer X3dTransforms folder is unavailable */
+  private static final String[] STYLESHEET_RESOURCE_DIRS = { "/org/web3d/x3d/stylesheets/", "/org/web3d/x3d/schematron/" };
+
   private static final String DTD_30_PUBID = "ISO//Web3D//DTD X3D 3.0//EN"; // noI18N
   private static final String DTD_31_PUBID = "ISO//Web3D//DTD X3D 3.1//EN"; // noI18N
   private static final String DTD_32_PUBID = "ISO//Web3D//DTD X3D 3.2//EN"; // noI18N
@@ -176,6 +210,157 @@ public class X3DCatalog implements CatalogReader, CatalogDescriptor2, org.xml.sa
   private static final String SCHEMA_41_EXT_PUB_LOCAL  =LOCAL_DIR+SCHEMA_41_EXT_PUB_FN;
   private static final String SCHEMA_41_EXT_PRIV_LOCAL =LOCAL_DIR+SCHEMA_41_EXT_PRIV_FN;
 
+  /** X3D version attribute value to schema location, as found in X3D/@xsd:noNamespaceSchemaLocation */
+  private static final Map<String,String> SCHEMA_LOCATIONS = new HashMap<>();
+  static {
+    SCHEMA_LOCATIONS.put("3.0", SCHEMA_30_LOC);
+    SCHEMA_LOCATIONS.put("3.1", SCHEMA_31_LOC);
+    SCHEMA_LOCATIONS.put("3.2", SCHEMA_32_LOC);
+    SCHEMA_LOCATIONS.put("3.3", SCHEMA_33_LOC);
+    SCHEMA_LOCATIONS.put("4.0", SCHEMA_40_LOC);
+    SCHEMA_LOCATIONS.put("4.1", SCHEMA_41_LOC);
+  }
+
+  /** Built-in public IDs, in the order presented to the NetBeans catalog */
+  private static final List<String> BUILT_IN_PUBLIC_IDS = new ArrayList<>();
+
+  /** local copy for each public ID; populated once, read-only thereafter */
+  private static final Map<String,String> PUBLIC_ID_MAP = new HashMap<>();
+
+  /**
+   * System ID suffixes and their local copies, bucketed by the file name each suffix ends with,
+   * longest suffix first; populated once, read-only thereafter
+   */
+  private static final Map<String,List<SystemSuffix>> SYSTEM_SUFFIX_MAP = new HashMap<>();
+
+  private static final LongAdder resolveHits     = new LongAdder();
+  private static final LongAdder resolveMisses   = new LongAdder();
+  private static final LongAdder transformHits   = new LongAdder();
+  private static final LongAdder transformMisses = new LongAdder();
+
+  /** optional user catalog, OASIS TR9401 style lines: PUBLIC "publicId" "uri" or SYSTEM "systemId" "uri" */
+  public static final String USER_CATALOG_PROPERTY = "x3dedit.catalog";
+
+  static {
+    registerPublic(DTD_30_PUBID, DTD_30_LOCAL);
+    registerPublic(DTD_31_PUBID, DTD_31_LOCAL);
+    registerPublic(DTD_32_PUBID, DTD_32_LOCAL);
+    registerPublic(DTD_33_PUBID, DTD_33_LOCAL);
+    registerPublic(DTD_40_PUBID, DTD_40_LOCAL);
+    registerPublic(DTD_41_PUBID, DTD_41_LOCAL);
+    registerPublic(SCHEMA_30_PUBID, SCHEMA_30_LOCAL);
+    registerPublic(SCHEMA_31_PUBID, SCHEMA_31_LOCAL);
+    registerPublic(SCHEMA_32_PUBID, SCHEMA_32_LOCAL);
+    registerPublic(SCHEMA_33_PUBID, SCHEMA_33_LOCAL);
+    registerPublic(SCHEMA_40_PUBID, SCHEMA_40_LOCAL);
+    registerPublic(SCHEMA_41_PUBID, SCHEMA_41_LOCAL);
+
+    for (String local : new String[] {
+        SCHEMA_30_LOCAL, SCHEMA_31_LOCAL, SCHEMA_32_LOCAL, SCHEMA_33_LOCAL, SCHEMA_40_LOCAL, SCHEMA_41_LOCAL,
+        SCHEMA_30_EXT_PUB_LOCAL, SCHEMA_30_EXT_PRIV_LOCAL, SCHEMA_31_EXT_PUB_LOCAL, SCHEMA_31_EXT_PRIV_LOCAL,
+        SCHEMA_32_EXT_PUB_LOCAL, SCHEMA_32_EXT_PRIV_LOCAL, SCHEMA_33_EXT_PUB_LOCAL, SCHEMA_33_EXT_PRIV_LOCAL,
+        SCHEMA_40_EXT_PUB_LOCAL, SCHEMA_40_EXT_PRIV_LOCAL, SCHEMA_41_EXT_PUB_LOCAL, SCHEMA_41_EXT_PRIV_LOCAL,
+        DTD_30_LOCAL, DTD_31_LOCAL, DTD_32_LOCAL, DTD_33_LOCAL, DTD_40_LOCAL, DTD_41_LOCAL,
+        DTD_30_EXT_IO_LOCAL, DTD_30_EXT_PUB_LOCAL, DTD_30_EXT_PRIV_LOCAL,
+        DTD_31_EXT_IO_LOCAL, DTD_31_EXT_PUB_LOCAL, DTD_31_EXT_PRIV_LOCAL,
+        DTD_32_EXT_IO_LOCAL, DTD_32_EXT_PUB_LOCAL, DTD_32_EXT_PRIV_LOCAL,
+        DTD_33_EXT_IO_LOCAL, DTD_33_EXT_PUB_LOCAL, DTD_33_EXT_PRIV_LOCAL,
+        DTD_40_EXT_IO_LOCAL, DTD_40_EXT_PUB_LOCAL, DTD_40_EXT_PRIV_LOCAL,
+        DTD_41_EXT_IO_LOCAL, DTD_41_EXT_PUB_LOCAL, DTD_41_EXT_PRIV_LOCAL }) {
+      registerSystem(fileName(local), local);
+    }
+    loadUserCatalog(System.getProperty(USER_CATALOG_PROPERTY));
+  }
+
+  private static void registerPublic(String publicId, String local)
+  {
+    BUILT_IN_PUBLIC_IDS.add(publicId);
+    PUBLIC_ID_MAP.put(publicId, local);
+  }
+
+  /**
+   * @param systemIdSuffix matches any system ID ending with it, for example "x3d-4.0.dtd" or "specifications/x3d-4.0.dtd"
+   * @param local location of local copy; replaces any earlier registration of the same suffix,
+   *        so user catalog entries override built-in copies
+   */
+  private static void registerSystem(String systemIdSuffix, String local)
+  {
+    List<SystemSuffix> bucket = SYSTEM_SUFFIX_MAP.computeIfAbsent(fileName(systemIdSuffix), name -> new ArrayList<>(1));
+    bucket.removeIf(entry -> entry.suffix.equals(systemIdSuffix));
+    int index = 0;
+    while ((index < bucket.size()) && (bucket.get(index).suffix.length() > systemIdSuffix.length()))
+      index++; // most specific match wins
+    bucket.add(index, new SystemSuffix(systemIdSuffix, local));
+  }
+
+  private static class SystemSuffix
+  {
+    final String suffix;
+    final String local;
+
+    SystemSuffix(String suffix, String local)
+    {
+      this.suffix = suffix;
+      this.local  = local;
+    }
+  }
+
+  /**
+   * Local copy for a system ID, found by its file name and then confirmed by suffix
+   * @param systemId URL or path, possibly with query or fragment
+   * @return location of local copy, or null if not in catalog
+   */
+  static String findSystem(String systemId)
+  {
+    List<SystemSuffix> bucket = SYSTEM_SUFFIX_MAP.get(fileName(systemId));
+    if (bucket == null)
+      return null;
+    String path = systemId.substring(0, pathEnd(systemId));
+    for (SystemSuffix entry : bucket) {
+      if (path.endsWith(entry.suffix))
+        return entry.local;
+    }
+    return null;
+  }
+
+  /**
+   * Add or override entries from a user catalog file; entries take precedence over built-in copies
+   * @param catalogPath file path, or null for none
+   */
+  static void loadUserCatalog(String catalogPath)
+  {
+    if ((catalogPath == null) || catalogPath.isBlank())
+      return;
+    Path catalogFile = Paths.get(catalogPath);
+    Pattern entryPattern = Pattern.compile("^\\s*(PUBLIC|SYSTEM)\\s+\"([^\"]+)\"\\s+\"([^\"]+)\"");
+    try {
+      int count = 0;
+      for (String line : Files.readAllLines(catalogFile, StandardCharsets.UTF_8)) {
+        Matcher matcher = entryPattern.matcher(line);
+        if (!matcher.find())
+          continue; // blank, comment (--) or unsupported entry
+        String uri = catalogFile.toAbsolutePath().getParent().toUri().resolve(matcher.group(3)).toString();
+        if (matcher.group(1).equals("PUBLIC"))
+          PUBLIC_ID_MAP.put(matcher.group(2), uri);
+        else
+          registerSystem(matcher.group(2), uri);
+        count++;
+      }
+      Logger.getLogger(X3DCatalog.class.getName()).log(Level.INFO, "X3DCatalog loaded {0} entries from user catalog {1}",
+                                                       new Object[] {count, catalogFile.toAbsolutePath()});
+    }
+    catch (IOException | IllegalArgumentException ex) {
+      Logger.getLogger(X3DCatalog.class.getName()).log(Level.WARNING, "X3DCatalog unable to read user catalog {0}: {1}",
+                                                       new Object[] {catalogPath, ex.getLocalizedMessage()});
+    }
+  }
+
+  /** DTD and schema file contents, read once per session from the module jar and shared by all parses */
+  private static final Map<String,byte[]> ENTITY_CACHE = new ConcurrentHashMap<>();
+
+  /** Compiled schemas are immutable and thread safe, so one per X3D version is shared by all validations */
+  private static final Map<String,Schema> SCHEMA_CACHE = new ConcurrentHashMap<>();
+
   private static X3DCatalog instance;
   public static X3DCatalog getInstance()
   {
@@ -197,19 +382,7 @@ public class X3DCatalog implements CatalogReader, CatalogDescriptor2, org.xml.sa
   public java.util.Iterator getPublicIDs()
   {
     //System.out.println("X3DCatalog.getPublicIDs().............");
-    java.util.List<String> list = new java.util.ArrayList<>();
-    list.add(DTD_30_PUBID);
-    list.add(DTD_31_PUBID);
-    list.add(DTD_32_PUBID);
-    list.add(DTD_33_PUBID);
-    list.add(DTD_40_PUBID);
-    list.add(DTD_41_PUBID);
-    list.add(SCHEMA_30_PUBID);
-    list.add(SCHEMA_31_PUBID);
-    list.add(SCHEMA_32_PUBID);
-    list.add(SCHEMA_33_PUBID);
-    list.add(SCHEMA_40_PUBID);
-    list.add(SCHEMA_41_PUBID);
+    java.util.List<String> list = new java.util.ArrayList<>(BUILT_IN_PUBLIC_IDS);
     return list.listIterator();
   }
 
@@ -221,41 +394,9 @@ public class X3DCatalog implements CatalogReader, CatalogDescriptor2, org.xml.sa
   @Override
   public String getSystemID(String publicId)
   {
-    if      (null != publicId)
-      //System.out.println("X3DCatalog.getSystemIDs().............");
-      switch (publicId) {
-          case DTD_30_PUBID:
-              return DTD_30_LOCAL;
-          case DTD_31_PUBID:
-              return DTD_31_LOCAL;
-          case DTD_32_PUBID:
-              return DTD_32_LOCAL;
-          case DTD_33_PUBID:
-              return DTD_33_LOCAL;
-          case DTD_40_PUBID:
-              return DTD_40_LOCAL;
-          case DTD_41_PUBID:
-              return DTD_41_LOCAL;
-      }
-
-    if      (null != publicId)
-      switch (publicId) {
-          case SCHEMA_30_PUBID:
-              return SCHEMA_30_LOCAL;
-          case SCHEMA_31_PUBID:
-              return SCHEMA_31_LOCAL;
-          case SCHEMA_32_PUBID:
-              return SCHEMA_32_LOCAL;
-          case SCHEMA_33_PUBID:
-              return SCHEMA_33_LOCAL;
-          case SCHEMA_40_PUBID:
-              return SCHEMA_40_LOCAL;
-          case SCHEMA_41_PUBID:
-              return SCHEMA_41_LOCAL;
-      }
-
-    //else
-    return null;
+    if (publicId == null)
+      return null;
+    return PUBLIC_ID_MAP.get(publicId);
   }
 
   /**
@@ -264,6 +405,7 @@ public class X3DCatalog implements CatalogReader, CatalogDescriptor2, org.xml.sa
   @Override
   public void refresh()
   {
+    invalidateTransforms();
   }
 
   /**
@@ -330,10 +472,10 @@ public class X3DCatalog implements CatalogReader, CatalogDescriptor2, org.xml.sa
   }
 
   /**
-   * Resolves schema definition file for deployment descriptor (spec.2_4 and spec.2_5)
-   * @param publicId publicId for resolved entity (null in our case)
+   * Resolves DTD, schema and extension files to local copies, by public ID or else by file name of system ID.
+   * @param publicId publicId for resolved entity, often null
    * @param systemId systemId for resolved entity
-   * @return InputSource for
+   * @return InputSource for local copy, or null if not in catalog
    * @throws org.xml.sax.SAXException
    * @throws java.io.IOException
    */
@@ -341,109 +483,230 @@ public class X3DCatalog implements CatalogReader, CatalogDescriptor2, org.xml.sa
   public org.xml.sax.InputSource resolveEntity(String publicId, String systemId) throws org.xml.sax.SAXException, java.io.IOException
   {
     //System.out.println("X3DCatalog.resolveEntity(): "+ publicId + " " + systemId);
-    if (systemId == null)
+    String local = getSystemID(publicId); // DOCTYPE public identifier
+    if ((local == null) && (systemId != null))
+      local = findSystem(systemId);
+    if (local == null) {
+      resolveMisses.increment();
       return null;
+    }
+    resolveHits.increment();
+    return cachedInputSource(local);
+  }
 
-  switch (systemId) {
-      case SCHEMA_30_LOC:
-          return new InputSource(SCHEMA_30_LOCAL);
-      case SCHEMA_31_LOC:
-          return new InputSource(SCHEMA_31_LOCAL);
-      case SCHEMA_32_LOC:
-          return new InputSource(SCHEMA_32_LOCAL);
-      case SCHEMA_33_LOC:
-          return new InputSource(SCHEMA_33_LOCAL);
-      case SCHEMA_40_LOC:
-          return new InputSource(SCHEMA_40_LOCAL);
-      case SCHEMA_41_LOC:
-          return new InputSource(SCHEMA_41_LOCAL);
-  }
-
-    if (systemId.endsWith     (SCHEMA_30_FN))
-      return new InputSource  (SCHEMA_30_LOCAL);
-    else if (systemId.endsWith(SCHEMA_31_FN))
-      return new InputSource  (SCHEMA_31_LOCAL);
-    else if (systemId.endsWith(SCHEMA_32_FN))
-      return new InputSource  (SCHEMA_32_LOCAL);
-    else if (systemId.endsWith(SCHEMA_33_FN))
-      return new InputSource  (SCHEMA_33_LOCAL);
-    else if (systemId.endsWith(SCHEMA_40_FN))
-      return new InputSource  (SCHEMA_40_LOCAL);
-    else if (systemId.endsWith(SCHEMA_41_FN))
-      return new InputSource  (SCHEMA_41_LOCAL);
-
-    if (systemId.endsWith     (SCHEMA_30_EXT_PUB_FN))
-      return new InputSource  (SCHEMA_30_EXT_PUB_LOCAL);
-    else if (systemId.endsWith(SCHEMA_30_EXT_PRIV_FN))
-      return new InputSource  (SCHEMA_30_EXT_PRIV_LOCAL);
-	
-    else if (systemId.endsWith(SCHEMA_31_EXT_PUB_FN))
-      return new InputSource  (SCHEMA_31_EXT_PUB_LOCAL);
-    else if (systemId.endsWith(SCHEMA_31_EXT_PRIV_FN))
-      return new InputSource  (SCHEMA_31_EXT_PRIV_LOCAL);
-	
-    else if (systemId.endsWith(SCHEMA_32_EXT_PUB_FN))
-      return new InputSource  (SCHEMA_32_EXT_PUB_LOCAL);
-    else if (systemId.endsWith(SCHEMA_32_EXT_PRIV_FN))
-      return new InputSource  (SCHEMA_32_EXT_PRIV_LOCAL);
-	
-    else if (systemId.endsWith(SCHEMA_33_EXT_PUB_FN))
-      return new InputSource  (SCHEMA_33_EXT_PUB_LOCAL);
-    else if (systemId.endsWith(SCHEMA_33_EXT_PRIV_FN))
-      return new InputSource  (SCHEMA_33_EXT_PRIV_LOCAL);
-	
-    else if (systemId.endsWith(SCHEMA_40_EXT_PUB_FN))
-      return new InputSource  (SCHEMA_40_EXT_PUB_LOCAL);
-    else if (systemId.endsWith(SCHEMA_40_EXT_PRIV_FN))
-      return new InputSource  (SCHEMA_40_EXT_PRIV_LOCAL);
-	
-    else if (systemId.endsWith(SCHEMA_41_EXT_PUB_FN))
-      return new InputSource  (SCHEMA_41_EXT_PUB_LOCAL);
-    else if (systemId.endsWith(SCHEMA_41_EXT_PRIV_FN))
-      return new InputSource  (SCHEMA_41_EXT_PRIV_LOCAL);
-
-    // I think this should go here:
-    if      (systemId.endsWith(DTD_30_EXT_IO_FN))
-        return new InputSource(DTD_30_EXT_IO_LOCAL);
-    else if (systemId.endsWith(DTD_30_EXT_PUB_FN))
-        return new InputSource(DTD_30_EXT_PUB_LOCAL);
-    else if (systemId.endsWith(DTD_30_EXT_PRIV_FN))
-        return new InputSource(DTD_30_EXT_PRIV_LOCAL);
-    else if (systemId.endsWith(DTD_31_EXT_IO_FN))
-        return new InputSource(DTD_31_EXT_IO_LOCAL);
-    else if (systemId.endsWith(DTD_31_EXT_PUB_FN))
-        return new InputSource(DTD_31_EXT_PUB_LOCAL);
-    else if (systemId.endsWith(DTD_31_EXT_PRIV_FN))
-        return new InputSource(DTD_31_EXT_PRIV_LOCAL);
-    else if (systemId.endsWith(DTD_32_EXT_IO_FN))
-        return new InputSource(DTD_32_EXT_IO_LOCAL);
-    else if (systemId.endsWith(DTD_32_EXT_PUB_FN))
-        return new InputSource(DTD_32_EXT_PUB_LOCAL);
-    else if (systemId.endsWith(DTD_32_EXT_PRIV_FN))
-        return new InputSource(DTD_32_EXT_PRIV_LOCAL);
-    else if (systemId.endsWith(DTD_33_EXT_IO_FN))
-        return new InputSource(DTD_33_EXT_IO_LOCAL);
-    else if (systemId.endsWith(DTD_33_EXT_PUB_FN))
-        return new InputSource(DTD_33_EXT_PUB_LOCAL);
-    else if (systemId.endsWith(DTD_33_EXT_PRIV_FN))
-        return new InputSource(DTD_33_EXT_PRIV_LOCAL);
-    else if (systemId.endsWith(DTD_40_EXT_IO_FN))
-        return new InputSource(DTD_40_EXT_IO_LOCAL);
-    else if (systemId.endsWith(DTD_40_EXT_PUB_FN))
-        return new InputSource(DTD_40_EXT_PUB_LOCAL);
-    else if (systemId.endsWith(DTD_40_EXT_PRIV_FN))
-        return new InputSource(DTD_40_EXT_PRIV_LOCAL);
-    else if (systemId.endsWith(DTD_41_EXT_IO_FN))
-        return new InputSource(DTD_41_EXT_IO_LOCAL);
-    else if (systemId.endsWith(DTD_41_EXT_PUB_FN))
-        return new InputSource(DTD_41_EXT_PUB_LOCAL);
-    else if (systemId.endsWith(DTD_41_EXT_PRIV_FN))
-        return new InputSource(DTD_41_EXT_PRIV_LOCAL);
-
-    //else
+  /**
+   * File name portion of a URL or path, used as catalog key
+   * @param systemId URL or path
+   * @return portion following last separator, without query or fragment
+   */
+  static String fileName(String systemId)
+  {
+    int end = pathEnd(systemId);
+    int slash = Math.max(systemId.lastIndexOf('/', end - 1), systemId.lastIndexOf('\\', end - 1));
+    return systemId.substring(slash + 1, end);
+  }
+
+  /** @return index of query or fragment, or length if neither present */
+  private static int pathEnd(String systemId)
+  {
+    for (int i = 0; i < systemId.length(); i++) {
+      char c = systemId.charAt(i);
+      if ((c == '?') || (c == '#'))
+        return i;
+    }
+    return systemId.length();
+  }
+
+  /**
+   * Entity resolution counts since startup, for diagnosing catalog behavior
+   * @return hit and miss counts
+   */
+  public static String getResolutionStatistics()
+  {
+    return "X3DCatalog entity resolution: " + resolveHits.sum() + " hits, " + resolveMisses.sum() + " misses; "
+         + "stylesheet resolution: " + transformHits.sum() + " hits, " + transformMisses.sum() + " misses";
+  }
+
+  /**
+   * InputSource over in-memory copy of a local DTD or schema, reading it on first use
+   * @param localSystemId nbres: location of local copy
+   * @return input source whose system ID still allows relative includes to resolve
+   */
+  private static InputSource cachedInputSource(String localSystemId)
+  {
+    URL localURL = localURL(localSystemId);
+    InputSource inputSource = new InputSource((localURL != null) ? localURL.toString() : localSystemId);
+    byte[] contents = ENTITY_CACHE.get(localSystemId);
+    if (contents == null) {
+      if (localURL == null) {
+        Logger.getLogger(X3DCatalog.class.getName()).log(Level.WARNING, "X3DCatalog unable to locate {0}", localSystemId);
+        return inputSource;
+      }
+      try (InputStream inputStream = localURL.openStream()) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        inputStream.transferTo(buffer);
+        contents = buffer.toByteArray();
+        ENTITY_CACHE.put(localSystemId, contents);
+      }
+      catch (IOException ex) {
+        Logger.getLogger(X3DCatalog.class.getName()).log(Level.WARNING, "X3DCatalog unable to cache {0}, reading directly: {1}",
+                                                         new Object[] {localSystemId, ex.getLocalizedMessage()});
+        return inputSource; // parser opens system ID itself, as before
+      }
+    }
+    inputSource.setByteStream(new ByteArrayInputStream(contents));
+    return inputSource;
+  }
+
+  /** local copy locations; nbres: URLs only open inside NetBeans, so headless use reads module resources from classpath */
+  private static final Map<String,URL> LOCAL_URLS = new ConcurrentHashMap<>();
+
+  /**
+   * @param localSystemId nbres: location of local copy, or user catalog URI
+   * @return URL that can be opened in this JVM, or null if not found
+   */
+  private static URL localURL(String localSystemId)
+  {
+    URL url = LOCAL_URLS.get(localSystemId);
+    if (url == null) {
+      try {
+        url = new URL(localSystemId);
+      }
+      catch (MalformedURLException ex) { // no nbres: protocol handler outside NetBeans
+        if (localSystemId.startsWith("nbres:"))
+          url = X3DCatalog.class.getResource(localSystemId.substring("nbres:".length()));
+      }
+      if (url != null)
+        LOCAL_URLS.put(localSystemId, url);
+    }
+    return url;
+  }
+
+  /**
+   * Stylesheet packaged in this module, found on the classpath rather than through the NetBeans layer,
+   * for example when running headless from org.web3d.x3d.cli.X3dEditCommandLine
+   * @param stylesheet file name or layer path, for example "X3dToJson.xslt" or "Schematron/SvrlReportText.xslt"
+   * @return resource URL, or null if not packaged
+   */
+  public static URL findStylesheetResource(String stylesheet)
+  {
+    String name = fileName(stylesheet);
+    for (String directory : STYLESHEET_RESOURCE_DIRS) {
+      URL url = X3DCatalog.class.getResource(directory + name);
+      if (url != null)
+        return url;
+    }
     return null;
   }
 
+  /**
+   * Compiled X3D schema for given version, compiling on first request and sharing thereafter.
+   * Includes (extension schemas) are resolved from local copies, never the network.
+   * @param x3dVersion value of X3D version attribute, for example "4.0"
+   * @return compiled schema, or null if version is unknown
+   * @throws SAXException if schema cannot be compiled
+   */
+  public static Schema getX3dSchema(String x3dVersion) throws SAXException
+  {
+    String schemaLocation = SCHEMA_LOCATIONS.get(x3dVersion);
+    if (schemaLocation == null)
+      return null;
+    Schema schema = SCHEMA_CACHE.get(schemaLocation);
+    if (schema != null)
+      return schema;
+    synchronized (SCHEMA_CACHE) { // compile each schema once, even if requested concurrently
+      schema = SCHEMA_CACHE.get(schemaLocation);
+      if (schema == null) {
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        schemaFactory.setResourceResolver(RESOURCE_RESOLVER);
+        InputSource schemaSource;
+        try {
+          schemaSource = getInstance().resolveEntity(null, schemaLocation);
+        }
+        catch (IOException ex) {
+          throw new SAXException(ex);
+        }
+        StreamSource streamSource = new StreamSource(schemaSource.getByteStream(), schemaSource.getSystemId());
+        schema = schemaFactory.newSchema(streamSource);
+        SCHEMA_CACHE.put(schemaLocation, schema);
+      }
+      return schema;
+    }
+  }
+
+  /**
+   * @param x3dVersion value of X3D version attribute
+   * @return whether compiled schema for this version is already available
+   */
+  public static boolean isX3dSchemaCached(String x3dVersion)
+  {
+    String schemaLocation = SCHEMA_LOCATIONS.get(x3dVersion);
+    return (schemaLocation != null) && SCHEMA_CACHE.containsKey(schemaLocation);
+  }
+
+  private static final LSResourceResolver RESOURCE_RESOLVER = new CatalogResourceResolver();
+
+  /**
+   * Resolver for schema compilation and validation. Validator.validate(SAXSource) replaces the
+   * reader's EntityResolver with this one, so validators need it to resolve the DOCTYPE locally.
+   * @return resolver reading DTDs and schemas from cached local copies
+   */
+  public static LSResourceResolver getResourceResolver()
+  {
+    return RESOURCE_RESOLVER;
+  }
+
+  /** Resolves schema includes through this catalog so that compilation uses cached local copies */
+  private static class CatalogResourceResolver implements LSResourceResolver
+  {
+    @Override
+    public LSInput resolveResource(String type, String namespaceURI, String publicId, String systemId, String baseURI)
+    {
+      try {
+        InputSource inputSource = getInstance().resolveEntity(publicId, systemId);
+        return (inputSource == null) ? null : new CachedLSInput(publicId, inputSource);
+      }
+      catch (SAXException | IOException ex) {
+        Logger.getLogger(X3DCatalog.class.getName()).log(Level.WARNING, "X3DCatalog unable to resolve {0}: {1}",
+                                                         new Object[] {systemId, ex.getLocalizedMessage()});
+        return null; // default resolution
+      }
+    }
+  }
+
+  /** Minimal LSInput wrapping a resolved InputSource */
+  private static class CachedLSInput implements LSInput
+  {
+    private String      publicId;
+    private String      systemId;
+    private String      baseURI;
+    private InputStream byteStream;
+
+    CachedLSInput(String publicId, InputSource inputSource)
+    {
+      this.publicId   = publicId;
+      this.systemId   = inputSource.getSystemId();
+      this.byteStream = inputSource.getByteStream();
+    }
+
+    @Override public Reader      getCharacterStream()                 { return null; }
+    @Override public void        setCharacterStream(Reader r)         { }
+    @Override public InputStream getByteStream()                      { return byteStream; }
+    @Override public void        setByteStream(InputStream s)         { byteStream = s; }
+    @Override public String      getStringData()                      { return null; }
+    @Override public void        setStringData(String d)              { }
+    @Override public String      getSystemId()                        { return systemId; }
+    @Override public void        setSystemId(String id)               { systemId = id; }
+    @Override public String      getPublicId()                        { return publicId; }
+    @Override public void        setPublicId(String id)               { publicId = id; }
+    @Override public String      getBaseURI()                         { return baseURI; }
+    @Override public void        setBaseURI(String uri)               { baseURI = uri; }
+    @Override public String      getEncoding()                        { return null; }
+    @Override public void        setEncoding(String e)                { }
+    @Override public boolean     getCertifiedText()                   { return false; }
+    @Override public void        setCertifiedText(boolean c)          { }
+  }
+
   /**
    * Get registered URI for the given name or null if not registered.
    * @param name
@@ -474,18 +737,63 @@ public class X3DCatalog implements CatalogReader, CatalogDescriptor2, org.xml.sa
   public Source resolve(String href, String base) throws TransformerException
   {
     try {
-      FileObject stylesheets = FileUtil.getConfigRoot().getFileSystem().findResource("X3dTransforms"); //Repository.getDefault().getDefaultFileSystem().findResource("X3dTransforms");
-
-      FileObject[] children = stylesheets.getChildren();
-      for (FileObject fo : children) {
-        if (href.endsWith(fo.getNameExt())) {
-          return new StreamSource(fo.getInputStream());
+      FileObject fo = getTransformsByName().get(fileName(href));
+      if (fo == null) {
+        URL url = findStylesheetResource(href); // headless, or stylesheet not listed in layer
+        if (url == null) {
+          transformMisses.increment();
+          return null;
         }
+        transformHits.increment();
+        return new StreamSource(url.openStream(), url.toString());
       }
+      transformHits.increment();
+      return new StreamSource(fo.getInputStream(), fo.toURI().toString());
     }
     catch (FileStateInvalidException | FileNotFoundException ex) {
       ErrorManager.getDefault().log(ErrorManager.ERROR, "Can't read transform from netbeans filesystem: " + ex.getLocalizedMessage());
     }
+    catch (IOException ex) {
+      throw new TransformerException("X3DCatalog unable to read " + href, ex);
+    }
     return null;
   }
+
+  /** layer stylesheets by file name, listed on first use and again after the folder changes */
+  private static Map<String,FileObject> transformsByName;
+  private static FileObject transformsFolder;
+
+  /** drops stylesheet listing whenever a stylesheet is added, removed, renamed or replaced */
+  private static final FileChangeListener transformsListener = new FileChangeAdapter()
+  {
+    @Override public void fileDataCreated  (FileEvent fe)       { invalidateTransforms(); }
+    @Override public void fileFolderCreated(FileEvent fe)       { invalidateTransforms(); }
+    @Override public void fileDeleted      (FileEvent fe)       { invalidateTransforms(); }
+    @Override public void fileRenamed      (FileRenameEvent fe) { invalidateTransforms(); }
+  };
+
+  static synchronized void invalidateTransforms()
+  {
+    transformsByName = null;
+  }
+
+  private static synchronized Map<String,FileObject> getTransformsByName() throws FileStateInvalidException
+  {
+    if (transformsByName == null) {
+      Map<String,FileObject> map = new HashMap<>();
+      FileObject stylesheets = FileUtil.getConfigRoot().getFileSystem().findResource("X3dTransforms"); //Repository.getDefault().getDefaultFileSystem().findResource("X3dTransforms");
+      if (stylesheets == null)
+        return map; // not cached, folder may still appear
+      if (stylesheets != transformsFolder) {
+        if (transformsFolder != null)
+          transformsFolder.removeFileChangeListener(transformsListener);
+        stylesheets.addFileChangeListener(transformsListener);
+        transformsFolder = stylesheets;
+      }
+      for (FileObject fo : stylesheets.getChildren())
+        map.put(fo.getNameExt(), fo);
+      transformsByName = map;
+    }
+    return transformsByName;
+  }
 }
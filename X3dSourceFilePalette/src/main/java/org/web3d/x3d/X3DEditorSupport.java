@@ -33,6 +33,7 @@ POSSIBILITY OF SUCH DAMAGE.
  */
 package org.web3d.x3d;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.lang.reflect.Field;
@@ -43,6 +44,7 @@ import java.util.Vector;
 import javax.swing.JEditorPane;
 import javax.swing.SwingUtilities;
 import javax.swing.text.JTextComponent;
+import javax.swing.text.StyledDocument;
 import org.netbeans.spi.palette.PaletteController;
 import org.openide.cookies.EditCookie;
 import org.openide.cookies.EditorCookie;
@@ -51,6 +53,7 @@ import org.openide.cookies.PrintCookie;
 import org.openide.cookies.SaveCookie;
 import org.openide.filesystems.FileLock;
 import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
 import org.openide.loaders.DataObject;
 import org.openide.nodes.Node;
 import org.openide.nodes.Node.Cookie;
@@ -62,6 +65,8 @@ import org.openide.util.lookup.Lookups;
 import org.openide.util.lookup.ProxyLookup;
 import org.openide.windows.CloneableOpenSupport;
 import org.web3d.x3d.options.X3dEditUserPreferences;
+import org.web3d.x3d.palette.X3DParseService;
+import org.web3d.x3d.palette.X3DSceneSnapshot;
 import org.web3d.x3d.palette.X3DPaletteFactory;
 import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom.ElementLocation;
 import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom.ValidateThread;
@@ -185,6 +190,24 @@ public final class X3DEditorSupport extends DataEditorSupport implements OpenCoo
         RequestProcessor.getDefault().post(new ValidateThread(target, filename, false));  // false=no dialog
     }
 
+    /**
+     * Immutable copy of current scene text, including unsaved edits, so that conversions and
+     * checks need not save first.  Reads the file only if no document is loaded.
+     *
+     * @return text snapshot
+     * @throws IOException if no document is loaded and the file cannot be read
+     */
+    public X3DTextSnapshot getTextSnapshot() throws IOException {
+        FileObject fileObject = getDataObject().getPrimaryFile();
+        File file = FileUtil.toFile(fileObject);
+        String systemId = fileObject.toURL().toString();
+        StyledDocument document = getDocument();
+        if (document == null) {
+            return X3DTextSnapshot.read(fileObject.getInputStream(), systemId, file);
+        }
+        return X3DTextSnapshot.of(document, systemId, file, isModified());
+    }
+
     /**
      * Nested class. Environment for this support. Extends
      * <code>DataEditorSupport.Env</code> abstract class.
@@ -242,8 +265,7 @@ public final class X3DEditorSupport extends DataEditorSupport implements OpenCoo
 
         public static final String PREFERRED_ID = "X3DEDITOR";
 
-        private org.jdom.Document jdomDoc;
-        private Vector<ElementLocation> saxLocations;
+        private X3DParseService parseService;
 
         private X3DEditorSupport supp;
         private ContentHandlerFactory factory;
@@ -316,20 +338,36 @@ public final class X3DEditorSupport extends DataEditorSupport implements OpenCoo
             initialize();
         }
 
+        /**
+         * JDOM document from the most recent background parse; does not re-parse
+         *
+         * @return JDOM document, or null if not yet built
+         */
         public org.jdom.Document getJdomDoc() {
-            return jdomDoc;
+            X3DSceneSnapshot snapshot = getParseService().getLatestSnapshot();
+            return (snapshot == null) ? null : snapshot.getJdomDocument();
         }
 
-        public void setJdomDoc(org.jdom.Document jdomDoc) {
-            this.jdomDoc = jdomDoc;
-        }
-
-        public void setJdomSaxLocations(Vector<ElementLocation> saxLocations) {
-            this.saxLocations = saxLocations;
+        /**
+         * Element locations from the most recent background parse; does not re-parse
+         *
+         * @return element locations in document order, or null if not yet built
+         */
+        public Vector<ElementLocation> getJdomSaxLocations() {
+            X3DSceneSnapshot snapshot = getParseService().getLatestSnapshot();
+            return (snapshot == null) ? null : snapshot.getLocationIndex().asVector();
         }
 
-        public Vector<ElementLocation> getJdomSaxLocations() {
-            return saxLocations;
+        /**
+         * Background parse service publishing snapshots of this editor's document
+         *
+         * @return service, created on first use
+         */
+        public synchronized X3DParseService getParseService() {
+            if (parseService == null) {
+                parseService = new X3DParseService();
+            }
+            return parseService;
         }
 
         @Override
@@ -347,6 +385,11 @@ public final class X3DEditorSupport extends DataEditorSupport implements OpenCoo
             // as it interferes with content loading of images for Xj3D
             uninstallContentHandlerFactory();
 
+            // start background parsing so first palette/edit action finds a snapshot ready
+            if (getEditorPane() != null) {
+                getParseService().attach(getEditorPane().getDocument());
+            }
+
             X3DDataObject xObj = (X3DDataObject) getX3dEditorSupport().getDataObject();
 
             Xj3dTopComponent topC = Xj3dTopComponent.findInstance();
@@ -363,6 +406,10 @@ public final class X3DEditorSupport extends DataEditorSupport implements OpenCoo
             
             super.componentClosed();
 
+            if (parseService != null) {
+                parseService.detach(); // stop listening to document changes
+            }
+
             Xj3dTopComponent topC = Xj3dTopComponent.findInstance();
 
             X3DDataObject xObj = (X3DDataObject) getX3dEditorSupport().getDataObject();
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 1995-2025 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *  * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d;
+
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+import javax.xml.transform.stream.StreamSource;
+import org.xml.sax.InputSource;
+
+/**
+ * X3DTextSnapshot.java
+ * Created on October 18, 2026
+ *
+ * Immutable copy of scene text taken from the editor document, including unsaved edits, so that
+ * conversions and quality assurance checks can run without first saving (which triggers validation
+ * and an Xj3D refresh) and then reading the file back.  Text is copied once, segment by segment
+ * under the document read lock, into a private array that readers and sources share without
+ * further copying.  Reading the file is only a fallback when no document is loaded.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class X3DTextSnapshot implements CharSequence
+{
+  private final char[]  text;
+  private final String  systemId;
+  private final File    file;
+  private final boolean modified;
+
+  private X3DTextSnapshot(char[] text, String systemId, File file, boolean modified)
+  {
+    this.text     = text;
+    this.systemId = systemId;
+    this.file     = file;
+    this.modified = modified;
+  }
+
+  /**
+   * Copy current text of an editor document
+   * @param document editor document
+   * @param systemId location of scene, for messages and relative references
+   * @param file scene file, may be null
+   * @param modified whether document has edits not yet saved to file
+   * @return new snapshot
+   */
+  public static X3DTextSnapshot of(Document document, String systemId, File file, boolean modified)
+  {
+    char[][] copy = new char[1][];
+    document.render(() -> {
+      int documentLength = document.getLength();
+      char[] chars = new char[documentLength];
+      Segment segment = new Segment();
+      segment.setPartialReturn(true); // shared content array up to gap, rather than a joined copy
+      try {
+        for (int offset = 0; offset < documentLength; offset += segment.count) {
+          document.getText(offset, documentLength - offset, segment);
+          System.arraycopy(segment.array, segment.offset, chars, offset, segment.count);
+        }
+      }
+      catch (BadLocationException ex) {
+        throw new IllegalStateException("X3DTextSnapshot document changed while locked", ex); // not expected under render lock
+      }
+      copy[0] = chars;
+    });
+    return new X3DTextSnapshot(copy[0], systemId, file, modified);
+  }
+
+  /**
+   * Read scene file, used when no editor document is loaded
+   * @param file scene file
+   * @return new snapshot
+   * @throws IOException if file cannot be read
+   */
+  public static X3DTextSnapshot read(File file) throws IOException
+  {
+    return decode(Files.readAllBytes(file.toPath()), file.toURI().toString(), file);
+  }
+
+  /**
+   * Read scene stream, used when no editor document is loaded
+   * @param inputStream scene content, closed when read
+   * @param systemId location of scene, for messages and relative references
+   * @param file scene file, may be null
+   * @return new snapshot
+   * @throws IOException if stream cannot be read
+   */
+  public static X3DTextSnapshot read(InputStream inputStream, String systemId, File file) throws IOException
+  {
+    try (InputStream in = inputStream) {
+      return decode(in.readAllBytes(), systemId, file);
+    }
+  }
+
+  /** decode in the encoding named by byte order mark or XML declaration, as an XML parser would */
+  private static X3DTextSnapshot decode(byte[] bytes, String systemId, File file) throws IOException
+  {
+    CharBuffer chars = xmlEncoding(bytes).decode(ByteBuffer.wrap(bytes));
+    int start = ((chars.remaining() > 0) && (chars.get(chars.position()) == '\uFEFF')) ? 1 : 0; // byte order mark
+    char[] text = new char[chars.remaining() - start];
+    chars.position(chars.position() + start);
+    chars.get(text);
+    return new X3DTextSnapshot(text, systemId, file, false);
+  }
+
+  /**
+   * Character encoding of an XML document, following XML 1.0 Appendix F: byte order mark first,
+   * then the encoding declaration, otherwise UTF-8 (or UTF-16 when the declaration itself is UTF-16)
+   * @param bytes start of document, at least through the XML declaration
+   * @return charset for decoding document
+   * @throws UnsupportedEncodingException if declared encoding is not supported by this JVM
+   */
+  public static Charset xmlEncoding(byte[] bytes) throws UnsupportedEncodingException
+  {
+    if (startsWith(bytes, 0xEF, 0xBB, 0xBF))
+      return StandardCharsets.UTF_8;
+    if (startsWith(bytes, 0xFE, 0xFF) || startsWith(bytes, 0x00, 0x3C, 0x00, 0x3F))
+      return StandardCharsets.UTF_16BE;
+    if (startsWith(bytes, 0xFF, 0xFE) || startsWith(bytes, 0x3C, 0x00, 0x3F, 0x00))
+      return StandardCharsets.UTF_16LE;
+    if (!startsWith(bytes, '<', '?', 'x', 'm', 'l'))
+      return StandardCharsets.UTF_8;
+
+    // ASCII-compatible encodings all spell the declaration identically
+    int end = 0;
+    while ((end < bytes.length) && (end < 512) && (bytes[end] != '>'))
+      end++;
+    Matcher matcher = ENCODING_PATTERN.matcher(new String(bytes, 0, end, StandardCharsets.ISO_8859_1));
+    if (!matcher.find())
+      return StandardCharsets.UTF_8;
+    try {
+      return Charset.forName(matcher.group(1));
+    }
+    catch (IllegalArgumentException ex) {
+      throw new UnsupportedEncodingException("unsupported XML encoding='" + matcher.group(1) + "'");
+    }
+  }
+
+  /**
+   * Character encoding named by the XML declaration at the start of decoded text, for writing it out again
+   * @param text document text, without byte order mark
+   * @return charset for encoding document, UTF-8 if none is declared
+   * @throws UnsupportedEncodingException if declared encoding is not supported by this JVM
+   */
+  public static Charset xmlEncoding(CharSequence text) throws UnsupportedEncodingException
+  {
+    String declaration = text.subSequence(0, Math.min(text.length(), 512)).toString();
+    return xmlEncoding(declaration.getBytes(StandardCharsets.ISO_8859_1)); // declaration itself is ASCII
+  }
+
+  private static final Pattern ENCODING_PATTERN = Pattern.compile("\\sencoding\\s*=\\s*[\"']([A-Za-z][A-Za-z0-9._-]*)[\"']");
+
+  private static boolean startsWith(byte[] bytes, int... prefix)
+  {
+    if (bytes.length < prefix.length)
+      return false;
+    for (int i = 0; i < prefix.length; i++) {
+      if ((bytes[i] & 0xFF) != prefix[i])
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Reader for text, avoiding a String copy when text is a snapshot
+   * @param text scene text
+   * @return new reader positioned at start of text
+   */
+  public static Reader newReader(CharSequence text)
+  {
+    if (text instanceof X3DTextSnapshot)
+      return ((X3DTextSnapshot) text).newReader();
+    return new StringReader(text.toString());
+  }
+
+  /** @return new reader positioned at start of text */
+  public Reader newReader()
+  {
+    return new CharArrayReader(text);
+  }
+
+  /** @return new SAX input source reading text, with system identifier set */
+  public InputSource newInputSource()
+  {
+    InputSource inputSource = new InputSource(newReader());
+    inputSource.setSystemId(systemId);
+    return inputSource;
+  }
+
+  /** @return new transformation source reading text, with system identifier set */
+  public StreamSource newStreamSource()
+  {
+    return new StreamSource(newReader(), systemId);
+  }
+
+  /**
+   * Write text, for tools that only read files
+   * @param writer destination, not closed
+   * @throws IOException if write fails
+   */
+  public void writeTo(Writer writer) throws IOException
+  {
+    writer.write(text);
+  }
+
+  /** @return location of scene, for messages and relative references */
+  public String getSystemId()
+  {
+    return systemId;
+  }
+
+  /** @return scene file, or null if not a local file */
+  public File getFile()
+  {
+    return file;
+  }
+
+  /** @return true if text includes edits not yet saved to file */
+  public boolean isModified()
+  {
+    return modified;
+  }
+
+  @Override
+  public int length()
+  {
+    return text.length;
+  }
+
+  @Override
+  public char charAt(int index)
+  {
+    if ((index < 0) || (index >= text.length))
+      throw new IndexOutOfBoundsException("index " + index + ", length " + text.length);
+    return text[index];
+  }
+
+  /** @return read-only view sharing snapshot text */
+  @Override
+  public CharSequence subSequence(int start, int end)
+  {
+    if ((start < 0) || (end > text.length) || (start > end))
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + text.length);
+    return CharBuffer.wrap(text, start, end - start).asReadOnlyBuffer();
+  }
+
+  /** @return copy of text as String, avoid for large scenes */
+  @Override
+  public String toString()
+  {
+    return new String(text);
+  }
+}
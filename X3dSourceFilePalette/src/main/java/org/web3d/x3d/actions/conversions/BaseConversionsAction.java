@@ -58,13 +58,13 @@ import javax.swing.JScrollPane;
 import javax.swing.ListSelectionModel;
 import javax.swing.border.EmptyBorder;
 import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
-import net.sf.saxon.Configuration;
 import net.sf.saxon.s9api.Processor;
 import org.netbeans.api.xml.cookies.CookieMessage;
 import org.netbeans.api.xml.cookies.CookieObserver;
@@ -86,6 +86,7 @@ import org.web3d.x3d.X3DCatalog;
 import org.web3d.x3d.X3DDataObject;
 import org.web3d.x3d.X3DEditorSupport;
 import org.web3d.x3d.X3DEditorSupport.X3dEditor;
+import org.web3d.x3d.X3DTextSnapshot;
 import static org.web3d.x3d.actions.conversions.X3dToXhtmlDomConversionAction.x3dToXhtmlDomConversionFrame;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
@@ -349,7 +350,7 @@ import org.xml.sax.SAXParseException;
     }
 
     /**
-     * Transform the currently open X3D disk file, putting the result into the passed destination disk file.
+     * Transform the currently open X3D scene, including unsaved edits, putting the result into the passed destination disk file.
      * @param x3dEditor reference to X3dEditor
      * @param outputFile for results
      * @param xsltFileResourcePath path to XSLT stylesheet
@@ -369,8 +370,18 @@ import org.xml.sax.SAXParseException;
         X3DDataObject x3dDataObject = (X3DDataObject) x3dEditor.getX3dEditorSupport().getDataObject();
         FileObject mySrc = x3dDataObject.getPrimaryFile();
         File mySrcFile = FileUtil.toFile(mySrc);
-
-        return xsltOneFile(x3dEditor, mySrcFile.getName(), mySrc.getInputStream(), outputFile, xsltFileResourcePath, xsltIsOSFile, parameterMap, goodFinishMessage);
+        Source source;
+        try
+        {
+            // snapshot taken now, so that later edits do not affect this conversion
+            source = x3dEditor.getX3dEditorSupport().getTextSnapshot().newStreamSource();
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            TransformListener.getInstance().message("Editor text unavailable, reading saved file instead: " + ex.getLocalizedMessage());
+            source = new StreamSource(mySrc.getInputStream());
+        }
+        return xsltOneFile(x3dEditor, mySrcFile.getName(), source, outputFile, xsltFileResourcePath, xsltIsOSFile, parameterMap, goodFinishMessage);
     }
 
     /**
@@ -392,10 +403,33 @@ import org.xml.sax.SAXParseException;
                                              boolean xsltIsOSFile, 
                                              Map<String, Object> parameterMap, 
                                              String goodFinishMessage)
+    {
+      return xsltOneFile(x3dEditor, sourceHandle, new StreamSource(sourceInputStream), outputF, xsltFileResourcePath, xsltIsOSFile, parameterMap, goodFinishMessage);
+    }
+
+    /**
+     * Transform a scene source, such as an editor text snapshot, putting the result into the passed destination disk file
+     * @param x3dEditor reference to X3dEditor
+     * @param sourceHandle name of scene for messages
+     * @param source scene to transform, read once
+     * @param xsltFileResourcePath path to XSLT stylesheet
+     * @param xsltIsOSFile whether stylesheet is an operating system file
+     * @param parameterMap map of key=value pairs to provide to spreadsheet
+     * @param goodFinishMessage message on successful finish
+     * @return
+     */
+    public RequestProcessor.Task xsltOneFile(X3DEditorSupport.X3dEditor x3dEditor,
+                                             String sourceHandle, 
+                                             Source source, 
+                                             File outputF, 
+                                             String xsltFileResourcePath,
+                                             boolean xsltIsOSFile, 
+                                             Map<String, Object> parameterMap, 
+                                             String goodFinishMessage)
     {
       RequestProcessor rp = getRequestProcessor();
       if  (rp != null)
-           return rp.post(new XsltRunner(x3dEditor,sourceHandle,sourceInputStream,outputF,xsltFileResourcePath,xsltIsOSFile,parameterMap, goodFinishMessage));
+           return rp.post(new XsltRunner(x3dEditor,sourceHandle,source,outputF,xsltFileResourcePath,xsltIsOSFile,parameterMap, goodFinishMessage));
       else return null;
     }
 
@@ -414,7 +448,7 @@ import org.xml.sax.SAXParseException;
     {
         X3DEditorSupport.X3dEditor x3dEditor;
         String sourceHandle;
-        InputStream sourceInputStream;
+        Source source;
         File outputFile;
         String xsltFileResourcePath;
         boolean xsltIsOSFile;
@@ -422,12 +456,12 @@ import org.xml.sax.SAXParseException;
         Runnable callback;
         String goodFinishMessage;
 
-        XsltRunner(X3DEditorSupport.X3dEditor x3dEditor, String sourceHandle, InputStream sourceInputStream, File outputFile, String xsltFileResourcePath,
+        XsltRunner(X3DEditorSupport.X3dEditor x3dEditor, String sourceHandle, Source source, File outputFile, String xsltFileResourcePath,
                    boolean xsltIsOSFile, Map<String, Object> parameterMap, String goodFinishMessage)
         {
             this.x3dEditor=x3dEditor;
             this.sourceHandle=sourceHandle;
-            this.sourceInputStream=sourceInputStream;
+            this.source=source;
             this.outputFile=outputFile;
             this.xsltFileResourcePath=xsltFileResourcePath;
             this.xsltIsOSFile = xsltIsOSFile;
@@ -442,19 +476,9 @@ import org.xml.sax.SAXParseException;
             try 
             {
                 console.message(Nb_XSLT_Transformation_starting);
-                StreamSource xslStream;
-                if (xsltIsOSFile)
-                {
-                    File xsltF = new File(xsltFileResourcePath);
-                    xslStream = new StreamSource(xsltF);
-                    console.message(" " + xsltF.getName() + " transformation stylesheet applied to " + sourceHandle);
-                } 
-                else
-                {
-                    FileObject jarredTransformer = FileUtil.getConfigRoot().getFileSystem().findResource(xsltFileResourcePath);
-                    xslStream = new StreamSource(jarredTransformer.getInputStream());
-                    console.message(" " + jarredTransformer.getNameExt() + " transformation stylesheet applied to " + sourceHandle);
-                }
+                // compiled once and shared, recompiled only if stylesheet changes
+                Templates templates = XsltTemplatesCache.getJreTemplates(xsltFileResourcePath, xsltIsOSFile, new BaseConversionsErrorHandler(console));
+                console.message(" " + new File(xsltFileResourcePath).getName() + " transformation stylesheet applied to " + sourceHandle);
 
                 console.moveToFront();
                 console.setNode(x3dEditor.getActivatedNodes()[0]);
@@ -472,11 +496,8 @@ import org.xml.sax.SAXParseException;
                 StreamResult outputStreamResult = new StreamResult(outputFile);
                 console.message(Nb_Writing + outputFile.getAbsolutePath());
 
-                TransformerFactory transformerFactory = TransformerFactory.newInstance();
-                transformerFactory.setErrorListener(new BaseConversionsErrorHandler(console));
-                transformerFactory.setURIResolver(X3DCatalog.getInstance());
-
-                Transformer transformer = transformerFactory.newTransformer(xslStream);
+                Transformer transformer = templates.newTransformer();
+                transformer.setURIResolver(X3DCatalog.getInstance());
 
                 if (parameterMap != null)
                 {
@@ -503,7 +524,7 @@ import org.xml.sax.SAXParseException;
                 Proxy proxy = new Proxy(console);
                 transformer.setErrorListener(proxy);
 
-                transformer.transform(new StreamSource(sourceInputStream), outputStreamResult);
+                transformer.transform(source, outputStreamResult);
                 console.message(Nb_XSLT_transformation_complete);
 
                 if (goodFinishMessage != null)
@@ -572,21 +593,11 @@ import org.xml.sax.SAXParseException;
         resultFileExtension = processFileExtension(resultFileExtension);
         try
         {
+            // editor text as shown, unsaved edits included, so no save and reload is needed before export
+            X3DTextSnapshot sceneText = x3dEditor.getX3dEditorSupport().getTextSnapshot();
             // This path is setup in the X3D layer.xml file.
             transformListener.message(Nb_XSLT_Transformation_starting);
-            StreamSource xsltStreamSource;
-            if (xsltIsOSFile)
-            {
-                File xsltFile = new File(xsltFileResourcePath);
-                xsltStreamSource = new StreamSource(xsltFile);
-                transformListener.message(xsltFile.getName() + " transformation stylesheet applied to " + primaryFile.getAbsolutePath());
-            } 
-            else
-            {
-                FileObject jarredTransformer = FileUtil.getConfigRoot().getFileSystem().findResource(xsltFileResourcePath); //Repository.getDefault().getDefaultFileSystem().findResource (xsltFileResourcePath);
-                xsltStreamSource = new StreamSource(jarredTransformer.getInputStream());
-                transformListener.message(jarredTransformer.getNameExt() + " transformation stylesheet applied to " + primaryFile.getAbsolutePath());
-            }
+            transformListener.message(new File(xsltFileResourcePath).getName() + " transformation stylesheet applied to " + primaryFile.getAbsolutePath());
             transformListener.moveToFront(); // make consoleTransformListener visible
             transformListener.setNode(x3dEditorActivatedNodeArray[0]);
 
@@ -614,16 +625,8 @@ import org.xml.sax.SAXParseException;
                 /* The large validitychecks style sheet includes some xslt 2.0 statements */
                 
                 // https://saxonica.plan.io/issues/5980
-//              Processor processor = new Processor(false);
-                Configuration configuration = new Configuration();
-                configuration.setParseOptions(configuration.getParseOptions().withParserProperty("http://www.oracle.com/xml/jaxp/properties/" + "entityExpansionLimit", "120000"));
-                configuration.setParseOptions(configuration.getParseOptions().withParserProperty("http://www.oracle.com/xml/jaxp/properties/" + "totalEntitySizeLimit", "50000000"));
-                configuration.setParseOptions(configuration.getParseOptions().withParserProperty("http://www.oracle.com/xml/jaxp/properties/" + "maxGeneralEntitySizeLimit", "50000000"));
-                
-                TransformerFactory saxonTransformerFactory = new net.sf.saxon.TransformerFactoryImpl(configuration);
-                saxonTransformerFactory.setURIResolver(X3DCatalog.getInstance());
-                Transformer saxonTransformer = saxonTransformerFactory.newTransformer(xsltStreamSource);
-                saxonTransformer.setErrorListener(new ErrorListener() {
+                // compiled once and shared, recompiled only if stylesheet changes
+                ErrorListener errorListener = new ErrorListener() {
                     @Override
                     public void warning(TransformerException exception) throws TransformerException
                     {
@@ -641,7 +644,11 @@ import org.xml.sax.SAXParseException;
                     {
                         transformListener.receive(new CookieMessage(exception.getLocalizedMessage(), CookieMessage.FATAL_ERROR_LEVEL));
                     }
-                });
+                };
+                Templates saxonTemplates = XsltTemplatesCache.getSaxonTemplates(xsltFileResourcePath, xsltIsOSFile, errorListener);
+                Transformer saxonTransformer = saxonTemplates.newTransformer();
+                saxonTransformer.setURIResolver(X3DCatalog.getInstance());
+                saxonTransformer.setErrorListener(errorListener);
 
                 if (parameterMap != null)
                 {
@@ -668,7 +675,7 @@ import org.xml.sax.SAXParseException;
                 Proxy proxy = new Proxy(transformListener);
                 saxonTransformer.setErrorListener(proxy);
 
-                saxonTransformer.transform(new StreamSource(primaryFileObject.getInputStream()), resultFileStreamResult);
+                saxonTransformer.transform(sceneText.newStreamSource(), resultFileStreamResult);
 
                 //tCookie.transform(xslStream, outStream, consoleTransformListener);
                 transformListener.message(Nb_XSLT_transformation_complete);
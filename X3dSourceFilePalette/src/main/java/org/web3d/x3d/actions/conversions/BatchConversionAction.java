@@ -0,0 +1,201 @@
+/*
+* Copyright (c) 1995-2023 held by the author(s).  All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+*  * Redistributions of source code must retain the above copyright
+*       notice, this list of conditions and the following disclaimer.
+*  * Redistributions in binary form must reproduce the above copyright
+*       notice, this list of conditions and the following disclaimer
+*       in the documentation and/or other materials provided with the
+*       distribution.
+*  * Neither the names of the Naval Postgraduate School (NPS)
+*       Modeling Virtual Environments and Simulation (MOVES) Institute
+*       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+*       nor the names of its contributors may be used to endorse or
+*       promote products derived from this software without specific
+*       prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+* "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+* LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+* FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+* COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+* INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+* BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+* LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+* ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.web3d.x3d.actions.conversions;
+
+import java.awt.BorderLayout;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JMenuItem;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.ListSelectionModel;
+import javax.swing.border.EmptyBorder;
+import org.openide.DialogDescriptor;
+import org.openide.DialogDisplayer;
+import org.openide.awt.ActionID;
+import org.openide.awt.ActionReference;
+import org.openide.awt.ActionReferences;
+import org.openide.awt.ActionRegistration;
+import org.openide.util.HelpCtx;
+import org.openide.util.NbBundle;
+import org.openide.util.RequestProcessor;
+import org.openide.util.actions.CallableSystemAction;
+import org.openide.windows.WindowManager;
+import org.web3d.x3d.actions.conversions.BaseConversionsAction.TransformListener;
+
+/**
+ * BatchConversionAction.java
+ * Created on October 18, 2026
+ *
+ * Convert all X3D scenes in chosen files or directory trees using BatchConversionEngine, without
+ * opening editors.  Only the file and conversion choosers run on the event dispatch thread.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+@ActionID(id = "org.web3d.x3d.actions.conversions.BatchConversionAction", category = "X3D-Edit")
+@ActionRegistration(   iconBase = "org/web3d/x3d/resources/CheckMark.png",
+                    displayName = "#CTL_BatchConversionAction",
+                    lazy=true) // don't do lazy=false since iconBase no longer gets registered
+@ActionReferences(value = {
+  @ActionReference(path = "Menu/&X3D-Edit/&Export X3D Model to File", position = 2000, separatorBefore = 1999)
+})
+public final class BatchConversionAction extends CallableSystemAction
+{
+  /** report written to the chosen directory, or alongside the first chosen file */
+  public static final String REPORT_FILE_NAME = "batchConversionReport.txt";
+
+  private static final RequestProcessor BATCH_PROCESSOR = new RequestProcessor("BatchConversionAction", 1, true);
+
+  private File lastDirectory;
+
+  @Override
+  public void performAction()
+  {
+    JFileChooser fileChooser = new JFileChooser(lastDirectory);
+    fileChooser.setDialogTitle(NbBundle.getMessage(getClass(), "BatchConversion_choose_scenes"));
+    fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+    fileChooser.setMultiSelectionEnabled(true);
+    if (fileChooser.showOpenDialog(WindowManager.getDefault().getMainWindow()) != JFileChooser.APPROVE_OPTION)
+      return;
+    File[] roots = fileChooser.getSelectedFiles();
+    if (roots.length == 0)
+      return;
+    lastDirectory = roots[0].isDirectory() ? roots[0] : roots[0].getParentFile();
+
+    JList<BatchConversionEngine.Conversion> conversionsJList = new JList<>(BatchConversionEngine.Conversion.values());
+    conversionsJList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+    conversionsJList.setSelectedIndex(0);
+    JPanel conversionsPanel = new JPanel(new BorderLayout());
+    conversionsPanel.setBorder(new EmptyBorder(10, 10, 0, 10));
+    conversionsPanel.add(new JLabel(NbBundle.getMessage(getClass(), "BatchConversion_choose_conversions")), BorderLayout.NORTH);
+    conversionsPanel.add(new JScrollPane(conversionsJList), BorderLayout.CENTER);
+    DialogDescriptor dialogDescriptor = new DialogDescriptor(conversionsPanel, NbBundle.getMessage(getClass(), "CTL_BatchConversionAction"));
+    DialogDisplayer.getDefault().createDialog(dialogDescriptor).setVisible(true);
+    if (!dialogDescriptor.getValue().equals(DialogDescriptor.OK_OPTION) || conversionsJList.getSelectedValuesList().isEmpty())
+      return;
+    EnumSet<BatchConversionEngine.Conversion> conversions = EnumSet.copyOf(conversionsJList.getSelectedValuesList());
+
+    BATCH_PROCESSOR.post(() -> runBatch(roots, conversions, lastDirectory));
+  }
+
+  /** Runs on BATCH_PROCESSOR thread, never on the event dispatch thread */
+  private static void runBatch(File[] roots, EnumSet<BatchConversionEngine.Conversion> conversions, File reportDirectory)
+  {
+    TransformListener transformListener = TransformListener.getInstance();
+    transformListener.moveToFront();
+    try
+    {
+      List<File> scenes = new ArrayList<>();
+      for (File root : roots)
+        scenes.addAll(BatchConversionEngine.findScenes(root, conversions.contains(BatchConversionEngine.Conversion.GZIP)));
+      BatchConversionEngine engine = new BatchConversionEngine();
+      engine.setProgressListener(transformListener::message);
+      engine.setCadFilters(CadFilterHelper.getPreferredFilters(), CadFilterHelper.getPreferredFilterArguments());
+      transformListener.message(NbBundle.getMessage(BatchConversionAction.class, "BatchConversion_starting",
+                                scenes.size(), conversions, engine.getParallelism()));
+
+      long startTime = System.nanoTime();
+      List<BatchConversionEngine.Result> results = engine.run(scenes, conversions);
+      String report = BatchConversionEngine.formatReport(results, System.nanoTime() - startTime);
+
+      File reportFile = new File(reportDirectory, REPORT_FILE_NAME);
+      Files.writeString(reportFile.toPath(), report, StandardCharsets.UTF_8);
+      String[] lines = report.split("\n");
+      transformListener.message(lines[lines.length - 1]); // totals
+      transformListener.message(NbBundle.getMessage(BatchConversionAction.class, "BatchConversion_report", reportFile.getAbsolutePath()));
+    }
+    catch (IOException ex)
+    {
+      transformListener.message(NbBundle.getMessage(BatchConversionAction.class, "Exception:__") + ex.getLocalizedMessage());
+    }
+    catch (InterruptedException ex)
+    {
+      transformListener.message(NbBundle.getMessage(BatchConversionAction.class, "BatchConversion_cancelled"));
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public String getName()
+  {
+    return NbBundle.getMessage(getClass(), "CTL_BatchConversionAction");
+  }
+
+  @Override
+  protected void initialize()
+  {
+    super.initialize();
+    // see org.openide.util.actions.SystemAction.iconResource() Javadoc for more details
+    putValue("noIconInMenu", Boolean.TRUE);
+  }
+
+  /**
+   * Do this because this call in the super creates a new one every time, losing any
+   * previous tt.
+   * @return what goes into the menu
+   */
+  @Override
+  public JMenuItem getMenuPresenter()
+  {
+    JMenuItem mi = super.getMenuPresenter();
+    mi.setToolTipText(NbBundle.getMessage(getClass(), "CTL_BatchConversionAction_tt"));
+    return mi;
+  }
+
+  @Override
+  public HelpCtx getHelpCtx()
+  {
+    return HelpCtx.DEFAULT_HELP;
+  }
+
+  @Override
+  protected boolean asynchronous()
+  {
+    return false;
+  }
+}
@@ -0,0 +1,612 @@
+/*
+* Copyright (c) 1995-2023 held by the author(s).  All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+*  * Redistributions of source code must retain the above copyright
+*       notice, this list of conditions and the following disclaimer.
+*  * Redistributions in binary form must reproduce the above copyright
+*       notice, this list of conditions and the following disclaimer
+*       in the documentation and/or other materials provided with the
+*       distribution.
+*  * Neither the names of the Naval Postgraduate School (NPS)
+*       Modeling Virtual Environments and Simulation (MOVES) Institute
+*       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+*       nor the names of its contributors may be used to endorse or
+*       promote products derived from this software without specific
+*       prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+* "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+* LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+* FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+* COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+* INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+* BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+* LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+* ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.web3d.x3d.actions.conversions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import org.web3d.x3d.X3DCatalog;
+import org.web3d.x3d.X3DTextSnapshot;
+import org.web3d.x3d.actions.qualityassurance.X3dGrammarValidator;
+import org.web3d.x3d.actions.qualityassurance.X3dSchematronValidator;
+import org.web3d.x3d.tools.x3db.X3dCanonicalizer;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * BatchConversionEngine.java
+ * Created on October 18, 2026
+ *
+ * Converts many scenes, or whole directory trees such as the X3D examples archives, without open editors.
+ * Each (scene, conversion) pair is a separate task on a bounded work-stealing pool, largest scenes first,
+ * and never runs on the event dispatch thread.  Compiled stylesheets are shared through XsltTemplatesCache.
+ * Progress messages go to a caller-supplied listener, and results can be summarized as a report giving
+ * per-file time, sizes in and out, and errors.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class BatchConversionEngine
+{
+    /** Conversions available in batch mode, with stylesheet (if any) and result file suffix */
+    public enum Conversion
+    {
+        JSON               ("X3dToJson.xslt",                    ".json"),
+        CLASSIC_VRML       ("X3dToX3dvClassicVrmlEncoding.xslt", ".x3dv"),
+        TIDY               ("X3dTidy.xslt",                      "Tidy.x3d"),
+        HTML_DOCUMENTATION ("X3dToXhtml.xslt",                   ".html"),
+        SCHEMATRON         ("X3dSchematronValidityChecks.xslt",  ".schematron.txt"),
+        C14N               (null,                                ".c14n.x3d"),
+        GZIP               (null,                                ".x3d.gz"),
+        DTD_VALIDATION     (null,                                ".dtd.txt"),
+        SCHEMA_VALIDATION  (null,                                ".schema.txt"),
+        CAD_FILTER         (null,                                "Filtered.x3d");
+
+        final String stylesheet;
+        final String suffix;
+
+        Conversion(String stylesheet, String suffix)
+        {
+            this.stylesheet = stylesheet;
+            this.suffix     = suffix;
+        }
+
+        /** @return result file suffix appended to scene name without .x3d extension */
+        public String getSuffix()
+        {
+            return suffix;
+        }
+    }
+
+    /** Outcome of one conversion of one scene */
+    public static final class Result
+    {
+        public final File       source;
+        public final Conversion conversion;
+        File   output;
+        long   nanos;
+        long   bytesIn;
+        long   bytesOut;
+        int    diagnostics; // Schematron report lines
+        String details;     // CAD filter stage times
+        String error;
+
+        Result(File source, Conversion conversion)
+        {
+            this.source     = source;
+            this.conversion = conversion;
+        }
+
+        public File   getOutput()      { return output; }
+        public long   getNanos()       { return nanos; }
+        public long   getBytesIn()     { return bytesIn; }
+        public long   getBytesOut()    { return bytesOut; }
+        public int    getDiagnostics() { return diagnostics; }
+        public String getDetails()     { return details; }
+        public String getError()       { return error; }
+        public boolean isSuccess()     { return error == null; }
+    }
+
+    private static final String SCHEMATRON_REPORT_STYLESHEET = "SvrlReportText.xslt";
+
+    private static final DefaultHandler EMPTY_HANDLER = new DefaultHandler();
+
+    private int              parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private File             stylesheetDirectory; // null means NetBeans layer X3dTransforms and Schematron folders
+    private File             outputDirectory;     // null means alongside each scene
+    private File             sourceDirectory;     // null means deepest directory holding every scene of each run
+    private Path             sourceRoot;          // directory of current run mirrored under outputDirectory
+    private EntityResolver   entityResolver;      // null means X3DCatalog; grammar validation always uses X3DCatalog
+    private URIResolver      uriResolver;         // null means X3DCatalog
+    private CadFilterPipeline cadFilterPipeline = new CadFilterPipeline(new String[] { CadFilterHelper.XJ3D_FILTER_IDENTITY },
+                                                    new String[] { CadFilterHelper.XJ3D_FILTERARG_LOGLEVEL, "WARNING" });
+    private Consumer<String> progressListener = message -> { };
+    private final ParallelGzipCompressor gzipCompressor = new ParallelGzipCompressor();
+    private volatile boolean cancelled;
+
+    /** scene parser for each pool thread, DOCTYPE resolved locally rather than fetched from network */
+    private final ThreadLocal<XMLReader> sceneReader = ThreadLocal.withInitial(this::newSceneReader);
+
+    /** @param parallelism maximum concurrent conversions, at least 1, also used for gzip blocks of large scenes */
+    public void setParallelism(int parallelism)
+    {
+        this.parallelism = Math.max(1, parallelism);
+        gzipCompressor.setParallelism(this.parallelism);
+    }
+
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /** @param gzipLevel GZIP compression level, 0 (none) to 9 (best), or -1 for default */
+    public void setGzipLevel(int gzipLevel)
+    {
+        gzipCompressor.setLevel(gzipLevel);
+    }
+
+    /** @param stylesheetDirectory operating system directory holding stylesheets, or null to use those installed with X3D-Edit */
+    public void setStylesheetDirectory(File stylesheetDirectory)
+    {
+        this.stylesheetDirectory = stylesheetDirectory;
+    }
+
+    /**
+     * @param outputDirectory directory for all results, or null to write each result alongside its scene;
+     *        subdirectories below the deepest directory holding all scenes of a run are recreated there,
+     *        so that scenes with the same name in different directories do not overwrite each other
+     */
+    public void setOutputDirectory(File outputDirectory)
+    {
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * @param sourceDirectory directory whose subdirectories are recreated under the output directory, or null for
+     *        the deepest directory holding all scenes of a run; scenes already inside the output directory, such as
+     *        converted motion capture, have their results written alongside them
+     */
+    public void setSourceDirectory(File sourceDirectory)
+    {
+        this.sourceDirectory = sourceDirectory;
+    }
+
+    /**
+     * Resolvers for DOCTYPE and stylesheet references, for use outside NetBeans.
+     * @param entityResolver resolves scene DOCTYPE, or null for X3DCatalog
+     * @param uriResolver resolves stylesheet includes and document() calls, or null for X3DCatalog
+     */
+    public void setResolvers(EntityResolver entityResolver, URIResolver uriResolver)
+    {
+        this.entityResolver = entityResolver;
+        this.uriResolver    = uriResolver;
+    }
+
+    /**
+     * @param cadFilters Xj3D CDFFilter names (and any filter parameters) applied by CAD_FILTER, in order
+     * @param cadFilterArgs CDFFilter arguments, for example CadFilterHelper.XJ3D_FILTERARG_VERSION followed by its value
+     */
+    public void setCadFilters(String[] cadFilters, String[] cadFilterArgs)
+    {
+        cadFilterPipeline = new CadFilterPipeline(cadFilters, cadFilterArgs);
+    }
+
+    /** @param progressListener receives one message per completed task, called from pool threads one at a time; none by default */
+    public void setProgressListener(Consumer<String> progressListener)
+    {
+        this.progressListener = progressListener;
+    }
+
+    /** Skip tasks not yet started; running tasks complete */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Find X3D scenes in a directory tree, skipping results of earlier Tidy, C14N and CAD filter batch runs.
+     * @param root directory to search, or a single scene
+     * @return .x3d files in path order
+     * @throws IOException if directory cannot be read
+     */
+    public static List<File> findScenes(File root) throws IOException
+    {
+        return findScenes(root, false);
+    }
+
+    /**
+     * Find scenes in a directory tree, skipping results of earlier Tidy, C14N and CAD filter batch runs.
+     * @param root directory to search, or a single scene
+     * @param otherEncodings whether to include ClassicVRML .x3dv and VRML97 .wrl files, which only GZIP converts
+     * @return scene files in path order
+     * @throws IOException if directory cannot be read
+     */
+    public static List<File> findScenes(File root, boolean otherEncodings) throws IOException
+    {
+        if (root.isFile())
+            return Collections.singletonList(root);
+        try (Stream<Path> paths = Files.walk(root.toPath()))
+        {
+            return paths.filter(Files::isRegularFile)
+                        .map(Path::toFile)
+                        .filter(file -> isSceneFile(file) || (otherEncodings && isOtherEncoding(file)))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
+    private static boolean isSceneFile(File file)
+    {
+        String name = file.getName();
+        return name.toLowerCase(Locale.ROOT).endsWith(".x3d") &&
+               !name.endsWith(Conversion.TIDY.suffix) && !name.endsWith(Conversion.C14N.suffix) &&
+               !name.endsWith(Conversion.CAD_FILTER.suffix);
+    }
+
+    private static boolean isOtherEncoding(File file)
+    {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".x3dv") || name.endsWith(".wrl");
+    }
+
+    /**
+     * Run each conversion on each scene, blocking until all complete.  Call from a background thread.
+     * @param scenes X3D files
+     * @param conversions conversions to apply to every scene
+     * @return results in scene order, then conversion order
+     * @throws InterruptedException if interrupted while waiting, after cancelling remaining tasks
+     */
+    public List<Result> run(List<File> scenes, Set<Conversion> conversions) throws InterruptedException
+    {
+        cancelled = false;
+        sourceRoot = (sourceDirectory != null) ? sourceDirectory.getAbsoluteFile().toPath().normalize()
+                                               : commonDirectory(scenes.stream().filter(scene -> !isInOutputDirectory(scene)).collect(Collectors.toList()));
+        List<Result> results = new ArrayList<>(scenes.size() * conversions.size());
+        for (File scene : scenes)
+        {
+            for (Conversion conversion : EnumSet.copyOf(conversions))
+            {
+                if ((conversion == Conversion.GZIP) || !isOtherEncoding(scene)) // .x3dv and .wrl scenes are only compressed
+                    results.add(new Result(scene, conversion));
+            }
+        }
+        // largest scenes first, so that one big scene does not finish alone at the end
+        List<Result> schedule = new ArrayList<>(results);
+        schedule.sort(Comparator.comparingLong((Result result) -> result.source.length()).reversed());
+
+        final int total = schedule.size();
+        AtomicInteger completed = new AtomicInteger();
+        cadFilterPipeline.setIsolated(parallelism > 1); // each pool thread filters with its own copy of Xj3D
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>(total);
+            for (Result result : schedule)
+            {
+                futures.add(pool.submit(() ->
+                {
+                    if (cancelled)
+                    {
+                        result.error = "cancelled";
+                        return;
+                    }
+                    convert(result);
+                    report(completed.incrementAndGet(), total, result);
+                }));
+            }
+            for (Future<?> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (ExecutionException ex)
+                {
+                    // convert() records its own failures, so this is unexpected
+                    System.err.println("BatchConversionEngine task failure: " + ex.getCause());
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            cancel();
+            throw ex;
+        }
+        finally
+        {
+            pool.shutdownNow();
+            try
+            {
+                cadFilterPipeline.close();
+            }
+            catch (IOException ex)
+            {
+                System.err.println("BatchConversionEngine CAD filter cleanup: " + ex);
+            }
+        }
+        return results;
+    }
+
+    private void report(int count, int total, Result result)
+    {
+        String message = "[" + count + "/" + total + "] " + result.conversion + " " + result.source.getPath() +
+                         (result.isSuccess() ? " -> " + result.output.getName() : " failed: " + result.error) +
+                         " (" + result.nanos / 1000000 + " msec)" +
+                         (((result.details != null) && !result.details.isEmpty()) ? " [" + result.details + "]" : "");
+        synchronized (this) // listener need not be thread safe
+        {
+            progressListener.accept(message);
+        }
+    }
+
+    /** Perform one conversion, recording time, sizes and any error in the result */
+    void convert(Result result)
+    {
+        long startTime = System.nanoTime();
+        result.bytesIn = result.source.length();
+        result.output  = outputFile(result.source, result.conversion);
+        try
+        {
+            if (outputDirectory != null)
+                Files.createDirectories(result.output.getAbsoluteFile().getParentFile().toPath());
+            switch (result.conversion)
+            {
+                case C14N:
+                    canonicalize(result);
+                    break;
+                case GZIP:
+                    gzipCompressor.compress(result.source, result.output);
+                    break;
+                case SCHEMATRON:
+                    schematron(result);
+                    break;
+                case CAD_FILTER:
+                    result.details = cadFilterPipeline.filter(result.source, result.output).formatStages();
+                    break;
+                case DTD_VALIDATION:
+                    validate(result, X3dGrammarValidator.Grammar.DTD);
+                    break;
+                case SCHEMA_VALIDATION:
+                    validate(result, X3dGrammarValidator.Grammar.SCHEMA);
+                    break;
+                default:
+                    transform(result.conversion.stylesheet, sceneSource(result.source), new StreamResult(result.output));
+                    break;
+            }
+            result.bytesOut = result.output.length();
+        }
+        catch (IOException | TransformerException | SAXException | RuntimeException ex)
+        {
+            result.error = ex.getClass().getSimpleName() + ": " + ex.getLocalizedMessage();
+        }
+        result.nanos = System.nanoTime() - startTime;
+    }
+
+    File outputFile(File scene, Conversion conversion)
+    {
+        String name = scene.getName();
+        File directory = scene.getAbsoluteFile().getParentFile();
+        if ((outputDirectory != null) && !isInOutputDirectory(scene))
+        {
+            Path sceneDirectory = directory.toPath().normalize();
+            Path relative = ((sourceRoot != null) && sceneDirectory.startsWith(sourceRoot)) ? sourceRoot.relativize(sceneDirectory)
+                                                                                           : sceneDirectory.getRoot().relativize(sceneDirectory);
+            directory = new File(outputDirectory, relative.toString());
+        }
+        if (conversion == Conversion.GZIP) // keeps encoding extension, for example scene.x3dv.gz
+            return new File(directory, name + ".gz");
+        if (name.toLowerCase(Locale.ROOT).endsWith(".x3d"))
+            name = name.substring(0, name.length() - 4);
+        return new File(directory, name + conversion.suffix);
+    }
+
+    private void transform(String stylesheet, javax.xml.transform.Source source, javax.xml.transform.Result output)
+            throws IOException, TransformerException, SAXException
+    {
+        URIResolver resolver = resolver();
+        Transformer transformer = templates(stylesheet).newTransformer(); // one per task, transformers are not thread safe
+        transformer.setURIResolver(resolver);
+        XMLReader reader = (source instanceof SAXSource) ? ((SAXSource) source).getXMLReader() : null;
+        try
+        {
+            transformer.transform(source, output);
+        }
+        finally
+        {
+            if (reader != null)
+                reader.setContentHandler(EMPTY_HANDLER); // pooled reader must not retain last tree
+        }
+    }
+
+    private URIResolver resolver()
+    {
+        return (uriResolver != null) ? uriResolver : X3DCatalog.getInstance();
+    }
+
+    private Templates templates(String stylesheet) throws IOException, TransformerException, SAXException
+    {
+        if (stylesheetDirectory != null)
+            return XsltTemplatesCache.getSaxonTemplates(new File(stylesheetDirectory, stylesheet).getPath(), true, null, resolver());
+        else
+            return XsltTemplatesCache.getSaxonTemplates(layerFolder(stylesheet) + stylesheet, false, null, resolver());
+    }
+
+    private static String layerFolder(String stylesheet)
+    {
+        return stylesheet.startsWith("X3dSchematron") || stylesheet.equals(SCHEMATRON_REPORT_STYLESHEET) ? "Schematron/" : "X3dTransforms/";
+    }
+
+    private SAXSource sceneSource(File scene)
+    {
+        InputSource inputSource = new InputSource(scene.toURI().toString());
+        return new SAXSource(sceneReader.get(), inputSource);
+    }
+
+    private XMLReader newSceneReader()
+    {
+        try
+        {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            XMLReader reader = factory.newSAXParser().getXMLReader();
+            reader.setEntityResolver((entityResolver != null) ? entityResolver : X3DCatalog.getInstance());
+            return reader;
+        }
+        catch (ParserConfigurationException | SAXException ex)
+        {
+            throw new IllegalStateException("BatchConversionEngine unable to create parser", ex);
+        }
+    }
+
+    private boolean isInOutputDirectory(File scene)
+    {
+        return (outputDirectory != null) &&
+               scene.getAbsoluteFile().toPath().normalize().startsWith(outputDirectory.getAbsoluteFile().toPath().normalize());
+    }
+
+    /**
+     * @param scenes scene files
+     * @return deepest directory containing all of them, or null if they share none (different drives) or the list is empty
+     */
+    public static Path commonDirectory(List<File> scenes)
+    {
+        Path common = null;
+        for (File scene : scenes)
+        {
+            Path directory = scene.getAbsoluteFile().toPath().normalize().getParent();
+            if (common == null)
+                common = directory;
+            while ((common != null) && !directory.startsWith(common))
+                common = common.getParent();
+            if (common == null)
+                return null;
+        }
+        return common;
+    }
+
+    /** Schematron check with scene to SVRL to text report chained in memory, each failed assert or report a diagnostic */
+    private void schematron(Result result) throws IOException, TransformerException, SAXException
+    {
+        SAXSource source = sceneSource(result.source);
+        X3dSchematronValidator.Report report;
+        try
+        {
+            report = X3dSchematronValidator.validate(source, templates(result.conversion.stylesheet),
+                    templates(SCHEMATRON_REPORT_STYLESHEET), resolver(), null);
+        }
+        finally
+        {
+            source.getXMLReader().setContentHandler(EMPTY_HANDLER);
+        }
+        result.diagnostics = report.getDiagnostics().size();
+        Files.writeString(result.output.toPath(), report.getText(), StandardCharsets.UTF_8);
+    }
+
+    /** DTD or schema validation using grammars cached by X3DCatalog, each problem line a diagnostic */
+    private static void validate(Result result, X3dGrammarValidator.Grammar grammar) throws IOException
+    {
+        X3DTextSnapshot sceneText = X3DTextSnapshot.read(result.source); // declared encoding, as the parser would read it
+        StringWriter report = new StringWriter();
+        try (PrintWriter out = new PrintWriter(report))
+        {
+            X3dGrammarValidator.validate(sceneText, result.source.toURI().toString(), grammar, out);
+        }
+        String text = report.toString();
+        int diagnostics = 0;
+        for (String line : text.split("\\R"))
+        {
+            if (line.startsWith("Error") || line.startsWith("Fatal") || line.startsWith("Warning"))
+                diagnostics++;
+        }
+        result.diagnostics = diagnostics;
+        Files.writeString(result.output.toPath(), text, StandardCharsets.UTF_8);
+    }
+
+    private static void canonicalize(Result result) throws IOException
+    {
+        String sceneText = X3DTextSnapshot.read(result.source).toString(); // declared encoding
+        X3dCanonicalizer canonicalizer = new X3dCanonicalizer(sceneText);
+        if (canonicalizer.isDigitallySigned())
+        {
+            Files.copy(result.source.toPath(), result.output.toPath(), StandardCopyOption.REPLACE_EXISTING); // assumed already canonical, bytes kept for signature
+            return;
+        }
+        String canonicalText = canonicalizer.isCanonical() ? sceneText : canonicalizer.getFinalC14nScene();
+        Files.writeString(result.output.toPath(), canonicalText, X3DTextSnapshot.xmlEncoding(canonicalText));
+    }
+
+    /**
+     * Summary report with one line per conversion, then totals.
+     * @param results from run()
+     * @param wallNanos elapsed time of run, for throughput
+     * @return report text
+     */
+    public static String formatReport(List<Result> results, long wallNanos)
+    {
+        StringWriter buffer = new StringWriter();
+        PrintWriter out = new PrintWriter(buffer);
+        out.printf("%-18s %10s %12s %12s %6s  %s%n", "conversion", "msec", "bytes in", "bytes out", "diag", "scene / error");
+        long taskNanos = 0, bytesIn = 0, bytesOut = 0;
+        int failures = 0;
+        for (Result result : results)
+        {
+            out.printf("%-18s %10d %12d %12d %6d  %s%s%n", result.conversion, result.nanos / 1000000, result.bytesIn, result.bytesOut,
+                       result.diagnostics, result.source.getPath(), result.isSuccess() ? "" : "  *** " + result.error);
+            taskNanos += result.nanos;
+            bytesIn   += result.bytesIn;
+            bytesOut  += result.bytesOut;
+            if (!result.isSuccess())
+                failures++;
+        }
+        out.printf("%d conversions, %d failed, %d bytes in, %d bytes out, %d msec elapsed, %d msec total task time%n",
+                   results.size(), failures, bytesIn, bytesOut, wallNanos / 1000000, taskNanos / 1000000);
+        out.flush();
+        return buffer.toString();
+    }
+}
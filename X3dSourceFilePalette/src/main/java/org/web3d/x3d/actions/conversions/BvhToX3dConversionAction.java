@@ -46,7 +46,6 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import javax.swing.JOptionPane;
-import javax.vecmath.Vector3d;
 import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
 import org.openide.awt.ActionID;
@@ -61,10 +60,8 @@ import org.openide.util.HelpCtx;
 import org.openide.util.NbBundle;
 import org.openide.util.actions.CallableSystemAction;
 import org.web3d.x3d.InputOutputReporter;
-import org.web3d.x3d.hanim.bvh.BvhSkeletonParameters;
+import org.web3d.x3d.hanim.bvh.BvhParser;
 import org.web3d.x3d.hanim.bvh.Hierarchy;
-import org.web3d.x3d.hanim.bvh.Joint;
-import org.web3d.x3d.hanim.bvh.Motion;
 
 @ActionID(id = "org.web3d.x3d.actions.conversions.BvhToX3dConversionAction", category = "X3D-Edit")
 
@@ -76,8 +73,6 @@ import org.web3d.x3d.hanim.bvh.Motion;
   @ActionReference(path = "Editors/model/x3d+xml/Popup/&Import X3D Model from File", position = 50)
 })
 
-// TODO refactor to place BVH parser in a separate class in org.web3d.x3d.hanim.bvh package
-
 public final class BvhToX3dConversionAction extends CallableSystemAction
 {
 //  private static JFileChooser fChooser;
@@ -93,19 +88,15 @@ public final class BvhToX3dConversionAction extends CallableSystemAction
     private String  newX3dFileName;
     private File    bvhFile;
     private File    x3dFile;
-    private boolean userSaysCancel = false;
 	private boolean includeVisualizationShapes = true;
 
     private Hierarchy             hierarchy   = new Hierarchy();
-    private BvhSkeletonParameters currentNode = hierarchy;
-    private Motion                motion      = new Motion();
 
   @Override
   public void performAction()
   {
     try
 	{
-		hierarchy.setX3dBallAndStickVisualizationIncluded(isIncludeVisualizationShapes());
         conversionStage = "file bvhToX3dConversionPanel chooser";
         if  (bvhLocalFile)
         {
@@ -184,362 +175,10 @@ public final class BvhToX3dConversionAction extends CallableSystemAction
 
         conversionStage = "processing BVH file "; // diagnostic label for each stage of conversion
 
-        // (re)initialize
-		hierarchy   = new Hierarchy();
-		hierarchy.setBvhName(bvhName);
-		currentNode = hierarchy;
-        String   value, currentName;
-        String[] lines = bvhSource.toString().split("\\n");
-        boolean     hierarchyFound = false;
-        boolean       motionParsed = false;
-        boolean insufficientValues;
-		userSaysCancel = false;
-                  
-        for (int i = 0; i < lines.length; i++)
-        {
-            if (userSaysCancel)
-                return;
-            line = lines[i].trim();
-            if (!line.isEmpty())
-            {
-                if (motionParsed && isNumeric(line.split("[,\\s]+")[0]))
-                {
-                    // skip excess numeric lines after MOTION parsing is complete, see if anything else is there
-//                  continue;
-                }
-                else if   ((!hierarchyFound) && lines[i].startsWith("HIERARCHY"))
-                {
-                    hierarchyFound = true;
-                      motionParsed = false;
-                    if  (line.length() > ("HIERARCHY").length())
-                    {
-                        bvhParseProblem (i, line, "Illegal content \"" + line.substring(("HIERARCHY").length()).trim() + "\" found at end of line");
-                    }
-// create root Joint so that HAnimHumanoid can be positioned, oriented independently of BVH motion animation
-//                    Joint newJoint = new Joint();
-//                    newJoint.setParent(currentNode);
-//                    currentNode.addJoint(newJoint);
-//                    currentNode = newJoint;
-//					hierarchy.incrementHierarchyJointList(newJoint);
-                }
-                else if (!hierarchyFound)
-                {
-                        bvhParseProblem (i, line, "Illegal file content: HIERARCHY not found at start of file, BVH parsing terminated");
-                        return; // nothing left to do
-                }
-                else if (line.startsWith("ROOT"))
-                {
-                    value = line.substring(4).trim(); // read remainder of line
-                    if (value.contains("{"))
-                    {
-                        value = value.substring(0,value.indexOf("{")).trim();
-                        hierarchy.setHierarchyRootName("ROOT_" + value);
-                        currentName     = value;
-                    }
-                    else
-                    {
-                        hierarchy.setHierarchyRootName("ROOT_" + value);
-                        currentName     = value;
-                        // now check for follow-on { character
-                        if (lines[i+1] == null)
-                        {
-                            bvhParseProblem (i, line, "Illegal content: premature eof after ROOT, BVH parsing terminated");
-                            return; // nothing left to do
-                        }
-                        else if (lines[i+1].trim().startsWith("{"))
-                        {
-                            i++; // skip line
-                        }
-                        else 
-                        {
-                            bvhParseProblem (i, line, "Illegal content: no { bracket character provided after ROOT, BVH parsing terminated");
-                            return; // nothing left to do
-                        }
-                    }
-                    if (hierarchy.getBvhName().isEmpty())
-                    {
-                        bvhParseProblem (i, line, "Illegal content: no name provided for ROOT");
-                    }
-                }
-                else if (line.startsWith("JOINT"))
-                {
-                    Joint newJoint = new Joint();
-                    newJoint.setParent(currentNode);
-                    newJoint.setAncestorHierarchy(hierarchy);
-                    currentNode.addJoint(newJoint);
-                    currentNode = newJoint;
-					hierarchy.incrementHierarchyJointList(newJoint);
-                    
-                    value = line.substring(5).trim(); // read remainder of line
-                    if (value.contains("{"))
-                    {
-                        value = value.substring(0,value.indexOf("{")).trim();
-                        newJoint.setBvhName(value);
-                        newJoint.assignHAnimNamesFromBvhModelName(value);
-                        currentName     = value;
-                    }
-                    else
-                    {
-                        newJoint.setBvhName(value);
-                        newJoint.assignHAnimNamesFromBvhModelName(value);
-                        currentName     = value;
-						// DEF names are set during serialization by Joint.getHierarchyOutputX3D()
-						
-                        // now check for follow-on { character
-                        if (lines[i+1] == null)
-                        {
-                            bvhParseProblem (i, line, "Illegal content: premature eof after JOINT, BVH parsing terminated");
-                            return; // nothing left to do
-                        }
-                        else if (lines[i+1].trim().startsWith("{"))
-                        {
-                            i++; // skip line
-                        }
-                        else 
-                        {
-                            bvhParseProblem (i, line, "Illegal content: no { bracket character provided after JOINT, BVH parsing terminated");
-                            return; // nothing left to do
-                        }
-                    }
-                    if (newJoint.getBvhName().isEmpty())
-                    {
-                        bvhParseProblem (i, line, "Illegal content: no name provided for JOINT");
-                    }
-                }
-                else if (line.startsWith("OFFSET")) // similar block below
-                {
-                    String   offset  = line.substring(6).trim(); // read remainder of line
-                    String[] offsets = offset.split("[,\\s]+");
-                    if (offset.contains(","))
-                    {
-                        bvhParseProblem (i, line, "Illegal content: no commas allowed in OFFSET value, ignored");
-                    }
-					else if (offset.isEmpty())
-                    {
-                        bvhParseProblem (i, line, "Illegal content: no OFFSET data values found, ignored");
-                        currentNode.setOffset (new Vector3d (0.0, 0.0, 0.0)); // ensure initialized
-                    }
-                    else if (offsets.length != 3)
-                    {
-                        bvhParseProblem (i, line, "Illegal content: incorrect number of OFFSET values found, expected 3");
-                        currentNode.setOffset (new Vector3d (0.0, 0.0, 0.0));
-                    }
-                    else // OFFSET is OK
-                    {
-                        currentNode.setOffsetX (Double.parseDouble(offsets[0]));
-                        currentNode.setOffsetY (Double.parseDouble(offsets[1]));
-                        currentNode.setOffsetZ (Double.parseDouble(offsets[2]));
-						
-						if  (currentNode instanceof Joint)
-							 currentNode.setCumulativeOffset(new Vector3d(
-								currentNode.getOffset().x + ((Joint)currentNode).getParent().getCumulativeOffset().x,
-								currentNode.getOffset().y + ((Joint)currentNode).getParent().getCumulativeOffset().y,
-								currentNode.getOffset().z + ((Joint)currentNode).getParent().getCumulativeOffset().z
-							 ));
-						else currentNode.setCumulativeOffset(currentNode.getOffset());
-                    }
-                }
-                else if (line.startsWith("CHANNELS"))
-                {
-                    String   channel  = line.substring(8).trim(); // read remainder of line
-                    String[] channels = channel.split("[,\\s]+");
-                    if (channel.contains(","))
-                    {
-                        bvhParseProblem (i, line, "Illegal content: no commas allowed in CHANNELS value, ignored");
-                    }
-					else if (channel.isEmpty())
-                    {
-                        bvhParseProblem (i, line, "Illegal content: no CHANNELS data values found, ignored");
-                        // TODO probably not safe to assume and set a default, typically 6-tuple or 3-tuple
-                    }
-					else // CHANNELS is OK
-                    {
-                        int channelCount = Integer.parseInt(channels[0]);
-                        hierarchy.augmentExpectedChannelsPerFrame(channelCount);
-                        if (channels.length != channelCount + 1)
-                        {
-                            bvhParseProblem (i, line, "Illegal content: incorrect length for channels");
-                            // handle this problem as best possible by passing along whatever channel data is present anyway
-                        }
-                        if (channel.contains(" "))
-                        {
-                            currentNode.setChannelNames(channel.substring(channel.indexOf(" ") + 1).split("[,\\s]+")); // skip channel count
-                        }
-                    }
-                }
-                else if (line.startsWith("{")) // begin definition for child Joint
-                {
-//                  continue; // skip line
-                }
-                else if (line.startsWith("}")) // completed definition for this child Joint
-                {
-                    if (currentNode instanceof Joint) // don't go above hierarchy node, which is root
-                    {
-                        currentNode = ((Joint)currentNode).getParent();
-                    }
-                }
-                else if (line.startsWith("End Site")) // no further child Joint elements, OFFSET expected next
-                {
-                    if (lines[i+1].trim().startsWith("{"))
-                    {
-                        i++; // skip line
-                        line = lines[i+1].trim();
-                    }
-                    if (line.startsWith("OFFSET")) // similar block above
-                    {
-                        String   offset  = line.substring(6).trim(); // read remainder of line
-                        String[] offsets = offset.split("[,\\s]+");
-                        if (offset.contains(","))
-                        {
-                            bvhParseProblem (i, line, "Illegal content: no commas allowed in OFFSET value, ignored");
-                        }
-						else if (offset.isEmpty())
-                        {
-                            bvhParseProblem (i, line, "Illegal content: no OFFSET data values found, ignored");
-                            ((Joint)currentNode).setSiteOffset (new Vector3d (0.0, 0.0, 0.0));
-                        }
-                        else if (offsets.length != 3)
-                        {
-                            bvhParseProblem (i, line, "Illegal content: incorrect number of OFFSET values found, expected 3");
-                            ((Joint)currentNode).setSiteOffset (new Vector3d (0.0, 0.0, 0.0));
-                        }
-                        else // OFFSET is OK
-                        {
-                            ((Joint)currentNode).setSiteIncluded(true);
-							double x = Double.parseDouble(offsets[0]);
-							double y = Double.parseDouble(offsets[1]);
-							double z = Double.parseDouble(offsets[2]);
-                            ((Joint)currentNode).setSiteOffsetX (x);
-                            ((Joint)currentNode).setSiteOffsetY (y);
-                            ((Joint)currentNode).setSiteOffsetZ (z);
-							if (x < hierarchy.getMinX()) hierarchy.setMinX(x);
-							if (y < hierarchy.getMinY()) hierarchy.setMinY(y);
-							if (z < hierarchy.getMinZ()) hierarchy.setMinZ(z);
-							if (x > hierarchy.getMaxX()) hierarchy.setMaxZ(x);
-							if (y > hierarchy.getMaxY()) hierarchy.setMaxY(y);
-							if (z > hierarchy.getMaxZ()) hierarchy.setMaxZ(z);
-                        }
-                        // now skip trailing } so that it does not pop us up the node hierarchy
-                        if (lines[i+2].trim().startsWith("}"))
-                        {
-                            i++; // skip line
-                            i++; // skip line
-//                            line = lines[i+1].trim();
-                        }
-                        else
-                        {
-                            bvhParseProblem (i, line, "Illegal content: no close } found after End Site OFFSET, ignored");
-                            return; // nothing left to do
-                        }
-                    }
-                }
-                else if (line.startsWith("MOTION")) // begin definition for child Joint
-                {
-                    motion = new Motion();
-					motion.setAncestorHierarchy(hierarchy);
-                    if (lines[i+1] == null)
-                    {
-                        bvhParseProblem (i, line, "Illegal content: premature eof after MOTION, BVH parsing terminated");
-                        return; // nothing left to do
-                    }
-                    if (lines[i+1].trim().startsWith("Frames:"))
-                    {
-                        line = lines[i+1].trim();
-                        i++; // skip line
-                        
-                        int frameCount = Integer.parseInt(line.substring(7).trim());
-                        motion.setExpectedFrameCount(frameCount);
-                    }
-                    if (lines[i+1] == null)
-                    {
-                        bvhParseProblem (i, line, "Illegal content: premature eof after Frames:, BVH parsing terminated");
-                        return; // nothing left to do
-                    }
-                    if (lines[i+1].trim().startsWith("Frame Time:"))
-                    {
-                        line = lines[i+1].trim();
-                        i++; // skip line
-                        
-                        double frameTime = Double.parseDouble(line.substring(11).trim());
-                        motion.setFrameDuration(frameTime);
-                    }
-                    if (lines[i+1] == null)
-                    {
-                        bvhParseProblem (i, line, "Illegal content: premature eof after MOTION: Frames: Frame Time:, BVH parsing terminated");
-                        return; // nothing left to do
-                    }
-                    line = lines[i+1].trim();
-                    i++; // skip line, now at start of values array
-                    
-                    String lastChannel = "";
-                    
-                    // process all frames of motion data (i.e. all remaining lines)
-                    for (int indexFrame = 0; indexFrame < motion.getExpectedFrameCount(); indexFrame++)
-                    {
-                        insufficientValues = false;
-                        int     expectedValueCount = hierarchy.getExpectedChannelsPerFrame();
-                        double[] frameValueArray    = new double[expectedValueCount];
-                        
-                        while (line.isEmpty()) // skip any expected blank lines
-                        {
-                            line = lines[i+1].trim();
-                            i++; // skip line
-                            if (i == lines.length) // reached end of file
-                                break;
-                        }
-                        if (line.contains(","))
-                        {
-                            bvhParseProblem (i, line, "Illegal content: no commas allowed in MOTION Frames array of values, ignored");
-                        }
-                        
-                        // each frame is on a separate line in the BVH file
-                        String[]frameStrings = line.split("[,\\s]+");
-                        if (frameStrings.length != expectedValueCount)
-                        {
-                            String valueMismatch;
-                            int differenceArrayLengths = frameStrings.length - expectedValueCount;
-                            if  (differenceArrayLengths < 0)
-                                 valueMismatch = String.valueOf(differenceArrayLengths) + " missing values";
-                            else valueMismatch = String.valueOf(differenceArrayLengths) +  " excess values";
-
-                            bvhParseProblem (i, line, "<html><p>Motion data problem: expected (<b>channelsPerFrame=" + hierarchy.getExpectedChannelsPerFrame() + 
-                                                      "</b>) data values,</p>" +
-                                                      "<p>but actually found <b>" + String.valueOf(frameStrings.length) + " values</b>," + 
-                                                      "with a mismatch of <b>" + valueMismatch + "</b> in the frame</b>." + 
-                                                      "</p><p>Continuing to parse...");
-                        }
-                        // ensure all extra data is saved, even if not expected
-                        int arraySize = Math.max (hierarchy.getExpectedChannelsPerFrame(), frameStrings.length);
-                        for (int indexChannel = 0; indexChannel < arraySize; indexChannel++)
-                        {
-                            if  (frameStrings[indexChannel] != null)
-                                 frameValueArray[indexChannel] = Double.parseDouble(frameStrings[indexChannel]);
-                            else
-                            {
-                                frameValueArray[indexChannel] = 0.0f; // buffer underflow
-                                if (insufficientValues == false)
-                                {
-                                    lastChannel = String.valueOf(indexChannel);
-                                }
-                                insufficientValues = true;
-                            }
-                        }
-                        if (insufficientValues)
-                        {
-                            bvhParseProblem (i, line, "Illegal content: insufficient data values found at frame " + indexFrame + ", channel " + lastChannel + ", set remainder to 0");
-                        }
-                        motion.addFrame(frameValueArray);
-                        motionParsed = true;
-                        if (i < lines.length - 1)
-                        {
-                            line = lines[i+1].trim();
-                            i++; // skip line
-                        }
-                    }
-                    hierarchy.addMotion(motion);
-                } // continue with next line
-            } // BVH file parsing complete
-        }
+        BvhParser bvhParser = new BvhParser(this::confirmBvhParseProblem);
+        hierarchy = bvhParser.parse(bvhSource.toString(), bvhName, isIncludeVisualizationShapes());
+        if (hierarchy == null)
+            return; // BVH parsing terminated or cancelled
 
         conversionStage = "copying file "; // diagnostic label for each stage of conversion
 
@@ -624,24 +263,14 @@ public final class BvhToX3dConversionAction extends CallableSystemAction
 //        tmpOutFile.getAbsolutePath());
   }
   /** 
-   * Report a parse problem to console and user 
+   * Ask user whether to continue after a parse problem, already reported to console by BvhParser
    * @param lineNumber of BVH file
    * @param line being read
    * @param message to user
+   * @return whether to continue parsing
    */
-  private void bvhParseProblem (int lineNumber, String line, String message)
+  private boolean confirmBvhParseProblem (int lineNumber, String line, String message)
   {
-        System.err.println("BVH parse problem: " + message);
-        System.err.println("   [line " + lineNumber + "] " + line);
-
-//        NotifyDescriptor d = new NotifyDescriptor.Message(
-//                "<html><h3>BVH parse problem:</h3>" +
-//                      "<p>" + message + "</p>" +
-//                      "<p>    [line " + lineNumber + "] " + line + "</p>",
-//                NotifyDescriptor.OK_CANCEL_OPTION);
-//        d.setTitle("BVH parse problem");
-//        DialogDisplayer.getDefault().notify(d);
-        
         int returnValue = JOptionPane.showConfirmDialog(
                 bvhToX3dConversionPanel, 
                 "<html><h3>BVH parse problem:</h3>" +
@@ -650,8 +279,7 @@ public final class BvhToX3dConversionAction extends CallableSystemAction
                 "BVH parse problem",
                 JOptionPane.OK_CANCEL_OPTION);
 
-        if (returnValue != JOptionPane.OK_OPTION)
-            userSaysCancel = true;
+        return (returnValue == JOptionPane.OK_OPTION);
   }
   protected void showOut(String msg)
   {
@@ -694,17 +322,9 @@ public final class BvhToX3dConversionAction extends CallableSystemAction
    * @see <a href="https://stackoverflow.com/questions/1102891/how-to-check-if-a-string-is-numeric-in-java">https://stackoverflow.com/questions/1102891/how-to-check-if-a-string-is-numeric-in-java</a>
    */
   public static boolean isNumeric(String value)  
-{  
-  try  
-  {  
-    double d = Double.parseDouble(value);  
-  }  
-  catch(NumberFormatException nfe)  
   {  
-    return false;  
-  }  
-  return true;  
-}
+    return BvhParser.isNumeric(value);
+  }
 
     /**
      * @return the bvhLocalFile
@@ -34,16 +34,15 @@
 package org.web3d.x3d.actions.conversions;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.Vector;
-import org.openide.filesystems.FileUtil;
+import org.openide.windows.IOProvider;
+import org.openide.windows.InputOutput;
+import org.openide.windows.OutputWriter;
 import org.web3d.x3d.X3DDataObject;
 import org.web3d.x3d.X3DEditorSupport;
+import org.web3d.x3d.X3DTextSnapshot;
 import org.web3d.x3d.options.X3dEditUserPreferences;
-import xj3d.filter.CDFFilter;
 
 /**
  * CadFilterHelper.java
@@ -86,7 +85,37 @@ public class CadFilterHelper
   public static String XJ3D_FILTER_MATERIALFILTER       = "MaterialFilter"; //*
   public static String XJ3D_FILTER_APPEARANCEFILTER     = "AppearanceFilter"; //*
 
+  /**
+   * Filter current editor text, including unsaved edits, using the filter chain chosen in user preferences.
+   * Runs on the conversion worker, with filter time reported in the Output window.
+   * @param x3dDO scene to filter
+   * @param outFile filtered result
+   */
   public static void doFilter(X3DDataObject x3dDO, File outFile)
+  {
+    InputOutput io = IOProvider.getDefault().getIO("Output", false);
+    OutputWriter ow = io.getOut();
+    try {
+      X3DTextSnapshot sceneText = x3dDO.getLookup().lookup(X3DEditorSupport.class).getTextSnapshot(); // no temporary copy beside scene
+      CadFilterPipeline pipeline = new CadFilterPipeline(getPreferredFilters(), getPreferredFilterArguments());
+      // warm CDFFilter on worker thread, its output streamed to the Output window
+      ConversionWorkerPool.getDefault().submit("CDFFilter", ow, ConversionWorkerPool.DEFAULT_TIMEOUT_MILLIS, () -> {
+        try {
+          System.out.print(pipeline.filter(sceneText, outFile).format());
+        }
+        catch(IOException t) {
+          System.out.println("Exception from CDFFilter: "+t.getLocalizedMessage());
+        }
+        return null;
+      });
+    }
+    catch(IOException t) {
+      ow.println("Exception from CDFFilter: "+t.getLocalizedMessage());
+    }
+  }
+
+  /** @return CDFFilter arguments chosen in user preferences */
+  public static String[] getPreferredFilterArguments()
   {
     Vector<String> filterArgs = new Vector<>();
     filterArgs.add(XJ3D_FILTERARG_LOGLEVEL);
@@ -104,6 +133,12 @@ public class CadFilterHelper
     //filterArgs.add(XJ3D_FILTERARG_UPGRADE);
     //filterArgs.add(?);
 
+    return filterArgs.toArray(new String[filterArgs.size()]);
+  }
+
+  /** @return CDFFilter names, and filter parameters, chosen in user preferences, in order */
+  public static String[] getPreferredFilters()
+  {
     Vector<String> filters = new Vector<>();
 
     if (X3dEditUserPreferences.getCadFiltersEnabledRadioButton()) {
@@ -152,55 +187,30 @@ public class CadFilterHelper
     else
       filters.add(XJ3D_FILTER_IDENTITY);
 
-    CDFFilter filterer = new CDFFilter();
-    String[] filterArr = new String[filters.size()];
-    filterArr = filters.toArray(filterArr);
-    String[] argsArr = new String[filterArgs.size()];
-    argsArr = filterArgs.toArray(argsArr);
-
-    try {
-      File tmpInFile = createTempFileInSitu(x3dDO);
-
-      System.out.println("Arguments to CDFFilter.filter():");
-      System.out.println("Filters:");
-      for(String s : filterArr)
-        System.out.println(s);
-      System.out.println("Input file: "+tmpInFile.getAbsolutePath());
-      System.out.println("Output file: "+outFile.getAbsolutePath());
-      System.out.println("Filter arguments");
-      for(String s : argsArr)
-        System.out.println(s);
-
-      filterer.filter(filterArr, tmpInFile, outFile.getAbsolutePath(), argsArr);
-    }
-    catch(IOException t) {
-      System.out.println("Exception from CDFFilter: "+t.getLocalizedMessage());
-    }
+    return filters.toArray(new String[filters.size()]);
   }
 
-  private static File lastTemp;
-  /* create a temp file for cadfilter...todo, determine if really required
+  /**
+   * Run CDFFilter on a file without any editor or user-preference dependencies,
+   * for example from org.web3d.x3d.cli.X3dEditCommandLine.
+   * @param filterArr filter names (and filter parameters) in order, e.g. XJ3D_FILTER_IDENTITY
+   * @param inFile X3D scene to filter
+   * @param outFile filtered result
+   * @param argsArr filter arguments, e.g. XJ3D_FILTERARG_LOGLEVEL followed by its value
+   * @throws IOException if CDFFilter cannot read or write the files
    */
-  public static File createTempFileInSitu(X3DDataObject x3dDO) throws IOException
+  public static void doFilter(String[] filterArr, File inFile, File outFile, String[] argsArr) throws IOException
   {
-    InputStream is = x3dDO.getLookup().lookup(X3DEditorSupport.class).getInputStream();
-    String origNameWoExt = x3dDO.getPrimaryFile().getName();
-    File orig = FileUtil.toFile(x3dDO.getPrimaryFile());
-    File parent = orig.getParentFile();
-
-    File temp = File.createTempFile(origNameWoExt, ".x3d", parent);
-    temp.deleteOnExit();
-
-    OutputStream os = new FileOutputStream(temp);
-
-    int b;
-    while ((b = is.read()) != -1) {
-      os.write(b);
-    }
-    os.close();
-    if(lastTemp != null)
-      lastTemp.delete();
-    lastTemp = temp;
-    return temp;
+    System.out.println("Arguments to CDFFilter.filter():");
+    System.out.println("Filters:");
+    for(String s : filterArr)
+      System.out.println(s);
+    System.out.println("Input file: "+inFile.getAbsolutePath());
+    System.out.println("Output file: "+outFile.getAbsolutePath());
+    System.out.println("Filter arguments");
+    for(String s : argsArr)
+      System.out.println(s);
+
+    System.out.print(new CadFilterPipeline(filterArr, argsArr).filter(inFile, outFile).format());
   }
 }
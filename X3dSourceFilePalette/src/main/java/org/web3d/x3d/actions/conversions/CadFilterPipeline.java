@@ -0,0 +1,593 @@
+/*
+* Copyright (c) 1995-2023 held by the author(s).  All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+*  * Redistributions of source code must retain the above copyright
+*       notice, this list of conditions and the following disclaimer.
+*  * Redistributions in binary form must reproduce the above copyright
+*       notice, this list of conditions and the following disclaimer
+*       in the documentation and/or other materials provided with the
+*       distribution.
+*  * Neither the names of the Naval Postgraduate School (NPS)
+*       Modeling Virtual Environments and Simulation (MOVES) Institute
+*       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+*       nor the names of its contributors may be used to endorse or
+*       promote products derived from this software without specific
+*       prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+* "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+* LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+* FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+* COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+* INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+* BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+* LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+* ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package org.web3d.x3d.actions.conversions;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.web3d.vrml.sav.ContentHandler;
+import org.web3d.vrml.sav.ProtoHandler;
+import org.web3d.vrml.sav.RouteHandler;
+import org.web3d.vrml.sav.ScriptHandler;
+import org.web3d.x3d.X3DTextSnapshot;
+import xj3d.filter.AbstractFilter;
+
+/**
+ * CadFilterPipeline.java
+ * Created on October 18, 2026
+ *
+ * Runs a chain of Xj3D CDFFilter filters (Triangulation, ReIndex, CombineShapes, GenNormals and so on) over
+ * one scene.  Editor text is read from an X3DTextSnapshot through an in-memory URL, so unsaved edits are
+ * filtered without writing a temporary copy beside the scene, encoded as its XML declaration says.  Stage timing
+ * is off unless requested, since it wraps every scene callback; when on, a StageProbe is placed
+ * before each filter and before the exporter; each probe times the calls it makes into the rest of the chain,
+ * so the difference between neighbouring probes is the time spent in one filter.
+ *
+ * Xj3D parsers and filters keep static state and are not known to be thread safe.  With isolation on, each
+ * calling thread loads Xj3D in its own class loader, so that a batch can filter many scenes concurrently.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class CadFilterPipeline implements AutoCloseable
+{
+    private static final String CDF_FILTER = "xj3d.filter.CDFFilter";
+
+    /** classes whose jars are loaded again by each isolated thread: filters, Xj3D core, j3d utilities, URI handling */
+    private static final String[] ISOLATED_JAR_CLASSES =
+    {
+        CDF_FILTER, "org.web3d.vrml.sav.ContentHandler", "org.j3d.util.ErrorReporter", "org.ietf.uri.URI"
+    };
+
+    /** Outcome of one filter run, with per-filter times when stage timing is on */
+    public static final class Result
+    {
+        private final String       name;
+        private final File         output;
+        private final List<String> stageNames = new ArrayList<>();
+        private final List<Long>   stageNanos = new ArrayList<>();
+        private long nanos;
+        private long parseNanos  = -1; // parsing and chain setup, -1 if not timed
+        private long exportNanos = -1;
+
+        Result(String name, File output)
+        {
+            this.name   = name;
+            this.output = output;
+        }
+
+        public String       getName()        { return name; }
+        public File         getOutput()      { return output; }
+        public long         getNanos()       { return nanos; }
+        public long         getParseNanos()  { return parseNanos; }
+        public long         getExportNanos() { return exportNanos; }
+        public List<String> getStageNames()  { return Collections.unmodifiableList(stageNames); }
+        public List<Long>   getStageNanos()  { return Collections.unmodifiableList(stageNanos); }
+        public boolean      isTimed()        { return parseNanos >= 0; }
+
+        /** @return filter times on one line, for example "parse 120 msec, Triangulation 300 msec, export 40 msec" */
+        public String formatStages()
+        {
+            if (!isTimed())
+                return "";
+            StringBuilder stages = new StringBuilder("parse ").append(parseNanos / 1000000).append(" msec");
+            for (int i = 0; i < stageNames.size(); i++)
+                stages.append(", ").append(stageNames.get(i)).append(' ').append(stageNanos.get(i) / 1000000).append(" msec");
+            return stages.append(", export ").append(exportNanos / 1000000).append(" msec").toString();
+        }
+
+        /** @return summary line followed by one line per stage, for the Output window */
+        public String format()
+        {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("CDFFilter %s -> %s: %.1f msec%n", name, output.getName(), nanos / 1e6));
+            if (isTimed())
+            {
+                report.append(String.format("  %-24s %10.1f msec%n", "parse and setup", parseNanos / 1e6));
+                for (int i = 0; i < stageNames.size(); i++)
+                    report.append(String.format("  %-24s %10.1f msec%n", stageNames.get(i), stageNanos.get(i) / 1e6));
+                report.append(String.format("  %-24s %10.1f msec%n", "export", exportNanos / 1e6));
+            }
+            return report.toString();
+        }
+    }
+
+    private final String[] filters;
+    private final String[] filterArgs;
+    private boolean        stageTiming;
+    private volatile boolean isolated;
+    private FilterRuntime  sharedRuntime;
+    private final ThreadLocal<FilterRuntime> threadRuntime = new ThreadLocal<>();
+    private final List<FilterRuntime>        isolatedRuntimes = new ArrayList<>(); // to close
+
+    /**
+     * @param filters CDFFilter names (and any filter parameters) in order, for example CadFilterHelper.XJ3D_FILTER_IDENTITY
+     * @param filterArgs CDFFilter arguments, for example CadFilterHelper.XJ3D_FILTERARG_LOGLEVEL followed by its value
+     */
+    public CadFilterPipeline(String[] filters, String[] filterArgs)
+    {
+        this.filters    = filters.clone();
+        this.filterArgs = filterArgs.clone();
+    }
+
+    /** @param stageTiming whether to time each filter separately (default off), which adds a reflective call and two clock reads per scene event */
+    public void setStageTiming(boolean stageTiming)
+    {
+        this.stageTiming = stageTiming;
+    }
+
+    /** @param isolated whether each calling thread loads Xj3D in its own class loader, needed for concurrent runs */
+    public void setIsolated(boolean isolated)
+    {
+        this.isolated = isolated;
+    }
+
+    /**
+     * Filter current editor text, including unsaved edits.
+     * @param sceneText snapshot of scene; relative url values resolve against its system identifier
+     * @param output filtered scene
+     * @return times for this run
+     * @throws IOException if CDFFilter fails or cannot be loaded, or text cannot be encoded as declared
+     */
+    public Result filter(X3DTextSnapshot sceneText, File output) throws IOException
+    {
+        if (!sceneText.isModified() && (sceneText.getFile() != null))
+            return filter(sceneText.getFile(), output); // saved bytes read as they are
+        ByteBuffer bytes = X3DTextSnapshot.xmlEncoding(sceneText).newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT)
+                .encode(CharBuffer.wrap(sceneText)); // parser decodes by declaration, so unmappable characters are errors
+        URL source = new URL(null, sceneText.getSystemId(), new SnapshotHandler(sceneText.getSystemId(), bytes));
+        String name = (sceneText.getFile() != null) ? sceneText.getFile().getName() : sceneText.getSystemId();
+        return run(name, source, output);
+    }
+
+    /**
+     * Filter a scene file.
+     * @param source scene to filter
+     * @param output filtered scene
+     * @return times for this run
+     * @throws IOException if CDFFilter fails or cannot be loaded
+     */
+    public Result filter(File source, File output) throws IOException
+    {
+        return run(source.getName(), source.toURI().toURL(), output);
+    }
+
+    private Result run(String name, URL source, File output) throws IOException
+    {
+        FilterRuntime runtime = getRuntime();
+        List<String> probedFilters = new ArrayList<>();
+        String[] chain = stageTiming ? withProbes(runtime.filterNames, probedFilters) : filters;
+        Result result = new Result(name, output);
+        long startTime = System.nanoTime();
+        int exitCode;
+        long[] downstreamNanos;
+        try
+        {
+            exitCode = runtime.filter(chain, source, output.getAbsolutePath(), filterArgs);
+        }
+        finally
+        {
+            result.nanos = System.nanoTime() - startTime;
+            downstreamNanos = runtime.takeDownstreamNanos(); // also forgets probes of a failed run
+        }
+        if (exitCode != 0)
+            throw new IOException("CDFFilter exit code " + exitCode + " filtering " + name);
+
+        if (stageTiming && (downstreamNanos.length == probedFilters.size() + 1))
+        {
+            result.parseNanos = result.nanos - downstreamNanos[0];
+            for (int i = 0; i < probedFilters.size(); i++)
+            {
+                result.stageNames.add(probedFilters.get(i));
+                result.stageNanos.add(downstreamNanos[i] - downstreamNanos[i + 1]);
+            }
+            result.exportNanos = downstreamNanos[probedFilters.size()];
+        }
+        return result;
+    }
+
+    /** Probe before each known filter name, so not before filter parameters, and one more before the exporter */
+    private String[] withProbes(Set<String> filterNames, List<String> probedFilters)
+    {
+        List<String> chain = new ArrayList<>(filters.length * 2 + 1);
+        for (String filter : filters)
+        {
+            if (filterNames.contains(filter))
+            {
+                chain.add(StageProbe.class.getName());
+                probedFilters.add(filter);
+            }
+            chain.add(filter);
+        }
+        chain.add(StageProbe.class.getName());
+        return chain.toArray(new String[0]);
+    }
+
+    private FilterRuntime getRuntime() throws IOException
+    {
+        if (!isolated)
+        {
+            synchronized (this)
+            {
+                if (sharedRuntime == null)
+                    sharedRuntime = new FilterRuntime(CadFilterPipeline.class.getClassLoader());
+                return sharedRuntime;
+            }
+        }
+        FilterRuntime runtime = threadRuntime.get();
+        if ((runtime == null) || runtime.closed)
+        {
+            runtime = FilterRuntime.isolated();
+            threadRuntime.set(runtime);
+            synchronized (isolatedRuntimes)
+            {
+                isolatedRuntimes.add(runtime);
+            }
+        }
+        return runtime;
+    }
+
+    /** Release class loaders of isolated threads; later runs load Xj3D again */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (isolatedRuntimes)
+        {
+            for (FilterRuntime runtime : isolatedRuntimes)
+                runtime.close();
+            isolatedRuntimes.clear();
+        }
+    }
+
+    /** CDFFilter entry points as loaded by one class loader */
+    private static final class FilterRuntime
+    {
+        private final IsolatedLoader isolatedLoader; // null when shared
+        private final Constructor<?> newFilter;
+        private final Method         filterMethod;
+        private final Method         takeDownstreamNanos;
+        private final Set<String>    filterNames;
+        private volatile boolean     closed;
+
+        FilterRuntime(ClassLoader loader) throws IOException
+        {
+            isolatedLoader = (loader instanceof IsolatedLoader) ? (IsolatedLoader) loader : null;
+            try
+            {
+                Class<?> cdfFilter  = Class.forName(CDF_FILTER, true, loader);
+                newFilter           = cdfFilter.getConstructor();
+                filterMethod        = cdfFilter.getMethod("filter", String[].class, URL.class, String.class, String[].class);
+                filterNames         = new HashSet<>();
+                for (Object filterName : ((Map<?, ?>) cdfFilter.getMethod("getFilterMap").invoke(null)).keySet())
+                    filterNames.add(String.valueOf(filterName));
+                takeDownstreamNanos = Class.forName(StageProbe.class.getName(), true, loader).getMethod("takeDownstreamNanos");
+            }
+            catch (ReflectiveOperationException | LinkageError ex)
+            {
+                throw new IOException("Xj3D CDFFilter unavailable: " + ex, ex);
+            }
+        }
+
+        /** Runtime with its own copy of Xj3D classes and static state */
+        static FilterRuntime isolated() throws IOException
+        {
+            ClassLoader parent = CadFilterPipeline.class.getClassLoader();
+            Set<URL> jars = new LinkedHashSet<>();
+            for (String className : ISOLATED_JAR_CLASSES)
+            {
+                try
+                {
+                    CodeSource codeSource = Class.forName(className, false, parent).getProtectionDomain().getCodeSource();
+                    if ((codeSource != null) && (codeSource.getLocation() != null))
+                        jars.add(codeSource.getLocation());
+                }
+                catch (ClassNotFoundException | LinkageError ex)
+                {
+                    // not needed by this Xj3D version
+                }
+            }
+            return new FilterRuntime(new IsolatedLoader(jars.toArray(new URL[0]), parent));
+        }
+
+        int filter(String[] chain, URL source, String output, String[] args) throws IOException
+        {
+            try
+            {
+                return (Integer) filterMethod.invoke(newFilter.newInstance(), chain, source, output, args);
+            }
+            catch (InvocationTargetException ex)
+            {
+                throw new IOException("CDFFilter failed: " + ex.getCause(), ex.getCause());
+            }
+            catch (ReflectiveOperationException ex)
+            {
+                throw new IOException("CDFFilter failed: " + ex, ex);
+            }
+        }
+
+        long[] takeDownstreamNanos()
+        {
+            try
+            {
+                return (long[]) takeDownstreamNanos.invoke(null);
+            }
+            catch (ReflectiveOperationException ex)
+            {
+                return new long[0];
+            }
+        }
+
+        void close() throws IOException
+        {
+            closed = true;
+            if (isolatedLoader != null)
+                isolatedLoader.close();
+        }
+    }
+
+    /**
+     * Loads Xj3D jars, and StageProbe, ahead of its parent so that each isolated thread has its own static state.
+     * Platform and XML API classes, and other X3D-Edit classes, still come from the parent.
+     */
+    private static final class IsolatedLoader extends URLClassLoader
+    {
+        private static final String[] SHARED_PACKAGES = { "java.", "javax.", "jdk.", "sun.", "com.sun.", "org.xml.", "org.w3c." };
+
+        IsolatedLoader(URL[] jars, ClassLoader parent)
+        {
+            super("CadFilterPipeline", jars, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException
+        {
+            if (!isIsolated(name))
+                return super.loadClass(name, resolve);
+            synchronized (getClassLoadingLock(name))
+            {
+                Class<?> loadedClass = findLoadedClass(name);
+                if (loadedClass == null)
+                {
+                    try
+                    {
+                        loadedClass = findClass(name);
+                    }
+                    catch (ClassNotFoundException ex)
+                    {
+                        return super.loadClass(name, resolve); // dependencies outside the Xj3D jars are shared
+                    }
+                }
+                if (resolve)
+                    resolveClass(loadedClass);
+                return loadedClass;
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException
+        {
+            if (!name.startsWith(StageProbe.class.getName()))
+                return super.findClass(name);
+            // probe class file comes from this module, whose jar need not be a URL that this loader can read
+            try (InputStream classFile = getParent().getResourceAsStream(name.replace('.', '/') + ".class"))
+            {
+                if (classFile == null)
+                    throw new ClassNotFoundException(name);
+                byte[] bytes = classFile.readAllBytes();
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+            catch (IOException ex)
+            {
+                throw new ClassNotFoundException(name, ex);
+            }
+        }
+
+        private static boolean isIsolated(String name)
+        {
+            for (String shared : SHARED_PACKAGES)
+            {
+                if (name.startsWith(shared))
+                    return false;
+            }
+            return !name.startsWith("org.web3d.x3d.") || name.startsWith(StageProbe.class.getName());
+        }
+    }
+
+    /** Serves snapshot bytes for the scene URL; other URLs resolved against it, such as Inline scenes, are read normally */
+    private static final class SnapshotHandler extends URLStreamHandler
+    {
+        private final String     systemId;
+        private final ByteBuffer bytes;
+
+        SnapshotHandler(String systemId, ByteBuffer bytes)
+        {
+            this.systemId = systemId;
+            this.bytes    = bytes;
+        }
+
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException
+        {
+            if (!url.toExternalForm().equals(systemId))
+                return new URL(url.toExternalForm()).openConnection();
+            return new URLConnection(url)
+            {
+                @Override
+                public void connect()
+                {
+                    connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream()
+                {
+                    return new ByteArrayInputStream(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                }
+
+                @Override
+                public String getContentType()
+                {
+                    return "model/x3d+xml";
+                }
+
+                @Override
+                public long getContentLengthLong()
+                {
+                    return bytes.remaining();
+                }
+            };
+        }
+    }
+
+    /**
+     * Pass-through filter that CDFFilter loads by class name, placed between filters when stage timing is on.
+     * Calls into the rest of the chain go through a proxy that adds up their time.
+     */
+    public static class StageProbe extends AbstractFilter
+    {
+        /** probes of the chain being built or run on this thread, in chain order */
+        private static final ThreadLocal<List<StageProbe>> PROBES = ThreadLocal.withInitial(ArrayList::new);
+
+        private final Map<Object, Object> timedHandlers = new IdentityHashMap<>();
+        private long downstreamNanos;
+
+        public StageProbe()
+        {
+            PROBES.get().add(this);
+        }
+
+        /** @return time spent downstream of each probe created on this thread, in chain order; probes are then forgotten */
+        public static long[] takeDownstreamNanos()
+        {
+            List<StageProbe> probes = PROBES.get();
+            long[] nanos = new long[probes.size()];
+            for (int i = 0; i < nanos.length; i++)
+                nanos[i] = probes.get(i).downstreamNanos;
+            probes.clear();
+            return nanos;
+        }
+
+        @Override
+        public void setContentHandler(ContentHandler handler)
+        {
+            super.setContentHandler(timed(handler));
+        }
+
+        @Override
+        public void setRouteHandler(RouteHandler handler)
+        {
+            super.setRouteHandler(timed(handler));
+        }
+
+        @Override
+        public void setScriptHandler(ScriptHandler handler)
+        {
+            super.setScriptHandler(timed(handler));
+        }
+
+        @Override
+        public void setProtoHandler(ProtoHandler handler)
+        {
+            super.setProtoHandler(timed(handler));
+        }
+
+        /** Proxy with every public interface of handler, so downstream instanceof checks are unchanged */
+        @SuppressWarnings("unchecked")
+        private <H> H timed(H handler)
+        {
+            if (handler == null)
+                return null;
+            return (H) timedHandlers.computeIfAbsent(handler, target ->
+            {
+                Set<Class<?>> interfaces = new LinkedHashSet<>();
+                for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass())
+                    addPublicInterfaces(type, interfaces);
+                return Proxy.newProxyInstance(target.getClass().getClassLoader(), interfaces.toArray(new Class<?>[0]),
+                                              (proxy, method, args) ->
+                {
+                    long startTime = System.nanoTime();
+                    try
+                    {
+                        return method.invoke(target, args);
+                    }
+                    catch (InvocationTargetException ex)
+                    {
+                        throw ex.getCause();
+                    }
+                    finally
+                    {
+                        downstreamNanos += System.nanoTime() - startTime;
+                    }
+                });
+            });
+        }
+
+        private static void addPublicInterfaces(Class<?> type, Set<Class<?>> interfaces)
+        {
+            for (Class<?> implemented : type.getInterfaces())
+            {
+                if (Modifier.isPublic(implemented.getModifiers()))
+                    interfaces.add(implemented);
+                addPublicInterfaces(implemented, interfaces);
+            }
+        }
+    }
+}
@@ -0,0 +1,468 @@
+/*
+* Copyright (c) 1995-2023 held by the author(s).  All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+*  * Redistributions of source code must retain the above copyright
+*       notice, this list of conditions and the following disclaimer.
+*  * Redistributions in binary form must reproduce the above copyright
+*       notice, this list of conditions and the following disclaimer
+*       in the documentation and/or other materials provided with the
+*       distribution.
+*  * Neither the names of the Naval Postgraduate School (NPS)
+*       Modeling Virtual Environments and Simulation (MOVES) Institute
+*       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+*       nor the names of its contributors may be used to endorse or
+*       promote products derived from this software without specific
+*       prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+* "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+* LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+* FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+* COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+* INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+* BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+* LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+* ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.web3d.x3d.actions.conversions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openide.windows.OutputWriter;
+
+/**
+ * ConversionWorkerPool.java
+ * Created on October 18, 2026
+ *
+ * Long-lived worker threads for Xj3D conversions, CAD filtering and other converters that are invoked
+ * through a main method or a shared converter instance.  Converter classes stay loaded and compiled between
+ * jobs, so each conversion avoids the startup, class loading and JIT warm-up of a new JVM (as previously
+ * launched by ProcessRunner.execJava).  Jobs are queued in submission order, can be cancelled, are stopped
+ * after a per-job timeout, and have whatever the job thread prints to System.out and System.err streamed line
+ * by line into the requesting OutputWriter.  Xj3DConv and converter main methods take no output stream, so while
+ * such a job runs System.out and System.err are replaced by routers, and the originals are restored once no
+ * routed job is running and when the pool is shut down.  The default pool has a single worker since Xj3D converters keep static
+ * state; a job that ignores interruption after timeout is abandoned and its worker replaced so the queue
+ * keeps moving.  Converters that call System.exit still need ProcessRunner.execJavaProcess.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class ConversionWorkerPool
+{
+    /** time allowed for one conversion before it is cancelled */
+    public static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static ConversionWorkerPool defaultPool;
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService watchdog;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    /** @return shared single-worker pool, created on first use */
+    public static synchronized ConversionWorkerPool getDefault()
+    {
+        if (defaultPool == null)
+            defaultPool = new ConversionWorkerPool("X3D-Edit conversion worker", 1);
+        return defaultPool;
+    }
+
+    /** Shut down the shared pool, if created, for example when the module is uninstalled or the IDE exits */
+    public static synchronized void shutdownDefault()
+    {
+        if (defaultPool != null)
+            defaultPool.shutdown();
+        defaultPool = null;
+    }
+
+    /**
+     * @param name worker thread name prefix
+     * @param workers number of jobs run at once
+     */
+    public ConversionWorkerPool(String name, int workers)
+    {
+        this.name = name;
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable ->
+        {
+            Thread thread = new Thread(runnable, name + " " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, name + " timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a job.
+     * @param <T> job result type
+     * @param jobName name used in messages
+     * @param ow receives job output lines, or null to leave output on System.out and System.err
+     * @param timeoutMillis job is cancelled this long after it starts, or 0 for no timeout
+     * @param task work to do on a worker thread
+     * @return handle for waiting on, or cancelling, the job
+     */
+    public <T> Job<T> submit(String jobName, OutputWriter ow, long timeoutMillis, Callable<T> task)
+    {
+        Job<T> job = new Job<>(jobName, ow, timeoutMillis, task);
+        executor.execute(job.future); // future exists before the job can start, so timeOut() always finds it
+        return job;
+    }
+
+    /**
+     * Queue a call of a class's static main method, loaded once through this module's class loader.
+     * @param ow receives job output lines, or null
+     * @param timeoutMillis job is cancelled this long after it starts, or 0 for no timeout
+     * @param className class with public static void main(String[])
+     * @param args arguments to main
+     * @return handle whose result is 0 when main returns normally
+     */
+    public Job<Integer> submitMain(OutputWriter ow, long timeoutMillis, String className, String... args)
+    {
+        return submit(className, ow, timeoutMillis, () ->
+        {
+            Method main = Class.forName(className, true, ConversionWorkerPool.class.getClassLoader()).getMethod("main", String[].class);
+            if (!Modifier.isStatic(main.getModifiers()))
+                throw new NoSuchMethodException(className + ".main is not static");
+            try
+            {
+                main.invoke(null, (Object) args.clone());
+            }
+            catch (InvocationTargetException ex)
+            {
+                if (ex.getCause() instanceof Exception)
+                    throw (Exception) ex.getCause();
+                throw ex;
+            }
+            return 0;
+        });
+    }
+
+    /** @return jobs waiting for a worker */
+    public int getQueuedCount()
+    {
+        return executor.getQueue().size();
+    }
+
+    /** Stop accepting jobs, interrupt running ones and put back the original System.out and System.err */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+        watchdog.shutdownNow();
+        OutputRouter.uninstall();
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + " (" + executor.getActiveCount() + " running, " + getQueuedCount() + " queued)";
+    }
+
+    /** Allow one more worker while a timed-out job that ignores interruption keeps its thread */
+    private synchronized void replaceWorker(int change)
+    {
+        if (change > 0)
+        {
+            executor.setMaximumPoolSize(executor.getMaximumPoolSize() + change);
+            executor.setCorePoolSize(executor.getCorePoolSize() + change);
+        }
+        else
+        {
+            executor.setCorePoolSize(executor.getCorePoolSize() + change);
+            executor.setMaximumPoolSize(executor.getMaximumPoolSize() + change);
+        }
+    }
+
+    /** Queued or running conversion */
+    public final class Job<T>
+    {
+        private final String jobName;
+        private final OutputWriter ow;
+        private final long timeoutMillis;
+        private final Callable<T> task;
+        private final long submitted = System.nanoTime();
+        private final FutureTask<T> future;
+        private volatile long started;
+        private volatile long finished;
+        private volatile boolean timedOut;
+        private volatile boolean abandoned;
+
+        Job(String jobName, OutputWriter ow, long timeoutMillis, Callable<T> task)
+        {
+            this.jobName       = jobName;
+            this.ow            = ow;
+            this.timeoutMillis = timeoutMillis;
+            this.task          = task;
+            future = new FutureTask<>(this::run);
+        }
+
+        private T run() throws Exception
+        {
+            started = System.nanoTime();
+            ScheduledFuture<?> timeout = (timeoutMillis > 0) ? watchdog.schedule(this::timeOut, timeoutMillis, TimeUnit.MILLISECONDS) : null;
+            OutputRouter.begin(ow);
+            try
+            {
+                return task.call();
+            }
+            finally
+            {
+                OutputRouter.end();
+                if (timeout != null)
+                    timeout.cancel(false);
+                synchronized (this)
+                {
+                    finished = System.nanoTime();
+                    if (abandoned)
+                        replaceWorker(-1);
+                }
+                Thread.interrupted(); // clear any interrupt from cancellation before the worker takes the next job
+            }
+        }
+
+        private void timeOut()
+        {
+            timedOut = true;
+            if (ow != null)
+                ow.println(jobName + " timed out after " + timeoutMillis + " msec");
+            future.cancel(true);
+            watchdog.schedule(() ->
+            {
+                synchronized (this)
+                {
+                    if (finished == 0)
+                    {
+                        abandoned = true;
+                        replaceWorker(1);
+                    }
+                }
+            }, 1, TimeUnit.SECONDS);
+        }
+
+        /**
+         * Wait for the job to finish.
+         * @return job result
+         * @throws Exception thrown by the job itself, or CancellationException if cancelled or timed out
+         */
+        public T get() throws Exception
+        {
+            try
+            {
+                return future.get();
+            }
+            catch (CancellationException ex)
+            {
+                throw new CancellationException(timedOut ? jobName + " timed out after " + timeoutMillis + " msec" : jobName + " cancelled");
+            }
+            catch (ExecutionException ex)
+            {
+                if (ex.getCause() instanceof Exception)
+                    throw (Exception) ex.getCause();
+                throw new Exception(ex.getCause());
+            }
+        }
+
+        /** Remove job from queue, or interrupt it if running */
+        public void cancel()
+        {
+            future.cancel(true);
+        }
+
+        public boolean isDone()
+        {
+            return future.isDone();
+        }
+
+        /** @return time spent waiting for a worker, in nanoseconds */
+        public long getQueuedNanos()
+        {
+            return ((started != 0) ? started : System.nanoTime()) - submitted;
+        }
+
+        /** @return time spent running, in nanoseconds, so far if not finished */
+        public long getRunNanos()
+        {
+            return (started == 0) ? 0 : ((finished != 0) ? finished : System.nanoTime()) - started;
+        }
+
+        @Override
+        public String toString()
+        {
+            return jobName;
+        }
+    }
+
+    /**
+     * Replacement System.out and System.err that send lines printed by a worker thread to its current job's
+     * OutputWriter.  The target is set when each job starts and cleared when it ends, and is not inherited,
+     * so threads that a converter starts (and may keep pooled) never hold on to a finished job's writer;
+     * output from all other threads passes through unchanged.  Routers are only in place while at least one
+     * job with an OutputWriter is running.
+     */
+    static final class OutputRouter extends OutputStream
+    {
+        private static final ThreadLocal<OutputRouterTarget> TARGET = new ThreadLocal<>();
+        private static int routedJobs;
+        private static PrintStream originalOut;
+        private static PrintStream originalErr;
+        private static PrintStream routedOut;
+        private static PrintStream routedErr;
+
+        private final PrintStream original;
+
+        private OutputRouter(PrintStream original)
+        {
+            this.original = original;
+        }
+
+        static void begin(OutputWriter ow)
+        {
+            if (ow == null)
+            {
+                TARGET.remove();
+                return;
+            }
+            synchronized (OutputRouter.class)
+            {
+                if (routedJobs++ == 0)
+                    install();
+            }
+            TARGET.set(new OutputRouterTarget(ow));
+        }
+
+        static void end()
+        {
+            OutputRouterTarget target = TARGET.get();
+            TARGET.remove();
+            if (target == null)
+                return;
+            target.flushLine();
+            synchronized (OutputRouter.class)
+            {
+                if (routedJobs > 0 && --routedJobs == 0)
+                    uninstall();
+            }
+        }
+
+        /** @return whether System.out and System.err are currently routed */
+        static synchronized boolean isInstalled()
+        {
+            return routedOut != null;
+        }
+
+        private static synchronized void install()
+        {
+            if (routedOut != null)
+                return;
+            originalOut = System.out;
+            originalErr = System.err;
+            routedOut = new PrintStream(new OutputRouter(originalOut), true);
+            routedErr = new PrintStream(new OutputRouter(originalErr), true);
+            System.setOut(routedOut);
+            System.setErr(routedErr);
+        }
+
+        /** Put back the original streams, unless something else has replaced the routers since */
+        static synchronized void uninstall()
+        {
+            if (routedOut == null)
+                return;
+            routedOut.flush();
+            routedErr.flush();
+            if (System.out == routedOut)
+                System.setOut(originalOut);
+            if (System.err == routedErr)
+                System.setErr(originalErr);
+            routedOut = routedErr = originalOut = originalErr = null;
+            routedJobs = 0;
+        }
+
+        @Override
+        public void write(int b)
+        {
+            OutputRouterTarget target = TARGET.get();
+            if (target == null)
+                original.write(b);
+            else
+                target.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length)
+        {
+            OutputRouterTarget target = TARGET.get();
+            if (target == null)
+                original.write(bytes, offset, length);
+            else
+                for (int i = offset; i < offset + length; i++)
+                    target.write(bytes[i]);
+        }
+
+        @Override
+        public void flush()
+        {
+            original.flush();
+        }
+    }
+
+    /** Line buffer for one job */
+    static final class OutputRouterTarget
+    {
+        private final OutputWriter ow;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        OutputRouterTarget(OutputWriter ow)
+        {
+            this.ow = ow;
+        }
+
+        synchronized void write(int b)
+        {
+            if (b == '\n')
+                flushLine();
+            else if (b != '\r')
+                line.write(b);
+        }
+
+        synchronized void flushLine()
+        {
+            if (line.size() == 0)
+                return;
+            ow.println(line.toString(Charset.defaultCharset()));
+            ow.flush();
+            line.reset();
+        }
+    }
+}
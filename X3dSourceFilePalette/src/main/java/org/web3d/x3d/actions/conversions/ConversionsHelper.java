@@ -41,8 +41,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.function.Consumer;
 import javax.swing.JCheckBox;
 import javax.swing.JFileChooser;
+import org.netbeans.api.progress.ProgressHandle;
 import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
 import org.openide.cookies.EditCookie;
@@ -52,6 +54,7 @@ import org.openide.filesystems.FileUtil;
 import org.openide.loaders.DataObject;
 import org.openide.util.Exceptions;
 import org.openide.util.NbBundle;
+import org.openide.util.RequestProcessor;
 import org.openide.windows.IOProvider;
 import org.web3d.x3d.actions.conversions.BaseConversionsAction.TransformListener;
 import xj3d.converter.Xj3DConv;
@@ -342,6 +345,41 @@ public class ConversionsHelper
     return converter;
   }
 
+  /** Work done once a queued conversion succeeds */
+  interface AfterConversion
+  {
+    void run() throws Exception;
+  }
+
+  private static final RequestProcessor conversionWaitProcessor = new RequestProcessor("X3D-Edit conversion wait", 1, true);
+
+  /**
+   * Wait for a queued conversion off the event thread, with a progress indicator whose cancel button cancels the job.
+   * @param job conversion already queued on ConversionWorkerPool
+   * @param afterConversion run on a background thread once the job succeeds, for example to open the result
+   * @param onFailure receives the exception if the job (or afterConversion) fails, is cancelled or times out
+   */
+  static void awaitConversion(ConversionWorkerPool.Job<?> job, AfterConversion afterConversion, Consumer<Exception> onFailure)
+  {
+    ProgressHandle progress = ProgressHandle.createHandle(job.toString(), () -> {
+      job.cancel();
+      return true;
+    });
+    progress.start(); // shown at once, so a job still queued behind another can be cancelled too
+    conversionWaitProcessor.post(() -> {
+      try {
+        job.get();
+        afterConversion.run();
+      }
+      catch (Exception ex) {
+        onFailure.accept(ex);
+      }
+      finally {
+        progress.finish();
+      }
+    });
+  }
+
     /**
      * @return the saveChooserDialogTitle
      */
@@ -35,9 +35,7 @@
 package org.web3d.x3d.actions.conversions;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.util.zip.GZIPOutputStream;
+import java.io.IOException;
 import javax.swing.JMenuItem;
 import org.openide.awt.ActionID;
 import org.openide.awt.ActionReference;
@@ -48,6 +46,7 @@ import org.openide.filesystems.FileUtil;
 import org.openide.nodes.Node;
 import org.openide.util.HelpCtx;
 import org.openide.util.NbBundle;
+import org.openide.util.RequestProcessor;
 import org.web3d.x3d.X3DDataObject;
 import org.web3d.x3d.X3DEditorSupport;
 
@@ -80,24 +79,36 @@ public class GzipX3dAction extends BaseConversionsAction
     co.moveToFront();
     co.setNode(node[0]);
     
-    try {
-      FileInputStream fis = new FileInputStream(mySrcF);
-      GZIPOutputStream gzos = new GZIPOutputStream(new FileOutputStream(myOutF));
-
-      byte [] buf = new byte[4096];
-      int ret;
-      while((ret=fis.read(buf)) >0)
-        gzos.write(buf, 0, ret);
-      gzos.close();
-    }
-    catch(Exception ex) {
-      co.message(NbBundle.getMessage(getClass(),"Exception:__")+ex.getLocalizedMessage());
-      return null;
-    }
-    co.message(NbBundle.getMessage(getClass(), "Gzip_compression_complete"));
+    compressInBackground(mySrcF, myOutF, co, getClass());
     return myOutF.getAbsolutePath();
   }
 
+  /** shared by gzip actions, blocks of large scenes compressed concurrently */
+  static final ParallelGzipCompressor gzipCompressor = new ParallelGzipCompressor();
+
+  /**
+   * Compress off the event thread, reporting sizes and time when complete
+   * @param source file to compress
+   * @param output gzip file to write
+   * @param co console for messages
+   * @param bundleClass class whose Bundle.properties holds messages
+   */
+  static void compressInBackground(File source, File output, TransformListener co, Class<?> bundleClass)
+  {
+    RequestProcessor.getDefault().post(() -> {
+      try {
+        long startTime = System.nanoTime();
+        long bytesOut = gzipCompressor.compress(source, output);
+        co.message(ParallelGzipCompressor.describe(source.length(), bytesOut, System.nanoTime() - startTime));
+      }
+      catch(IOException ex) {
+        co.message(NbBundle.getMessage(bundleClass,"Exception:__")+ex.getLocalizedMessage());
+        return;
+      }
+      co.message(NbBundle.getMessage(bundleClass, "Gzip_compression_complete"));
+    });
+  }
+
   @Override
   public String getName()
   {
@@ -35,9 +35,6 @@
 package org.web3d.x3d.actions.conversions;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.util.zip.GZIPOutputStream;
 import javax.swing.JMenuItem;
 import org.openide.awt.ActionID;
 import org.openide.awt.ActionReference;
@@ -80,22 +77,12 @@ public final class GzipX3dvAction extends BaseConversionsAction
     co.moveToFront();
     co.setNode(node[0]);
 
-    try {
-      String x3dvFile = ExportClassicVRMLAction.instance.transformSingleFile(xed);
-      FileInputStream fis = new FileInputStream(new File(x3dvFile));
-      GZIPOutputStream gzos = new GZIPOutputStream(new FileOutputStream(myOutF));
-
-      byte [] buf = new byte[4096];
-      int ret;
-      while((ret=fis.read(buf)) >0)
-        gzos.write(buf, 0, ret);
-      gzos.close();
-    }
-    catch(Exception ex) {
-      co.message(NbBundle.getMessage(getClass(),"Exception:__")+ex.getLocalizedMessage());
-      return null;
+    // compress only once the queued export has finished writing the .x3dv file
+    String x3dvFile = ExportClassicVRMLAction.instance.exportSingleFile(xed,
+        x3dv -> GzipX3dAction.compressInBackground(x3dv, myOutF, co, getClass()));
+    if (x3dvFile == null) {
+      return null; // conversion cancelled or failed, already reported
     }
-    co.message(NbBundle.getMessage(getClass(), "Gzip_compression_complete"));
     return myOutF.getAbsolutePath();
   }
 
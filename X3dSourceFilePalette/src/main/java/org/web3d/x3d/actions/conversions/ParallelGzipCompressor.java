@@ -0,0 +1,350 @@
+/*
+* Copyright (c) 1995-2023 held by the author(s).  All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+*  * Redistributions of source code must retain the above copyright
+*       notice, this list of conditions and the following disclaimer.
+*  * Redistributions in binary form must reproduce the above copyright
+*       notice, this list of conditions and the following disclaimer
+*       in the documentation and/or other materials provided with the
+*       distribution.
+*  * Neither the names of the Naval Postgraduate School (NPS)
+*       Modeling Virtual Environments and Simulation (MOVES) Institute
+*       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+*       nor the names of its contributors may be used to endorse or
+*       promote products derived from this software without specific
+*       prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+* "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+* LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+* FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+* COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+* INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+* BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+* LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+* ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.web3d.x3d.actions.conversions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * ParallelGzipCompressor.java
+ * Created on October 18, 2026
+ *
+ * Gzip compression of large scenes using several processors, in the manner of pigz.  Input is read through
+ * a FileChannel in fixed-size blocks that are deflated concurrently, each primed with the preceding 32 KB as
+ * dictionary so that compression ratio stays close to that of a single stream.  Blocks end on byte boundaries
+ * (sync flush) and are written in order as one ordinary gzip member, whose CRC is combined from per-block CRCs,
+ * so results are readable by GZIPInputStream, browsers and any other gzip reader.  Small files are compressed
+ * as a single block on the calling thread.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class ParallelGzipCompressor
+{
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    /** deflate window size, the most of preceding input that a block can refer back to */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    /** same header as GZIPOutputStream: no file name, no modification time */
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    private int level       = Deflater.DEFAULT_COMPRESSION;
+    private int blockSize   = DEFAULT_BLOCK_SIZE;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /** @param level Deflater compression level, 0 (none) to 9 (best), or Deflater.DEFAULT_COMPRESSION */
+    public void setLevel(int level)
+    {
+        if ((level < Deflater.DEFAULT_COMPRESSION) || (level > Deflater.BEST_COMPRESSION))
+            throw new IllegalArgumentException("gzip level must be 0 to 9: " + level);
+        this.level = level;
+    }
+
+    public int getLevel()
+    {
+        return level;
+    }
+
+    /** @param blockSize bytes deflated by each task, at least 64 KB */
+    public void setBlockSize(int blockSize)
+    {
+        this.blockSize = Math.max(64 * 1024, blockSize);
+    }
+
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
+    /** @param parallelism maximum blocks deflated concurrently, at least 1 */
+    public void setParallelism(int parallelism)
+    {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Compress a file, replacing any existing output file.
+     * @param source file to compress
+     * @param output gzip file to write
+     * @return bytes written
+     * @throws IOException if source cannot be read or output written, in which case output is deleted
+     */
+    public long compress(File source, File output) throws IOException
+    {
+        boolean complete = false;
+        try (FileChannel in  = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                                                 StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            long size = in.size();
+            int blockCount = (int) Math.max(1, (size + blockSize - 1) / blockSize);
+            writeFully(out, ByteBuffer.wrap(GZIP_HEADER));
+            long crc;
+            if ((blockCount == 1) || (parallelism == 1))
+                crc = compressSequentially(in, out, size, blockCount);
+            else
+                crc = compressConcurrently(in, out, size, blockCount);
+            ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putInt((int) crc).putInt((int) size).flip(); // ISIZE is input size modulo 2^32
+            writeFully(out, trailer);
+            complete = true;
+            return out.size();
+        }
+        finally
+        {
+            if (!complete)
+                output.delete();
+        }
+    }
+
+    private long compressSequentially(FileChannel in, FileChannel out, long size, int blockCount) throws IOException
+    {
+        long crc = 0;
+        for (int i = 0; i < blockCount; i++)
+        {
+            Block block = deflateBlock(in, size, i, blockCount);
+            writeFully(out, ByteBuffer.wrap(block.deflated, 0, block.deflatedLength));
+            crc = crc32Combine(crc, block.crc, block.length);
+        }
+        return crc;
+    }
+
+    /** Blocks are deflated by pool threads while this thread writes finished blocks in order, with bounded read-ahead */
+    private long compressConcurrently(FileChannel in, FileChannel out, long size, int blockCount) throws IOException
+    {
+        int threads = Math.min(parallelism, blockCount);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable ->
+        {
+            Thread thread = new Thread(runnable, "ParallelGzipCompressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<Block>> pending = new ArrayDeque<>();
+        long crc = 0;
+        try
+        {
+            int next = 0;
+            while ((next < blockCount) || !pending.isEmpty())
+            {
+                while ((next < blockCount) && (pending.size() < 2 * threads)) // limits memory held by read-ahead blocks
+                {
+                    final int index = next++;
+                    pending.add(pool.submit(() -> deflateBlock(in, size, index, blockCount)));
+                }
+                Block block = pending.remove().get();
+                writeFully(out, ByteBuffer.wrap(block.deflated, 0, block.deflatedLength));
+                crc = crc32Combine(crc, block.crc, block.length);
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("gzip compression interrupted", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            throw new IOException("gzip block compression failed: " + ex.getCause(), ex.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        return crc;
+    }
+
+    /** Deflated block with its uncompressed length and CRC */
+    private static final class Block
+    {
+        final byte[] deflated;
+        final int    deflatedLength;
+        final int    length;
+        final long   crc;
+
+        Block(byte[] deflated, int deflatedLength, int length, long crc)
+        {
+            this.deflated       = deflated;
+            this.deflatedLength = deflatedLength;
+            this.length         = length;
+            this.crc            = crc;
+        }
+    }
+
+    /** Read and deflate one block, primed with preceding input; positional reads let blocks be read concurrently */
+    private Block deflateBlock(FileChannel in, long size, int index, int blockCount) throws IOException
+    {
+        long start = (long) index * blockSize;
+        int  length = (int) Math.min(blockSize, size - start);
+        int  dictionaryLength = (int) Math.min(DICTIONARY_SIZE, start);
+        byte[] input = new byte[dictionaryLength + length];
+        ByteBuffer buffer = ByteBuffer.wrap(input);
+        long position = start - dictionaryLength;
+        while (buffer.hasRemaining())
+        {
+            int count = in.read(buffer, position + buffer.position());
+            if (count < 0)
+                throw new IOException("file shortened during gzip compression");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(input, dictionaryLength, length);
+
+        Deflater deflater = new Deflater(level, true); // raw deflate, gzip header and trailer written by compress()
+        try
+        {
+            if (dictionaryLength > 0)
+                deflater.setDictionary(input, 0, dictionaryLength);
+            deflater.setInput(input, dictionaryLength, length);
+            boolean last = (index == blockCount - 1);
+            if (last)
+                deflater.finish();
+            byte[] deflated = new byte[Math.max(1024, length / 2)];
+            int deflatedLength = 0;
+            while (true)
+            {
+                deflatedLength += deflater.deflate(deflated, deflatedLength, deflated.length - deflatedLength,
+                                                   last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                if (last ? deflater.finished() : (deflatedLength < deflated.length)) // flush is complete once output space is left over
+                    break;
+                if (deflatedLength == deflated.length)
+                    deflated = Arrays.copyOf(deflated, deflated.length * 2);
+            }
+            return new Block(deflated, deflatedLength, length, crc.getValue());
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+            out.write(buffer);
+    }
+
+    /**
+     * CRC-32 of two concatenated byte sequences, from the CRC of each (zlib crc32_combine)
+     * @param crc1 CRC of first sequence
+     * @param crc2 CRC of second sequence
+     * @param length2 length of second sequence
+     * @return CRC of both
+     */
+    static long crc32Combine(long crc1, long crc2, long length2)
+    {
+        if (length2 <= 0)
+            return crc1;
+        long[] even = new long[32]; // operator for even powers of two zeros
+        long[] odd  = new long[32]; // operator for odd powers of two zeros
+        odd[0] = 0xedb88320L;       // CRC-32 polynomial, operator for one zero bit
+        long row = 1;
+        for (int n = 1; n < 32; n++)
+        {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd); // two zero bits
+        gf2MatrixSquare(odd, even); // four zero bits
+        do // apply length2 zero bytes to crc1, first square giving one zero byte
+        {
+            gf2MatrixSquare(even, odd);
+            if ((length2 & 1) != 0)
+                crc1 = gf2MatrixTimes(even, crc1);
+            length2 >>= 1;
+            if (length2 == 0)
+                break;
+            gf2MatrixSquare(odd, even);
+            if ((length2 & 1) != 0)
+                crc1 = gf2MatrixTimes(odd, crc1);
+            length2 >>= 1;
+        }
+        while (length2 != 0);
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix, long vector)
+    {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1)
+        {
+            if ((vector & 1) != 0)
+                sum ^= matrix[i];
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] matrix)
+    {
+        for (int n = 0; n < 32; n++)
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+    }
+
+    /**
+     * Summary of one compression for progress messages
+     * @param bytesIn uncompressed size
+     * @param bytesOut compressed size
+     * @param nanos elapsed time
+     * @return sizes, ratio and throughput
+     */
+    public static String describe(long bytesIn, long bytesOut, long nanos)
+    {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        return String.format("%,d bytes to %,d bytes (%.1f%%) in %d msec, %.1f MB/sec", bytesIn, bytesOut,
+                             (bytesIn == 0) ? 100.0 : 100.0 * bytesOut / bytesIn, nanos / 1000000, bytesIn / 1048576.0 / seconds);
+    }
+}
@@ -37,6 +37,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.List;
 import org.openide.windows.OutputWriter;
 
@@ -53,7 +54,33 @@ import org.openide.windows.OutputWriter;
  */
 public class ProcessRunner
 {
+  /**
+   * Run a class's main method on the warm ConversionWorkerPool rather than in a new JVM.
+   * @param ow receives output lines
+   * @param classAndArgs class name followed by arguments
+   * @return 0 if main returned normally, -1 on exception, cancellation or timeout
+   */
   public static int execJava(OutputWriter ow, String... classAndArgs)
+  {
+    try {
+      return ConversionWorkerPool.getDefault().submitMain(ow, ConversionWorkerPool.DEFAULT_TIMEOUT_MILLIS,
+              classAndArgs[0], Arrays.copyOfRange(classAndArgs, 1, classAndArgs.length)).get();
+    }
+    catch (Exception e) {
+      if (ow != null)
+        ow.println("Error running " + classAndArgs[0] + ": " + e.getLocalizedMessage());
+    }
+    return -1;
+  }
+
+  /**
+   * Run a class's main method in a separate JVM with this classpath, for programs that call System.exit
+   * or must otherwise be isolated.  Each call pays JVM startup and warm-up time.
+   * @param ow receives output lines
+   * @param classAndArgs class name followed by arguments
+   * @return process exit value, or -1 on error
+   */
+  public static int execJavaProcess(OutputWriter ow, String... classAndArgs)
   {
     String pathToJava = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
     String cp = System.getProperty("java.class.path");
@@ -34,6 +34,7 @@
 package org.web3d.x3d.actions.conversions;
 
 import java.io.File;
+import java.util.function.Consumer;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 import org.openide.nodes.Node;
@@ -56,8 +57,24 @@ import org.web3d.x3d.X3DEditorSupport.X3dEditor;
  */
 public abstract class Xj3DConverterBaseExportAction extends BaseConversionsAction
 {
+  /**
+   * Queue Xj3D export of the edited scene; the conversion is awaited off the event thread.
+   * @param xed editor holding the scene
+   * @return path of the file being written, or null if cancelled or not started
+   */
   @Override
   protected String transformSingleFile(X3dEditor xed)
+  {
+    return exportSingleFile(xed, null);
+  }
+
+  /**
+   * Queue Xj3D export of the edited scene, then pass the output file on once it is complete.
+   * @param xed editor holding the scene
+   * @param afterExport receives the output file after the conversion succeeds, on a background thread; may be null
+   * @return path of the file being written, or null if cancelled or not started
+   */
+  String exportSingleFile(X3dEditor xed, Consumer<File> afterExport)
   {
     OutputWriter ow = null;
     try {
@@ -83,8 +100,16 @@ public abstract class Xj3DConverterBaseExportAction extends BaseConversionsActio
       File myOutF = data.file;
 
       ow.println(getPreConversionMessage(myOutF));
-      ConversionsHelper.getXj3dConverter().convert(mySrcF, myOutF.getAbsolutePath());
-      ow.println(getPostConversionMessage());
+      ConversionWorkerPool.Job<?> job = ConversionWorkerPool.getDefault().submit(getName(), ow, ConversionWorkerPool.DEFAULT_TIMEOUT_MILLIS, () -> {
+        ConversionsHelper.getXj3dConverter().convert(mySrcF, myOutF.getAbsolutePath());
+        return null;
+      }); // warm converter on worker thread, output streamed to ow
+      OutputWriter output = ow;
+      ConversionsHelper.awaitConversion(job, () -> {
+        output.println(getPostConversionMessage());
+        if (afterExport != null)
+          afterExport.accept(myOutF);
+      }, ex -> output.println(getConversionExceptionPrefixMessage() + ex.getLocalizedMessage()));
       return myOutF.getAbsolutePath();
     }
     catch (Throwable t) {
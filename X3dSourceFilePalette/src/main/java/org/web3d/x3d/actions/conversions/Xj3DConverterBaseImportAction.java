@@ -105,19 +105,34 @@ public abstract class Xj3DConverterBaseImportAction extends CallableSystemAction
       String myOutFPath = sfp.file.getAbsolutePath();
       
       ow.println(getPreConversionMessage());
-      ConversionsHelper.getXj3dConverter().convert(mySrcF, myOutFPath);
-      ow.println(getPostConversionMessage());
-      
-      if(sfp.openInEditor)
-        ConversionsHelper.openInEditor(myOutFPath);
-      if(sfp.openInBrowser)
-        ConversionsHelper.openInBrowser(myOutFPath);
+      ConversionsHelper.awaitConversion(convert(mySrcF, myOutFPath, ow), () -> { // event thread not blocked
+        ow.println(getPostConversionMessage());
+        if(sfp.openInEditor)
+          ConversionsHelper.openInEditor(myOutFPath);
+        if(sfp.openInBrowser)
+          ConversionsHelper.openInBrowser(myOutFPath);
+      }, ex -> ow.println(getConversionExceptionPrefixMessage() + ex.getLocalizedMessage()));
     }
     catch(Throwable t) {
-      ow.println(getConversionExceptionPrefixMessage());
+      ow.println(getConversionExceptionPrefixMessage() + t.getLocalizedMessage());
     }   
   }
   
+  /**
+   * Queue conversion of selected file using Xj3D.
+   * @param source file chosen for import
+   * @param outputPath X3D file to write
+   * @param ow receives converter output
+   * @return queued conversion, awaited off the event thread
+   */
+  private ConversionWorkerPool.Job<?> convert(File source, String outputPath, OutputWriter ow)
+  {
+    return ConversionWorkerPool.getDefault().submit(getName(), ow, ConversionWorkerPool.DEFAULT_TIMEOUT_MILLIS, () -> {
+      ConversionsHelper.getXj3dConverter().convert(source, outputPath);
+      return null;
+    }); // warm converter on worker thread, output streamed to ow
+  }
+
   class myFileTypeFilter extends FileFilter
   { 
     String fileType = getInputFileType();
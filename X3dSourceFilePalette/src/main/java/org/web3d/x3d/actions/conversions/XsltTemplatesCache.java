@@ -0,0 +1,353 @@
+/*
+* Copyright (c) 1995-2023 held by the author(s).  All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+*  * Redistributions of source code must retain the above copyright
+*       notice, this list of conditions and the following disclaimer.
+*  * Redistributions in binary form must reproduce the above copyright
+*       notice, this list of conditions and the following disclaimer
+*       in the documentation and/or other materials provided with the
+*       distribution.
+*  * Neither the names of the Naval Postgraduate School (NPS)
+*       Modeling Virtual Environments and Simulation (MOVES) Institute
+*       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+*       nor the names of its contributors may be used to endorse or
+*       promote products derived from this software without specific
+*       prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+* "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+* LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+* FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+* COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+* INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+* BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+* LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+* ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.web3d.x3d.actions.conversions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.Configuration;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.web3d.x3d.X3DCatalog;
+
+/**
+ * XsltTemplatesCache.java
+ * Created on October 18, 2026
+ *
+ * Shared cache of compiled XSLT stylesheets, so that conversions and validation checks compile each
+ * stylesheet once rather than on every run.  Compiled Templates are thread safe; each run still creates
+ * its own Transformer from them.  Entries are keyed by processor, stylesheet path and the URIResolver used
+ * for includes, and are recompiled whenever the stylesheet modification time or size changes.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class XsltTemplatesCache
+{
+  /** Stylesheets compiled in background at module start, since they dominate conversion time for small scenes */
+  public static final String[] WARM_UP_STYLESHEETS =
+  {
+    "Schematron/X3dSchematronValidityChecks.xslt",
+    "Schematron/SvrlReportText.xslt",
+    "X3dTransforms/X3dToX3dvClassicVrmlEncoding.xslt"
+  };
+
+  private static final Map<CacheKey,CompiledStylesheet> TEMPLATES_CACHE = new ConcurrentHashMap<>();
+  private static final Map<CacheKey,Object>             COMPILE_LOCKS   = new ConcurrentHashMap<>();
+
+  private static final LongAdder cacheHits    = new LongAdder();
+  private static final LongAdder cacheMisses  = new LongAdder();
+  private static final LongAdder compileNanos = new LongAdder();
+
+  private static Configuration        saxonConfiguration;
+  /** Saxon factory for SAX pipeline stages */
+  private static SAXTransformerFactory saxonHandlerFactory;
+
+  /** Compiled stylesheet and the modification stamp of its source when compiled */
+  private static final class CompiledStylesheet
+  {
+    final Templates templates;
+    final String    stamp;
+
+    CompiledStylesheet(Templates templates, String stamp)
+    {
+      this.templates = templates;
+      this.stamp     = stamp;
+    }
+  }
+
+  /** Processor, stylesheet and resolver identity, since includes resolved differently compile differently */
+  private static final class CacheKey
+  {
+    final boolean     saxon;
+    final String      path;
+    final URIResolver uriResolver;
+
+    CacheKey(boolean saxon, String path, URIResolver uriResolver)
+    {
+      this.saxon       = saxon;
+      this.path        = path;
+      this.uriResolver = uriResolver;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+      if (!(other instanceof CacheKey))
+        return false;
+      CacheKey key = (CacheKey) other;
+      return (saxon == key.saxon) && path.equals(key.path) && (uriResolver == key.uriResolver);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return (31 * path.hashCode() + System.identityHashCode(uriResolver)) * 2 + (saxon ? 1 : 0);
+    }
+  }
+
+  private XsltTemplatesCache()
+  {
+    // static methods only
+  }
+
+  /**
+   * New Saxon configuration with entity limits large enough for X3D scenes and stylesheets
+   * (see https://saxonica.plan.io/issues/5980).
+   * @return configuration for Saxon TransformerFactory
+   */
+  public static Configuration newSaxonConfiguration()
+  {
+    Configuration configuration = new Configuration();
+    configuration.setParseOptions(configuration.getParseOptions().withParserProperty("http://www.oracle.com/xml/jaxp/properties/" + "entityExpansionLimit", "120000"));
+    configuration.setParseOptions(configuration.getParseOptions().withParserProperty("http://www.oracle.com/xml/jaxp/properties/" + "totalEntitySizeLimit", "50000000"));
+    configuration.setParseOptions(configuration.getParseOptions().withParserProperty("http://www.oracle.com/xml/jaxp/properties/" + "maxGeneralEntitySizeLimit", "50000000"));
+    return configuration;
+  }
+
+  /**
+   * Configuration shared by all Saxon stylesheets compiled here, so that a document tree built once
+   * by buildSaxonTree can be the source for any of them.
+   * @return shared configuration
+   */
+  public static synchronized Configuration getSaxonConfiguration()
+  {
+    if (saxonConfiguration == null)
+      saxonConfiguration = newSaxonConfiguration();
+    return saxonConfiguration;
+  }
+
+  /**
+   * Parse a scene once into an immutable Saxon tree (TinyTree) that can be shared, concurrently,
+   * as the source of any number of transformations using stylesheets from getSaxonTemplates.
+   * @param source scene to parse
+   * @return root node of tree, itself a Source
+   * @throws TransformerException if scene is not well formed or cannot be read
+   */
+  public static Source buildSaxonTree(Source source) throws TransformerException
+  {
+    return getSaxonConfiguration().buildDocumentTree(source).getRootNode();
+  }
+
+  /**
+   * Compiled stylesheet for the Saxon processor (XSLT 2.0 and 3.0), compiling on first request or after stylesheet changes.
+   * @param xsltFileResourcePath path to NB filesystem resource, for example "X3dTransforms/X3dToJson.xslt", or to operating system file;
+   *        outside NetBeans a resource path is found among stylesheets packaged in the module jar
+   * @param xsltIsOSFile whether stylesheet is an operating system file
+   * @param compileErrorListener receives stylesheet compilation diagnostics, may be null
+   * @return thread-safe compiled stylesheet
+   * @throws IOException if stylesheet cannot be found or read
+   * @throws TransformerConfigurationException if stylesheet does not compile
+   */
+  public static Templates getSaxonTemplates(String xsltFileResourcePath, boolean xsltIsOSFile, ErrorListener compileErrorListener)
+      throws IOException, TransformerConfigurationException
+  {
+    return getTemplates(true, xsltFileResourcePath, xsltIsOSFile, compileErrorListener, null);
+  }
+
+  /**
+   * Compiled stylesheet for the Saxon processor, resolving stylesheet includes without X3DCatalog, for example outside NetBeans.
+   * @param xsltFileResourcePath path to NB filesystem resource or to operating system file
+   * @param xsltIsOSFile whether stylesheet is an operating system file
+   * @param compileErrorListener receives stylesheet compilation diagnostics, may be null
+   * @param uriResolver resolves xsl:include and xsl:import when compiling, or null for X3DCatalog;
+   *        compiled stylesheets are shared only among callers passing the same resolver instance
+   * @return thread-safe compiled stylesheet
+   * @throws IOException if stylesheet cannot be found or read
+   * @throws TransformerConfigurationException if stylesheet does not compile
+   */
+  public static Templates getSaxonTemplates(String xsltFileResourcePath, boolean xsltIsOSFile, ErrorListener compileErrorListener, URIResolver uriResolver)
+      throws IOException, TransformerConfigurationException
+  {
+    return getTemplates(true, xsltFileResourcePath, xsltIsOSFile, compileErrorListener, uriResolver);
+  }
+
+  /**
+   * Compiled stylesheet for the default JRE processor (XSLT 1.0), compiling on first request or after stylesheet changes.
+   * @param xsltFileResourcePath path to NB filesystem resource or to operating system file
+   * @param xsltIsOSFile whether stylesheet is an operating system file
+   * @param compileErrorListener receives stylesheet compilation diagnostics, may be null
+   * @return thread-safe compiled stylesheet
+   * @throws IOException if stylesheet cannot be found or read
+   * @throws TransformerConfigurationException if stylesheet does not compile
+   */
+  public static Templates getJreTemplates(String xsltFileResourcePath, boolean xsltIsOSFile, ErrorListener compileErrorListener)
+      throws IOException, TransformerConfigurationException
+  {
+    return getTemplates(false, xsltFileResourcePath, xsltIsOSFile, compileErrorListener, null);
+  }
+
+  private static Templates getTemplates(boolean saxon, String xsltFileResourcePath, boolean xsltIsOSFile, ErrorListener compileErrorListener,
+                                        URIResolver uriResolver)
+      throws IOException, TransformerConfigurationException
+  {
+    if (uriResolver == null)
+      uriResolver = X3DCatalog.getInstance();
+    CacheKey key = new CacheKey(saxon, xsltFileResourcePath, uriResolver);
+    File       xsltFile       = null;
+    FileObject jarredStylesheet = null;
+    URL        resourceStylesheet = null;
+    String     stamp;
+    if (xsltIsOSFile)
+    {
+      xsltFile = new File(xsltFileResourcePath);
+      if (!xsltFile.isFile())
+        throw new IOException(xsltFileResourcePath + " not found");
+      stamp = xsltFile.lastModified() + ":" + xsltFile.length();
+    }
+    else
+    {
+      jarredStylesheet = FileUtil.getConfigRoot().getFileSystem().findResource(xsltFileResourcePath);
+      if (jarredStylesheet != null)
+        stamp = jarredStylesheet.lastModified().getTime() + ":" + jarredStylesheet.getSize();
+      else
+      {
+        // headless, without NetBeans layer: module resource on classpath, unchanging while running
+        resourceStylesheet = X3DCatalog.findStylesheetResource(xsltFileResourcePath);
+        if (resourceStylesheet == null)
+          throw new IOException(xsltFileResourcePath + " not found");
+        stamp = resourceStylesheet.toString();
+      }
+    }
+
+    CompiledStylesheet compiled = TEMPLATES_CACHE.get(key);
+    if ((compiled != null) && compiled.stamp.equals(stamp))
+    {
+      cacheHits.increment();
+      return compiled.templates;
+    }
+    synchronized (COMPILE_LOCKS.computeIfAbsent(key, k -> new Object())) // compile once, even if requested concurrently
+    {
+      compiled = TEMPLATES_CACHE.get(key);
+      if ((compiled != null) && compiled.stamp.equals(stamp))
+      {
+        cacheHits.increment();
+        return compiled.templates;
+      }
+      cacheMisses.increment();
+      long startTime = System.nanoTime();
+      TransformerFactory transformerFactory = saxon ? new net.sf.saxon.TransformerFactoryImpl(getSaxonConfiguration())
+                                                    : TransformerFactory.newInstance();
+      transformerFactory.setURIResolver(uriResolver);
+      if (compileErrorListener != null)
+        transformerFactory.setErrorListener(compileErrorListener);
+      Templates templates;
+      if (xsltIsOSFile)
+        templates = transformerFactory.newTemplates(new StreamSource(xsltFile));
+      else if (jarredStylesheet != null)
+      {
+        try (InputStream inputStream = jarredStylesheet.getInputStream())
+        {
+          templates = transformerFactory.newTemplates(new StreamSource(inputStream, jarredStylesheet.toURL().toString())); // systemId resolves relative includes
+        }
+      }
+      else
+      {
+        try (InputStream inputStream = resourceStylesheet.openStream())
+        {
+          templates = transformerFactory.newTemplates(new StreamSource(inputStream, resourceStylesheet.toString()));
+        }
+      }
+      compileNanos.add(System.nanoTime() - startTime);
+      TEMPLATES_CACHE.put(key, new CompiledStylesheet(templates, stamp));
+      return templates;
+    }
+  }
+
+  /**
+   * Pipeline stage for a compiled Saxon stylesheet, so that one transformation can feed the next
+   * as SAX events (for example via SAXResult) without an intermediate file or serialized copy.
+   * @param templates compiled by getSaxonTemplates
+   * @return handler whose result must be set before use; not thread safe, use once
+   * @throws TransformerConfigurationException if handler cannot be created
+   */
+  public static synchronized TransformerHandler newSaxonTransformerHandler(Templates templates)
+      throws TransformerConfigurationException
+  {
+    if (saxonHandlerFactory == null)
+      saxonHandlerFactory = new net.sf.saxon.TransformerFactoryImpl(getSaxonConfiguration());
+    return saxonHandlerFactory.newTransformerHandler(templates);
+  }
+
+  /**
+   * Compile commonly used stylesheets ahead of first use, reporting but otherwise ignoring failures.
+   */
+  public static void warmUp()
+  {
+    for (String stylesheet : WARM_UP_STYLESHEETS)
+    {
+      try {
+        getSaxonTemplates(stylesheet, false, null);
+      }
+      catch (IOException | TransformerConfigurationException ex) {
+        System.err.println("XsltTemplatesCache unable to precompile " + stylesheet + ": " + ex.getLocalizedMessage());
+      }
+    }
+  }
+
+  /** Discard all compiled stylesheets, for example after stylesheet resources are replaced */
+  public static void clear()
+  {
+    TEMPLATES_CACHE.clear();
+  }
+
+  /**
+   * Cache counts and total compilation time since startup, for diagnosing conversion performance
+   * @return hit, miss and compile time summary
+   */
+  public static String getStatistics()
+  {
+    return "XsltTemplatesCache: " + TEMPLATES_CACHE.size() + " stylesheets, " + cacheHits.sum() + " hits, "
+         + cacheMisses.sum() + " misses, " + compileNanos.sum() / 1000000 + " msec compiling";
+  }
+}
@@ -55,7 +55,8 @@ public class DTDValidationAction extends XmlValidationAction
   @Override
   public void performAction()
   {    
-        performValidationAntTask("validateSceneX3dDTD");
+        // in process with cached grammar, previously ant task "validateSceneX3dDTD"
+        performGrammarValidation(X3dGrammarValidator.Grammar.DTD);
   }
 
   @Override
@@ -54,9 +54,8 @@ public class SchemaValidationAction extends XmlValidationAction
   @Override
   public void performAction()
   {
-      // .xslt stylesheet, must match XmlValidationAction
-      // no, it's an ant task, give it's name
-      performValidationAntTask("validateSceneX3dSchema");// + stylesheetExtension);
+      // in process with cached grammar, previously ant task "validateSceneX3dSchema"
+      performGrammarValidation(X3dGrammarValidator.Grammar.SCHEMA);
   }
 
   @Override
@@ -33,19 +33,24 @@
  */
 package org.web3d.x3d.actions.qualityassurance;
 
-import java.io.*;
+import java.io.IOException;
 import javax.swing.JMenuItem;
+import javax.xml.transform.TransformerException;
 import org.openide.awt.ActionID;
 import org.openide.awt.ActionReference;
 import org.openide.awt.ActionReferences;
 import org.openide.awt.ActionRegistration;
+import org.openide.filesystems.FileObject;
+import org.openide.loaders.DataObject;
 import org.openide.util.HelpCtx;
 import org.openide.util.NbBundle;
 import org.openide.util.RequestProcessor;
 import org.openide.windows.IOProvider;
 import org.openide.windows.InputOutput;
 import org.openide.windows.OutputWriter;
+import org.web3d.x3d.InputOutputReporter;
 import org.web3d.x3d.X3DEditorSupport;
+import org.web3d.x3d.X3DTextSnapshot;
 import org.web3d.x3d.actions.conversions.BaseConversionsAction;
 
 @ActionID(id = "org.web3d.x3d.actions.qualityassurance.SchematronValidationAction", category = "X3D-Edit")
@@ -62,52 +67,53 @@ public class SchematronValidationAction extends BaseConversionsAction
   @Override
   public String transformSingleFile(X3DEditorSupport.X3dEditor ed)
   {
+    X3DTextSnapshot sceneText;
+    try {
+      sceneText = ed.getX3dEditorSupport().getTextSnapshot(); // includes unsaved edits, no save needed
+    }
+    catch (IOException ex) {
+      String title = NbBundle.getMessage(SchematronValidationAction.class, "Schematron_Result") + " (" + ed.getX3dEditorSupport().getDataObject().getPrimaryFile().getNameExt() + ")";
+      IOProvider.getDefault().getIO(title, true).getErr().println("Unable to read scene: " + ex.getLocalizedMessage());
+      return null;
+    }
     RequestProcessor rp = getReqProc();
     if(rp != null)
-      rp.post(new SchematronValidationRunner(ed));
+      rp.post(new SchematronValidationRunner(ed, sceneText));
     return null;
   }
 
   class SchematronValidationRunner implements Runnable
   {
     X3DEditorSupport.X3dEditor ed;
+    X3DTextSnapshot sceneText;
 
-    SchematronValidationRunner(X3DEditorSupport.X3dEditor ed)
+    SchematronValidationRunner(X3DEditorSupport.X3dEditor ed, X3DTextSnapshot sceneText)
     {
       this.ed = ed;
+      this.sceneText = sceneText;
     }
 
     @Override
     public void run()
     {
+      DataObject dataObject = ed.getX3dEditorSupport().getDataObject();
+      FileObject sceneFile  = dataObject.getPrimaryFile();
+      String title = NbBundle.getMessage(SchematronValidationAction.class, "Schematron_Result")+" ("+sceneFile.getNameExt()+")";
+      InputOutput iop = IOProvider.getDefault().getIO(title, true);
+      OutputWriter ow = iop.getOut();
       try {
-        File firstResultF = File.createTempFile(NbBundle.getMessage(SchematronValidationAction.class, "SchematronIntermediate"), ".svrl");//SchematronIntermediate", ".svrl");
-        RequestProcessor.Task task = xsltOneFile(ed, firstResultF, "Schematron/X3dSchematronValidityChecks.xslt", false, null, null);
-
-        if (task != null) {
-          task.waitFinished();
-
-          // 2nd pass
-          File f2out = File.createTempFile(NbBundle.getMessage(SchematronValidationAction.class, "SchematronReport"),".txt"); //SchematronReport", ".txt");
-
-          task = xsltOneFile(ed, firstResultF.getName(), new FileInputStream(firstResultF), f2out, "Schematron/SvrlReportText.xslt", false, null, NbBundle.getMessage(SchematronValidationAction.class, "SeeSchematronResults"));
-          if (task != null) {
-            task.waitFinished();
-            String title = NbBundle.getMessage(SchematronValidationAction.class, "Schematron_Result")+" ("+ed.getX3dEditorSupport().getDataObject().getPrimaryFile().getNameExt()+")";
-            InputOutput iop = IOProvider.getDefault().getIO(title, true);
-            OutputWriter ow = iop.getOut();
-            ow.println(NbBundle.getMessage(SchematronValidationAction.class, "BeginErrors"));
-              try (BufferedReader br = new BufferedReader(new FileReader(f2out))) {
-                  while (br.ready()) {
-                      ow.println(br.readLine());
-                  } 
-              }
-            ow.println(NbBundle.getMessage(SchematronValidationAction.class, "EndErrors"));
-          }
-        }
+        // SVRL collected in memory as hyperlinked diagnostics, so the SvrlReportText pass is not needed here
+        X3dSchematronValidator.Report report = X3dSchematronValidator.validate(sceneText, sceneText.getSystemId(), null, false);
+        ow.println(NbBundle.getMessage(SchematronValidationAction.class, "BeginErrors"));
+        for (X3dSchematronValidator.Diagnostic diagnostic : report.getDiagnostics())
+          InputOutputReporter.println(ow, diagnostic.toString(), dataObject, diagnostic.getLine(), diagnostic.getColumn());
+        ow.println(NbBundle.getMessage(SchematronValidationAction.class, "EndErrors"));
+      }
+      catch (IOException | TransformerException ex) {
+        iop.getErr().println(ex.getLocalizedMessage());
       }
-      catch (IOException iEx) {
-        System.err.println(iEx.getLocalizedMessage());
+      finally {
+        ow.close();
       }
       reqProc = null;
     }
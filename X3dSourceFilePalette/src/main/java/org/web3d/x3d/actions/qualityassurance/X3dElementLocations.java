@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 1995-2025 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *  * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.actions.qualityassurance;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * X3dElementLocations.java
+ * Created on October 18, 2026
+ *
+ * Compact index of element start positions, filled as a SAX content handler during a parse that is
+ * taking place anyway, so that XPath-style element locations (for example from Schematron SVRL)
+ * can later be mapped to scene line and column without parsing again.  Elements are held in
+ * document order as parallel int arrays; each entry records where its subtree ends, so a
+ * location step only visits siblings.  Safe to share between threads once the parse completes.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class X3dElementLocations extends DefaultHandler
+{
+  private final Map<String,Integer> nameIds = new HashMap<>();
+  private int[] nameId = new int[256];
+  private int[] end    = new int[256]; // index following last descendant
+  private int[] line   = new int[256];
+  private int[] column = new int[256];
+  private int   count;
+  private int[] open   = new int[64];  // indices of unclosed ancestors
+  private int   depth;
+  private Locator locator;
+
+  @Override
+  public void setDocumentLocator(Locator locator)
+  {
+    this.locator = locator;
+  }
+
+  @Override
+  public void startDocument()
+  {
+    nameIds.clear();
+    count = 0;
+    depth = 0;
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes atts)
+  {
+    if (count == nameId.length) {
+      nameId = Arrays.copyOf(nameId, count * 2);
+      end    = Arrays.copyOf(end,    count * 2);
+      line   = Arrays.copyOf(line,   count * 2);
+      column = Arrays.copyOf(column, count * 2);
+    }
+    String name = localName.isEmpty() ? qName : localName; // also usable by parsers that are not namespace aware
+    nameId[count] = nameIds.computeIfAbsent(name, key -> nameIds.size());
+    end   [count] = 0;
+    line  [count] = (locator != null) ? locator.getLineNumber()   : -1;
+    column[count] = (locator != null) ? locator.getColumnNumber() : -1;
+    if (depth == open.length)
+      open = Arrays.copyOf(open, depth * 2);
+    open[depth++] = count++;
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName)
+  {
+    end[open[--depth]] = count;
+  }
+
+  /** @return number of elements indexed */
+  public int size()
+  {
+    return count;
+  }
+
+  /**
+   * Find the start tag of an element
+   * @param path element steps with positions, as produced by X3dSchematronValidator.normalizeLocation, for example /X3D[1]/Scene[1]/Shape[3]
+   * @return line and column of end of start tag, or null if not found
+   */
+  public int[] find(String path)
+  {
+    int from = 0, to = count, found = -1;
+    for (String step : path.split("/")) {
+      if (step.isEmpty())
+        continue;
+      int bracket = step.indexOf('[');
+      Integer id = nameIds.get((bracket < 0) ? step : step.substring(0, bracket));
+      int position = (bracket < 0) ? 1 : Integer.parseInt(step.substring(bracket + 1, step.length() - 1));
+      if (id == null)
+        return null;
+      found = -1;
+      for (int i = from, seen = 0; i < to; i = (end[i] > i) ? end[i] : count) { // unclosed if parse failed part way
+        if ((nameId[i] == id) && (++seen == position)) {
+          found = i;
+          break;
+        }
+      }
+      if (found < 0)
+        return null;
+      from = found + 1;
+      to   = (end[found] > found) ? end[found] : count;
+    }
+    return (found < 0) ? null : new int[] {line[found], column[found]};
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 1995-2025 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *  * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.actions.qualityassurance;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
+import org.web3d.x3d.X3DCatalog;
+import org.web3d.x3d.X3DTextSnapshot;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * X3dGrammarValidator.java
+ * Created on October 18, 2026
+ *
+ * In-process DTD and X3D schema validation of scene text.  Parsers are pooled per thread
+ * and DTDs/schemas are resolved through X3DCatalog, which holds their contents in memory
+ * and shares one compiled Schema per X3D version, so only the first validation of a
+ * session pays for reading and compiling grammars.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class X3dGrammarValidator
+{
+  public enum Grammar { DTD, SCHEMA }
+
+  private static final Pattern X3D_VERSION_PATTERN = Pattern.compile("<X3D\\s[^>]*?version\\s*=\\s*['\"]([^'\"]+)['\"]");
+
+  /** validating DTD parser, one per thread, reused after each parse completes */
+  private static final ThreadLocal<XMLReader> dtdReader    = ThreadLocal.withInitial(() -> newReader(true,  false));
+  /** non-validating namespace-aware parser feeding schema validator, one per thread */
+  private static final ThreadLocal<XMLReader> schemaReader = ThreadLocal.withInitial(() -> newReader(false, true));
+
+  private static final DefaultHandler emptyHandler = new DefaultHandler();
+
+  private static XMLReader newReader(boolean validating, boolean namespaceAware)
+  {
+    try {
+      SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setValidating(validating);
+      factory.setNamespaceAware(namespaceAware);
+      XMLReader reader = factory.newSAXParser().getXMLReader();
+      reader.setEntityResolver(X3DCatalog.getInstance()); // DOCTYPE and includes from cached local copies
+      return reader;
+    }
+    catch (ParserConfigurationException | SAXException ex) {
+      throw new IllegalStateException("X3dGrammarValidator unable to create parser", ex);
+    }
+  }
+
+  /**
+   * @param sceneText X3D scene, such as an editor text snapshot
+   * @return value of X3D version attribute, or null if not found
+   */
+  public static String findX3dVersion(CharSequence sceneText)
+  {
+    Matcher matcher = X3D_VERSION_PATTERN.matcher(sceneText);
+    return matcher.find() ? matcher.group(1) : null;
+  }
+
+  /**
+   * Validate scene text, writing each problem found
+   * @param sceneText X3D scene, such as an editor text snapshot
+   * @param systemId location of scene, for messages and relative references
+   * @param grammar DTD or SCHEMA
+   * @param out receives problems and summary
+   * @return true if no errors found
+   */
+  public static boolean validate(CharSequence sceneText, String systemId, Grammar grammar, PrintWriter out)
+  {
+    long startTime = System.nanoTime();
+    CountingErrorHandler errorHandler = new CountingErrorHandler(out);
+    InputSource inputSource = new InputSource(X3DTextSnapshot.newReader(sceneText));
+    inputSource.setSystemId(systemId);
+    String grammarName = "DTD";
+    boolean cached = true;
+    try {
+      if (grammar == Grammar.SCHEMA) {
+        String x3dVersion = findX3dVersion(sceneText);
+        cached = X3DCatalog.isX3dSchemaCached(x3dVersion);
+        Schema schema = X3DCatalog.getX3dSchema(x3dVersion);
+        if (schema == null) {
+          out.println("Error: no X3D schema available for version='" + x3dVersion + "'");
+          return false;
+        }
+        grammarName = "x3d-" + x3dVersion + ".xsd";
+        XMLReader reader = schemaReader.get();
+        try {
+          Validator validator = schema.newValidator(); // cheap once schema is compiled; not thread safe
+          validator.setErrorHandler(errorHandler);
+          validator.setResourceResolver(X3DCatalog.getResourceResolver()); // replaces reader's entity resolver
+          validator.validate(new SAXSource(reader, inputSource));
+        }
+        finally {
+          resetReader(reader);
+        }
+      }
+      else {
+        XMLReader reader = dtdReader.get();
+        try {
+          reader.setErrorHandler(errorHandler);
+          reader.setContentHandler(emptyHandler);
+          reader.parse(inputSource);
+        }
+        finally {
+          resetReader(reader);
+        }
+      }
+    }
+    catch (SAXException ex) {
+      if (!(ex instanceof SAXParseException)) // parse exceptions already reported by error handler
+        errorHandler.report("Fatal", ex.getMessage(), -1, -1);
+      errorHandler.errorCount++;
+    }
+    catch (IOException ex) {
+      errorHandler.report("Fatal", ex.getMessage(), -1, -1);
+      errorHandler.errorCount++;
+    }
+    long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+    out.println(grammarName + " validation: " + ((errorHandler.errorCount == 0) ? "pass" : "fail!")
+        + ", " + errorHandler.errorCount + " errors, " + errorHandler.warningCount + " warnings, "
+        + elapsedMillis + " msec" + (cached ? "" : " (including grammar compilation)"));
+    return errorHandler.errorCount == 0;
+  }
+
+  private static void resetReader(XMLReader reader)
+  {
+    reader.setContentHandler(emptyHandler);
+    reader.setErrorHandler  (emptyHandler);
+  }
+
+  private static class CountingErrorHandler implements ErrorHandler
+  {
+    private final PrintWriter out;
+    int errorCount;
+    int warningCount;
+
+    CountingErrorHandler(PrintWriter out)
+    {
+      this.out = out;
+    }
+
+    void report(String severity, String message, int line, int column)
+    {
+      out.println(severity + ((line > 0) ? " [line " + line + ", column " + column + "]: " : ": ") + message);
+    }
+
+    @Override
+    public void warning(SAXParseException ex)
+    {
+      warningCount++;
+      report("Warning", ex.getMessage(), ex.getLineNumber(), ex.getColumnNumber());
+    }
+
+    @Override
+    public void error(SAXParseException ex)
+    {
+      errorCount++;
+      report("Error", ex.getMessage(), ex.getLineNumber(), ex.getColumnNumber());
+    }
+
+    @Override
+    public void fatalError(SAXParseException ex) throws SAXException
+    {
+      report("Fatal", ex.getMessage(), ex.getLineNumber(), ex.getColumnNumber());
+      throw ex; // not well formed, cannot continue
+    }
+  }
+}
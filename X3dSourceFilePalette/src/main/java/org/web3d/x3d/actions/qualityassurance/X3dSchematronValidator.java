@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 1995-2025 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *  * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.actions.qualityassurance;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import org.web3d.x3d.X3DCatalog;
+import org.web3d.x3d.X3DTextSnapshot;
+import org.web3d.x3d.actions.conversions.XsltTemplatesCache;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * X3dSchematronValidator.java
+ * Created on October 18, 2026
+ *
+ * In-process X3D Schematron validation.  The validity-checks stylesheet feeds its SVRL output
+ * as SAX events straight into the SvrlReportText stylesheet, so no intermediate file is written,
+ * while failed assertions and reports are collected on the way past as structured diagnostics.
+ * Diagnostics are then matched back to scene line and column numbers for hyperlinked output.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class X3dSchematronValidator
+{
+  public static final String VALIDITY_CHECKS_STYLESHEET = "Schematron/X3dSchematronValidityChecks.xslt";
+  public static final String REPORT_STYLESHEET          = "Schematron/SvrlReportText.xslt";
+
+  private static final String SVRL_NAMESPACE = "http://purl.oclc.org/dsdl/svrl";
+
+  /** namespace-aware parser for scene text, one per thread, reused after each parse completes */
+  private static final ThreadLocal<XMLReader> sceneReader = ThreadLocal.withInitial(X3dSchematronValidator::newReader);
+
+  private static final DefaultHandler emptyHandler = new DefaultHandler();
+
+  /** One failed assertion or successful report found in SVRL output */
+  public static class Diagnostic
+  {
+    private final String severity;
+    private final String ruleId;
+    private final String location;
+    private final String message;
+    private int line   = -1;
+    private int column = -1;
+
+    Diagnostic(String severity, String ruleId, String location, String message)
+    {
+      this.severity = severity;
+      this.ruleId   = ruleId;
+      this.location = location;
+      this.message  = message;
+    }
+
+    /** @return role of assertion, for example error, warning, hint or info */
+    public String getSeverity() { return severity; }
+    /** @return assertion id, else fired rule id or context */
+    public String getRuleId()   { return ruleId; }
+    /** @return XPath location of offending node */
+    public String getLocation() { return location; }
+    public String getMessage()  { return message; }
+    /** @return scene line number, or -1 if not located */
+    public int    getLine()     { return line; }
+    /** @return scene column number, or -1 if not located */
+    public int    getColumn()   { return column; }
+
+    public boolean isError()
+    {
+      return severity.equalsIgnoreCase("error") || severity.equalsIgnoreCase("fatal");
+    }
+
+    @Override
+    public String toString()
+    {
+      return severity + ((line > 0) ? " [line " + line + ", column " + column + "]" : "")
+           + (ruleId.isEmpty() ? "" : " " + ruleId) + ": " + message;
+    }
+  }
+
+  /** Outcome of one validation */
+  public static class Report
+  {
+    private final List<Diagnostic> diagnostics;
+    private final String           text;
+    private final long             nanos;
+
+    Report(List<Diagnostic> diagnostics, String text, long nanos)
+    {
+      this.diagnostics = Collections.unmodifiableList(diagnostics);
+      this.text        = text;
+      this.nanos       = nanos;
+    }
+
+    /** @return failed assertions and successful reports, in document order of SVRL output */
+    public List<Diagnostic> getDiagnostics() { return diagnostics; }
+    /** @return SvrlReportText output, or null if no text report was requested */
+    public String getText()  { return text; }
+    public long   getNanos() { return nanos; }
+
+    public int getErrorCount()
+    {
+      int count = 0;
+      for (Diagnostic diagnostic : diagnostics) {
+        if (diagnostic.isError())
+          count++;
+      }
+      return count;
+    }
+  }
+
+  private static XMLReader newReader()
+  {
+    try {
+      SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setNamespaceAware(true);
+      XMLReader reader = factory.newSAXParser().getXMLReader();
+      reader.setEntityResolver(X3DCatalog.getInstance()); // DOCTYPE from cached local copy, never the network
+      return reader;
+    }
+    catch (ParserConfigurationException | SAXException ex) {
+      throw new IllegalStateException("X3dSchematronValidator unable to create parser", ex);
+    }
+  }
+
+  /**
+   * Validate scene text with the X3D-Edit Schematron stylesheets, locating diagnostics by line
+   * @param sceneText X3D scene, such as an editor text snapshot
+   * @param systemId location of scene, for messages and relative references
+   * @param errorListener receives stylesheet diagnostics, may be null
+   * @param textReport whether to also run SvrlReportText, when the text itself is wanted
+   * @return diagnostics, and text report if requested
+   * @throws IOException if stylesheets cannot be read
+   * @throws TransformerException if stylesheets do not compile or the scene is not well formed
+   */
+  public static Report validate(CharSequence sceneText, String systemId, ErrorListener errorListener, boolean textReport)
+          throws IOException, TransformerException
+  {
+    URIResolver resolver = X3DCatalog.getInstance();
+    Templates checks = XsltTemplatesCache.getSaxonTemplates(VALIDITY_CHECKS_STYLESHEET, false, errorListener);
+    Templates report = textReport ? XsltTemplatesCache.getSaxonTemplates(REPORT_STYLESHEET, false, errorListener) : null;
+    InputSource inputSource = new InputSource(X3DTextSnapshot.newReader(sceneText));
+    inputSource.setSystemId(systemId);
+    XMLReader reader = sceneReader.get();
+    Report result;
+    try {
+      result = validate(new SAXSource(reader, inputSource), checks, report, resolver, errorListener);
+    }
+    finally {
+      reader.setContentHandler(emptyHandler); // pooled reader must not retain pipeline
+    }
+    locate(sceneText, result.getDiagnostics());
+    return result;
+  }
+
+  /**
+   * Validate a scene, chaining validity checks into text report in memory
+   * @param scene X3D scene source
+   * @param checks compiled validity-checks stylesheet producing SVRL
+   * @param reportTemplates compiled SVRL-to-text stylesheet, or null to collect diagnostics only
+   * @param uriResolver resolves stylesheet document() calls
+   * @param errorListener receives stylesheet diagnostics, may be null
+   * @return diagnostics (not yet located), and text report if reportTemplates given
+   * @throws TransformerException if either pass fails
+   */
+  public static Report validate(Source scene, Templates checks, Templates reportTemplates, URIResolver uriResolver, ErrorListener errorListener)
+          throws TransformerException
+  {
+    long startTime = System.nanoTime();
+    SvrlCollector collector = new SvrlCollector();
+    StringWriter text = null;
+    if (reportTemplates != null) {
+      text = new StringWriter();
+      TransformerHandler reportHandler = XsltTemplatesCache.newSaxonTransformerHandler(reportTemplates);
+      reportHandler.getTransformer().setURIResolver(uriResolver);
+      if (errorListener != null)
+        reportHandler.getTransformer().setErrorListener(errorListener);
+      reportHandler.setResult(new StreamResult(text));
+      collector.setContentHandler(reportHandler);
+    }
+    else
+      collector.setContentHandler(emptyHandler); // SVRL events stop here
+
+    Transformer transformer = checks.newTransformer(); // one per validation, transformers are not thread safe
+    transformer.setURIResolver(uriResolver);
+    if (errorListener != null)
+      transformer.setErrorListener(errorListener);
+    transformer.transform(scene, new SAXResult(collector));
+    return new Report(collector.diagnostics, (text != null) ? text.toString() : null, System.nanoTime() - startTime);
+  }
+
+  /** Passes SVRL events on to next stage, collecting failed-assert and successful-report elements */
+  private static class SvrlCollector extends XMLFilterImpl
+  {
+    final List<Diagnostic> diagnostics = new ArrayList<>();
+    private String        ruleId = "";
+    private Attributes    pending;      // attributes of open failed-assert or successful-report
+    private boolean       inText;
+    private StringBuilder message = new StringBuilder();
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+    {
+      if (SVRL_NAMESPACE.equals(uri)) {
+        switch (localName) {
+          case "fired-rule":
+            ruleId = firstNonEmpty(atts.getValue("id"), atts.getValue("context"));
+            break;
+          case "failed-assert":
+          case "successful-report":
+            pending = new org.xml.sax.helpers.AttributesImpl(atts);
+            message.setLength(0);
+            break;
+          case "text":
+            inText = (pending != null);
+            break;
+          default:
+            break;
+        }
+      }
+      super.startElement(uri, localName, qName, atts);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException
+    {
+      if (inText)
+        message.append(ch, start, length);
+      super.characters(ch, start, length);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException
+    {
+      if (SVRL_NAMESPACE.equals(uri)) {
+        if (localName.equals("text"))
+          inText = false;
+        else if ((pending != null) && (localName.equals("failed-assert") || localName.equals("successful-report"))) {
+          String defaultRole = localName.equals("failed-assert") ? "error" : "info";
+          diagnostics.add(new Diagnostic(firstNonEmpty(pending.getValue("role"), defaultRole),
+                                         firstNonEmpty(pending.getValue("id"), ruleId),
+                                         firstNonEmpty(pending.getValue("location"), ""),
+                                         message.toString().trim().replaceAll("\\s+", " ")));
+          pending = null;
+        }
+      }
+      super.endElement(uri, localName, qName);
+    }
+  }
+
+  private static String firstNonEmpty(String value, String fallback)
+  {
+    return ((value != null) && !value.isEmpty()) ? value : fallback;
+  }
+
+  /**
+   * Find scene line and column of each diagnostic location, parsing the scene only if any are present
+   * @param sceneText X3D scene, such as an editor text snapshot
+   * @param diagnostics from validate()
+   */
+  public static void locate(CharSequence sceneText, List<Diagnostic> diagnostics)
+  {
+    boolean locatable = false;
+    for (Diagnostic diagnostic : diagnostics)
+      locatable |= !normalizeLocation(diagnostic.getLocation()).isEmpty();
+    if (!locatable)
+      return;
+    X3dElementLocations locations = new X3dElementLocations();
+    XMLReader reader = sceneReader.get();
+    try {
+      reader.setContentHandler(locations);
+      reader.parse(new InputSource(X3DTextSnapshot.newReader(sceneText)));
+    }
+    catch (IOException | SAXException ex) {
+      System.err.println("X3dSchematronValidator unable to locate diagnostics: " + ex.getLocalizedMessage());
+    }
+    finally {
+      reader.setContentHandler(emptyHandler);
+    }
+    locate(locations, diagnostics);
+  }
+
+  /**
+   * Find scene line and column of each diagnostic location, using element positions already recorded
+   * @param locations filled during an earlier parse of the scene
+   * @param diagnostics from validate()
+   */
+  public static void locate(X3dElementLocations locations, List<Diagnostic> diagnostics)
+  {
+    for (Diagnostic diagnostic : diagnostics) {
+      String path = normalizeLocation(diagnostic.getLocation());
+      int[] found = path.isEmpty() ? null : locations.find(path);
+      if (found != null) {
+        diagnostic.line   = found[0];
+        diagnostic.column = found[1];
+      }
+    }
+  }
+
+  /**
+   * Reduce an SVRL location to element steps with explicit positions, for example
+   * /*:X3D[namespace-uri()=''][1]/*:Scene[namespace-uri()=''][1]/@DEF becomes /X3D[1]/Scene[1]
+   * @param location XPath from SVRL location attribute, in ISO skeleton or Saxon path() form
+   * @return normalized element path, or empty string if not an element path
+   */
+  static String normalizeLocation(String location)
+  {
+    if ((location == null) || !location.startsWith("/"))
+      return "";
+    StringBuilder path = new StringBuilder();
+    for (String step : location.substring(1).split("/")) {
+      if (step.startsWith("@") || step.contains("()") && !step.contains("namespace-uri()"))
+        break; // attribute, text() or other non-element step: locate owning element
+      String name = step;
+      if (name.startsWith("Q{")) // Saxon path() form, Q{uri}local[n]
+        name = name.substring(name.indexOf('}') + 1);
+      if (name.startsWith("*:"))
+        name = name.substring(2);
+      String position = "1";
+      int bracket = name.indexOf('[');
+      if (bracket >= 0) {
+        String predicates = name.substring(bracket);
+        name = name.substring(0, bracket);
+        for (String predicate : predicates.split("\\]")) {
+          String value = predicate.startsWith("[") ? predicate.substring(1) : predicate;
+          if (!value.isEmpty() && value.chars().allMatch(Character::isDigit))
+            position = value;
+        }
+      }
+      if (name.contains(":"))
+        name = name.substring(name.indexOf(':') + 1);
+      path.append('/').append(name).append('[').append(position).append(']');
+    }
+    return path.toString();
+  }
+}
@@ -36,7 +36,6 @@ package org.web3d.x3d.actions.qualityassurance;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import javax.swing.JMenuItem;
@@ -104,7 +103,7 @@ public final class X3dToX3dvClassicVrmlEncodingXsltErrorsAction extends BaseConv
 
         File resultF = File.createTempFile(mySrcFile.getName(), ".x3dv");
         String finishMsg = "Save contents of the "+mySrc.getName()+".x3dv tab to the location of your choice (right click->Save As...).";
-        RequestProcessor.Task task = xsltOneFile(x3dEditor, mySrc.getNameExt(), new FileInputStream(mySrcFile),
+        RequestProcessor.Task task = xsltOneFile(x3dEditor, mySrc.getNameExt(), x3dEditor.getX3dEditorSupport().getTextSnapshot().newStreamSource(),
                 resultF, "Schematron/X3dToX3dvClassicVrmlEncoding.xslt", false, null, finishMsg);
 
         if (task != null) {
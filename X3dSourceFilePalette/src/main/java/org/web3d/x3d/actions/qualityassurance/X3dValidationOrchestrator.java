@@ -0,0 +1,767 @@
+/*
+ * Copyright (c) 1995-2025 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *  * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.actions.qualityassurance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+import org.web3d.x3d.X3DCatalog;
+import org.web3d.x3d.X3DTextSnapshot;
+import org.web3d.x3d.actions.conversions.XsltTemplatesCache;
+import org.web3d.x3d.tools.X3dDoctypeChecker;
+import org.web3d.x3d.tools.X3dValuesRegexChecker;
+import org.xml.sax.Attributes;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.Attributes2;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * X3dValidationOrchestrator.java
+ * Created on October 18, 2026
+ *
+ * Runs the X3D quality assurance checks of ComprehensiveValidationAction with each scene read once.
+ * A single streaming parse checks well-formedness, DTD and X3D schema validity together while recording
+ * element positions; meanwhile the scene is parsed once more into a shared immutable Saxon tree, from which
+ * Schematron and ClassicVRML conversion checks then run concurrently.  DOCTYPE and regex value checks
+ * run alongside.  Diagnostics from all checks are merged in document order, and each stage is timed
+ * so that the critical path (and any regression in it) is visible.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class X3dValidationOrchestrator
+{
+  /** Units of work, each listed after the stages it depends on */
+  public enum Stage
+  {
+    READ         ("read scene"),
+    STREAMING    ("well-formed, DTD and schema validation", READ),
+    TREE         ("shared Saxon tree",                      READ),
+    DOCTYPE      ("DOCTYPE check",                          READ),
+    REGEX        ("regex values check",                     READ),
+    SCHEMATRON   ("Schematron check",                       TREE, STREAMING),
+    CLASSIC_VRML ("ClassicVRML conversion check",           TREE);
+
+    private final String  label;
+    private final Stage[] prerequisites;
+
+    Stage(String label, Stage... prerequisites)
+    {
+      this.label         = label;
+      this.prerequisites = prerequisites;
+    }
+
+    public String getLabel() { return label; }
+  }
+
+  /** Kinds of diagnostic, in the order ComprehensiveValidationAction has always reported them */
+  public enum Check
+  {
+    WELL_FORMED  ("Well-formed XML check",               Stage.STREAMING),
+    DOCTYPE      ("DOCTYPE check",                       Stage.DOCTYPE),
+    DTD          ("XML DTD validation",                  Stage.STREAMING),
+    SCHEMA       ("XML schema validation",               Stage.STREAMING),
+    REGEX        ("X3D regex check",                     Stage.REGEX),
+    CLASSIC_VRML ("X3dToX3dvClassicVrmlEncoding check",  Stage.CLASSIC_VRML),
+    SCHEMATRON   ("X3D Schematron check",                Stage.SCHEMATRON);
+
+    private final String label;
+    private final Stage  stage;
+
+    Check(String label, Stage stage)
+    {
+      this.label = label;
+      this.stage = stage;
+    }
+
+    public String getLabel() { return label; }
+    public Stage  getStage() { return stage; }
+  }
+
+  /** One problem or note from one check */
+  public static class Diagnostic
+  {
+    private final Check  check;
+    private final String severity;
+    private final int    line;
+    private final int    column;
+    private final String message;
+
+    Diagnostic(Check check, String severity, int line, int column, String message)
+    {
+      this.check    = check;
+      this.severity = severity;
+      this.line     = line;
+      this.column   = column;
+      this.message  = message;
+    }
+
+    public Check  getCheck()    { return check; }
+    /** @return error, fatal, warning or info */
+    public String getSeverity() { return severity; }
+    /** @return scene line number, or -1 if not located */
+    public int    getLine()     { return line; }
+    /** @return scene column number, or -1 if not located */
+    public int    getColumn()   { return column; }
+    public String getMessage()  { return message; }
+
+    public boolean isError()
+    {
+      return severity.equalsIgnoreCase("error") || severity.equalsIgnoreCase("fatal");
+    }
+
+    @Override
+    public String toString()
+    {
+      return check.getLabel() + " " + severity + ((line > 0) ? " [line " + line + ", column " + column + "]" : "") + ": " + message;
+    }
+  }
+
+  /** Merged diagnostics and stage timings of one validation */
+  public static class Result
+  {
+    private final List<Diagnostic> diagnostics;
+    private final EnumSet<Stage>   ran;
+    private final long[]           startNanos;
+    private final long[]           endNanos;
+
+    Result(List<Diagnostic> diagnostics, EnumSet<Stage> ran, long[] startNanos, long[] endNanos)
+    {
+      this.diagnostics = Collections.unmodifiableList(diagnostics);
+      this.ran         = ran;
+      this.startNanos  = startNanos;
+      this.endNanos    = endNanos;
+    }
+
+    /** @return all diagnostics in document order, those without a scene location first */
+    public List<Diagnostic> getDiagnostics() { return diagnostics; }
+
+    public boolean hasRun(Stage stage)
+    {
+      return ran.contains(stage);
+    }
+
+    public boolean hasRun(Check check)
+    {
+      return hasRun(check.getStage());
+    }
+
+    public int getErrorCount(Check check)
+    {
+      int count = 0;
+      for (Diagnostic diagnostic : diagnostics) {
+        if ((diagnostic.getCheck() == check) && diagnostic.isError())
+          count++;
+      }
+      return count;
+    }
+
+    /** @return elapsed time of stage, or 0 if it did not run */
+    public long getNanos(Stage stage)
+    {
+      return endNanos[stage.ordinal()] - startNanos[stage.ordinal()];
+    }
+
+    /** @return elapsed time from start of reading until last stage completed */
+    public long getTotalNanos()
+    {
+      long total = 0;
+      for (Stage stage : ran)
+        total = Math.max(total, endNanos[stage.ordinal()]);
+      return total;
+    }
+
+    /**
+     * Stages whose completion, each waiting on the one before, determined the total time
+     * @return stages from first to last
+     */
+    public List<Stage> getCriticalPath()
+    {
+      List<Stage> path = new ArrayList<>();
+      Stage last = null;
+      for (Stage stage : ran) {
+        if ((last == null) || (endNanos[stage.ordinal()] > endNanos[last.ordinal()]))
+          last = stage;
+      }
+      while (last != null) {
+        path.add(0, last);
+        Stage latest = null;
+        for (Stage prerequisite : last.prerequisites) {
+          if (ran.contains(prerequisite) && ((latest == null) || (endNanos[prerequisite.ordinal()] > endNanos[latest.ordinal()])))
+            latest = prerequisite;
+        }
+        last = latest;
+      }
+      return path;
+    }
+
+    /** @return one line per stage with start offset and elapsed time, then the critical path */
+    public String formatTimings()
+    {
+      StringBuilder sb = new StringBuilder();
+      for (Stage stage : ran)
+        sb.append(String.format("%-40s start %6.1f msec, elapsed %7.1f msec%n", stage.getLabel(),
+                                startNanos[stage.ordinal()] / 1e6, getNanos(stage) / 1e6));
+      sb.append("critical path: ");
+      List<Stage> path = getCriticalPath();
+      for (int i = 0; i < path.size(); i++)
+        sb.append((i > 0) ? " > " : "").append(path.get(i).getLabel());
+      sb.append(String.format(", %.1f msec total%n", getTotalNanos() / 1e6));
+      return sb.toString();
+    }
+  }
+
+  public static final String CLASSIC_VRML_STYLESHEET = "X3dTransforms/X3dToX3dvClassicVrmlEncoding.xslt";
+
+  private static final Pattern        LINE_PATTERN = Pattern.compile("\\bline\\s+(\\d+)", Pattern.CASE_INSENSITIVE);
+  private static final DefaultHandler emptyHandler = new DefaultHandler();
+
+  /** at most four stages run at once (streaming, tree, DOCTYPE and regex), so more threads would sit idle */
+  private static final int           STAGE_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+  private static final AtomicInteger stageThreadCount = new AtomicInteger();
+  /** shared by all orchestrators, so long XSLT stages never occupy the common ForkJoin pool used elsewhere in the IDE */
+  private static final ThreadPoolExecutor STAGE_EXECUTOR = new ThreadPoolExecutor(STAGE_THREADS, STAGE_THREADS, 30, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(), runnable ->
+  {
+    Thread thread = new Thread(runnable, "X3D-Edit validation stage " + stageThreadCount.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+  static
+  {
+    STAGE_EXECUTOR.allowCoreThreadTimeOut(true); // no idle threads kept between validations
+  }
+
+  private EnumSet<Stage> stages = EnumSet.allOf(Stage.class);
+  private Executor       executor = STAGE_EXECUTOR;
+  private File           stylesheetDirectory; // null means stylesheets installed with X3D-Edit
+  private EntityResolver entityResolver;      // null means X3DCatalog
+  private URIResolver    uriResolver;         // null means X3DCatalog
+
+  /** validating, namespace-aware parser for the streaming pass, one per thread */
+  private final ThreadLocal<XMLReader> streamingReader = ThreadLocal.withInitial(() -> newReader(true));
+  /** namespace-aware parser for building shared trees, one per thread */
+  private final ThreadLocal<XMLReader> treeReader      = ThreadLocal.withInitial(() -> newReader(false));
+
+  /** @param stages checks to run; stages they depend upon are run as well */
+  public void setStages(EnumSet<Stage> stages)
+  {
+    this.stages = EnumSet.copyOf(stages);
+  }
+
+  /** @param executor runs concurrent stages, or null for the bounded pool shared by all orchestrators */
+  public void setExecutor(Executor executor)
+  {
+    this.executor = (executor != null) ? executor : STAGE_EXECUTOR;
+  }
+
+  /** @param stylesheetDirectory operating system directory holding stylesheets, or null to use those installed with X3D-Edit */
+  public void setStylesheetDirectory(File stylesheetDirectory)
+  {
+    this.stylesheetDirectory = stylesheetDirectory;
+  }
+
+  /**
+   * @param entityResolver resolves DOCTYPE references, or null for X3DCatalog
+   * @param uriResolver resolves stylesheet includes and document() calls, or null for X3DCatalog
+   */
+  public void setResolvers(EntityResolver entityResolver, URIResolver uriResolver)
+  {
+    this.entityResolver = entityResolver;
+    this.uriResolver    = uriResolver;
+  }
+
+  private XMLReader newReader(boolean validating)
+  {
+    try {
+      SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setValidating(validating);
+      factory.setNamespaceAware(true);
+      XMLReader reader = factory.newSAXParser().getXMLReader();
+      reader.setEntityResolver((entityResolver != null) ? entityResolver : X3DCatalog.getInstance());
+      return reader;
+    }
+    catch (ParserConfigurationException | SAXException ex) {
+      throw new IllegalStateException("X3dValidationOrchestrator unable to create parser", ex);
+    }
+  }
+
+  private URIResolver resolver()
+  {
+    return (uriResolver != null) ? uriResolver : X3DCatalog.getInstance();
+  }
+
+  private Templates templates(String stylesheet, ErrorListener errorListener) throws IOException, TransformerException
+  {
+    if (stylesheetDirectory != null)
+      return XsltTemplatesCache.getSaxonTemplates(new File(stylesheetDirectory, stylesheet.substring(stylesheet.lastIndexOf('/') + 1)).getPath(),
+                                                  true, errorListener, resolver());
+    else
+      return XsltTemplatesCache.getSaxonTemplates(stylesheet, false, errorListener, resolver());
+  }
+
+  /**
+   * Validate a scene, reading it once and running independent checks concurrently
+   * @param scene X3D file
+   * @return merged diagnostics and stage timings
+   * @throws IOException if scene cannot be read
+   */
+  public Result validate(File scene) throws IOException
+  {
+    return validate(scene, null);
+  }
+
+  /**
+   * Validate editor text, including unsaved edits, without reading the scene file
+   * @param sceneText snapshot of editor text
+   * @return merged diagnostics and stage timings
+   * @throws IOException if a temporary copy for file-based checks cannot be written
+   */
+  public Result validate(X3DTextSnapshot sceneText) throws IOException
+  {
+    return validate(sceneText.getFile(), sceneText);
+  }
+
+  private Result validate(File scene, X3DTextSnapshot sceneText) throws IOException
+  {
+    EnumSet<Stage> needed = EnumSet.copyOf(stages);
+    needed.add(Stage.READ);
+    for (int i = Stage.values().length - 1; i >= 0; i--) { // prerequisites are always listed earlier
+      if (needed.contains(Stage.values()[i]))
+        needed.addAll(Arrays.asList(Stage.values()[i].prerequisites));
+    }
+    Run run = new Run(scene, (sceneText != null) ? sceneText.getSystemId() : scene.toURI().toString());
+    run.begin(Stage.READ);
+    run.sceneText = (sceneText != null) ? sceneText : X3DTextSnapshot.read(scene);
+    if ((needed.contains(Stage.DOCTYPE) || needed.contains(Stage.REGEX)) && ((scene == null) || run.sceneText.isModified()))
+      run.sceneCopy = copyForCheckers(run.sceneText, scene); // these checkers only read files
+    run.finish(Stage.READ);
+
+    CompletableFuture<X3dElementLocations> streaming = needed.contains(Stage.STREAMING) ? async(run::stream) : CompletableFuture.completedFuture(null);
+    CompletableFuture<Source>              tree      = needed.contains(Stage.TREE)      ? async(run::tree)   : CompletableFuture.completedFuture(null);
+    List<CompletableFuture<?>> pending = new ArrayList<>(List.of(streaming, tree));
+    if (needed.contains(Stage.DOCTYPE))
+      pending.add(async(run::doctype));
+    if (needed.contains(Stage.REGEX))
+      pending.add(async(run::regex));
+    if (needed.contains(Stage.SCHEMATRON)) // locating diagnostics waits for streaming pass, transformation does not
+      pending.add(tree.thenApplyAsync(run::schematron, executor).thenAcceptBoth(streaming, run::locate));
+    if (needed.contains(Stage.CLASSIC_VRML))
+      pending.add(tree.thenAcceptAsync(run::classicVrml, executor));
+    try {
+      CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+    }
+    catch (CompletionException ex) {
+      throw (ex.getCause() instanceof RuntimeException) ? (RuntimeException) ex.getCause() : ex;
+    }
+    finally {
+      if (run.sceneCopy != null) {
+        run.sceneCopy.delete();
+        run.sceneCopy.getParentFile().delete();
+      }
+    }
+    return run.result();
+  }
+
+  /** Temporary copy of unsaved text, named as the scene so that checker messages still refer to it */
+  private static File copyForCheckers(X3DTextSnapshot sceneText, File scene) throws IOException
+  {
+    File directory = Files.createTempDirectory("X3dValidation").toFile();
+    directory.deleteOnExit();
+    File copy = new File(directory, (scene != null) ? scene.getName() : "scene.x3d");
+    copy.deleteOnExit();
+    try (Writer writer = Files.newBufferedWriter(copy.toPath(), StandardCharsets.UTF_8)) {
+      sceneText.writeTo(writer);
+    }
+    return copy;
+  }
+
+  private <T> CompletableFuture<T> async(Supplier<T> stage)
+  {
+    return CompletableFuture.supplyAsync(stage, executor);
+  }
+
+  private CompletableFuture<Void> async(Runnable stage)
+  {
+    return CompletableFuture.runAsync(stage, executor);
+  }
+
+  /** State of one validation, shared by its stages */
+  private class Run
+  {
+    private final File   scene;
+    private final String systemId;
+    private final long   startTime = System.nanoTime();
+    private final long[] startNanos = new long[Stage.values().length];
+    private final long[] endNanos   = new long[Stage.values().length];
+    private final EnumSet<Stage>                 ran   = EnumSet.noneOf(Stage.class);
+    private final Map<Check,List<Diagnostic>>    found = new EnumMap<>(Check.class);
+    private       X3DTextSnapshot sceneText;
+    private       File   sceneCopy;
+    private volatile String treeFailure;
+
+    Run(File scene, String systemId)
+    {
+      this.scene    = scene;
+      this.systemId = systemId;
+    }
+
+    /** @return path of scene file for checkers that read files, a temporary copy if editor text is not saved */
+    String checkedPath()
+    {
+      return (sceneCopy != null) ? sceneCopy.getPath() : scene.getPath();
+    }
+
+    synchronized void begin(Stage stage)
+    {
+      ran.add(stage);
+      startNanos[stage.ordinal()] = System.nanoTime() - startTime;
+    }
+
+    synchronized void finish(Stage stage)
+    {
+      endNanos[stage.ordinal()] = System.nanoTime() - startTime;
+    }
+
+    synchronized void add(List<Diagnostic> diagnostics)
+    {
+      for (Diagnostic diagnostic : diagnostics)
+        found.computeIfAbsent(diagnostic.getCheck(), key -> new ArrayList<>()).add(diagnostic);
+    }
+
+    synchronized Result result()
+    {
+      List<Diagnostic> merged = new ArrayList<>();
+      for (List<Diagnostic> diagnostics : found.values()) // in Check order, which sort preserves for equal positions
+        merged.addAll(diagnostics);
+      merged.sort(Comparator.comparingInt((Diagnostic diagnostic) -> Math.max(diagnostic.getLine(), 0))
+                            .thenComparingInt(diagnostic -> Math.max(diagnostic.getColumn(), 0)));
+      return new Result(merged, EnumSet.copyOf(ran), startNanos.clone(), endNanos.clone());
+    }
+
+    private InputSource inputSource()
+    {
+      InputSource inputSource = new InputSource(sceneText.newReader());
+      inputSource.setSystemId(systemId);
+      return inputSource;
+    }
+
+    /** Single parse: well-formedness, DTD validity, schema validity and element positions */
+    X3dElementLocations stream()
+    {
+      begin(Stage.STREAMING);
+      List<Diagnostic> diagnostics = new ArrayList<>();
+      X3dElementLocations locations = new X3dElementLocations();
+      SpecifiedAttributesFilter filter = new SpecifiedAttributesFilter();
+      filter.setContentHandler(locations);
+      String x3dVersion = X3dGrammarValidator.findX3dVersion(sceneText);
+      try {
+        Schema schema = X3DCatalog.getX3dSchema(x3dVersion);
+        if (schema == null)
+          diagnostics.add(new Diagnostic(Check.SCHEMA, "error", -1, -1, "no X3D schema available for version='" + x3dVersion + "'"));
+        else {
+          ValidatorHandler validatorHandler = schema.newValidatorHandler(); // cheap once schema is compiled; not thread safe
+          validatorHandler.setErrorHandler(new Collector(Check.SCHEMA, Check.SCHEMA, diagnostics));
+          validatorHandler.setContentHandler(locations);
+          filter.setContentHandler(validatorHandler);
+        }
+      }
+      catch (SAXException ex) {
+        diagnostics.add(new Diagnostic(Check.SCHEMA, "error", -1, -1, "unable to compile X3D schema: " + ex.getMessage()));
+      }
+      XMLReader reader = streamingReader.get();
+      try {
+        reader.setContentHandler(filter);
+        reader.setErrorHandler(new Collector(Check.DTD, Check.WELL_FORMED, diagnostics));
+        reader.parse(inputSource());
+      }
+      catch (SAXParseException ex) {
+        // already reported by error handler
+      }
+      catch (SAXException | IOException ex) {
+        diagnostics.add(new Diagnostic(Check.WELL_FORMED, "fatal", -1, -1, ex.getMessage()));
+      }
+      finally {
+        reader.setContentHandler(emptyHandler); // pooled reader must not retain pipeline
+        reader.setErrorHandler  (emptyHandler);
+      }
+      add(diagnostics);
+      finish(Stage.STREAMING);
+      return locations;
+    }
+
+    /** Second parse, into the immutable tree shared by stylesheet checks */
+    Source tree()
+    {
+      begin(Stage.TREE);
+      Source tree = null;
+      XMLReader reader = treeReader.get();
+      try {
+        tree = XsltTemplatesCache.buildSaxonTree(new SAXSource(reader, inputSource()));
+      }
+      catch (TransformerException ex) {
+        treeFailure = ex.getMessage(); // well-formedness errors are reported by streaming pass
+      }
+      finally {
+        reader.setContentHandler(emptyHandler);
+      }
+      finish(Stage.TREE);
+      return tree;
+    }
+
+    void doctype()
+    {
+      begin(Stage.DOCTYPE);
+      List<Diagnostic> diagnostics = new ArrayList<>();
+      String log;
+      synchronized (X3dDoctypeChecker.class) { // checker keeps static state
+        log = new X3dDoctypeChecker().processScene(checkedPath());
+      }
+      if (log.contains(X3dDoctypeChecker.errorToken) || log.contains(X3dDoctypeChecker.warningToken)) {
+        for (String s : log.split("\n")) {
+          if (!s.isBlank())
+            diagnostics.add(new Diagnostic(Check.DOCTYPE, s.contains(X3dDoctypeChecker.errorToken) ? "error" :
+                                                          s.contains(X3dDoctypeChecker.warningToken) ? "warning" : "info", -1, -1, s.trim()));
+        }
+      }
+      else if (!log.isBlank())
+        diagnostics.add(new Diagnostic(Check.DOCTYPE, "info", -1, -1, log.trim()));
+      add(diagnostics);
+      finish(Stage.DOCTYPE);
+    }
+
+    void regex()
+    {
+      begin(Stage.REGEX);
+      List<Diagnostic> diagnostics = new ArrayList<>();
+      for (String s : new X3dValuesRegexChecker(checkedPath()).processScene().split("\n")) {
+        if (s.isBlank())
+          continue;
+        Matcher matcher = LINE_PATTERN.matcher(s);
+        int line = matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+        diagnostics.add(new Diagnostic(Check.REGEX, s.toLowerCase().contains("warning") ? "warning" : "error", line, -1, s.trim()));
+      }
+      add(diagnostics);
+      finish(Stage.REGEX);
+    }
+
+    List<X3dSchematronValidator.Diagnostic> schematron(Source tree)
+    {
+      begin(Stage.SCHEMATRON);
+      List<Diagnostic> diagnostics = new ArrayList<>();
+      List<X3dSchematronValidator.Diagnostic> svrl = Collections.emptyList();
+      if (tree == null)
+        diagnostics.add(new Diagnostic(Check.SCHEMATRON, "info", -1, -1, "skipped, scene tree not available: " + treeFailure));
+      else {
+        try {
+          Collector errorListener = new Collector(Check.SCHEMATRON, Check.SCHEMATRON, diagnostics);
+          svrl = X3dSchematronValidator.validate(tree, templates(X3dSchematronValidator.VALIDITY_CHECKS_STYLESHEET, errorListener),
+                                                 null, resolver(), errorListener).getDiagnostics(); // text report not shown
+        }
+        catch (IOException | TransformerException ex) {
+          diagnostics.add(new Diagnostic(Check.SCHEMATRON, "error", -1, -1, ex.getMessage()));
+        }
+      }
+      add(diagnostics);
+      finish(Stage.SCHEMATRON);
+      return svrl;
+    }
+
+    /** Map Schematron diagnostics to scene lines using positions recorded by the streaming pass */
+    void locate(List<X3dSchematronValidator.Diagnostic> svrl, X3dElementLocations locations)
+    {
+      X3dSchematronValidator.locate(locations, svrl);
+      List<Diagnostic> diagnostics = new ArrayList<>();
+      for (X3dSchematronValidator.Diagnostic diagnostic : svrl)
+        diagnostics.add(new Diagnostic(Check.SCHEMATRON, diagnostic.getSeverity(), diagnostic.getLine(), diagnostic.getColumn(),
+                                       (diagnostic.getRuleId().isEmpty() ? "" : diagnostic.getRuleId() + ": ") + diagnostic.getMessage()));
+      add(diagnostics);
+      finish(Stage.SCHEMATRON);
+    }
+
+    /** ClassicVRML conversion, output discarded, reporting any stylesheet diagnostics */
+    void classicVrml(Source tree)
+    {
+      begin(Stage.CLASSIC_VRML);
+      List<Diagnostic> diagnostics = new ArrayList<>();
+      if (tree == null)
+        diagnostics.add(new Diagnostic(Check.CLASSIC_VRML, "info", -1, -1, "skipped, scene tree not available: " + treeFailure));
+      else {
+        try {
+          Collector errorListener = new Collector(Check.CLASSIC_VRML, Check.CLASSIC_VRML, diagnostics);
+          Transformer transformer = templates(CLASSIC_VRML_STYLESHEET, errorListener).newTransformer(); // not thread safe, one per run
+          transformer.setURIResolver(resolver());
+          transformer.setErrorListener(errorListener);
+          transformer.transform(tree, new StreamResult(Writer.nullWriter()));
+        }
+        catch (IOException | TransformerException ex) {
+          diagnostics.add(new Diagnostic(Check.CLASSIC_VRML, "error", -1, -1, ex.getMessage()));
+        }
+      }
+      add(diagnostics);
+      finish(Stage.CLASSIC_VRML);
+    }
+  }
+
+  /** Collects parser, validator and stylesheet problems as diagnostics of one check */
+  private static class Collector implements ErrorHandler, ErrorListener
+  {
+    private final Check            check;
+    private final Check            fatalCheck;
+    private final List<Diagnostic> diagnostics;
+
+    Collector(Check check, Check fatalCheck, List<Diagnostic> diagnostics)
+    {
+      this.check       = check;
+      this.fatalCheck  = fatalCheck;
+      this.diagnostics = diagnostics;
+    }
+
+    private void add(Check kind, String severity, SAXParseException ex)
+    {
+      diagnostics.add(new Diagnostic(kind, severity, ex.getLineNumber(), ex.getColumnNumber(), ex.getMessage()));
+    }
+
+    @Override
+    public void warning(SAXParseException ex)
+    {
+      add(check, "warning", ex);
+    }
+
+    @Override
+    public void error(SAXParseException ex)
+    {
+      add(check, "error", ex);
+    }
+
+    @Override
+    public void fatalError(SAXParseException ex) throws SAXException
+    {
+      add(fatalCheck, "fatal", ex);
+      throw ex; // not well formed, cannot continue
+    }
+
+    // stylesheet locations refer to the stylesheet rather than the scene, so are kept in message text
+
+    @Override
+    public void warning(TransformerException ex)
+    {
+      diagnostics.add(new Diagnostic(check, "warning", -1, -1, ex.getMessageAndLocation()));
+    }
+
+    @Override
+    public void error(TransformerException ex)
+    {
+      diagnostics.add(new Diagnostic(check, "error", -1, -1, ex.getMessageAndLocation()));
+    }
+
+    @Override
+    public void fatalError(TransformerException ex) throws TransformerException
+    {
+      diagnostics.add(new Diagnostic(fatalCheck, "fatal", -1, -1, ex.getMessageAndLocation()));
+      throw ex;
+    }
+  }
+
+  /**
+   * Drops attributes defaulted by the DTD before schema validation, so that the schema
+   * judges only what the author wrote, as separate DTD and schema validation would
+   */
+  private static class SpecifiedAttributesFilter extends XMLFilterImpl
+  {
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+    {
+      if (atts instanceof Attributes2) {
+        Attributes2 attributes2 = (Attributes2) atts;
+        AttributesImpl specified = null;
+        for (int i = 0; i < atts.getLength(); i++) {
+          if (!attributes2.isSpecified(i) && (specified == null)) {
+            specified = new AttributesImpl();
+            for (int j = 0; j < i; j++)
+              specified.addAttribute(atts.getURI(j), atts.getLocalName(j), atts.getQName(j), atts.getType(j), atts.getValue(j));
+          }
+          else if (attributes2.isSpecified(i) && (specified != null))
+            specified.addAttribute(atts.getURI(i), atts.getLocalName(i), atts.getQName(i), atts.getType(i), atts.getValue(i));
+        }
+        if (specified != null)
+          atts = specified;
+      }
+      super.startElement(uri, localName, qName, atts);
+    }
+  }
+}
@@ -45,13 +45,18 @@ import org.openide.execution.ExecutorTask;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 import org.openide.util.HelpCtx;
+import org.openide.util.RequestProcessor;
 import org.openide.util.actions.CallableSystemAction;
+import org.openide.windows.IOProvider;
+import org.openide.windows.InputOutput;
 import org.openide.windows.Mode;
 import org.openide.windows.OutputWriter;
 import org.openide.windows.TopComponent;
 import org.openide.windows.WindowManager;
+import org.web3d.x3d.X3DCatalog;
 import org.web3d.x3d.X3DDataObject;
 import org.web3d.x3d.X3DEditorSupport;
+import org.web3d.x3d.X3DTextSnapshot;
 
 /**
  *
@@ -214,6 +219,56 @@ abstract public class XmlValidationAction extends CallableSystemAction {
         }
     }
 
+    /** single worker so that its pooled parsers are reused by successive validations */
+    private static final RequestProcessor validationProcessor = new RequestProcessor("X3D-Edit validation", 1);
+
+    /**
+     * Validate the selected scene in process, using grammars cached by X3DCatalog
+     * rather than launching an ant task, with results in the QA output tab
+     * @param grammar DTD or SCHEMA
+     * @return whether validation was started
+     */
+    public boolean performGrammarValidation(X3dGrammarValidator.Grammar grammar)
+    {
+        Mode m = WindowManager.getDefault().findMode("editor"); // noi18n
+        TopComponent selectedOne = m.getSelectedTopComponent();
+        if ((selectedOne == null) || !(selectedOne instanceof X3DEditorSupport.X3dEditor))
+        {
+            return false; // selected file (if any) is not X3D, and so do not test
+        }
+        X3DEditorSupport.X3dEditor x3dEditor = (X3DEditorSupport.X3dEditor) selectedOne;
+        if (x3dEditor.getEditorPane() == null)
+        {
+            return false;
+        }
+        X3DDataObject x3dDataObject = (X3DDataObject) x3dEditor.getX3dEditorSupport().getDataObject();
+        final X3DTextSnapshot sceneText;
+        try
+        {
+            sceneText = x3dEditor.getX3dEditorSupport().getTextSnapshot(); // includes unsaved edits
+        }
+        catch (IOException ex)
+        {
+            IOProvider.getDefault().getIO("X3D Quality Assurance (QA)", false).getErr()
+                    .println("Unable to read scene for " + grammar + " validation: " + ex.getLocalizedMessage());
+            return false;
+        }
+        final String fileName  = x3dDataObject.getPrimaryFile().getNameExt();
+        final String systemId  = sceneText.getSystemId();
+
+        validationProcessor.post(() -> {
+            InputOutput io = IOProvider.getDefault().getIO("X3D Quality Assurance (QA)", false);
+            io.select();
+            OutputWriter ow = io.getOut();
+            ow.println("--------- X3D " + grammar + " validation for " + fileName + " ---------");
+            X3dGrammarValidator.validate(sceneText, systemId, grammar, ow);
+            ow.println(X3DCatalog.getResolutionStatistics());
+            ow.println();
+            ow.flush();
+        });
+        return true;
+    }
+
     @Override
     protected void initialize() {
         super.initialize();
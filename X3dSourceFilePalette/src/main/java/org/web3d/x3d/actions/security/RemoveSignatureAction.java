@@ -115,7 +115,7 @@ public final class RemoveSignatureAction extends BaseX3DEditAction
      X3DPaletteUtilitiesJdom.buildJdom(documentEditorPane);
      ElementLocation rootLoc = X3DPaletteUtilitiesJdom.findNamedElement(documentEditorPane, "X3D", "");
      if(rootLoc != null) {
-       org.jdom.Element elm    = rootLoc.element;
+       org.jdom.Element elm    = (org.jdom.Element) rootLoc.element.clone(); // snapshot element is shared with other readers
        org.jdom.Namespace nmsp = elm.getNamespace("ds");
        elm.removeNamespaceDeclaration(nmsp);      
        String newElem =  new X3DXMLOutputter().outputString(elm);
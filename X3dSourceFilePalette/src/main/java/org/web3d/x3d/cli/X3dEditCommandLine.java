@@ -0,0 +1,453 @@
+/*
+* Copyright (c) 1995-2023 held by the author(s).  All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+*  * Redistributions of source code must retain the above copyright
+*       notice, this list of conditions and the following disclaimer.
+*  * Redistributions in binary form must reproduce the above copyright
+*       notice, this list of conditions and the following disclaimer
+*       in the documentation and/or other materials provided with the
+*       distribution.
+*  * Neither the names of the Naval Postgraduate School (NPS)
+*       Modeling Virtual Environments and Simulation (MOVES) Institute
+*       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+*       nor the names of its contributors may be used to endorse or
+*       promote products derived from this software without specific
+*       prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+* "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+* LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+* FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+* COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+* INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+* BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+* LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+* LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+* ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.web3d.x3d.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.web3d.x3d.X3DCatalog;
+import org.web3d.x3d.actions.conversions.BatchConversionEngine;
+import org.web3d.x3d.actions.conversions.BatchConversionEngine.Conversion;
+import org.web3d.x3d.actions.conversions.CadFilterHelper;
+import org.web3d.x3d.actions.conversions.XsltTemplatesCache;
+import org.web3d.x3d.hanim.bvh.BvhParser;
+import org.web3d.x3d.hanim.bvh.Hierarchy;
+
+/**
+ * X3dEditCommandLine.java
+ * Created on October 18, 2026
+ *
+ * Headless runner for X3D-Edit conversions and quality checks, so that large scene archives can be
+ * processed in one JVM from scripts or continuous integration without starting the NetBeans platform.
+ * Uses BatchConversionEngine for stylesheet conversions, Schematron, DTD and schema validation,
+ * canonicalization, gzip and Xj3D CAD filtering, and BvhParser for BVH motion capture import.
+ * Stylesheets, DTDs and schemas are read from the X3D-Edit module jar on the classpath, compiled once
+ * and shared by all worker threads through XsltTemplatesCache and X3DCatalog.
+ *
+ * Example:
+ * <pre>
+ * java -cp "X3dSourceFilePalette.jar:ext/*:..." org.web3d.x3d.cli.X3dEditCommandLine \
+ *      --convert json,classicvrml --check schema,schematron --threads 8 --report report.txt archives/
+ * </pre>
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class X3dEditCommandLine
+{
+    static final String USAGE =
+        "usage: X3dEditCommandLine [options] scene.x3d | motion.bvh | directory ...\n" +
+        "  --convert list      json, classicvrml, tidy, html, c14n, gzip (gzip also compresses .x3dv and .wrl files)\n" +
+        "  --check list        dtd, schema, schematron\n" +
+        "  --cadfilter list    Xj3D CAD filters in order, for example IFSToITS,Center (Identity if list is empty)\n" +
+        "  --bvh               also convert .bvh motion capture files found in directories to .x3d\n" +
+        "  --threads n         parallel tasks (default: processors - 1)\n" +
+        "  --gzip-level n      gzip compression level 0 (none) to 9 (best), default 6\n" +
+        "  --output dir        write results to dir rather than alongside each scene\n" +
+        "  --stylesheets dir   use stylesheets from dir rather than those packaged with X3D-Edit\n" +
+        "  --report file       write summary report to file rather than standard output\n" +
+        "  --quiet             omit per-task progress messages\n" +
+        "exit status 0 if all tasks succeed, 1 if any task fails, 2 for usage errors";
+
+    /** Parsed command-line options */
+    static final class Options
+    {
+        final Set<Conversion> conversions = EnumSet.noneOf(Conversion.class);
+        final List<String>    cadFilters  = new ArrayList<>();
+        final List<File>      paths       = new ArrayList<>();
+        int     threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        int     gzipLevel = -1; // Deflater.DEFAULT_COMPRESSION
+        File    outputDirectory;
+        File    stylesheetDirectory;
+        File    reportFile;
+        boolean bvh;
+        boolean quiet;
+    }
+
+    private X3dEditCommandLine()
+    {
+        // static methods only
+    }
+
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Run conversions and checks as given by command-line arguments
+     * @param args command-line arguments
+     * @param out receives progress and report
+     * @param err receives usage and failure messages
+     * @return process exit status
+     */
+    static int run(String[] args, PrintStream out, PrintStream err)
+    {
+        Options options;
+        List<File> scenes;
+        List<File> motions;
+        try {
+            options = parseOptions(args);
+            scenes  = new ArrayList<>();
+            motions = new ArrayList<>();
+            for (File path : options.paths)
+            {
+                if (path.isDirectory())
+                {
+                    scenes.addAll(BatchConversionEngine.findScenes(path, options.conversions.contains(Conversion.GZIP)));
+                    if (options.bvh)
+                        motions.addAll(findMotions(path));
+                }
+                else if (isMotionFile(path))
+                    motions.add(path);
+                else if (path.isFile())
+                    scenes.add(path);
+                else
+                    throw new IllegalArgumentException("not found: " + path);
+            }
+        }
+        catch (IllegalArgumentException ex) {
+            err.println(ex.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        catch (IOException ex) {
+            err.println("Unable to list scenes: " + ex.getLocalizedMessage());
+            return 2;
+        }
+
+        long startTime = System.nanoTime();
+        int failures = 0;
+        List<File> sources = new ArrayList<>(scenes);
+        sources.addAll(motions);
+        java.nio.file.Path sourceRoot = BatchConversionEngine.commonDirectory(sources); // mirrored under --output for scenes and motions alike
+        List<String> motionLines = new ArrayList<>();
+        if (!motions.isEmpty()) // first, so that converted motions also get any requested conversions and checks
+        {
+            failures += convertMotions(motions, options, sourceRoot, scenes, motionLines);
+            if (!options.quiet)
+                out.println(motions.size() + " BVH motion files converted, " + failures + " failed");
+        }
+        List<BatchConversionEngine.Result> results = Collections.emptyList();
+        if (!options.conversions.isEmpty() && !scenes.isEmpty())
+        {
+            BatchConversionEngine engine = new BatchConversionEngine();
+            engine.setParallelism(options.threads);
+            engine.setGzipLevel(options.gzipLevel);
+            engine.setOutputDirectory(options.outputDirectory);
+            engine.setSourceDirectory((sourceRoot != null) ? sourceRoot.toFile() : null);
+            engine.setStylesheetDirectory(options.stylesheetDirectory);
+            if (!options.cadFilters.isEmpty())
+                engine.setCadFilters(options.cadFilters.toArray(new String[0]),
+                                     new String[] { CadFilterHelper.XJ3D_FILTERARG_LOGLEVEL, "WARNING" });
+            engine.setProgressListener(options.quiet ? message -> { } : out::println);
+            try {
+                results = engine.run(scenes, options.conversions);
+            }
+            catch (InterruptedException ex) {
+                err.println("Interrupted");
+                Thread.currentThread().interrupt();
+                return 1;
+            }
+            for (BatchConversionEngine.Result result : results)
+            {
+                if (!result.isSuccess())
+                    failures++;
+            }
+        }
+        StringBuilder report = new StringBuilder(BatchConversionEngine.formatReport(results, System.nanoTime() - startTime));
+        for (String line : motionLines)
+            report.append(line).append('\n');
+        report.append(XsltTemplatesCache.getStatistics()).append('\n');
+        report.append(X3DCatalog.getResolutionStatistics()).append('\n');
+
+        if (options.reportFile != null)
+        {
+            try {
+                Files.writeString(options.reportFile.toPath(), report, StandardCharsets.UTF_8);
+                out.println("Report written to " + options.reportFile.getPath());
+            }
+            catch (IOException ex) {
+                err.println("Unable to write report " + options.reportFile.getPath() + ": " + ex.getLocalizedMessage());
+                out.print(report);
+            }
+        }
+        else
+            out.print(report);
+        return (failures == 0) ? 0 : 1;
+    }
+
+    /**
+     * @param args command-line arguments
+     * @return parsed options
+     * @throws IllegalArgumentException for unknown options or values
+     */
+    static Options parseOptions(String[] args)
+    {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++)
+        {
+            String arg = args[i];
+            switch (arg)
+            {
+                case "--convert":
+                    for (String name : splitList(value(args, ++i, arg)))
+                        options.conversions.add(conversionForName(name, false));
+                    break;
+                case "--check":
+                    for (String name : splitList(value(args, ++i, arg)))
+                        options.conversions.add(conversionForName(name, true));
+                    break;
+                case "--cadfilter":
+                    options.conversions.add(Conversion.CAD_FILTER);
+                    options.cadFilters.addAll(splitList(value(args, ++i, arg)));
+                    break;
+                case "--bvh":
+                    options.bvh = true;
+                    break;
+                case "--threads":
+                    try {
+                        options.threads = Integer.parseInt(value(args, ++i, arg));
+                    }
+                    catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("--threads requires a number: " + args[i]);
+                    }
+                    if (options.threads < 1)
+                        throw new IllegalArgumentException("--threads must be at least 1");
+                    break;
+                case "--gzip-level":
+                    try {
+                        options.gzipLevel = Integer.parseInt(value(args, ++i, arg));
+                    }
+                    catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("--gzip-level requires a number: " + args[i]);
+                    }
+                    if ((options.gzipLevel < 0) || (options.gzipLevel > 9))
+                        throw new IllegalArgumentException("--gzip-level must be 0 to 9");
+                    break;
+                case "--output":
+                    options.outputDirectory = new File(value(args, ++i, arg));
+                    if (!options.outputDirectory.isDirectory())
+                        throw new IllegalArgumentException("--output directory not found: " + args[i]);
+                    break;
+                case "--stylesheets":
+                    options.stylesheetDirectory = new File(value(args, ++i, arg));
+                    if (!options.stylesheetDirectory.isDirectory())
+                        throw new IllegalArgumentException("--stylesheets directory not found: " + args[i]);
+                    break;
+                case "--report":
+                    options.reportFile = new File(value(args, ++i, arg));
+                    break;
+                case "--quiet":
+                    options.quiet = true;
+                    break;
+                default:
+                    if (arg.startsWith("--"))
+                        throw new IllegalArgumentException("unknown option " + arg);
+                    options.paths.add(new File(arg));
+                    break;
+            }
+        }
+        if (options.paths.isEmpty())
+            throw new IllegalArgumentException("no scenes, motion files or directories given");
+        return options;
+    }
+
+    private static String value(String[] args, int index, String option)
+    {
+        if (index >= args.length)
+            throw new IllegalArgumentException(option + " requires a value");
+        return args[index];
+    }
+
+    private static List<String> splitList(String list)
+    {
+        List<String> names = new ArrayList<>();
+        for (String name : list.split(","))
+        {
+            if (!name.isBlank())
+                names.add(name.trim());
+        }
+        return names;
+    }
+
+    /**
+     * @param name short name from command line, or Conversion name
+     * @param check whether name was given to --check rather than --convert
+     * @return corresponding conversion
+     */
+    static Conversion conversionForName(String name, boolean check)
+    {
+        String key = name.toLowerCase(Locale.ROOT).replace("-", "").replace("_", "");
+        if (check)
+        {
+            switch (key)
+            {
+                case "dtd":        return Conversion.DTD_VALIDATION;
+                case "schema":
+                case "xsd":        return Conversion.SCHEMA_VALIDATION;
+                case "schematron": return Conversion.SCHEMATRON;
+                default:           throw new IllegalArgumentException("unknown check " + name);
+            }
+        }
+        switch (key)
+        {
+            case "json":          return Conversion.JSON;
+            case "classicvrml":
+            case "x3dv":          return Conversion.CLASSIC_VRML;
+            case "tidy":          return Conversion.TIDY;
+            case "html":          return Conversion.HTML_DOCUMENTATION;
+            case "c14n":          return Conversion.C14N;
+            case "gzip":          return Conversion.GZIP;
+            default:              throw new IllegalArgumentException("unknown conversion " + name);
+        }
+    }
+
+    private static boolean isMotionFile(File file)
+    {
+        return file.getName().toLowerCase(Locale.ROOT).endsWith(".bvh");
+    }
+
+    private static List<File> findMotions(File root) throws IOException
+    {
+        try (Stream<java.nio.file.Path> paths = Files.walk(root.toPath()))
+        {
+            return paths.map(java.nio.file.Path::toFile)
+                        .filter(file -> file.isFile() && isMotionFile(file))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Convert BVH motion capture files to X3D HAnim scenes in parallel, problems reported but not fatal
+     * @param motions BVH files
+     * @param options output directory and parallelism
+     * @param sourceRoot directory whose subdirectories are recreated under the output directory, or null
+     * @param scenes receives each converted scene
+     * @param reportLines receives one line per motion file
+     * @return count of failed conversions
+     */
+    static int convertMotions(List<File> motions, Options options, java.nio.file.Path sourceRoot, List<File> scenes, List<String> reportLines)
+    {
+        ForkJoinPool pool = new ForkJoinPool(options.threads);
+        try {
+            List<String> lines = pool.submit(() -> motions.parallelStream().map(motion -> convertMotion(motion, options.outputDirectory, sourceRoot))
+                                                                           .collect(Collectors.toList())).get();
+            int failures = 0;
+            for (int i = 0; i < motions.size(); i++)
+            {
+                reportLines.add(lines.get(i));
+                if (lines.get(i).contains("***"))
+                    failures++;
+                else
+                {
+                    File scene = motionScene(motions.get(i), options.outputDirectory, sourceRoot);
+                    File inPlace = motionScene(motions.get(i), null, null);
+                    if (scenes.stream().noneMatch(found -> found.getAbsoluteFile().equals(scene))) // found if converted by an earlier run
+                    {
+                        scenes.removeIf(found -> found.getAbsoluteFile().equals(inPlace)); // earlier run without --output, superseded
+                        scenes.add(scene);
+                    }
+                }
+            }
+            return failures;
+        }
+        catch (InterruptedException | ExecutionException ex) {
+            reportLines.add("BVH conversion interrupted: " + ex);
+            return motions.size();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** @return scene converted from motion, under outputDirectory at the motion's path relative to sourceRoot, as batch results are */
+    private static File motionScene(File motion, File outputDirectory, java.nio.file.Path sourceRoot)
+    {
+        String name = motion.getName().substring(0, motion.getName().length() - 4);
+        File directory = motion.getAbsoluteFile().getParentFile();
+        if (outputDirectory != null)
+        {
+            java.nio.file.Path motionDirectory = directory.toPath().normalize();
+            java.nio.file.Path relative = ((sourceRoot != null) && motionDirectory.startsWith(sourceRoot)) ? sourceRoot.relativize(motionDirectory)
+                                                                                                         : motionDirectory.getRoot().relativize(motionDirectory);
+            directory = new File(outputDirectory, relative.toString());
+        }
+        return new File(directory, name + ".x3d");
+    }
+
+    private static String convertMotion(File motion, File outputDirectory, java.nio.file.Path sourceRoot)
+    {
+        long startTime = System.nanoTime();
+        File scene = motionScene(motion, outputDirectory, sourceRoot);
+        String outcome;
+        try {
+            String bvhSource = Files.readString(motion.toPath(), StandardCharsets.UTF_8);
+            String bvhName = scene.getName().substring(0, scene.getName().length() - 4);
+            Files.createDirectories(scene.getAbsoluteFile().getParentFile().toPath());
+            Hierarchy hierarchy = new BvhParser(null).parse(bvhSource, bvhName, true);
+            if (hierarchy == null)
+                outcome = "  *** BVH parsing terminated";
+            else
+            {
+                Files.writeString(scene.toPath(), hierarchy.getHierarchyOutputX3D(scene.getName()), StandardCharsets.UTF_8);
+                outcome = "";
+            }
+        }
+        catch (IOException | RuntimeException ex) {
+            outcome = "  *** " + ex.getClass().getSimpleName() + ": " + ex.getLocalizedMessage();
+        }
+        return String.format("%-18s %10d %12d %12d %6s  %s%s", "BVH_TO_X3D", (System.nanoTime() - startTime) / 1000000,
+                             motion.length(), scene.length(), "", motion.getPath(), outcome);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+Copyright (c) 1995-2021 held by the author(s).  All rights reserved.
+ 
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+ 
+ * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer
+      in the documentation and/or other materials provided with the
+      distribution.
+ * Neither the names of the Naval Postgraduate School (NPS)
+      Modeling Virtual Environments and Simulation (MOVES) Institute
+      (https://www.nps.edu and https://MovesInstitute.nps.edu)
+      nor the names of its contributors may be used to endorse or
+      promote products derived from this software without specific
+      prior written permission.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.dis.playerrecorder;
+
+import java.net.DatagramPacket;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DISCaptureRing.java
+ * Created on October 18, 2026
+ *
+ * Fixed-size ring of datagram slots between the DISGrabber receive thread (the only producer) and its writer
+ * thread (the only consumer).  All memory is allocated up front: the receiver reads each datagram straight
+ * into a free slot, and neither side locks or allocates per packet.  When the writer falls behind and every
+ * slot is full, datagrams are received into a scratch buffer and counted as dropped, rather than being left
+ * to overflow the kernel socket buffer where they would be lost uncounted.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class DISCaptureRing
+{
+  public static final int DEFAULT_CAPACITY = 16384; // slots, 32 MB for maximum-size PDUs
+
+  private final int    capacity; // power of 2
+  private final int    mask;
+  private final int    slotSize;
+  private final byte[] data;
+  private final int[]  lengths;
+  private final long[] nanoTimes;
+  private final byte[] scratch;
+
+  private final AtomicLong head = new AtomicLong(); // next slot to drain, advanced only by consumer
+  private final AtomicLong tail = new AtomicLong(); // next slot to fill, advanced only by producer
+
+  private final DatagramPacket packet;
+  private boolean inSlot; // producer only: whether packet currently points into a slot
+
+  private volatile long received;
+  private volatile long dropped;
+  private volatile int  highWaterMark;
+
+  /**
+   * @param capacity number of slots, rounded up to a power of 2
+   * @param slotSize largest datagram kept, for example DISGrabber.MAX_PDU_SIZE
+   */
+  public DISCaptureRing(int capacity, int slotSize)
+  {
+    this.capacity  = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+    this.mask      = this.capacity - 1;
+    this.slotSize  = slotSize;
+    data      = new byte[this.capacity * slotSize];
+    lengths   = new int [this.capacity];
+    nanoTimes = new long[this.capacity];
+    scratch   = new byte[slotSize];
+    packet    = new DatagramPacket(scratch, slotSize);
+  }
+
+  // Producer, receive thread only
+  // -----------------------------
+
+  /** @return packet to receive into, pointing at the next free slot, or at the scratch buffer if the ring is full */
+  public DatagramPacket nextPacket()
+  {
+    long next = tail.get();
+    inSlot = (next - head.getAcquire()) < capacity;
+    if (inSlot)
+      packet.setData(data, (int) (next & mask) * slotSize, slotSize);
+    else
+      packet.setData(scratch, 0, slotSize);
+    return packet;
+  }
+
+  /**
+   * Publish the datagram just received into packet from nextPacket(), or count it as dropped if the ring was full
+   * @param nanoTime System.nanoTime() when received
+   * @return true if kept, false if dropped
+   */
+  public boolean commit(long nanoTime)
+  {
+    received++;
+    if (!inSlot) {
+      dropped++;
+      return false;
+    }
+    long next = tail.get();
+    int slot = (int) (next & mask);
+    lengths  [slot] = packet.getLength();
+    nanoTimes[slot] = nanoTime;
+    tail.setRelease(next + 1); // slot contents visible to consumer before new tail
+    int queued = (int) (next + 1 - head.getAcquire());
+    if (queued > highWaterMark)
+      highWaterMark = queued;
+    return true;
+  }
+
+  // Consumer, writer thread only
+  // ----------------------------
+
+  /** @return number of datagrams waiting, in order from index 0 */
+  public int available()
+  {
+    return (int) (tail.getAcquire() - head.get());
+  }
+
+  /** @return backing array of all slots, see getOffset() */
+  public byte[] getData()
+  {
+    return data;
+  }
+
+  /** @param index 0 for oldest waiting datagram, up to available() - 1
+   *  @return offset of datagram in getData() */
+  public int getOffset(int index)
+  {
+    return (int) ((head.get() + index) & mask) * slotSize;
+  }
+
+  public int getLength(int index)
+  {
+    return lengths[(int) ((head.get() + index) & mask)];
+  }
+
+  public long getNanoTime(int index)
+  {
+    return nanoTimes[(int) ((head.get() + index) & mask)];
+  }
+
+  /** @param count oldest datagrams, now copied elsewhere, whose slots the receiver may reuse */
+  public void release(int count)
+  {
+    head.setRelease(head.get() + count);
+  }
+
+  // Counters, any thread
+  // --------------------
+
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /** @return datagrams received while capturing, whether kept or dropped */
+  public long getReceivedCount()
+  {
+    return received;
+  }
+
+  /** @return datagrams discarded because every slot was waiting to be written */
+  public long getDroppedCount()
+  {
+    return dropped;
+  }
+
+  /** @return most datagrams ever waiting at once */
+  public int getHighWaterMark()
+  {
+    return highWaterMark;
+  }
+}
@@ -39,22 +39,28 @@ package org.web3d.x3d.dis.playerrecorder;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * DISGrabber.java
  * Created on Oct 9, 2008
  *
+ * Capture runs in two stages so that bursts of PDUs are not dropped by the kernel while packets are saved.
+ * The receive thread only reads datagrams into a preallocated DISCaptureRing.  A writer thread drains the
+ * ring in batches through FileChannels with large direct buffers, tracking the file position itself, then
+ * notifies listeners once per batch.  Index records are not kept in memory; readers map the index file
+ * with DISPduIndex, whose records are complete once listeners are notified.
+ *
  * MOVES Institute
  * Naval Postgraduate School, Monterey, CA, USA
  * www.nps.edu
@@ -68,16 +74,15 @@ public class DISGrabber
   private MulticastSocket socket;
   private InetAddress multicastGroup;
   private String multicastString = DEFAULT_ADDRESS;
-  private long fileSizeLimit = 0x1000000;  // 1 Gb
+  private long fileSizeLimit = 0x40000000;  // 1 GB
   private int  port = DEFAULT_PORT;
   
-  private RandomAccessFile randFile;
+  private FileChannel dataChannel;
   private File saveFile;
-  private RandomAccessFile randIndexFile;
+  private FileChannel indexChannel;
   private File saveIndexFile;
-  
-  private List<byte[]> pointerArray = new ArrayList<>(1024*16);
-  private List<byte[]> synchedList = Collections.synchronizedList(pointerArray);
+  private int queueCapacity = DISCaptureRing.DEFAULT_CAPACITY;
+  private DISCaptureRing ring;
   
   public static final int NUMBYTESINLONG = Long.SIZE/8;
   public static final int MAX_PDU_SIZE = 2048;
@@ -110,6 +115,13 @@ public class DISGrabber
   
   public static final int DEFAULT_PORT = 3000;
   public static final String DEFAULT_ADDRESS = "239.1.2.3";
+
+  /** kernel receive buffer requested, to absorb bursts while the receive thread is descheduled */
+  public static final int SOCKET_RECEIVE_BUFFER_SIZE = 4 * 1024 * 1024;
+  /** writer batch size; large direct buffers mean few write system calls */
+  public static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+  /** writer wait when ring is empty */
+  private static final long WRITER_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
   
   // Default constructor
   public DISGrabber()
@@ -141,6 +153,7 @@ public class DISGrabber
     try {
       socket = new MulticastSocket(port);
       socket.setSoTimeout(0); // infinite timeout
+      socket.setReceiveBufferSize(SOCKET_RECEIVE_BUFFER_SIZE); // operating system may grant less
       InetSocketAddress group = new InetSocketAddress(addr, port);
       socket.joinGroup(group, null);
     }
@@ -162,22 +175,53 @@ public class DISGrabber
   {
     return new File[]{saveFile,saveIndexFile};
   }
-  
-  public List<byte[]> getPointerList()
+
+  /** @param capacity datagrams that may wait to be written before further ones are dropped; set before start() */
+  public void setQueueCapacity(int capacity)
+  {
+    queueCapacity = capacity;
+  }
+
+  /** @return datagrams received while capturing (not paused), including any dropped */
+  public long getReceivedCount()
+  {
+    return (ring == null) ? 0 : ring.getReceivedCount();
+  }
+
+  /** @return datagrams written to capture file */
+  public long getWrittenCount()
+  {
+    return written;
+  }
+
+  /** @return datagrams dropped because the writer fell a whole queue behind */
+  public long getDroppedCount()
   {
-    return synchedList;
+    return (ring == null) ? 0 : ring.getDroppedCount();
+  }
+
+  /** @return most datagrams waiting to be written at once, compare with getQueueCapacity() */
+  public int getQueueHighWaterMark()
+  {
+    return (ring == null) ? 0 : ring.getHighWaterMark();
+  }
+
+  public int getQueueCapacity()
+  {
+    return (ring == null) ? queueCapacity : ring.getCapacity();
   }
   
   // Internal methods
   // ----------------
   
-  private boolean running = false;
+  private volatile boolean running = false;
+  private volatile boolean receiving = false;
   private Thread runThread;
-  private Runnable packetRunner;
-  private byte[] buffer = new byte[MAX_PDU_SIZE];
-  private DatagramPacket packet = new DatagramPacket(buffer,buffer.length);
-  
-  private boolean paused = false;
+  private Thread writerThread;
+  private volatile long written;
+  private long filePosition;
+
+  private volatile boolean paused = false;
   public void pause()
   {
     paused = true;
@@ -194,64 +238,83 @@ public class DISGrabber
       saveIndexFile = new File(saveFile.getParentFile(),saveFile.getName()+".idx");
       saveIndexFile.createNewFile();
       saveIndexFile.deleteOnExit();
-      
-      randFile = new RandomAccessFile(saveFile,"rw");
-      randFile.seek(0); // should be unnecessary
-      randIndexFile = new RandomAccessFile(saveIndexFile,"rw");
-      randIndexFile.seek(0);
+
+      dataChannel  = FileChannel.open(saveFile.toPath(),      StandardOpenOption.WRITE);
+      indexChannel = FileChannel.open(saveIndexFile.toPath(), StandardOpenOption.WRITE);
+      filePosition = 0;
     }
     catch(IOException ex) {
       throw new RuntimeException("The world has changed.");
     }
-    
-    packetRunner = () -> {
+    ring = new DISCaptureRing(queueCapacity, MAX_PDU_SIZE);
+
+    // receive stage: nothing but socket reads into the ring
+    Runnable packetRunner = () -> {
         try {
             do {
+                DatagramPacket packet = ring.nextPacket();
                 socket.receive(packet);
-                if(!paused) {
-                    long recvdNanoTime = System.nanoTime();
-                    if(handlePacket(packet,recvdNanoTime))
-                        break;  //exceed file limit
-                }
+                if(!paused)
+                    ring.commit(System.nanoTime());
             }
-            while(true);  //infinite loop
-
+            while(true);  //infinite loop, ended by closing socket
+        }
+        catch(IOException ex) {}  // socket closed by stop(), or file limit reached
+        receiving = false;
+        LockSupport.unpark(writerThread);
+    };
+    // writer stage: drain ring in batches until receiving ends and ring is empty
+    Runnable packetWriter = () -> {
+        try {
+            while(receiving || ring.available() > 0) {
+                if(!writeBatch())
+                    LockSupport.parkNanos(WRITER_IDLE_NANOS);
+                else if(filePosition > fileSizeLimit)
+                    stop();  // exceeded file limit
+            }
+        }
+        catch (IOException ex) {
+            System.err.println("IOException in packet logger: "+ex.getLocalizedMessage());
+            stop();
         }
-        catch(IOException ex) {}  // probably interrupted exception
-        // System.out.println("stopping");
         try {
-            randFile.close();
-            randIndexFile.close();
+            dataChannel.close();
+            indexChannel.close();
         }
         catch(IOException ex) {}
 
         // Make them match
-        // This doesn't do much...it has the same effect as touch(f1);touch(f2)
-        // I think the 2 closes above are sufficient
         saveIndexFile.setLastModified(saveFile.lastModified());
         running = false;
         runThread=null;
+        writerThread=null;
     };
     runThread = new Thread(packetRunner,"DISGrabber");
-    runThread.setPriority(Thread.NORM_PRIORITY);   //todo tweek
-    
+    runThread.setPriority(Thread.MAX_PRIORITY);   // keep up with bursts; the thread mostly blocks in receive
+    writerThread = new Thread(packetWriter,"DISGrabber writer");
+    writerThread.setPriority(Thread.NORM_PRIORITY);
+
     running = true;
+    receiving = true;
+    writerThread.start();
     runThread.start();
   }
-  
+
   public void stop()
   {
     if(socket != null)
-      socket.close();  // will interrupt blocked receive()
+      socket.close();  // will interrupt blocked receive(); writer then drains what was received
   }
-  
+
   public boolean isRunning()
   {
     return running;
   }
-  
-  private ByteBuffer bb = ByteBuffer.allocate(NUMBYTESINLONG);
-  
+
+  private final ByteBuffer dataBuffer  = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+  private final ByteBuffer indexBuffer = ByteBuffer.allocateDirect(IDXFILE_RECORD_SIZE * (WRITE_BUFFER_SIZE / 128));
+  private int batchCount;
+
   boolean USERELATIVETIMES = true;
   long timeBase = 0;
   private long relativizeTime(long nano)
@@ -260,64 +323,65 @@ public class DISGrabber
       return nano;
     if(timeBase==0)
       timeBase = nano;
-    return nano-timeBase;    
+    return nano-timeBase;
   }
-  
-  private ByteBuffer byte2wordBB = ByteBuffer.allocate(2);
-  
+
   /**
-   * Return true if we've exceeded our file limit
-   * @param packet
-   * @return
+   * Write all datagrams waiting in the ring, writer thread only
+   * @return true if any were written
+   * @throws IOException if a file write fails
    */
-  private boolean handlePacket(DatagramPacket packet, long nanoTime)
+  private boolean writeBatch() throws IOException
   {
-    //System.out.println("got a packet");
-    boolean returnVal = true;  // assume that we've exceed our limit
-    
-    byte[] pArr = packet.getData();
-    byte[] ptrByteArray = new byte[IDXFILE_RECORD_SIZE];
-    
-    int idx = IDXFILE_PDUHDR_IDX;
-    ptrByteArray[idx+0] = pArr[0];  // save the 3 bytes which when decoded indicate packet type
-    ptrByteArray[idx+1] = pArr[1];
-    ptrByteArray[idx+2] = pArr[2];
+    int count = ring.available();
+    if(count == 0)
+      return false;
 
-    try {
-      idx = IDXFILE_FILEPTR_IDX;
-      bb.putLong(0,randFile.getFilePointer());
-      for (int i = 0; i < NUMBYTESINLONG; i++)
-        ptrByteArray[idx++] = bb.array()[i];
-      
-      idx = IDXFILE_RECDNANOTIME_IDX;
-      bb.putLong(0,relativizeTime(nanoTime));
-      for (int i = 0; i < NUMBYTESINLONG; i++)
-        ptrByteArray[idx++] = bb.array()[i];
+    byte[] pArr = ring.getData();
+    for(int i = 0; i < count; i++) {
+      int offset = ring.getOffset(i);
+      int length = ring.getLength(i);
+      if(dataBuffer.remaining() < length || indexBuffer.remaining() < IDXFILE_RECORD_SIZE)
+        flushBatch();
 
-      idx = IDXFILE_RECORDSIZE_IDX;
-      bb.putInt(0,packet.getLength());
-      for (int i=0;i<NUMBYTESININT;i++)
-        ptrByteArray[idx++] = bb.array()[i];
+      int record = indexBuffer.position();
+      indexBuffer.put(record + IDXFILE_PDUHDR_IDX, pArr, offset, IDXFILE_PDUHDR_IDX_SIZE); // 3 bytes which when decoded indicate packet type
+      indexBuffer.putLong(record + IDXFILE_FILEPTR_IDX, filePosition);
+      indexBuffer.putLong(record + IDXFILE_RECDNANOTIME_IDX, relativizeTime(ring.getNanoTime(i)));
+      indexBuffer.putInt(record + IDXFILE_RECORDSIZE_IDX, length);
+      indexBuffer.position(record + IDXFILE_RECORD_SIZE);
 
-      randFile.write(pArr,0,packet.getLength());   // save packet
-      randIndexFile.write(ptrByteArray);
-      
-      pointerArray.add(ptrByteArray); // save ptr array (in ram)
-      returnVal = randFile.length() > fileSizeLimit;
-    }
-    catch (IOException ex) {
-      System.err.println("IOException in packet logger: "+ex.getLocalizedMessage());
+      dataBuffer.put(pArr, offset, length);   // save packet
+      batchCount++;
+      filePosition += length;
     }
+    ring.release(count);  // copied, so receiver may reuse slots while files are written
+    flushBatch();
+    return true;
+  }
 
+  private void flushBatch() throws IOException
+  {
+    writeFully(dataChannel, dataBuffer);
+    writeFully(indexChannel, indexBuffer);
+    // index records are in the file only after their packets are
+    written += batchCount;
+    batchCount = 0;
     notifyReceivedListeners();
-    
-    return returnVal;   // if exception or over limit, return true to stop
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+  {
+    buffer.flip();
+    while(buffer.hasRemaining())
+      channel.write(buffer);
+    buffer.clear();
   }
 
   private void notifyReceivedListeners()
   {
       listeners.forEach(lis -> {
-          lis.packetReceived(this, pointerArray.size());
+          lis.packetReceived(this, (int) written);
       });
   }
   
@@ -0,0 +1,194 @@
+/*
+Copyright (c) 1995-2021 held by the author(s).  All rights reserved.
+ 
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+ 
+ * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer
+      in the documentation and/or other materials provided with the
+      distribution.
+ * Neither the names of the Naval Postgraduate School (NPS)
+      Modeling Virtual Environments and Simulation (MOVES) Institute
+      (https://www.nps.edu and https://MovesInstitute.nps.edu)
+      nor the names of its contributors may be used to endorse or
+      promote products derived from this software without specific
+      prior written permission.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.dis.playerrecorder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * DISPduData.java
+ * Created on October 18, 2026
+ *
+ * Read-only view of a .disbin capture file mapped into memory, so that replay can send each PDU straight
+ * from the mapping without reading it into a buffer first.  The file is mapped in segments of SEGMENT_SIZE
+ * bytes, each also covering the following SEGMENT_OVERLAP bytes so that every PDU lies wholly within the
+ * segment where it starts.  Because Java offers no madvise() hint, readAhead() touches pages ahead of
+ * replay in its direction, so page faults are taken before PDUs are due rather than while sending them.
+ *
+ * getPdu() and readAhead() reuse one view per segment and are for a single replay thread;
+ * refresh() maps data appended by a DISGrabber still capturing.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class DISPduData implements Closeable
+{
+  public static final long SEGMENT_SIZE = 1L << 28;    // 256 MB
+  /** Longest PDU the 16-bit DIS length field allows */
+  public static final int  SEGMENT_OVERLAP = 1 << 16;
+  /** Bytes ahead of replay whose pages are touched */
+  public static final int  READ_AHEAD = 1 << 20;
+  private static final int PAGE_SIZE = 4096;
+
+  private final File dataFile;
+  private final FileChannel channel;
+  private final long segmentSize;
+  private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+  private ByteBuffer[] views = new ByteBuffer[0];
+  private volatile long size;
+
+  private long touched = -1;      // next page to touch ahead of replay
+  private boolean touchingReverse;
+  private int touchSum;           // keeps page touches from being optimized away
+
+  /**
+   * @param dataFile capture written by DISGrabber, possibly still growing
+   * @throws IOException if file cannot be opened or mapped
+   */
+  public DISPduData(File dataFile) throws IOException
+  {
+    this(dataFile, SEGMENT_SIZE);
+  }
+
+  DISPduData(File dataFile, long segmentSize) throws IOException
+  {
+    this.dataFile = dataFile;
+    this.segmentSize = segmentSize;
+    channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+    refresh();
+  }
+
+  public File getFile()
+  {
+    return dataFile;
+  }
+
+  /**
+   * Map any data appended to the file since last refresh
+   * @return number of bytes now readable
+   * @throws IOException if new data cannot be mapped
+   */
+  public synchronized long refresh() throws IOException
+  {
+    long newSize = channel.size();
+    if (newSize <= size)
+      return size;
+
+    int segmentCount = (int) ((newSize + segmentSize - 1) / segmentSize);
+    MappedByteBuffer[] mapped  = Arrays.copyOf(segments, segmentCount);
+    ByteBuffer[]       viewed  = Arrays.copyOf(views, segmentCount);
+    // remap segments whose span, including overlap, has grown
+    for (int segment = Math.max(0, (int) ((size - SEGMENT_OVERLAP) / segmentSize) - 1); segment < segmentCount; segment++) {
+      long start  = segment * segmentSize;
+      long length = Math.min(segmentSize + SEGMENT_OVERLAP, newSize - start);
+      if (mapped[segment] == null || mapped[segment].capacity() < length) {
+        mapped[segment] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        viewed[segment] = mapped[segment].duplicate();
+      }
+    }
+    segments = mapped;
+    views = viewed;
+    size = newSize;
+    return size;
+  }
+
+  /** @return number of bytes mapped by the last refresh() */
+  public long size()
+  {
+    return size;
+  }
+
+  /**
+   * @param filePointer position of PDU, from DISPduIndex.getFilePointer()
+   * @param length PDU length, from DISPduIndex.getLength()
+   * @return reused view of mapping positioned on PDU, valid until next call
+   */
+  public ByteBuffer getPdu(long filePointer, int length)
+  {
+    if (filePointer < 0 || length < 0 || length > SEGMENT_OVERLAP || filePointer + length > size)
+      throw new IndexOutOfBoundsException("PDU of " + length + " bytes at " + filePointer + " outside " + size + " byte capture");
+    int segment = (int) (filePointer / segmentSize);
+    int offset  = (int) (filePointer - segment * segmentSize);
+    ByteBuffer view = views[segment];
+    view.clear();
+    view.position(offset).limit(offset + length);
+    return view;
+  }
+
+  /**
+   * Touch pages up to READ_AHEAD bytes ahead of replay, continuing from the previous call
+   * @param filePointer position of PDU about to be sent
+   * @param reverse whether replay is moving towards the start of the file
+   */
+  public void readAhead(long filePointer, boolean reverse)
+  {
+    if (reverse != touchingReverse || (reverse ? touched > filePointer : touched < filePointer)) {
+      touched = filePointer;  // new direction, or jumped past what was touched
+      touchingReverse = reverse;
+    }
+    if (!reverse) {
+      long end = Math.min(size, filePointer + READ_AHEAD);
+      for (; touched < end; touched += PAGE_SIZE)
+        touch(touched);
+    }
+    else {
+      long end = Math.max(0, filePointer - READ_AHEAD);
+      for (; touched >= end && touched >= 0; touched -= PAGE_SIZE)
+        touch(touched);
+    }
+  }
+
+  private void touch(long position)
+  {
+    int segment = (int) (position / segmentSize);
+    touchSum += segments[segment].get((int) (position - segment * segmentSize));
+  }
+
+  /** Closes the file; mappings are released once unreachable */
+  @Override
+  public void close() throws IOException
+  {
+    channel.close();
+  }
+}
@@ -0,0 +1,262 @@
+/*
+Copyright (c) 1995-2021 held by the author(s).  All rights reserved.
+ 
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+ 
+ * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer
+      in the documentation and/or other materials provided with the
+      distribution.
+ * Neither the names of the Naval Postgraduate School (NPS)
+      Modeling Virtual Environments and Simulation (MOVES) Institute
+      (https://www.nps.edu and https://MovesInstitute.nps.edu)
+      nor the names of its contributors may be used to endorse or
+      promote products derived from this software without specific
+      prior written permission.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.dis.playerrecorder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import static org.web3d.x3d.dis.playerrecorder.DISGrabber.*;
+
+/**
+ * DISPduIndex.java
+ * Created on October 18, 2026
+ *
+ * Read-only view of a .disbinidx file, mapped into memory rather than loaded as one object per PDU, so that
+ * the size of a capture is limited by disk rather than heap.  Records have a fixed stride of IDXFILE_RECORD_SIZE
+ * bytes and are read by column: PDU type, data file pointer, received time and length.  The file is mapped in
+ * segments of RECORDS_PER_SEGMENT records, keeping each mapping well under the 2 GB limit of a buffer, and
+ * refresh() picks up records appended since by a DISGrabber still capturing.  Mappings grow in coarse steps of
+ * RECORDS_PER_REMAP records; records beyond the last whole step are read into a small heap buffer instead, so
+ * a long capture refreshed many times a second does not leave behind a new mapping every time, since superseded
+ * mappings are only released once garbage collected.  Received times never decrease, so
+ * findRecord() locates the PDU at a time on the capture timeline by binary search over the mapped column.
+ *
+ * Reads may come from any thread; refresh() publishes new segments and records only after they are readable.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class DISPduIndex implements Closeable
+{
+  public static final int RECORDS_PER_SEGMENT = 1 << 22; // 4M records, 92 MB per mapping
+
+  public static final int RECORDS_PER_REMAP = 1 << 14;   // 16K records, 384 KB
+
+  private static final int SEGMENT_SHIFT = Integer.numberOfTrailingZeros(RECORDS_PER_SEGMENT);
+  private static final int SEGMENT_MASK  = RECORDS_PER_SEGMENT - 1;
+
+  /** Mapped segments and the heap buffer of records following them, published together */
+  private static final class View
+  {
+    final MappedByteBuffer[] segments;
+    final int                mapped; // records covered by segments, a multiple of RECORDS_PER_REMAP
+    final ByteBuffer         tail;   // records from mapped on, appended in place as the file grows
+
+    View(MappedByteBuffer[] segments, int mapped, ByteBuffer tail)
+    {
+      this.segments = segments;
+      this.mapped   = mapped;
+      this.tail     = tail;
+    }
+  }
+
+  private final File indexFile;
+  private final FileChannel channel;
+  private volatile View view = new View(new MappedByteBuffer[0], 0, newTail());
+  private volatile int size; // written after view, so records below size are readable through any later view
+
+  /**
+   * @param indexFile index written by DISGrabber or DISPlayerRecorderPanel, possibly still growing
+   * @throws IOException if file cannot be opened or mapped
+   */
+  public DISPduIndex(File indexFile) throws IOException
+  {
+    this.indexFile = indexFile;
+    channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ);
+    refresh();
+  }
+
+  public File getFile()
+  {
+    return indexFile;
+  }
+
+  /**
+   * Pick up any whole records appended to the file since last refresh, mapping them once a whole
+   * RECORDS_PER_REMAP step is complete and reading the remainder into the heap tail buffer
+   * @return number of records now readable
+   * @throws IOException if new records cannot be mapped or read
+   */
+  public synchronized int refresh() throws IOException
+  {
+    long records = Math.min(channel.size() / IDXFILE_RECORD_SIZE, Integer.MAX_VALUE);
+    if (records <= size)
+      return size;
+
+    View current = view;
+    int mappedRecords = (int) (records & -RECORDS_PER_REMAP); // whole steps only
+    MappedByteBuffer[] mapped = current.segments;
+    ByteBuffer tail = current.tail;
+    int tailFilled = size; // records already held, mapped or in tail
+    if (mappedRecords > current.mapped) {
+      int segmentCount = (mappedRecords + SEGMENT_MASK) >>> SEGMENT_SHIFT;
+      if (segmentCount > mapped.length)
+        mapped = Arrays.copyOf(mapped, segmentCount);
+      // remap the last, partly mapped segment and map any further ones
+      for (int segment = current.mapped >>> SEGMENT_SHIFT; segment < segmentCount; segment++) {
+        long first = (long) segment << SEGMENT_SHIFT;
+        long count = Math.min(RECORDS_PER_SEGMENT, mappedRecords - first);
+        if (mapped[segment] == null || mapped[segment].capacity() < count * IDXFILE_RECORD_SIZE)
+          mapped[segment] = channel.map(FileChannel.MapMode.READ_ONLY, first * IDXFILE_RECORD_SIZE, count * IDXFILE_RECORD_SIZE);
+      }
+      tail = newTail(); // fresh, readers may still hold the old one
+      tailFilled = mappedRecords;
+    }
+    // append records beyond the mapping to the tail, leaving positions readers may be using untouched
+    ByteBuffer appended = tail.duplicate();
+    appended.limit((int) (records - mappedRecords) * IDXFILE_RECORD_SIZE);
+    appended.position((tailFilled - mappedRecords) * IDXFILE_RECORD_SIZE);
+    long filePosition = (long) tailFilled * IDXFILE_RECORD_SIZE;
+    while (appended.hasRemaining()) {
+      int count = channel.read(appended, filePosition);
+      if (count < 0)
+        throw new IOException("PDU index " + indexFile + " truncated while reading");
+      filePosition += count;
+    }
+    view = new View(mapped, mappedRecords, tail);
+    size = (int) records;
+    return size;
+  }
+
+  private static ByteBuffer newTail()
+  {
+    return ByteBuffer.allocate(RECORDS_PER_REMAP * IDXFILE_RECORD_SIZE);
+  }
+
+  /** @return number of records readable as of the last refresh() */
+  public int size()
+  {
+    return size;
+  }
+
+  /** @return number of records held in mappings rather than the heap tail, a multiple of RECORDS_PER_REMAP */
+  int mappedSize()
+  {
+    return view.mapped;
+  }
+
+  /** @return view holding record, read after checking record against size */
+  private View view(int record)
+  {
+    if (record < 0 || record >= size)
+      throw new IndexOutOfBoundsException("PDU index record " + record + " of " + size);
+    return view;
+  }
+
+  private static ByteBuffer buffer(View view, int record)
+  {
+    return (record < view.mapped) ? view.segments[record >>> SEGMENT_SHIFT] : view.tail;
+  }
+
+  private static int offset(View view, int record)
+  {
+    return ((record < view.mapped) ? (record & SEGMENT_MASK) : (record - view.mapped)) * IDXFILE_RECORD_SIZE;
+  }
+
+  /** @return one of the first IDXFILE_PDUHDR_IDX_SIZE bytes of the PDU header: version, exercise, PDU type */
+  public byte getHeaderByte(int record, int headerIndex)
+  {
+    View v = view(record);
+    return buffer(v, record).get(offset(v, record) + IDXFILE_PDUHDR_IDX + headerIndex);
+  }
+
+  /** @return unsigned PDU type, third byte of the PDU header */
+  public int getPduType(int record)
+  {
+    return 0xFF & getHeaderByte(record, 2);
+  }
+
+  /** @return position of PDU in data file */
+  public long getFilePointer(int record)
+  {
+    View v = view(record);
+    return buffer(v, record).getLong(offset(v, record) + IDXFILE_FILEPTR_IDX);
+  }
+
+  /** @return received time in nanoseconds relative to the first PDU captured, or 0 if index was rebuilt from data */
+  public long getNanoTime(int record)
+  {
+    View v = view(record);
+    return buffer(v, record).getLong(offset(v, record) + IDXFILE_RECDNANOTIME_IDX);
+  }
+
+  /** @return PDU length in bytes */
+  public int getLength(int record)
+  {
+    View v = view(record);
+    return buffer(v, record).getInt(offset(v, record) + IDXFILE_RECORDSIZE_IDX);
+  }
+
+  /**
+   * Binary search of received times, O(log n) without scanning or loading the index
+   * @param nanoTime time relative to the first PDU captured
+   * @return first record received at or after nanoTime, or size() if none
+   */
+  public int findRecord(long nanoTime)
+  {
+    int low = 0;
+    int high = size;  // records before low are earlier, records from high on are at or after
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (getNanoTime(middle) < nanoTime)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return low;
+  }
+
+  /** @return received time of last record mapped, so length of capture timeline, or 0 if empty */
+  public long getDuration()
+  {
+    int records = size;
+    return (records == 0) ? 0 : getNanoTime(records - 1);
+  }
+
+  /** Closes the file; mappings are released once unreachable */
+  @Override
+  public void close() throws IOException
+  {
+    channel.close();
+  }
+}
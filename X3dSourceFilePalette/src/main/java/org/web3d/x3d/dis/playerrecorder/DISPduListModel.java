@@ -0,0 +1,176 @@
+/*
+Copyright (c) 1995-2021 held by the author(s).  All rights reserved.
+ 
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+ 
+ * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer
+      in the documentation and/or other materials provided with the
+      distribution.
+ * Neither the names of the Naval Postgraduate School (NPS)
+      Modeling Virtual Environments and Simulation (MOVES) Institute
+      (https://www.nps.edu and https://MovesInstitute.nps.edu)
+      nor the names of its contributors may be used to endorse or
+      promote products derived from this software without specific
+      prior written permission.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.dis.playerrecorder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import javax.swing.AbstractListModel;
+
+/**
+ * DISPduListModel.java
+ * Created on October 18, 2026
+ *
+ * List of PDUs in a DISPduIndex for the DIS Player-Recorder, whose elements are index record numbers rather
+ * than copies of the records.  Rows map one to one onto records until some are deleted from the list, after
+ * which an int array of remaining record numbers is kept.  Swing event dispatch thread only.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class DISPduListModel extends AbstractListModel<Integer>
+{
+  private static final long serialVersionUID = 1L;
+
+  private DISPduIndex pduIndex;
+  private int   size;
+  private int[] rows; // record number of each row, null while rows match records
+  private int   recordCount; // records of index listed so far, including any removed rows
+
+  /** @return index being listed, or null if cleared */
+  public DISPduIndex getIndex()
+  {
+    return pduIndex;
+  }
+
+  /** List every record of index, replacing any previous contents */
+  public void setIndex(DISPduIndex newIndex)
+  {
+    clear();
+    pduIndex = newIndex;
+    size = newIndex.size();
+    recordCount = size;
+    rows = null;
+    if (size > 0)
+      fireIntervalAdded(this, 0, size - 1);
+  }
+
+  /**
+   * Append records added to a growing index since last refreshed
+   * @return number of rows added
+   * @throws IOException if new records cannot be mapped
+   */
+  public int refresh() throws IOException
+  {
+    if (pduIndex == null)
+      return 0;
+    int lastRecord = recordCount;
+    int added = pduIndex.refresh() - lastRecord;
+    if (added <= 0)
+      return 0;
+    if (rows != null) {
+      if (size + added > rows.length)
+        rows = Arrays.copyOf(rows, Math.max(size + added, rows.length * 2));
+      for (int i = 0; i < added; i++)
+        rows[size + i] = lastRecord + i;
+    }
+    size += added;
+    recordCount += added;
+    fireIntervalAdded(this, size - added, size - 1);
+    return added;
+  }
+
+  /** Remove all rows and stop listing index, which caller remains responsible for closing */
+  public void clear()
+  {
+    int oldSize = size;
+    pduIndex = null;
+    size = 0;
+    recordCount = 0;
+    rows = null;
+    if (oldSize > 0)
+      fireIntervalRemoved(this, 0, oldSize - 1);
+  }
+
+  /**
+   * Remove rows from list; records stay in index and data files
+   * @param selected row numbers to remove, in ascending order as from JList.getSelectedIndices()
+   */
+  public void remove(int[] selected)
+  {
+    if (selected.length == 0)
+      return;
+    if (rows == null) {
+      rows = new int[size];
+      Arrays.setAll(rows, i -> i);
+    }
+    int kept = selected[0];
+    for (int row = selected[0], s = 0; row < size; row++) {
+      if (s < selected.length && selected[s] == row)
+        s++;
+      else
+        rows[kept++] = rows[row];
+    }
+    int oldSize = size;
+    size = kept;
+    fireIntervalRemoved(this, size, oldSize - 1);
+    if (selected[0] < size)
+      fireContentsChanged(this, selected[0], size - 1); // later rows moved up
+  }
+
+  /** @return index record number listed in row */
+  public int getRecord(int row)
+  {
+    if (row < 0 || row >= size)
+      throw new IndexOutOfBoundsException("PDU list row " + row + " of " + size);
+    return (rows == null) ? row : rows[row];
+  }
+
+  /**
+   * Binary search for the row listing a record, or the next record listed if its row was removed
+   * @return row number, or getSize() if record is after the last row
+   */
+  public int findRow(int record)
+  {
+    if (rows == null)
+      return Math.max(0, Math.min(record, size));
+    int row = Arrays.binarySearch(rows, 0, size, record); // rows stay in ascending record order
+    return (row >= 0) ? row : -(row + 1);
+  }
+
+  @Override
+  public int getSize()
+  {
+    return size;
+  }
+
+  @Override
+  public Integer getElementAt(int row)
+  {
+    return getRecord(row);
+  }
+}
@@ -38,21 +38,29 @@ POSSIBILITY OF SUCH DAMAGE.
 package org.web3d.x3d.dis.playerrecorder;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.net.DatagramPacket;
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import java.util.Vector;
-import static org.web3d.x3d.dis.playerrecorder.DISGrabber.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * DISPlayer.java
  * Created on Oct 9, 2008
  *
+ * Replay is paced by a DISReplayScheduler against absolute deadlines on the capture timeline, at a speed
+ * multiple or as fast as possible, and the timing achieved is reported when replay stops.  Capture and index
+ * files are memory mapped (DISPduData, DISPduIndex) and each PDU is sent through a DatagramChannel straight
+ * from the mapping, so the replay loop neither copies nor allocates per PDU.  Replay may be limited to a range of
+ * records or capture times, which looping repeats, and may seek to a record or time while playing; times are
+ * located by binary search of the index (DISPduIndex.findRecord).
+ *
  * MOVES Institute
  * Naval Postgraduate School, Monterey, CA, USA
  * www.nps.edu
@@ -63,26 +71,34 @@ import static org.web3d.x3d.dis.playerrecorder.DISGrabber.*;
 public class DISPlayer
 {
   // Defaults
-  private MulticastSocket socket;
+  private DatagramChannel channel;
   private InetAddress multicastGroup;
   private String multicastString = "239.1.2.3";
   private int  port = 3000;
+  private volatile InetSocketAddress destination;
+
+  /** Socket send buffer, holding a burst of PDUs at accelerated replay rates */
+  public static final int SOCKET_SEND_BUFFER_SIZE = 1024 * 1024;
 
-  private RandomAccessFile randFile;
+  private DISPduData pduData;
   private File saveFile;
-  private RandomAccessFile randIndexFile;
+  private DISPduIndex pduIndex;
   private File saveIndexFile;
-  private long FAST_PLAY_SLEEP_MS = 10;
-  private Integer count = null;
+  private final DISReplayScheduler scheduler = new DISReplayScheduler();
+  private double speed = 1.0;
+  private long count = -1;  // PDUs left to send, or -1 for all
+  private volatile int rangeFirst = 0;
+  private volatile int rangeLast  = Integer.MAX_VALUE;  // open end follows a capture still growing
+  private final AtomicInteger seekRecord = new AtomicInteger(-1);  // pending seek, or -1
 
   public DISPlayer(File[] files)
   {
       try {
           saveFile = files[0];
-          randFile = new RandomAccessFile(files[0], "rw");
+          pduData = new DISPduData(files[0]);
           saveIndexFile = files[1];
-          randIndexFile = new RandomAccessFile(files[1], "rw");
-      } catch (FileNotFoundException ex) {
+          pduIndex = new DISPduIndex(files[1]);
+      } catch (IOException ex) {
           throw new RuntimeException("The world has changed.");
       }
   }
@@ -93,14 +109,17 @@ public class DISPlayer
       setMulticastGroup(multiGroup);
   }
 
+  /** Set destination group, which may be changed while playing; sending needs no group membership */
   public void setMulticastGroup(InetAddress addr) throws IllegalArgumentException
   {
     multicastGroup = addr;
     try {
-      socket = new MulticastSocket(port);
-      socket.setSoTimeout(0); // infinite timeout
-      InetSocketAddress group = new InetSocketAddress(addr, port);
-      socket.joinGroup(group, null);
+      if(channel == null || !channel.isOpen()) {
+        channel = DatagramChannel.open((addr instanceof Inet6Address) ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, SOCKET_SEND_BUFFER_SIZE);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true); // as MulticastSocket, for receivers on this host
+      }
+      destination = new InetSocketAddress(addr, port);
     }
     catch(IOException ex) {
       throw new IllegalArgumentException("Error creating multicast socket: "+ex.getLocalizedMessage());
@@ -114,13 +133,100 @@ public class DISPlayer
     port = p;
     
     // In case someone resets the port only
-    setMulticastGroup(multicastGroup);
+    if(multicastGroup != null)
+      setMulticastGroup(multicastGroup);
   }
 
+  /** @param i number of PDUs to send before stopping, or null for all */
   public void setCount(Integer i)
   {
-    count = i;
+    count = (i == null) ? -1 : i;
+  }
+
+  /**
+   * Limit replay, and looping, to records first through last; may be changed while playing
+   * @param first first record to send
+   * @param last last record to send, first - 1 for none, or Integer.MAX_VALUE for through end of file
+   * @throws IllegalArgumentException if first is negative or last precedes first - 1
+   */
+  public void setRange(int first, int last) throws IllegalArgumentException
+  {
+    if (first < 0 || last < first - 1)
+      throw new IllegalArgumentException("Replay range must run forward from record 0 or later, was " + first + " to " + last);
+    rangeFirst = first;
+    rangeLast  = last;
+  }
+
+  /**
+   * Limit replay, and looping, to PDUs received from one time to another
+   * @param fromNanos start of range, relative to first PDU captured
+   * @param toNanos end of range inclusive, or Long.MAX_VALUE for through end of file
+   * @throws IllegalArgumentException if toNanos precedes fromNanos
+   */
+  public void setTimeRange(long fromNanos, long toNanos) throws IllegalArgumentException
+  {
+    if (toNanos < fromNanos)
+      throw new IllegalArgumentException("Replay range must run forward in time, was " + fromNanos + " to " + toNanos + " nsec");
+    int first = pduIndex.findRecord(fromNanos);
+    int last  = (toNanos == Long.MAX_VALUE) ? Integer.MAX_VALUE : pduIndex.findRecord(toNanos + 1) - 1;
+    setRange(first, last);
+  }
+
+  /** Clear any range set, replaying the whole file */
+  public void clearRange()
+  {
+    setRange(0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Continue replay from record, or nearest end of range, promptly even when waiting for a distant PDU or paused;
+   * the replay timeline begins again there.  While paused, the PDU at the new position is sent on resume.
+   */
+  public void seek(int record)
+  {
+    synchronized(seekRecord) {  // taken together with its wake by takeSeek()
+      seekRecord.set(Math.max(0, record));
+      scheduler.wake();
+    }
+    synchronized(paused) {
+      paused.notifyAll();  // replay thread moves to new position without waiting for resume
+    }
+  }
+
+  /** Continue replay from first PDU received at or after nanoTime, relative to first PDU captured */
+  public void seekTime(long nanoTime)
+  {
+    seek(pduIndex.findRecord(nanoTime));
+  }
+
+  /** @return pending seek, or -1 if none, discarding its wake so the first wait from the new position is kept */
+  private int takeSeek()
+  {
+    synchronized(seekRecord) {
+      int seek = seekRecord.getAndSet(-1);
+      if (seek >= 0)
+        scheduler.cancelWake();
+      return seek;
+    }
+  }
+
+  /** @return record, or start of range in direction of play if outside range */
+  private int startWithinRange(int record)
+  {
+    int last = Math.min(rangeLast, pduIndex.size() - 1);
+    if (record >= rangeFirst && record <= last)
+      return record;
+    return reversePlay ? last : rangeFirst;
   }
+
+  /** @return reason for stopping at either end of file, or of range if one is set */
+  private String endReason(boolean beginning)
+  {
+    if (beginning)
+      return (rangeFirst == 0) ? "Beginning of File" : "Beginning of range";
+    return (rangeLast == Integer.MAX_VALUE) ? "End of File" : "End of range";
+  }
+
   public File[] getSaveFileSet()
   {
     return new File[]{saveFile,saveIndexFile};
@@ -133,18 +239,13 @@ public class DISPlayer
   private Thread runThread;
   private Runnable packetWriter;
 
-  byte[] indexBA = new byte[IDXFILE_RECORD_SIZE];
-  byte[] pktBA   = new byte[MAX_PDU_SIZE];
-
-  private ByteBuffer byte2LongBB = ByteBuffer.allocate(IDXFILE_RECORD_SIZE);
-  private ByteBuffer byte2wordBB = ByteBuffer.allocate(2);
-
   int nextIndexRecord = 0;
   long lastTime = -1;
 
-  private DatagramPacket returnTheNextOneAfterSleeping(boolean fastPlay, boolean reversePlay) throws Exception
+  /** @return reused view of next PDU in mapped capture, once due, or null at either end */
+  private ByteBuffer returnTheNextOneAfterSleeping(boolean reversePlay) throws Exception
   {
-    randIndexFile.seek(nextIndexRecord * indexBA.length);
+    int record = nextIndexRecord;
     if(reversePlay) {
       nextIndexRecord--;
     }
@@ -152,33 +253,23 @@ public class DISPlayer
       nextIndexRecord++;
     }
 
-    int ret = randIndexFile.read(indexBA);
-    byte2LongBB.clear();
-    byte2LongBB.put(indexBA);
-    if (ret == indexBA.length) {
-      long nanoTime = byte2LongBB.getLong(IDXFILE_RECDNANOTIME_IDX);
+    if (record >= pduIndex.size()) {
+      pduIndex.refresh();  // files may still be growing while recording
+      pduData.refresh();
+    }
+    if (record >= rangeFirst && record <= rangeLast && record < pduIndex.size()) {
+      long nanoTime = pduIndex.getNanoTime(record);
       //System.out.println("got nanoDelay = "+nanoTime);
-      long filePtr = byte2LongBB.getLong(IDXFILE_FILEPTR_IDX);
-
-      randFile.seek(filePtr);
-      randFile.read(pktBA);
-      byte2wordBB.clear();
-      byte2wordBB.put(pktBA, DISGrabber.PDU_LENGTH_FIELD_OFFSET, DISGrabber.PDU_LENGTH_FIELD_LENGTH);
-      int len = byte2wordBB.getShort(0);
-      DatagramPacket p = new DatagramPacket(pktBA, len, multicastGroup, port);
-
-      // sleep appropriately
-      if (!fastPlay) {
-        if (lastTime > 0) {
-          long interval = Math.abs(nanoTime - lastTime);   // in case we're going backwards
-          long millis = interval / 1000000l;
-          long nanos = (interval % 1000000l);
-          //System.out.println("sleeping for "+millis+" ms "+nanos+" ns");
-          Thread.sleep(millis, (int) nanos);
-        }
-      }
-      else
-        Thread.sleep(FAST_PLAY_SLEEP_MS); //Thread.yield();
+      long filePtr = pduIndex.getFilePointer(record);
+      int len = pduIndex.getLength(record);
+
+      ByteBuffer p = pduData.getPdu(filePtr, len);
+      pduData.readAhead(filePtr, reversePlay);  // fault in pages while waiting rather than while sending
+
+      // wait until due on capture timeline, which begins again at first packet or after looping
+      if (lastTime < 0)
+        scheduler.reset();
+      scheduler.awaitDeadline(nanoTime);
 
       lastTime = nanoTime;
       return p;
@@ -218,10 +309,29 @@ public class DISPlayer
     }
   }
 
+  /** @param b true to send as fast as possible, false to return to replay speed */
   public void setFastPlay(boolean b)
   {
-//  fastPlay = b;
-    fastPlay = false; // no longer supported
+    fastPlay = b;
+    scheduler.setSpeed(fastPlay ? DISReplayScheduler.AS_FAST_AS_POSSIBLE : speed);
+  }
+
+  /**
+   * @param newSpeed multiple of capture timing, from DISReplayScheduler.MIN_SPEED to MAX_SPEED,
+   * or DISReplayScheduler.AS_FAST_AS_POSSIBLE; may be changed while playing
+   * @throws IllegalArgumentException if out of range
+   */
+  public void setSpeed(double newSpeed) throws IllegalArgumentException
+  {
+    if (!fastPlay)
+      scheduler.setSpeed(newSpeed);
+    speed = newSpeed;
+  }
+
+  /** @return achieved versus intended timing so far */
+  public String getTimingReport()
+  {
+    return scheduler.getTimingReport();
   }
 
   public void setLoop(boolean b)
@@ -239,72 +349,98 @@ public class DISPlayer
     start(0);
   }
 
-  private boolean fastPlay = false; // no longer supported
+  private boolean fastPlay = false;
   private boolean reversePlay = false;
   private boolean loop = false;
 
   public void start(int beginningIdx)
   {
-    nextIndexRecord = beginningIdx;
+    nextIndexRecord = startWithinRange(beginningIdx);
 
     packetWriter = () -> {
         String reasonForStopping;
         try {
             do {
+                int seek = takeSeek();
+                if(seek >= 0) {
+                    nextIndexRecord = Math.max(rangeFirst, Math.min(seek, Math.min(rangeLast, pduIndex.size() - 1)));
+                    lastTime = -1;  // timeline begins again from here
+                }
+                else if(reversePlay ? nextIndexRecord > rangeLast : nextIndexRecord < rangeFirst) {
+                    nextIndexRecord = startWithinRange(nextIndexRecord);  // range set ahead of replay position
+                    lastTime = -1;
+                }
                 int pktNum = nextIndexRecord;
-                DatagramPacket packet = returnTheNextOneAfterSleeping(fastPlay,reversePlay);
+                ByteBuffer packet = returnTheNextOneAfterSleeping(reversePlay);
                 if(packet==null) {
                     if(!loop) {
-                        reasonForStopping = "End of File";
+                        reasonForStopping = endReason(reversePlay);
                         break;
                     }
-                    else { //looping
-                        nextIndexRecord = 0;
+                    else { //looping, from whichever end of range play starts at
+                        nextIndexRecord = reversePlay ? Math.min(rangeLast, pduIndex.refresh() -1) : rangeFirst;
                         lastTime = -1;
-                        packet = returnTheNextOneAfterSleeping(fastPlay,reversePlay);
+                        pktNum = nextIndexRecord;
+                        packet = returnTheNextOneAfterSleeping(reversePlay);
                         if(packet==null) {
-                            reasonForStopping = "End of File";
+                            reasonForStopping = endReason(reversePlay);
                             break;
                         }
                     }
                 }
 
                 synchronized(paused) {
-                    while(paused.is())
-                        paused.wait();
+                    if(paused.is()) {
+                        while(paused.is() && seekRecord.get() < 0)
+                            paused.wait();
+                        if(!paused.is())
+                            scheduler.rebase(lastTime);  // resume timeline from here rather than catching up
+                    }
                 }
+                if(seekRecord.get() >= 0)
+                    continue;  // seek while waiting or paused, so PDU before seek is not sent
                 
-                socket.send(packet);
+                int pduStart = packet.position();
+                channel.send(packet, destination);  // direct from mapping, no copy
+                packet.position(pduStart);
                 notifySentListeners(packet,pktNum);
-                if(count != null){
+                if(count >= 0){
                     if(--count <= 0) {
                         reasonForStopping = "Requested count completed";
                         break;
                     }
                 }
                 
-                if(nextIndexRecord < 0 ) {  // worked down to zero
+                if(nextIndexRecord < rangeFirst) {  // worked down to start of file or range
                     if(!loop) {
-                        reasonForStopping = "Beginning of File";
+                        reasonForStopping = endReason(true);
                         break;
                     }
                     else {
-                        long numRecs = randIndexFile.length()/indexBA.length;
-                        nextIndexRecord = (int)numRecs -1;
+                        nextIndexRecord = Math.min(rangeLast, pduIndex.refresh() -1);
                         lastTime=-1;
                     }
                 }
             }
             while(true);  //infinite loop
         }
+        catch(InterruptedException | ClosedChannelException ex) {
+            reasonForStopping = "Stopped";  // by stop() while waiting or sending
+        }
         catch(Exception ex) {
             reasonForStopping = "Exception: "+ex.getLocalizedMessage();
         }
-        if(!socket.isClosed())
-            socket.close();
+        try {
+            channel.close();
+            if(pduIndex != null)
+                pduIndex.close();
+            if(pduData != null)
+                pduData.close();
+        }
+        catch(IOException ex) {}
         running = false;
         runThread=null;
-        notifyStoppedListeners(reasonForStopping);
+        notifyStoppedListeners(reasonForStopping + ", " + scheduler.getTimingReport());
     };
     runThread = new Thread(packetWriter,"DISPlayer");
     runThread.setPriority(Thread.NORM_PRIORITY);   //todo tweek
@@ -315,9 +451,15 @@ public class DISPlayer
 
   public void stop()
   {
-    if(socket != null){
-      socket.close();  // will interrupt blocked receive()
+    if(channel != null){
+      try {
+        channel.close();  // will end blocked send()
+      }
+      catch(IOException ex) {}
     }
+    Thread thread = runThread;
+    if(thread != null)
+      thread.interrupt();  // will end wait for a distant deadline
   }
 
   public boolean isRunning()
@@ -327,14 +469,19 @@ public class DISPlayer
 
   public static interface DISSentListener
   {
-    public void packetSent(DatagramPacket packet, int totalSent, boolean inReverseMode);
+    /**
+     * Called on the replay thread after each PDU is sent, so should return quickly
+     * @param packet view of PDU just sent, from position to limit, only valid during the call
+     * @param totalSent index record number of PDU
+     * @param inReverseMode whether playing in reverse
+     */
+    public void packetSent(ByteBuffer packet, int totalSent, boolean inReverseMode);
   }
   private Vector<DISSentListener> sendListeners = new Vector<>();
-  private void notifySentListeners(DatagramPacket packet, int count)
+  private void notifySentListeners(ByteBuffer packet, int count)
   {
-      sendListeners.forEach(lis -> {
-          lis.packetSent(packet,count,reversePlay);
-      });
+      for (int i = 0; i < sendListeners.size(); i++)  // no per-PDU iterator or lambda
+          sendListeners.get(i).packetSent(packet,count,reversePlay);
   }
   public void addSentListener(DISSentListener lis)
   {
@@ -45,16 +45,16 @@ import java.awt.Color;
 import java.awt.Component;
 import java.io.*;
 import java.lang.reflect.Method;
-import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.DefaultListCellRenderer;
-import javax.swing.DefaultListModel;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JList;
@@ -143,6 +143,12 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
   File[] captureFileSet;
   File captureFile;
   RandomAccessFile randomAccessFile;
+  DISPduIndex pduIndex;
+  /** PDU list rows read from pduIndex mapping rather than held on the heap */
+  final DISPduListModel pduListModel = new DISPduListModel();
+  /** Capture times of replay range marks, which apply while their toggle buttons are selected */
+  private long rangeStartNanos, rangeEndNanos;
+  private boolean updatingTimeSlider;
 
   private void setCaptureFileSet(File[] fa)
   {
@@ -155,6 +161,30 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
       System.err.println("Can't make ra file from " + fa[0].getAbsolutePath() + " : " + ex.getLocalizedMessage());
       randomAccessFile = null;
     }
+    closePduIndex();
+    try {
+      pduIndex = new DISPduIndex(fa[1]);
+      pduListModel.setIndex(pduIndex);
+    }
+    catch (IOException ex) {
+      System.err.println("Can't map index file " + fa[1].getAbsolutePath() + " : " + ex.getLocalizedMessage());
+      pduIndex = null;
+    }
+    clearReplayRange();
+  }
+
+  private void closePduIndex()
+  {
+    pduListModel.clear();
+    if (pduIndex != null) {
+      try {
+        pduIndex.close();
+      }
+      catch (IOException ex) {
+        System.err.println("Error closing index file: " + ex.getLocalizedMessage());
+      }
+      pduIndex = null;
+    }
   }
   private File[] getCaptureFileSet()
   {
@@ -168,15 +198,18 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
     return (indexFile.exists());
   }
 
-  class ByteArrayListRenderer extends DefaultListCellRenderer
+  /** Prototype row value, so that JList sizes rows without rendering every PDU */
+  static final Integer PROTOTYPE_RECORD = -1;
+
+  class PduIndexListRenderer extends DefaultListCellRenderer
   {
     @Override
     public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus)
     {
       Component c = super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
-      if (c instanceof JLabel && value instanceof byte[]) {
+      if (c instanceof JLabel && value instanceof Integer) {
         // note internal list index is zero-based but output string is one-based
-        String s = translateBytes((byte[]) value, index+1);
+        String s = PROTOTYPE_RECORD.equals(value) ? "1000000. DisPduType 71 INFORMATION_OPERATIONS_ACTION 10000.000s" : translateRecord((Integer) value, index+1);
         ((JLabel) c).setText(s);
       }
       return c;
@@ -184,15 +217,13 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
   }
   
   StringBuilder rendererSB = new StringBuilder();
-  private ByteBuffer rendererBB = ByteBuffer.allocate(IDXFILE_RECORD_SIZE);
+  DecimalFormat formatPrecision3 = new DecimalFormat ("#0.000s");
 
-  private String translateBytes(byte[] ba, int index)
+  private String translateRecord(int record, int index)
   {
     try {
-      // from pduFactory:
-      // Promote a signed byte to an int, then do a bitwise AND to wipe out everthing but the
-      // first eight bits. This effectively lets us read this as an unsigned byte
-      int pduType = 0x000000FF & (int) ba[2]; // The pdu type is a one-byte, unsigned byte in the third byte position.
+      // The pdu type is a one-byte, unsigned byte in the third byte position, saved in the index
+      int pduType = pduIndex.getPduType(record);
 
       // Do a lookup to get the enumeration instance that corresponds to this value.
       DisPduType pduTypeEnum = DisPduType.values()[pduType];
@@ -203,18 +234,15 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
       //rendererSB.append(' ');
       //rendererSB.append(pduTypeEnum.getDescription());
 
-      rendererBB.clear();
-      rendererBB.put(ba);
-      long time = rendererBB.getLong(IDXFILE_RECDNANOTIME_IDX);
+      long time = pduIndex.getNanoTime(record);
       double displayTime = time / 1000000000.;  // turn into seconds
       rendererSB.append(" ");
 	  // display timestamp
-	  DecimalFormat   formatPrecision3 = new DecimalFormat ("#0.000s");
       rendererSB.append(formatPrecision3.format(displayTime));
       return rendererSB.toString();
     }
     catch (Throwable ex) {
-      System.err.println("Error decoding DIS packet in DISPlayerRecorderPanel.translateBytes() " + ex.getLocalizedMessage());
+      System.err.println("Error decoding DIS packet in DISPlayerRecorderPanel.translateRecord() " + ex.getLocalizedMessage());
       return "";
     }
   }
@@ -299,8 +327,8 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
 
   private void clearPduBuffers()
   {
-    DefaultListModel dlm = (DefaultListModel) pduList.getModel();
-    dlm.removeAllElements();
+    closePduIndex();
+    clearReplayRange();
 
     // TODO clear PDU values, hex display, XML display
 
@@ -331,14 +359,19 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
     });
   }
 
+  /** PDU most recently sent and not yet highlighted, or -1 */
+  private final AtomicInteger lastSentPdu = new AtomicInteger(-1);
+
   @Override
-  public void packetSent(DatagramPacket packet, int pktNum, boolean rev)
+  public void packetSent(ByteBuffer packet, int pktNum, boolean rev)
   {
-    // We're not in swing thread here
-    final int idx = pktNum;
+    // We're not in swing thread here; at accelerated rates only the latest PDU sent is highlighted
+    if (lastSentPdu.getAndSet(pktNum) >= 0)
+      return;  // highlight already pending
     final boolean inReverse = rev;
 
     SwingUtilities.invokeLater(() -> {
+        int idx = lastSentPdu.getAndSet(-1);
         int nextToHighlight;
         
         if(inReverse) {
@@ -357,27 +390,89 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
     });
   }
 
+  /** true while a list refresh is queued on the event thread and not yet started */
+  private final AtomicBoolean refreshPending = new AtomicBoolean();
+
   @Override
-  @SuppressWarnings("unchecked")
   public void packetReceived(DISGrabber grabberInstance, int totalReceived)
   {
-    // We're not in swing thread here
-    final DISGrabber myGrabber = grabberInstance;
+    // We're not in swing thread here; grabber has written index records up to totalReceived
+    if (refreshPending.getAndSet(true))
+      return;  // queued refresh will pick up these records too
     SwingUtilities.invokeLater(() -> {
-        DefaultListModel<byte[]> mod = (DefaultListModel<byte[]>) pduList.getModel();  // this cast is "unchecked"
-        int startNum = mod.getSize();
-        List<byte[]> pointerList = myGrabber.getPointerList();
-        int delta = pointerList.size() - startNum;
-        int idx = 0;
-        for (int i = 0; i < delta; i++) {
-            mod.insertElementAt(pointerList.get(startNum + i), startNum + i);
-            idx = startNum + i;
+        refreshPending.set(false);
+        try {
+            if (pduListModel.refresh() == 0)
+                return;  // already shown by an earlier notification
+        }
+        catch (IOException ex) {
+            System.err.println("Error mapping index file: " + ex.getLocalizedMessage());
+            return;
         }
         //jList1.setSelectedIndex(idx);  if we do this, we load each panel on the right side
-        pduList.ensureIndexIsVisible(idx);
+        pduList.ensureIndexIsVisible(pduListModel.getSize() - 1);
+        updateTimeSlider();
     });
   }
 
+  /** Show position of selected PDU, or start, on capture timeline; slider counts milliseconds */
+  private void updateTimeSlider()
+  {
+    long duration = 0;
+    long position = 0;
+    if (pduIndex != null && pduIndex.size() > 0) {
+      duration = pduIndex.getDuration();
+      int selected = pduList.getSelectedIndex();
+      if (selected >= 0 && selected < pduListModel.getSize())
+        position = pduIndex.getNanoTime(pduListModel.getRecord(selected));
+    }
+    updatingTimeSlider = true;
+    timeSlider.setMaximum(toSliderValue(duration));
+    timeSlider.setValue(toSliderValue(position));
+    updatingTimeSlider = false;
+    timeLabel.setText(formatCaptureTime(position) + " / " + formatCaptureTime(duration));
+  }
+
+  private static int toSliderValue(long nanoTime)
+  {
+    return (int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMillis(nanoTime));
+  }
+
+  /** @return time relative to first PDU captured as [h:]m:ss.s */
+  static String formatCaptureTime(long nanoTime)
+  {
+    long tenths  = nanoTime / 100_000_000L;
+    long seconds = tenths / 10;
+    if (seconds >= 3600)
+      return String.format("%d:%02d:%02d.%d", seconds / 3600, (seconds / 60) % 60, seconds % 60, tenths % 10);
+    return String.format("%d:%02d.%d", seconds / 60, seconds % 60, tenths % 10);
+  }
+
+  /** Show range marks and apply them to any replay in progress */
+  private void updateReplayRange()
+  {
+    rangeStartToggleButton.setText(rangeStartToggleButton.isSelected() ? "[" + formatCaptureTime(rangeStartNanos)
+                                   : NbBundle.getMessage(getClass(), "DISPlayerRecorderPanel.rangeStartToggleButton.text"));
+    rangeEndToggleButton.setText(rangeEndToggleButton.isSelected() ? formatCaptureTime(rangeEndNanos) + "]"
+                                 : NbBundle.getMessage(getClass(), "DISPlayerRecorderPanel.rangeEndToggleButton.text"));
+    if (player != null && player.isRunning())
+      applyReplayRange(player);
+  }
+
+  private void applyReplayRange(DISPlayer p)
+  {
+    p.setTimeRange(rangeStartToggleButton.isSelected() ? rangeStartNanos : 0,
+                   rangeEndToggleButton.isSelected()   ? rangeEndNanos   : Long.MAX_VALUE);
+  }
+
+  private void clearReplayRange()
+  {
+    rangeStartToggleButton.setSelected(false);
+    rangeEndToggleButton.setSelected(false);
+    updateReplayRange();
+    updateTimeSlider();
+  }
+
   private File findFreeFile(File parent, File defFile)
   {
     int num = 1;
@@ -578,28 +673,12 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
     beginningButton.doClick();  // move to first
   }
   
-  @SuppressWarnings("unchecked")
   private void loadItUp(File data, File idxF)
   {
-    try {
-      BufferedInputStream bis = new BufferedInputStream(new FileInputStream(idxF));
-      DefaultListModel<byte[]> mod = (DefaultListModel<byte[]>) pduList.getModel(); // this cast is "unchecked"
-      int ret;
-      do {
-        byte[] buf = new byte[IDXFILE_RECORD_SIZE];
-        ret = bis.read(buf);
-        if (ret != IDXFILE_RECORD_SIZE)
-          break;
-        mod.addElement(buf);
-        pduList.ensureIndexIsVisible(mod.getSize() - 1);
-      }
-      while (true);
-    }
-    catch (IOException ex) {
-      System.err.println("bad load: " + ex.getLocalizedMessage());
+    setCaptureFileSet(new File[]{data, idxF});  // maps index rather than reading records
+    if (pduIndex == null)
       return;
-    }
-    setCaptureFileSet(new File[]{data, idxF});
+    pduList.ensureIndexIsVisible(pduListModel.getSize() - 1);
   }
   
   InetAddress getNetAddress()
@@ -801,7 +880,8 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
       player = new DISPlayer(fa);
       player.addStoppedtListener(this);
       player.addSentListener(this);
-//      player.setFastPlay(fast); // no longer supported
+      player.setSpeed(getReplaySpeed());
+      player.setFastPlay(fast);
       player.setReversePlay(reverse);
       player.setLoop(isLoop());
 
@@ -809,13 +889,16 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
       player.setMulticastGroup(getNetAddress());
       player.setPort(getNetPort());
       player.setCount(pduCount);
+      applyReplayRange(player);  // selected PDU outside range starts from range instead
 
       int startingPacket = pduList.getSelectedIndex();
-      int sz = pduList.getModel().getSize();
-      if (!reverse) {
-          player.start(startingPacket >= 0 ? startingPacket : 0);
+      int sz = pduListModel.getSize();
+      if (startingPacket >= 0) {
+          player.start(pduListModel.getRecord(startingPacket));
+      } else if (!reverse) {
+          player.start(0);
       } else {
-          player.start(startingPacket >= 0 ? startingPacket : sz - 1);
+          player.start(sz > 0 ? pduListModel.getRecord(sz - 1) : 0);
       }
   }
 
@@ -844,17 +927,7 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
     if (!hasPDUs())
         return false;
 
-    DefaultListModel pduListModel = (DefaultListModel) pduList.getModel();
-    int pduListSize = pduListModel.getSize();
-
-    for (int index = pduListSize - 1; index >=0; index--)
-    {
-        if (pduList.isSelectedIndex(index))
-        {
-            return true;
-        }
-    }
-    return false;
+    return !pduList.isSelectionEmpty();
   }
 
 
@@ -919,6 +992,12 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
         endButton = new javax.swing.JButton();
         loopToolBar = new javax.swing.JToolBar();
         loopToggleButton = new javax.swing.JToggleButton();
+        speedComboBox = new javax.swing.JComboBox<>();
+        timeToolBar = new javax.swing.JToolBar();
+        rangeStartToggleButton = new javax.swing.JToggleButton();
+        timeSlider = new javax.swing.JSlider();
+        rangeEndToggleButton = new javax.swing.JToggleButton();
+        timeLabel = new javax.swing.JLabel();
 
         setLayout(new java.awt.BorderLayout());
 
@@ -932,8 +1011,9 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
             }
         });
 
-        pduList.setModel(new DefaultListModel());
-        pduList.setCellRenderer(new ByteArrayListRenderer());
+        pduList.setModel(pduListModel);
+        pduList.setCellRenderer(new PduIndexListRenderer());
+        pduList.setPrototypeCellValue(PROTOTYPE_RECORD);
         pduList.addPropertyChangeListener(new java.beans.PropertyChangeListener() {
             public void propertyChange(java.beans.PropertyChangeEvent evt) {
                 pduListPropertyChange(evt);
@@ -1411,6 +1491,17 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
         });
         loopToolBar.add(loopToggleButton);
 
+        speedComboBox.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "0.25x", "0.5x", "1x", "2x", "5x", "10x", "100x", "fastest" }));
+        speedComboBox.setSelectedIndex(2);
+        speedComboBox.setToolTipText(org.openide.util.NbBundle.getMessage(DISPlayerRecorderPanel.class, "DISPlayerRecorderPanel.speedComboBox.toolTipText")); // NOI18N
+        speedComboBox.setFocusable(false);
+        speedComboBox.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                speedComboBoxActionPerformed(evt);
+            }
+        });
+        loopToolBar.add(speedComboBox);
+
         vcrPanel.add(loopToolBar);
 
         gridBagConstraints = new java.awt.GridBagConstraints();
@@ -1419,6 +1510,49 @@ public class DISPlayerRecorderPanel extends javax.swing.JPanel
         gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
         toolbarPanel.add(vcrPanel, gridBagConstraints);
 
+        timeToolBar.setRollover(true);
+
+        rangeStartToggleButton.setText(NbBundle.getMessage(getClass(), "DISPlayerRecorderPanel.rangeStartToggleButton.text")); // NOI18N
+        rangeStartToggleButton.setToolTipText(org.openide.util.NbBundle.getMessage(DISPlayerRecorderPanel.class, "DISPlayerRecorderPanel.rangeStartToggleButton.toolTipText")); // NOI18N
+        rangeStartToggleButton.setFocusable(false);
+        rangeStartToggleButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                rangeStartToggleButtonActionPerformed(evt);
+            }
+        });
+        timeToolBar.add(rangeStartToggleButton);
+
+        timeSlider.setMaximum(0);
+        timeSlider.setToolTipText(org.openide.util.NbBundle.getMessage(DISPlayerRecorderPanel.class, "DISPlayerRecorderPanel.timeSlider.toolTipText")); // NOI18N
+        timeSlider.setValue(0);
+        timeSlider.setFocusable(false);
+        timeSlider.addChangeListener(new javax.swing.event.ChangeListener() {
+            public void stateChanged(javax.swing.event.ChangeEvent evt) {
+                timeSliderStateChanged(evt);
+            }
+        });
+        timeToolBar.add(timeSlider);
+
+        rangeEndToggleButton.setText(NbBundle.getMessage(getClass(), "DISPlayerRecorderPanel.rangeEndToggleButton.text")); // NOI18N
+        rangeEndToggleButton.setToolTipText(org.openide.util.NbBundle.getMessage(DISPlayerRecorderPanel.class, "DISPlayerRecorderPanel.rangeEndToggleButton.toolTipText")); // NOI18N
+        rangeEndToggleButton.setFocusable(false);
+        rangeEndToggleButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                rangeEndToggleButtonActionPerformed(evt);
+            }
+        });
+        timeToolBar.add(rangeEndToggleButton);
+
+        timeLabel.setText(NbBundle.getMessage(getClass(), "DISPlayerRecorderPanel.timeLabel.text")); // NOI18N
+        timeToolBar.add(timeLabel);
+
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 1;
+        gridBagConstraints.gridwidth = java.awt.GridBagConstraints.REMAINDER;
+        gridBagConstraints.fill = java.awt.GridBagConstraints.HORIZONTAL;
+        toolbarPanel.add(timeToolBar, gridBagConstraints);
+
         add(toolbarPanel, java.awt.BorderLayout.SOUTH);
     }// </editor-fold>//GEN-END:initComponents
 
@@ -1427,14 +1561,13 @@ private void pduListValueChanged(javax.swing.event.ListSelectionEvent evt) {//GE
   if (evt != null && evt.getValueIsAdjusting())
     return;
   
-  byte[] ba = (byte[]) pduList.getSelectedValue();
-  if (ba == null)
+  int selected = pduList.getSelectedIndex();
+  if (selected < 0 || pduIndex == null)
     return;
 
-  // build a long from bytes3-11
-  ByteBuffer byteBuffer = ByteBuffer.allocate(IDXFILE_FILEPTR_IDX_SIZE);
-  byteBuffer.put(ba, IDXFILE_FILEPTR_IDX, IDXFILE_FILEPTR_IDX_SIZE);
-  long filePtr = byteBuffer.getLong(0);
+  int record = pduListModel.getRecord(selected);
+  updateTimeSlider();
+  long filePtr = pduIndex.getFilePointer(record);
   // go there and read the data, just getting the largest hunk
   int numRead;
   try {
@@ -1445,9 +1578,7 @@ private void pduListValueChanged(javax.swing.event.ListSelectionEvent evt) {//GE
     System.err.println("Bad pdu build: " + ex.getLocalizedMessage());
     return;
   }
-  byteBuffer.clear();
-  byteBuffer.put(ba, IDXFILE_RECORDSIZE_IDX, IDXFILE_RECORDSIZE_SIZE);
-  int sz = byteBuffer.getInt(0);
+  int sz = pduIndex.getLength(record);
 
   // formattedPduModeButton shows panel diplay
   if(formattedPduModeButton.isSelected() || textModeButton.isSelected()) {
@@ -1548,6 +1679,54 @@ private void loopToggleButtonActionPerformed(java.awt.event.ActionEvent evt)//GE
     player.setLoop(isLoop());
 }//GEN-LAST:event_loopToggleButtonActionPerformed
 
+/** @return replay speed chosen, such as 0.25 for "0.25x", or DISReplayScheduler.AS_FAST_AS_POSSIBLE */
+private double getReplaySpeed()
+{
+  String speedText = (String) speedComboBox.getSelectedItem();
+  if (speedText == null || !speedText.endsWith("x"))
+    return DISReplayScheduler.AS_FAST_AS_POSSIBLE;
+  return Double.parseDouble(speedText.substring(0, speedText.length() - 1));
+}
+
+private void speedComboBoxActionPerformed(java.awt.event.ActionEvent evt)//GEN-FIRST:event_speedComboBoxActionPerformed
+{//GEN-HEADEREND:event_speedComboBoxActionPerformed
+  if(player != null && player.isRunning())
+    player.setSpeed(getReplaySpeed());  // takes effect from current position on the timeline
+}//GEN-LAST:event_speedComboBoxActionPerformed
+
+private void timeSliderStateChanged(javax.swing.event.ChangeEvent evt)//GEN-FIRST:event_timeSliderStateChanged
+{//GEN-HEADEREND:event_timeSliderStateChanged
+  if (updatingTimeSlider || pduIndex == null || pduListModel.getSize() == 0)
+    return;
+  long nanoTime = TimeUnit.MILLISECONDS.toNanos(timeSlider.getValue());
+  timeLabel.setText(formatCaptureTime(nanoTime) + " / " + formatCaptureTime(pduIndex.getDuration()));
+  if (timeSlider.getValueIsAdjusting())
+    return;  // seek once released rather than through every value dragged past
+
+  int record = pduIndex.findRecord(nanoTime);  // binary search of capture times
+  if (player != null && player.isRunning())
+    player.seek(record);
+  int row = Math.min(pduListModel.findRow(record), pduListModel.getSize() - 1);
+  pduList.setSelectedIndex(row);  // also where replay starts when next played
+  pduList.ensureIndexIsVisible(row);
+}//GEN-LAST:event_timeSliderStateChanged
+
+private void rangeStartToggleButtonActionPerformed(java.awt.event.ActionEvent evt)//GEN-FIRST:event_rangeStartToggleButtonActionPerformed
+{//GEN-HEADEREND:event_rangeStartToggleButtonActionPerformed
+  rangeStartNanos = TimeUnit.MILLISECONDS.toNanos(timeSlider.getValue());
+  if (rangeStartToggleButton.isSelected() && rangeEndToggleButton.isSelected() && rangeEndNanos < rangeStartNanos)
+    rangeEndToggleButton.setSelected(false);  // end now precedes start, so mark again
+  updateReplayRange();
+}//GEN-LAST:event_rangeStartToggleButtonActionPerformed
+
+private void rangeEndToggleButtonActionPerformed(java.awt.event.ActionEvent evt)//GEN-FIRST:event_rangeEndToggleButtonActionPerformed
+{//GEN-HEADEREND:event_rangeEndToggleButtonActionPerformed
+  rangeEndNanos = TimeUnit.MILLISECONDS.toNanos(timeSlider.getValue() + 1) - 1;  // whole of last millisecond shown
+  if (rangeEndToggleButton.isSelected() && rangeStartToggleButton.isSelected() && rangeStartNanos > rangeEndNanos)
+    rangeStartToggleButton.setSelected(false);  // start now follows end, so mark again
+  updateReplayRange();
+}//GEN-LAST:event_rangeEndToggleButtonActionPerformed
+
     private void clearButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_clearButtonActionPerformed
         if (!hasPDUs())
         {
@@ -1555,19 +1734,11 @@ private void loopToggleButtonActionPerformed(java.awt.event.ActionEvent evt)//GE
             return; // this is safety check, state machine should keep button disabled if pduList is empty
         }
         
-        boolean foundSelection = false;
-        int selectionCount = 0;
-        DefaultListModel pduListModel = (DefaultListModel) pduList.getModel();
+        int[] selection = pduList.getSelectedIndices();
+        boolean foundSelection = (selection.length > 0);
+        int selectionCount = selection.length;
         int pduListSize = pduListModel.getSize();
         
-        for (int index = pduListSize - 1; index >=0; index--)
-        {
-            if (pduList.isSelectedIndex(index))
-            {
-                foundSelection = true;
-                selectionCount++;
-            }
-        }        
         if (foundSelection)
         {
             String lastWord = "entries";
@@ -1580,15 +1751,7 @@ private void loopToggleButtonActionPerformed(java.awt.event.ActionEvent evt)//GE
 
             if (ret == JOptionPane.YES_OPTION) // Delete selected PDUs
             {
-                for (int index = pduListSize - 1; index >=0; index--)
-                {
-                    if (pduList.isSelectedIndex(index))
-                    {
-                        foundSelection = true;
-                        selectionCount++;
-                        pduListModel.remove(index);
-                    }
-                }
+                pduListModel.remove(selection); // rows only, records stay in capture files
                 clearButton.setEnabled(hasPDUs()); // disable button, if list is now empty
                 return;
             }
@@ -1709,6 +1872,8 @@ private void loopToggleButtonActionPerformed(java.awt.event.ActionEvent evt)//GE
     public javax.swing.JLabel playbackStateTF;
     private javax.swing.JLabel portLabel;
     private javax.swing.JTextField portTF;
+    private javax.swing.JToggleButton rangeEndToggleButton;
+    private javax.swing.JToggleButton rangeStartToggleButton;
     private javax.swing.JRadioButton rawHexBytesButton;
     public javax.swing.JButton recordButton;
     public javax.swing.JButton recordPauseButton;
@@ -1718,8 +1883,12 @@ private void loopToggleButtonActionPerformed(java.awt.event.ActionEvent evt)//GE
     public javax.swing.JButton reverseStepButton;
     public javax.swing.JButton saveButton;
     private javax.swing.JPanel selectionPanel;
+    private javax.swing.JComboBox<String> speedComboBox;
     public javax.swing.JButton stepButton;
     private javax.swing.JRadioButton textModeButton;
+    private javax.swing.JLabel timeLabel;
+    private javax.swing.JSlider timeSlider;
+    private javax.swing.JToolBar timeToolBar;
     private javax.swing.JPanel toolbarPanel;
     private javax.swing.JPanel vcrPanel;
     private javax.swing.JButton wiresharkButton;
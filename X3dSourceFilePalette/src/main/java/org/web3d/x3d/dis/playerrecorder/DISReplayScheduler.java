@@ -0,0 +1,218 @@
+/*
+Copyright (c) 1995-2021 held by the author(s).  All rights reserved.
+ 
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+ 
+ * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer
+      in the documentation and/or other materials provided with the
+      distribution.
+ * Neither the names of the Naval Postgraduate School (NPS)
+      Modeling Virtual Environments and Simulation (MOVES) Institute
+      (https://www.nps.edu and https://MovesInstitute.nps.edu)
+      nor the names of its contributors may be used to endorse or
+      promote products derived from this software without specific
+      prior written permission.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.dis.playerrecorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * DISReplayScheduler.java
+ * Created on October 18, 2026
+ *
+ * Paces DIS replay against absolute deadlines on the capture timeline, rather than sleeping for the interval
+ * since the previous PDU, so that wake-up overshoot does not accumulate over a long replay.  Each deadline is
+ * the time base plus the PDU's distance in capture time from the first PDU, divided by the speed.  Waiting
+ * parks until shortly before a deadline and then spins, since parking alone typically wakes tens of
+ * microseconds to milliseconds late.  Achieved versus intended send time is measured for every PDU.
+ *
+ * awaitDeadline() and rebase() are called by the replay thread only; setSpeed(), wake() and cancelWake() may be
+ * called from any thread.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class DISReplayScheduler
+{
+  public static final double MIN_SPEED = 0.25;
+  public static final double MAX_SPEED = 100.0;
+  /** Speed that sends each PDU as soon as the previous one is sent, ignoring capture times */
+  public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+  /** Final stretch before a deadline that is spun rather than parked */
+  public static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+  /** Longest single park, so that speed changes and interruption are noticed during long capture gaps */
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+  private volatile double  speed = 1.0;
+  private volatile boolean speedChanged;
+  private volatile boolean woken;
+
+  private boolean started;
+  private long captureBase;    // capture time of PDU at wallBase
+  private long wallBase;       // System.nanoTime() at which PDU at captureBase was due
+  private long lastCaptureTime;
+
+  private long scheduledCount;
+  private long sumErrorNanos;
+  private long maxErrorNanos;
+  private long lastErrorNanos;
+
+  /**
+   * @param newSpeed multiple of capture speed, from MIN_SPEED to MAX_SPEED, or AS_FAST_AS_POSSIBLE
+   * @throws IllegalArgumentException if out of range
+   */
+  public void setSpeed(double newSpeed) throws IllegalArgumentException
+  {
+    if (newSpeed != AS_FAST_AS_POSSIBLE && !(newSpeed >= MIN_SPEED && newSpeed <= MAX_SPEED))
+      throw new IllegalArgumentException("Replay speed must be from " + MIN_SPEED + " to " + MAX_SPEED + ", was " + newSpeed);
+    speed = newSpeed;
+    speedChanged = true;
+  }
+
+  public double getSpeed()
+  {
+    return speed;
+  }
+
+  /** Start a new timeline at the next PDU, as when replay begins or loops around */
+  public void reset()
+  {
+    started = false;
+  }
+
+  /** End any wait in progress early, as when replay seeks elsewhere on the timeline */
+  public void wake()
+  {
+    woken = true;
+  }
+
+  /** Discard a wake() not yet acted on, as when the seek that called it is taken before any wait */
+  public void cancelWake()
+  {
+    woken = false;
+  }
+
+  /**
+   * Continue timeline from now, as after a pause, so that PDUs due meanwhile are not sent in a burst
+   * @param captureTime capture time of PDU most recently sent
+   */
+  public void rebase(long captureTime)
+  {
+    captureBase = captureTime;
+    wallBase = System.nanoTime();
+    lastCaptureTime = captureTime;
+    started = true;
+  }
+
+  /**
+   * Wait until a PDU is due
+   * @param captureTime received time of PDU in capture, in nanoseconds, increasing or (in reverse play) decreasing
+   * @return nanoseconds late compared with intended send time, 0 as fast as possible or if woken
+   * @throws InterruptedException if replay thread is interrupted while waiting
+   */
+  public long awaitDeadline(long captureTime) throws InterruptedException
+  {
+    if (!started)
+      rebase(captureTime);
+    if (speedChanged) {
+      speedChanged = false;
+      rebase(lastCaptureTime); // keep position on timeline, continue at new rate
+    }
+    lastCaptureTime = captureTime;
+    double rate = speed;
+    if (rate == AS_FAST_AS_POSSIBLE)
+      return 0;
+
+    long deadline;
+    while (true) {
+      deadline = wallBase + (long) (Math.abs(captureTime - captureBase) / rate);
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= SPIN_NANOS)
+        break;
+      LockSupport.parkNanos(Math.min(remaining - SPIN_NANOS, MAX_PARK_NANOS));
+      if (Thread.interrupted())
+        throw new InterruptedException("Replay interrupted");
+      if (woken) {
+        woken = false;
+        return 0;  // not sent on time, so not counted
+      }
+      if (speedChanged) {
+        speedChanged = false;
+        // position reached on timeline at old rate becomes new base
+        long now = System.nanoTime();
+        long progressed = (long) ((now - wallBase) * rate);
+        captureBase += (captureTime >= captureBase) ? progressed : -progressed;
+        wallBase = now;
+        rate = speed;
+        if (rate == AS_FAST_AS_POSSIBLE)
+          return 0;
+      }
+    }
+    while (System.nanoTime() < deadline)
+      Thread.onSpinWait();
+
+    long error = System.nanoTime() - deadline;
+    scheduledCount++;
+    sumErrorNanos += error;
+    maxErrorNanos = Math.max(maxErrorNanos, error);
+    lastErrorNanos = error;
+    return error;
+  }
+
+  /** @return PDUs sent against a deadline, not counting those sent as fast as possible */
+  public long getScheduledCount()
+  {
+    return scheduledCount;
+  }
+
+  public long getMeanErrorNanos()
+  {
+    return (scheduledCount == 0) ? 0 : sumErrorNanos / scheduledCount;
+  }
+
+  public long getMaxErrorNanos()
+  {
+    return maxErrorNanos;
+  }
+
+  /** @return lateness of most recent PDU, which stays bounded over a long replay rather than accumulating */
+  public long getLastErrorNanos()
+  {
+    return lastErrorNanos;
+  }
+
+  /** @return summary of achieved versus intended timing, such as for a stopped-replay message */
+  public String getTimingReport()
+  {
+    String speedText = (speed == AS_FAST_AS_POSSIBLE) ? "as fast as possible" : (speed + "x");
+    if (scheduledCount == 0)
+      return "replay " + speedText;
+    return String.format("replay %s, %d PDUs timed, late by mean %.3f ms, max %.3f ms, last %.3f ms",
+                         speedText, scheduledCount, getMeanErrorNanos() / 1e6, maxErrorNanos / 1e6, lastErrorNanos / 1e6);
+  }
+}
@@ -0,0 +1,479 @@
+/*
+Copyright (c) 1995-2023 held by the author(s).  All rights reserved.
+ 
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+ 
+ * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer
+      in the documentation and/or other materials provided with the
+      distribution.
+ * Neither the names of the Naval Postgraduate School (NPS)
+      Modeling Virtual Environments and Simulation (MOVES) Institute
+      (https://www.nps.edu and https://MovesInstitute.nps.edu)
+      nor the names of its contributors may be used to endorse or
+      promote products derived from this software without specific
+      prior written permission.
+ 
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.hanim.bvh;
+
+import javax.vecmath.Vector3d;
+
+/**
+ * BvhParser.java
+ * Created on October 18, 2026
+ *
+ * Parses BVH motion-capture source into a Hierarchy with Joint and Motion children,
+ * without any user-interface dependencies so that it can run headless (for example from
+ * org.web3d.x3d.cli.X3dEditCommandLine) as well as from BvhToX3dConversionAction.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class BvhParser
+{
+    /** Receives each parse problem; return false to cancel parsing. */
+    public interface ProblemHandler
+    {
+        boolean problem (int lineNumber, String line, String message);
+    }
+
+    private final ProblemHandler problemHandler;
+
+    private Hierarchy             hierarchy;
+    private BvhSkeletonParameters currentNode;
+    private Motion                motion      = new Motion();
+    private boolean               userSaysCancel = false;
+
+    /**
+     * @param problemHandler callback for parse problems, or null to only report them on System.err
+     */
+    public BvhParser(ProblemHandler problemHandler)
+    {
+        this.problemHandler = problemHandler;
+    }
+
+  /**
+   * Parse BVH source text.
+   * @param bvhSource complete text of BVH file
+   * @param bvhName base name used for the resulting Hierarchy
+   * @param includeVisualizationShapes whether ball-and-stick visualization shapes are included in X3D output
+   * @return parsed hierarchy, or null if parsing was terminated by a fatal problem or cancelled by problem handler
+   */
+  public Hierarchy parse(String bvhSource, String bvhName, boolean includeVisualizationShapes)
+  {
+        String line;
+        // (re)initialize
+		hierarchy   = new Hierarchy();
+		hierarchy.setBvhName(bvhName);
+		currentNode = hierarchy;
+        String   value, currentName;
+        String[] lines = bvhSource.split("\\n");
+        boolean     hierarchyFound = false;
+        boolean       motionParsed = false;
+        boolean insufficientValues;
+		userSaysCancel = false;
+                  
+        for (int i = 0; i < lines.length; i++)
+        {
+            if (userSaysCancel)
+                return null;
+            line = lines[i].trim();
+            if (!line.isEmpty())
+            {
+                if (motionParsed && isNumeric(line.split("[,\\s]+")[0]))
+                {
+                    // skip excess numeric lines after MOTION parsing is complete, see if anything else is there
+//                  continue;
+                }
+                else if   ((!hierarchyFound) && lines[i].startsWith("HIERARCHY"))
+                {
+                    hierarchyFound = true;
+                      motionParsed = false;
+                    if  (line.length() > ("HIERARCHY").length())
+                    {
+                        bvhParseProblem (i, line, "Illegal content \"" + line.substring(("HIERARCHY").length()).trim() + "\" found at end of line");
+                    }
+// create root Joint so that HAnimHumanoid can be positioned, oriented independently of BVH motion animation
+//                    Joint newJoint = new Joint();
+//                    newJoint.setParent(currentNode);
+//                    currentNode.addJoint(newJoint);
+//                    currentNode = newJoint;
+//					hierarchy.incrementHierarchyJointList(newJoint);
+                }
+                else if (!hierarchyFound)
+                {
+                        bvhParseProblem (i, line, "Illegal file content: HIERARCHY not found at start of file, BVH parsing terminated");
+                        return null; // nothing left to do
+                }
+                else if (line.startsWith("ROOT"))
+                {
+                    value = line.substring(4).trim(); // read remainder of line
+                    if (value.contains("{"))
+                    {
+                        value = value.substring(0,value.indexOf("{")).trim();
+                        hierarchy.setHierarchyRootName("ROOT_" + value);
+                        currentName     = value;
+                    }
+                    else
+                    {
+                        hierarchy.setHierarchyRootName("ROOT_" + value);
+                        currentName     = value;
+                        // now check for follow-on { character
+                        if (lines[i+1] == null)
+                        {
+                            bvhParseProblem (i, line, "Illegal content: premature eof after ROOT, BVH parsing terminated");
+                            return null; // nothing left to do
+                        }
+                        else if (lines[i+1].trim().startsWith("{"))
+                        {
+                            i++; // skip line
+                        }
+                        else 
+                        {
+                            bvhParseProblem (i, line, "Illegal content: no { bracket character provided after ROOT, BVH parsing terminated");
+                            return null; // nothing left to do
+                        }
+                    }
+                    if (hierarchy.getBvhName().isEmpty())
+                    {
+                        bvhParseProblem (i, line, "Illegal content: no name provided for ROOT");
+                    }
+                }
+                else if (line.startsWith("JOINT"))
+                {
+                    Joint newJoint = new Joint();
+                    newJoint.setParent(currentNode);
+                    newJoint.setAncestorHierarchy(hierarchy);
+                    currentNode.addJoint(newJoint);
+                    currentNode = newJoint;
+					hierarchy.incrementHierarchyJointList(newJoint);
+                    
+                    value = line.substring(5).trim(); // read remainder of line
+                    if (value.contains("{"))
+                    {
+                        value = value.substring(0,value.indexOf("{")).trim();
+                        newJoint.setBvhName(value);
+                        newJoint.assignHAnimNamesFromBvhModelName(value);
+                        currentName     = value;
+                    }
+                    else
+                    {
+                        newJoint.setBvhName(value);
+                        newJoint.assignHAnimNamesFromBvhModelName(value);
+                        currentName     = value;
+						// DEF names are set during serialization by Joint.getHierarchyOutputX3D()
+						
+                        // now check for follow-on { character
+                        if (lines[i+1] == null)
+                        {
+                            bvhParseProblem (i, line, "Illegal content: premature eof after JOINT, BVH parsing terminated");
+                            return null; // nothing left to do
+                        }
+                        else if (lines[i+1].trim().startsWith("{"))
+                        {
+                            i++; // skip line
+                        }
+                        else 
+                        {
+                            bvhParseProblem (i, line, "Illegal content: no { bracket character provided after JOINT, BVH parsing terminated");
+                            return null; // nothing left to do
+                        }
+                    }
+                    if (newJoint.getBvhName().isEmpty())
+                    {
+                        bvhParseProblem (i, line, "Illegal content: no name provided for JOINT");
+                    }
+                }
+                else if (line.startsWith("OFFSET")) // similar block below
+                {
+                    String   offset  = line.substring(6).trim(); // read remainder of line
+                    String[] offsets = offset.split("[,\\s]+");
+                    if (offset.contains(","))
+                    {
+                        bvhParseProblem (i, line, "Illegal content: no commas allowed in OFFSET value, ignored");
+                    }
+					else if (offset.isEmpty())
+                    {
+                        bvhParseProblem (i, line, "Illegal content: no OFFSET data values found, ignored");
+                        currentNode.setOffset (new Vector3d (0.0, 0.0, 0.0)); // ensure initialized
+                    }
+                    else if (offsets.length != 3)
+                    {
+                        bvhParseProblem (i, line, "Illegal content: incorrect number of OFFSET values found, expected 3");
+                        currentNode.setOffset (new Vector3d (0.0, 0.0, 0.0));
+                    }
+                    else // OFFSET is OK
+                    {
+                        currentNode.setOffsetX (Double.parseDouble(offsets[0]));
+                        currentNode.setOffsetY (Double.parseDouble(offsets[1]));
+                        currentNode.setOffsetZ (Double.parseDouble(offsets[2]));
+						
+						if  (currentNode instanceof Joint)
+							 currentNode.setCumulativeOffset(new Vector3d(
+								currentNode.getOffset().x + ((Joint)currentNode).getParent().getCumulativeOffset().x,
+								currentNode.getOffset().y + ((Joint)currentNode).getParent().getCumulativeOffset().y,
+								currentNode.getOffset().z + ((Joint)currentNode).getParent().getCumulativeOffset().z
+							 ));
+						else currentNode.setCumulativeOffset(currentNode.getOffset());
+                    }
+                }
+                else if (line.startsWith("CHANNELS"))
+                {
+                    String   channel  = line.substring(8).trim(); // read remainder of line
+                    String[] channels = channel.split("[,\\s]+");
+                    if (channel.contains(","))
+                    {
+                        bvhParseProblem (i, line, "Illegal content: no commas allowed in CHANNELS value, ignored");
+                    }
+					else if (channel.isEmpty())
+                    {
+                        bvhParseProblem (i, line, "Illegal content: no CHANNELS data values found, ignored");
+                        // TODO probably not safe to assume and set a default, typically 6-tuple or 3-tuple
+                    }
+					else // CHANNELS is OK
+                    {
+                        int channelCount = Integer.parseInt(channels[0]);
+                        hierarchy.augmentExpectedChannelsPerFrame(channelCount);
+                        if (channels.length != channelCount + 1)
+                        {
+                            bvhParseProblem (i, line, "Illegal content: incorrect length for channels");
+                            // handle this problem as best possible by passing along whatever channel data is present anyway
+                        }
+                        if (channel.contains(" "))
+                        {
+                            currentNode.setChannelNames(channel.substring(channel.indexOf(" ") + 1).split("[,\\s]+")); // skip channel count
+                        }
+                    }
+                }
+                else if (line.startsWith("{")) // begin definition for child Joint
+                {
+//                  continue; // skip line
+                }
+                else if (line.startsWith("}")) // completed definition for this child Joint
+                {
+                    if (currentNode instanceof Joint) // don't go above hierarchy node, which is root
+                    {
+                        currentNode = ((Joint)currentNode).getParent();
+                    }
+                }
+                else if (line.startsWith("End Site")) // no further child Joint elements, OFFSET expected next
+                {
+                    if (lines[i+1].trim().startsWith("{"))
+                    {
+                        i++; // skip line
+                        line = lines[i+1].trim();
+                    }
+                    if (line.startsWith("OFFSET")) // similar block above
+                    {
+                        String   offset  = line.substring(6).trim(); // read remainder of line
+                        String[] offsets = offset.split("[,\\s]+");
+                        if (offset.contains(","))
+                        {
+                            bvhParseProblem (i, line, "Illegal content: no commas allowed in OFFSET value, ignored");
+                        }
+						else if (offset.isEmpty())
+                        {
+                            bvhParseProblem (i, line, "Illegal content: no OFFSET data values found, ignored");
+                            ((Joint)currentNode).setSiteOffset (new Vector3d (0.0, 0.0, 0.0));
+                        }
+                        else if (offsets.length != 3)
+                        {
+                            bvhParseProblem (i, line, "Illegal content: incorrect number of OFFSET values found, expected 3");
+                            ((Joint)currentNode).setSiteOffset (new Vector3d (0.0, 0.0, 0.0));
+                        }
+                        else // OFFSET is OK
+                        {
+                            ((Joint)currentNode).setSiteIncluded(true);
+							double x = Double.parseDouble(offsets[0]);
+							double y = Double.parseDouble(offsets[1]);
+							double z = Double.parseDouble(offsets[2]);
+                            ((Joint)currentNode).setSiteOffsetX (x);
+                            ((Joint)currentNode).setSiteOffsetY (y);
+                            ((Joint)currentNode).setSiteOffsetZ (z);
+							if (x < hierarchy.getMinX()) hierarchy.setMinX(x);
+							if (y < hierarchy.getMinY()) hierarchy.setMinY(y);
+							if (z < hierarchy.getMinZ()) hierarchy.setMinZ(z);
+							if (x > hierarchy.getMaxX()) hierarchy.setMaxZ(x);
+							if (y > hierarchy.getMaxY()) hierarchy.setMaxY(y);
+							if (z > hierarchy.getMaxZ()) hierarchy.setMaxZ(z);
+                        }
+                        // now skip trailing } so that it does not pop us up the node hierarchy
+                        if (lines[i+2].trim().startsWith("}"))
+                        {
+                            i++; // skip line
+                            i++; // skip line
+//                            line = lines[i+1].trim();
+                        }
+                        else
+                        {
+                            bvhParseProblem (i, line, "Illegal content: no close } found after End Site OFFSET, ignored");
+                            return null; // nothing left to do
+                        }
+                    }
+                }
+                else if (line.startsWith("MOTION")) // begin definition for child Joint
+                {
+                    motion = new Motion();
+					motion.setAncestorHierarchy(hierarchy);
+                    if (lines[i+1] == null)
+                    {
+                        bvhParseProblem (i, line, "Illegal content: premature eof after MOTION, BVH parsing terminated");
+                        return null; // nothing left to do
+                    }
+                    if (lines[i+1].trim().startsWith("Frames:"))
+                    {
+                        line = lines[i+1].trim();
+                        i++; // skip line
+                        
+                        int frameCount = Integer.parseInt(line.substring(7).trim());
+                        motion.setExpectedFrameCount(frameCount);
+                    }
+                    if (lines[i+1] == null)
+                    {
+                        bvhParseProblem (i, line, "Illegal content: premature eof after Frames:, BVH parsing terminated");
+                        return null; // nothing left to do
+                    }
+                    if (lines[i+1].trim().startsWith("Frame Time:"))
+                    {
+                        line = lines[i+1].trim();
+                        i++; // skip line
+                        
+                        double frameTime = Double.parseDouble(line.substring(11).trim());
+                        motion.setFrameDuration(frameTime);
+                    }
+                    if (lines[i+1] == null)
+                    {
+                        bvhParseProblem (i, line, "Illegal content: premature eof after MOTION: Frames: Frame Time:, BVH parsing terminated");
+                        return null; // nothing left to do
+                    }
+                    line = lines[i+1].trim();
+                    i++; // skip line, now at start of values array
+                    
+                    String lastChannel = "";
+                    
+                    // process all frames of motion data (i.e. all remaining lines)
+                    for (int indexFrame = 0; indexFrame < motion.getExpectedFrameCount(); indexFrame++)
+                    {
+                        insufficientValues = false;
+                        int     expectedValueCount = hierarchy.getExpectedChannelsPerFrame();
+                        double[] frameValueArray    = new double[expectedValueCount];
+                        
+                        while (line.isEmpty()) // skip any expected blank lines
+                        {
+                            line = lines[i+1].trim();
+                            i++; // skip line
+                            if (i == lines.length) // reached end of file
+                                break;
+                        }
+                        if (line.contains(","))
+                        {
+                            bvhParseProblem (i, line, "Illegal content: no commas allowed in MOTION Frames array of values, ignored");
+                        }
+                        
+                        // each frame is on a separate line in the BVH file
+                        String[]frameStrings = line.split("[,\\s]+");
+                        if (frameStrings.length != expectedValueCount)
+                        {
+                            String valueMismatch;
+                            int differenceArrayLengths = frameStrings.length - expectedValueCount;
+                            if  (differenceArrayLengths < 0)
+                                 valueMismatch = String.valueOf(differenceArrayLengths) + " missing values";
+                            else valueMismatch = String.valueOf(differenceArrayLengths) +  " excess values";
+
+                            bvhParseProblem (i, line, "<html><p>Motion data problem: expected (<b>channelsPerFrame=" + hierarchy.getExpectedChannelsPerFrame() + 
+                                                      "</b>) data values,</p>" +
+                                                      "<p>but actually found <b>" + String.valueOf(frameStrings.length) + " values</b>," + 
+                                                      "with a mismatch of <b>" + valueMismatch + "</b> in the frame</b>." + 
+                                                      "</p><p>Continuing to parse...");
+                        }
+                        // ensure all extra data is saved, even if not expected
+                        int arraySize = Math.max (hierarchy.getExpectedChannelsPerFrame(), frameStrings.length);
+                        for (int indexChannel = 0; indexChannel < arraySize; indexChannel++)
+                        {
+                            if  (frameStrings[indexChannel] != null)
+                                 frameValueArray[indexChannel] = Double.parseDouble(frameStrings[indexChannel]);
+                            else
+                            {
+                                frameValueArray[indexChannel] = 0.0f; // buffer underflow
+                                if (insufficientValues == false)
+                                {
+                                    lastChannel = String.valueOf(indexChannel);
+                                }
+                                insufficientValues = true;
+                            }
+                        }
+                        if (insufficientValues)
+                        {
+                            bvhParseProblem (i, line, "Illegal content: insufficient data values found at frame " + indexFrame + ", channel " + lastChannel + ", set remainder to 0");
+                        }
+                        motion.addFrame(frameValueArray);
+                        motionParsed = true;
+                        if (i < lines.length - 1)
+                        {
+                            line = lines[i+1].trim();
+                            i++; // skip line
+                        }
+                    }
+                    hierarchy.addMotion(motion);
+                } // continue with next line
+            } // BVH file parsing complete
+        }
+        hierarchy.setX3dBallAndStickVisualizationIncluded(includeVisualizationShapes);
+        return hierarchy;
+  }
+
+  /** 
+   * Report a parse problem to console and problem handler 
+   * @param lineNumber of BVH file
+   * @param line being read
+   * @param message to user
+   */
+  private void bvhParseProblem (int lineNumber, String line, String message)
+  {
+        System.err.println("BVH parse problem: " + message);
+        System.err.println("   [line " + lineNumber + "] " + line);
+
+        if ((problemHandler != null) && !problemHandler.problem(lineNumber, line, message))
+            userSaysCancel = true;
+  }
+ 
+  /**
+   * Test if string is numeric
+   * @param value string of interest
+   * @return whether string is a numeric value or not
+   * @see <a href="https://stackoverflow.com/questions/1102891/how-to-check-if-a-string-is-numeric-in-java">https://stackoverflow.com/questions/1102891/how-to-check-if-a-string-is-numeric-in-java</a>
+   */
+  public static boolean isNumeric(String value)  
+  {  
+    try  
+    {  
+      Double.parseDouble(value);  
+    }  
+    catch(NumberFormatException nfe)  
+    {  
+      return false;  
+    }  
+    return true;  
+  }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 1995-2025 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *  * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.palette;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import org.jdom.Element;
+import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom.ElementLocation;
+
+/**
+ * ElementLocationIndex.java
+ * Created on October 18, 2026
+ *
+ * Sorted offset index over the element spans of an editor document.  Element
+ * locations are held in document order (hence sorted by start offset) with start,
+ * start-tag end and end offsets in primitive arrays, so that caret-to-element,
+ * named-element and parent lookups are binary searches or parent-chain walks
+ * without allocation.
+ *
+ * Document edits shift offsets lazily: a Fenwick tree over location index holds
+ * pending deltas for all locations following an edit, while the few enclosing
+ * (ancestor) spans are adjusted directly.  ElementLocation fields are refreshed
+ * from the index whenever a location is handed out.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class ElementLocationIndex
+{
+  private ElementLocation[] locations;
+  private int[] starts;       // raw values, add shiftAt(i) for document offset
+  private int[] startTagEnds; // raw values, add shiftAt(i) for document offset
+  private int[] ends;         // raw values, add shiftAt(i) for document offset
+  private int[] parents;      // index of parent location, -1 for root
+  private int[] shiftTree;    // Fenwick tree of pending offset deltas, 1-based
+  private int   size;
+  private boolean shiftPending;
+
+  // lazily built, published whole so read-only sharing across threads (X3DSceneSnapshot) is safe
+  private volatile Map<String, int[]>      nameIndex;    // built on first named lookup
+  private volatile Map<Element, Integer>   elementIndex; // built on first lookup by element
+  private volatile Vector<ElementLocation> materialized; // built on first request for full list
+
+  /**
+   * Build index from locations in document order with current document offsets
+   * @param documentOrderLocations element locations, as produced by parsing
+   */
+  public ElementLocationIndex(List<ElementLocation> documentOrderLocations)
+  {
+    build(documentOrderLocations);
+  }
+
+  private void build(List<ElementLocation> documentOrderLocations)
+  {
+    size         = documentOrderLocations.size();
+    locations    = documentOrderLocations.toArray(new ElementLocation[size]);
+    starts       = new int[size];
+    startTagEnds = new int[size];
+    ends         = new int[size];
+    parents      = new int[size];
+    shiftTree    = new int[size + 1];
+    shiftPending = false;
+    for (int i = 0; i < size; i++)
+      locations[i].index = i;
+    for (int i = 0; i < size; i++)
+      store(i, locations[i]);
+    invalidateDerived();
+  }
+
+  private void invalidateDerived()
+  {
+    nameIndex    = null;
+    elementIndex = null;
+    materialized = null;
+  }
+
+  /** Copy offsets and parent of given location into slot i, which must already hold its index */
+  private void store(int i, ElementLocation location)
+  {
+    int shift       = shiftPending ? shiftAt(i) : 0;
+    locations[i]    = location;
+    starts[i]       = location.docOffsetStart       - shift;
+    startTagEnds[i] = location.docOffsetStartTagEnd - shift;
+    ends[i]         = location.docOffsetEnd         - shift;
+    parents[i]      = (location.parent == null) ? -1 : location.parent.index;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  /** @param i location index
+   * @return document offset of start tag opening bracket */
+  public int start(int i)
+  {
+    return shiftPending ? starts[i] + shiftAt(i) : starts[i];
+  }
+
+  /** @param i location index
+   * @return document offset following start tag closing bracket */
+  public int startTagEnd(int i)
+  {
+    return shiftPending ? startTagEnds[i] + shiftAt(i) : startTagEnds[i];
+  }
+
+  /** @param i location index
+   * @return document offset following end tag closing bracket */
+  public int end(int i)
+  {
+    return shiftPending ? ends[i] + shiftAt(i) : ends[i];
+  }
+
+  /** @param i location index
+   * @return index of parent location, -1 for root element */
+  public int parent(int i)
+  {
+    return parents[i];
+  }
+
+  /**
+   * Location at index, with offsets of it and its ancestors refreshed for direct field access
+   * @param i location index
+   * @return element location
+   */
+  public ElementLocation get(int i)
+  {
+    for (int a = i; a >= 0; a = parents[a])
+      refresh(a);
+    return locations[i];
+  }
+
+  /** @param i location index
+   * @return location without refreshing its offset fields */
+  ElementLocation location(int i)
+  {
+    return locations[i];
+  }
+
+  private ElementLocation refresh(int i)
+  {
+    ElementLocation location = locations[i];
+    int shift = shiftPending ? shiftAt(i) : 0;
+    location.docOffsetStart       = starts[i]       + shift;
+    location.docOffsetStartTagEnd = startTagEnds[i] + shift;
+    location.docOffsetEnd         = ends[i]         + shift;
+    return location;
+  }
+
+  /**
+   * All locations in document order with refreshed offsets; O(n) after changes, cached otherwise
+   * @return element locations
+   */
+  public Vector<ElementLocation> asVector()
+  {
+    Vector<ElementLocation> result = materialized;
+    if (result == null) {
+      result = new Vector<>(size);
+      for (int i = 0; i < size; i++)
+        result.add(refresh(i));
+      materialized = result;
+    }
+    return result;
+  }
+
+  /**
+   * Index of last location whose start offset is less than given offset
+   * @param offset document offset
+   * @return location index, or -1 if none
+   */
+  public int lastStartingBefore(int offset)
+  {
+    int low = 0, high = size - 1, candidate = -1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (start(middle) < offset) {
+        candidate = middle;
+        low = middle + 1;
+      }
+      else
+        high = middle - 1;
+    }
+    return candidate;
+  }
+
+  /**
+   * Index of first location whose start offset is at or after given offset
+   * @param offset document offset
+   * @param fromIndex first index to consider
+   * @return location index, or size() if none
+   */
+  public int firstStartingAtOrAfter(int offset, int fromIndex)
+  {
+    int low = fromIndex, high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (start(middle) < offset)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return low;
+  }
+
+  /**
+   * Innermost element whose span strictly contains the given offset
+   * @param offset document offset, typically caret position
+   * @return location index, or -1 if none (e.g. within prolog)
+   */
+  public int innermostContaining(int offset)
+  {
+    // every element containing offset is an ancestor-or-self of the last element starting before it
+    int i = lastStartingBefore(offset);
+    while ((i >= 0) && (end(i) <= offset))
+      i = parents[i];
+    return i;
+  }
+
+  /**
+   * Innermost element whose span strictly encloses the region [regionStart, regionEnd)
+   * @param regionStart first offset of region
+   * @param regionEnd offset following region
+   * @return location index, or -1 if none
+   */
+  public int innermostEnclosing(int regionStart, int regionEnd)
+  {
+    int i = lastStartingBefore(regionStart);
+    while ((i >= 0) && (end(i) <= regionEnd))
+      i = parents[i];
+    return i;
+  }
+
+  /**
+   * Index of the last descendant of location i, plus one
+   * @param i location index
+   * @return end of subtree range in document order
+   */
+  public int subtreeEnd(int i)
+  {
+    return firstStartingAtOrAfter(end(i), i + 1);
+  }
+
+  /**
+   * First element in document order with given name and namespace URI
+   * @param name element name
+   * @param namespaceURI namespace of interest
+   * @return location index, or -1 if none
+   */
+  public int firstNamed(String name, String namespaceURI)
+  {
+    Map<String, int[]> names = nameIndex;
+    if (names == null)
+      names = buildNameIndex();
+    int[] candidates = names.get(name);
+    if (candidates == null)
+      return -1;
+    for (int i : candidates) {
+      if ((namespaceURI != null) && namespaceURI.equals(locations[i].element.getNamespaceURI()))
+        return i;
+    }
+    return -1;
+  }
+
+  /**
+   * Position of the location for a given element; positions are in document order
+   * @param element JDOM element of interest
+   * @return location index, or -1 if element is not indexed
+   */
+  public int indexOf(Element element)
+  {
+    Map<Element, Integer> elements = elementIndex;
+    if (elements == null) {
+      elements = new IdentityHashMap<>(size * 2);
+      for (int i = 0; i < size; i++)
+        elements.put(locations[i].element, i);
+      elementIndex = elements;
+    }
+    Integer i = elements.get(element);
+    return (i == null) ? -1 : i;
+  }
+
+  private Map<String, int[]> buildNameIndex()
+  {
+    Map<String, int[]> counts = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      int[] count = counts.computeIfAbsent(locations[i].name, k -> new int[1]);
+      count[0]++;
+    }
+    Map<String, int[]> index = new HashMap<>(counts.size() * 2);
+    for (Map.Entry<String, int[]> entry : counts.entrySet())
+      index.put(entry.getKey(), new int[entry.getValue()[0]]);
+    for (int i = size - 1; i >= 0; i--) {
+      int[] count = counts.get(locations[i].name);
+      index.get(locations[i].name)[--count[0]] = i; // fill backwards so indices stay in document order
+    }
+    nameIndex = index;
+    return index;
+  }
+
+  /**
+   * Replace the locations [from, to) with a re-parsed subtree whose offsets are current
+   * @param from first index replaced
+   * @param to index following last replaced
+   * @param replacement new locations in document order; first entry parent must lie before from
+   */
+  public void replace(int from, int to, List<ElementLocation> replacement)
+  {
+    int count = replacement.size();
+    if (count == to - from) {
+      // same shape, overwrite in place keeping pending shifts of following locations
+      for (int j = 0; j < count; j++)
+        replacement.get(j).index = from + j;
+      for (int j = 0; j < count; j++)
+        store(from + j, replacement.get(j));
+      invalidateDerived();
+      return;
+    }
+    List<ElementLocation> all = new ArrayList<>(size - (to - from) + count);
+    for (int i = 0; i < from; i++)
+      all.add(refresh(i));
+    all.addAll(replacement);
+    for (int i = to; i < size; i++)
+      all.add(refresh(i));
+    build(all);
+  }
+
+  /**
+   * Shift offsets after an edit changed document length by delta
+   * @param firstFollowing index of first location lying entirely after the edit
+   * @param innermostEnclosing index of innermost location whose end follows the edit, -1 if none
+   * @param delta change in document length
+   */
+  public void shift(int firstFollowing, int innermostEnclosing, int delta)
+  {
+    if (delta == 0)
+      return;
+    if (firstFollowing < size) {
+      for (int i = firstFollowing + 1; i <= size; i += i & -i)
+        shiftTree[i] += delta;
+      shiftPending = true;
+    }
+    for (int a = innermostEnclosing; a >= 0; a = parents[a])
+      ends[a] += delta;
+    materialized = null;
+  }
+
+  /**
+   * Shift start tag end of an element whose start tag was edited in place
+   * @param i location index
+   * @param delta change in document length
+   */
+  public void shiftStartTagEnd(int i, int delta)
+  {
+    startTagEnds[i] += delta;
+  }
+
+  private int shiftAt(int index)
+  {
+    int sum = 0;
+    for (int i = index + 1; i > 0; i -= i & -i)
+      sum += shiftTree[i];
+    return sum;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "ElementLocationIndex[" + size + " locations" + (shiftPending ? ", shifts pending" : "") + "]";
+  }
+}
@@ -0,0 +1,643 @@
+/*
+ * Copyright (c) 1995-2025 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *  * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.palette;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import org.jdom.Attribute;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.Namespace;
+import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom.ElementLocation;
+import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom.jDOMresults;
+
+/**
+ * X3DJdomModel.java
+ * Created on October 18, 2026
+ *
+ * Incrementally maintained JDOM model for the document of a single X3dEditor.
+ * Listens to Swing document change events and only records the changed region;
+ * when the model is next requested, only the content between the sibling
+ * elements neighbouring the edits, within the smallest element enclosing them,
+ * is re-parsed and spliced into the cached JDOM document and ElementLocation
+ * list, so an insert directly under Scene or a large Group re-parses just the
+ * inserted text.  Attribute edits re-parse just the start tag.  Edits touching
+ * the root element tags, or leaving that content malformed, fall back to a full
+ * reparse.
+ *
+ * Document offsets are held in an ElementLocationIndex and kept current by
+ * shifting; line and column values reflect the parse which created each location.
+ * The DEF/USE X3DSymbolTable is updated along with each splice.
+ *
+ * Snapshots share the working state instead of copying it.  Before splicing, the
+ * model retires the published state, or copies it if a reader has acquired a
+ * snapshot of it, so copying only happens when a snapshot was actually read.
+ * X3DParseService makes that copy on its parse thread via releaseAcquiredState()
+ * as soon as a snapshot is acquired, so splices on the event thread never copy.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class X3DJdomModel implements DocumentListener
+{
+  /** wrapper element supplying in-scope namespace declarations for fragment parsing */
+  private static final String FRAGMENT_WRAPPER = "X3DJdomModelFragment";
+
+  private Document                swingDocument;
+  private org.jdom.Document       jdomDocument;
+  private ElementLocationIndex    locationIndex;
+  private X3DSymbolTable          symbolTable;
+  private int                     parsedLength;
+  private boolean                 fullParseNeeded = true;
+  private X3DSceneSnapshot.Share  share; // published state not yet modified in place, null if none
+
+  // changed region accumulated since last update; recorded under the Swing document write lock
+  private final Object dirtyLock = new Object();
+  private boolean dirty;
+  private int     dirtyStart;      // first changed offset, identical in old and new text
+  private int     dirtyTailLength; // number of trailing characters unchanged since last update
+
+  private long fullParseCount;
+  private long incrementalParseCount;
+  private long copyCount;
+  private int  lastReparseLength;
+  private long lastUpdateNanos;
+
+  /**
+   * Bring model up to date with the given Swing document, re-parsing as little as possible.
+   * @param document editor document of interest
+   * @return current JDOM document
+   * @throws IOException if parsing fails
+   * @throws JDOMException if document is not well formed
+   */
+  public synchronized org.jdom.Document update(Document document) throws IOException, JDOMException
+  {
+    if (document != swingDocument)
+      attach(document);
+
+    final Exception[] failure = new Exception[1];
+    long startTime = System.nanoTime();
+    // holding the read lock means no listener callbacks can interleave with the update
+    document.render(() -> {
+      try {
+        updateUnderReadLock();
+      }
+      catch (IOException | JDOMException | BadLocationException ex) {
+        failure[0] = ex;
+      }
+    });
+    lastUpdateNanos = System.nanoTime() - startTime;
+
+    if (failure[0] instanceof IOException)
+      throw (IOException) failure[0];
+    if (failure[0] instanceof JDOMException)
+      throw (JDOMException) failure[0];
+    if (failure[0] != null)
+      throw new IOException(failure[0].getMessage(), failure[0]);
+
+    return jdomDocument;
+  }
+
+  /**
+   * JDOM document from the most recent update, without re-parsing
+   * @return JDOM document, possibly null if never parsed
+   */
+  public synchronized org.jdom.Document getJdomDocument()
+  {
+    return jdomDocument;
+  }
+
+  /**
+   * Offset index from the most recent update, without re-parsing
+   * @return element location index, possibly null if never parsed
+   */
+  public synchronized ElementLocationIndex getLocationIndex()
+  {
+    return locationIndex;
+  }
+
+  /**
+   * DEF/USE symbol table from the most recent update, without re-parsing
+   * @return symbol table, possibly null if never parsed
+   */
+  public synchronized X3DSymbolTable getSymbolTable()
+  {
+    return symbolTable;
+  }
+
+  /**
+   * Locations from the most recent update in document order, without re-parsing
+   * @return element locations, possibly null if never parsed
+   */
+  public synchronized Vector<ElementLocation> getSaxLocations()
+  {
+    return (locationIndex == null) ? null : locationIndex.asVector();
+  }
+
+  /**
+   * Snapshot sharing the state of the most recent update, without copying it
+   * @param version document version the most recent update reflects
+   * @return snapshot, or null if never parsed
+   */
+  public synchronized X3DSceneSnapshot createSnapshot(long version)
+  {
+    if ((jdomDocument == null) || (locationIndex == null))
+      return null;
+    if (share == null)
+      share = new X3DSceneSnapshot.Share();
+    return new X3DSceneSnapshot(version, jdomDocument, locationIndex, symbolTable, share);
+  }
+
+  /**
+   * @param document editor document of interest
+   * @return true if next update must parse the whole document rather than splice
+   */
+  public synchronized boolean isFullParseDue(Document document)
+  {
+    return fullParseNeeded || (jdomDocument == null) || (document != swingDocument);
+  }
+
+  /**
+   * @return true if next splice must first copy state which a reader acquired
+   */
+  public synchronized boolean isCopyDue()
+  {
+    return (share != null) && share.isAcquired();
+  }
+
+  /**
+   * Copy working state now if a reader acquired a snapshot of it, so that the next
+   * splice can modify the model in place without copying first
+   */
+  public synchronized void releaseAcquiredState()
+  {
+    if (isCopyDue() && copyWorkingState())
+      share = null;
+  }
+
+  /**
+   * Force a full re-parse on next update
+   */
+  public synchronized void invalidate()
+  {
+    fullParseNeeded = true;
+  }
+
+  /**
+   * Stop listening to the current document and discard cached model
+   */
+  public synchronized void detach()
+  {
+    if (swingDocument != null)
+      swingDocument.removeDocumentListener(this);
+    swingDocument   = null;
+    jdomDocument    = null;
+    locationIndex   = null;
+    symbolTable     = null;
+    share           = null;
+    fullParseNeeded = true;
+  }
+
+  public synchronized long getFullParseCount()
+  {
+    return fullParseCount;
+  }
+
+  public synchronized long getIncrementalParseCount()
+  {
+    return incrementalParseCount;
+  }
+
+  /** @return number of times acquired state was copied before splicing */
+  public synchronized long getCopyCount()
+  {
+    return copyCount;
+  }
+
+  /** @return number of document characters re-parsed by the most recent splice */
+  public synchronized int getLastReparseLength()
+  {
+    return lastReparseLength;
+  }
+
+  /** @return duration of most recent update, in nanoseconds */
+  public synchronized long getLastUpdateNanos()
+  {
+    return lastUpdateNanos;
+  }
+
+  private void attach(Document document)
+  {
+    detach();
+    swingDocument = document;
+    swingDocument.addDocumentListener(this);
+  }
+
+  @Override
+  public void insertUpdate(DocumentEvent e)
+  {
+    recordChange(e.getOffset(), e.getOffset() + e.getLength(), e.getDocument().getLength());
+  }
+
+  @Override
+  public void removeUpdate(DocumentEvent e)
+  {
+    recordChange(e.getOffset(), e.getOffset(), e.getDocument().getLength());
+  }
+
+  @Override
+  public void changedUpdate(DocumentEvent e)
+  {
+    // attribute (style) changes do not affect XML content
+  }
+
+  /**
+   * @param start first changed offset
+   * @param newEnd end of changed region in the new text
+   * @param newLength document length after change
+   */
+  private void recordChange(int start, int newEnd, int newLength)
+  {
+    synchronized (dirtyLock) {
+      int tail = newLength - newEnd; // character count from end is invariant for text following an edit
+      if (!dirty) {
+        dirty           = true;
+        dirtyStart      = start;
+        dirtyTailLength = tail;
+      }
+      else {
+        dirtyStart      = Math.min(dirtyStart, start);
+        dirtyTailLength = Math.min(dirtyTailLength, tail);
+      }
+    }
+  }
+
+  private void updateUnderReadLock() throws IOException, JDOMException, BadLocationException
+  {
+    boolean wasDirty;
+    int editStart, tailLength;
+    synchronized (dirtyLock) {
+      wasDirty   = dirty;
+      editStart  = dirtyStart;
+      tailLength = dirtyTailLength;
+      dirty      = false;
+    }
+    if (fullParseNeeded || jdomDocument == null) {
+      fullParse();
+      return;
+    }
+    if (!wasDirty)
+      return;
+
+    int newLength  = swingDocument.getLength();
+    int delta      = newLength - parsedLength;
+    int oldEditEnd = Math.max(editStart, parsedLength - tailLength);
+
+    boolean spliced;
+    try {
+      spliced = incrementalParse(editStart, oldEditEnd, delta);
+    }
+    catch (IOException | JDOMException ex) {
+      spliced = false; // enclosing element no longer well formed, let full parse report it
+    }
+    if (spliced) {
+      parsedLength = newLength;
+      incrementalParseCount++;
+    }
+    else
+      fullParse();
+  }
+
+  private void fullParse() throws IOException, JDOMException, BadLocationException
+  {
+    fullParseNeeded = true; // remains set if parse fails
+    String text = swingDocument.getText(0, swingDocument.getLength());
+    jDOMresults results = X3DPaletteUtilitiesJdom._buildJdom(text);
+    computeOffsets(results.saxLocations, text, 0, 0);
+    jdomDocument    = results.jdomDocument;
+    locationIndex   = new ElementLocationIndex(results.saxLocations);
+    symbolTable     = new X3DSymbolTable(jdomDocument, locationIndex);
+    share           = null; // prior state is left as published
+    parsedLength    = text.length();
+    fullParseNeeded = false;
+    fullParseCount++;
+  }
+
+  /**
+   * Re-parse only the content between the sibling elements neighbouring the old-text edit
+   * region [editStart, oldEditEnd) within the smallest element enclosing it
+   * @return false if a full reparse is required
+   */
+  private boolean incrementalParse(int editStart, int oldEditEnd, int delta) throws IOException, JDOMException, BadLocationException
+  {
+    int index = locationIndex.innermostEnclosing(editStart, oldEditEnd);
+    if (index < 0)
+      return false; // edit within prolog, or around root element
+    ElementLocation enclosing = locationIndex.get(index);
+
+    if ((editStart > enclosing.docOffsetStart) && (oldEditEnd < enclosing.docOffsetStartTagEnd) &&
+        (enclosing.docOffsetStartTagEnd < enclosing.docOffsetEnd))
+      return reparseStartTag(index, enclosing, delta);
+
+    if ((editStart >= locationIndex.startTagEnd(index)) && reparseContent(index, editStart, oldEditEnd, delta))
+      return true;
+    // edit reaches into a tag of the enclosing element, so re-parse that element among its siblings
+    int parent = locationIndex.parent(index);
+    return (parent >= 0) && reparseContent(parent, editStart, oldEditEnd, delta);
+  }
+
+  /**
+   * Content splice: replace the children of a container element lying between the last child
+   * ending before the edit and the first child starting after it, together with the text between
+   * @param container location index of element whose content holds the edit
+   * @return false if the edit is not confined to that content, or the content is no longer well formed
+   */
+  private boolean reparseContent(int container, int editStart, int oldEditEnd, int delta) throws IOException, JDOMException, BadLocationException
+  {
+    int containerEnd = locationIndex.subtreeEnd(container);
+
+    // nearest children of the container on either side of the edit, which are left untouched
+    int previous = -1;
+    int child = locationIndex.lastStartingBefore(editStart);
+    if (child > container) {
+      child = childOf(container, child);
+      if (locationIndex.end(child) <= editStart)
+        previous = child;
+      else if (child - 1 > container)
+        previous = childOf(container, child - 1); // sibling before the child which the edit touches
+    }
+    int next = locationIndex.firstStartingAtOrAfter(oldEditEnd, container + 1);
+    if (next < containerEnd) {
+      child = childOf(container, next);
+      next = (locationIndex.start(child) < oldEditEnd) ? locationIndex.subtreeEnd(child) : child;
+    }
+    else
+      next = containerEnd;
+
+    int regionStart    = (previous >= 0) ? locationIndex.end(previous) : locationIndex.startTagEnd(container);
+    int newEditEnd     = oldEditEnd + delta;
+    int regionEnd;
+    if (next < containerEnd)
+      regionEnd = locationIndex.start(next) + delta;
+    else {
+      // no following child: content runs up to the end tag, which must lie wholly after the edit
+      int newContainerEnd = locationIndex.end(container) + delta;
+      String tail = swingDocument.getText(newEditEnd, newContainerEnd - newEditEnd);
+      int endTag = tail.lastIndexOf("</");
+      if ((endTag < 0) || !tail.substring(endTag + 2).startsWith(locationIndex.location(container).element.getQualifiedName()))
+        return false; // end tag edited
+      regionEnd = newEditEnd + endTag;
+    }
+    if ((regionStart > editStart) || (regionEnd < newEditEnd))
+      return false;
+
+    String regionText = swingDocument.getText(regionStart, regionEnd - regionStart);
+    String prefix     = fragmentPrefix(locationIndex.location(container).element);
+    jDOMresults fragment = X3DPaletteUtilitiesJdom._buildJdom(prefix + regionText + "</" + FRAGMENT_WRAPPER + ">");
+    lastReparseLength = regionText.length();
+
+    ElementLocation containerLocation = beginModification(container);
+    if (containerLocation == null)
+      return false;
+    Element containerElement = containerLocation.element;
+    int firstReplaced = (previous >= 0) ? locationIndex.subtreeEnd(previous) : container + 1;
+    int contentFrom   = (previous >= 0) ? containerElement.indexOf(locationIndex.location(previous).element) + 1 : 0;
+    int contentTo     = (next < containerEnd) ? containerElement.indexOf(locationIndex.location(next).element) : containerElement.getContentSize();
+    if ((contentFrom < 0) || (contentTo < contentFrom))
+      return false;
+
+    for (int i = firstReplaced; i < next; i = locationIndex.subtreeEnd(i))
+      symbolTable.removeSubtree(locationIndex.location(i).element);
+    for (int i = contentTo - 1; i >= contentFrom; i--)
+      containerElement.removeContent(i);
+    Element wrapper = fragment.jdomDocument.getRootElement();
+    List<?> newContent = new ArrayList<>(wrapper.getContent());
+    wrapper.removeContent();
+    containerElement.addContent(contentFrom, newContent);
+    for (Object content : newContent)
+      if (content instanceof Element)
+        symbolTable.addSubtree((Element) content);
+
+    // wrapper location is first, remainder are the replacement children and descendants in document order
+    ElementLocation wrapperLocation = fragment.saxLocations.get(0);
+    List<ElementLocation> newLocations = new ArrayList<>(fragment.saxLocations.subList(1, fragment.saxLocations.size()));
+    computeOffsets(newLocations, prefix + regionText, regionStart, prefix.length());
+    for (ElementLocation location : newLocations)
+      if (location.parent == wrapperLocation)
+        location.parent = containerLocation;
+
+    locationIndex.replace(firstReplaced, next, newLocations);
+    locationIndex.shift(firstReplaced + newLocations.size(), container, delta);
+    return true;
+  }
+
+  /** @return the child of container whose subtree holds location i */
+  private int childOf(int container, int i)
+  {
+    while (locationIndex.parent(i) != container)
+      i = locationIndex.parent(i);
+    return i;
+  }
+
+  /**
+   * Attribute edit: parse start tag alone and transfer attributes, leaving children untouched
+   */
+  @SuppressWarnings("unchecked")
+  private boolean reparseStartTag(int index, ElementLocation enclosing, int delta) throws IOException, JDOMException, BadLocationException
+  {
+    int    newStartTagEnd = enclosing.docOffsetStartTagEnd + delta;
+    String startTag       = swingDocument.getText(enclosing.docOffsetStart, newStartTagEnd - enclosing.docOffsetStart);
+    // '<' is illegal inside a start tag (even in attribute values), so any later '<' means markup was typed
+    if (!startTag.endsWith(">") || startTag.endsWith("/>") || (startTag.indexOf('<', 1) >= 0))
+      return false; // element structure changed
+
+    String prefix = fragmentPrefix(enclosing.element.getParentElement());
+    jDOMresults fragment = X3DPaletteUtilitiesJdom._buildJdom(prefix + startTag.substring(0, startTag.length() - 1) + "/></" + FRAGMENT_WRAPPER + ">");
+    List<?> wrapped = fragment.jdomDocument.getRootElement().getChildren();
+    if (wrapped.size() != 1)
+      return false; // edit produced sibling elements
+    Element newElement = (Element) wrapped.get(0);
+
+    Element oldElement = enclosing.element;
+    if (!newElement.getQualifiedName().equals(oldElement.getQualifiedName()) ||
+        !newElement.getAdditionalNamespaces().equals(oldElement.getAdditionalNamespaces()))
+      return false; // end tag no longer matches, or namespace scope changed
+
+    List<Attribute> attributes = new ArrayList<>();
+    for (Attribute attribute : (List<Attribute>) newElement.getAttributes())
+      attributes.add((Attribute) attribute.clone());
+    ElementLocation modified = beginModification(index);
+    if (modified == null)
+      return false;
+    symbolTable.removeElement(modified.element);
+    modified.element.setAttributes(attributes);
+    symbolTable.addElement(modified.element);
+
+    // children follow the start tag, so shift everything after this element's own index
+    locationIndex.shiftStartTagEnd(index, delta);
+    locationIndex.shift(index + 1, index, delta);
+    return true;
+  }
+
+  /**
+   * Make working state safe to modify in place: retire its published snapshots, or
+   * copy it if a reader acquired one of them
+   * @param index location about to be modified
+   * @return that location in the state now being worked on, or null if a copy could not be made
+   */
+  private ElementLocation beginModification(int index)
+  {
+    if ((share != null) && !share.retire() && !copyWorkingState())
+      return null;
+    share = null;
+    return locationIndex.get(index);
+  }
+
+  /**
+   * Replace working state by a private copy, leaving the acquired original untouched
+   * @return false if document and location index disagree
+   */
+  private boolean copyWorkingState()
+  {
+    org.jdom.Document copy = (org.jdom.Document) jdomDocument.clone();
+
+    // element locations are in document order, which matches a pre-order walk of the copied tree
+    List<Element> copiedElements = new ArrayList<>(locationIndex.size());
+    if (copy.hasRootElement())
+      collect(copy.getRootElement(), copiedElements);
+    if (copiedElements.size() != locationIndex.size())
+      return false;
+
+    List<ElementLocation> locations = new ArrayList<>(locationIndex.size());
+    for (int i = 0; i < locationIndex.size(); i++) {
+      ElementLocation original = locationIndex.location(i);
+      ElementLocation location = new ElementLocation(original.name, original.startLine, original.startColumn, copiedElements.get(i));
+      location.endLine              = original.endLine;
+      location.endColumn            = original.endColumn;
+      location.docOffsetStart       = locationIndex.start(i);
+      location.docOffsetStartTagEnd = locationIndex.startTagEnd(i);
+      location.docOffsetEnd         = locationIndex.end(i);
+      int parent = locationIndex.parent(i);
+      location.parent = (parent < 0) ? null : locations.get(parent);
+      locations.add(location);
+    }
+    jdomDocument  = copy;
+    locationIndex = new ElementLocationIndex(locations);
+    symbolTable   = new X3DSymbolTable(copy, locationIndex);
+    copyCount++;
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void collect(Element element, List<Element> preOrder)
+  {
+    preOrder.add(element);
+    for (Element child : (List<Element>) element.getChildren())
+      collect(child, preOrder);
+  }
+
+  /**
+   * Wrapper start tag declaring all namespaces in scope within given element
+   * @param parent element the parsed fragment will belong to, or null for the document
+   */
+  private static String fragmentPrefix(Element parent)
+  {
+    Map<String, String> inScope = new HashMap<>();
+    for (Element ancestor = parent; ancestor != null; ancestor = ancestor.getParentElement()) {
+      declare(inScope, ancestor.getNamespace());
+      for (Object additional : ancestor.getAdditionalNamespaces())
+        declare(inScope, (Namespace) additional);
+    }
+    StringBuilder sb = new StringBuilder("<").append(FRAGMENT_WRAPPER);
+    for (Map.Entry<String, String> entry : inScope.entrySet()) {
+      sb.append(entry.getKey().isEmpty() ? " xmlns" : " xmlns:" + entry.getKey());
+      sb.append("='").append(entry.getValue().replace("'", "&apos;")).append("'");
+    }
+    return sb.append(">").toString();
+  }
+
+  private static void declare(Map<String, String> inScope, Namespace namespace)
+  {
+    if (namespace.getURI().isEmpty() || (namespace == Namespace.XML_NAMESPACE))
+      return;
+    inScope.putIfAbsent(namespace.getPrefix(), namespace.getURI()); // nearest declaration wins
+  }
+
+  /**
+   * Convert SAX line/column values into document offsets
+   * @param locations element locations parsed from text
+   * @param text parsed text
+   * @param base document offset corresponding to skip point in text
+   * @param skip number of leading characters in text not present in document
+   */
+  static void computeOffsets(List<ElementLocation> locations, String text, int base, int skip)
+  {
+    int[] lineStarts = lineStarts(text);
+    for (ElementLocation location : locations) {
+      // SAX reports 1-based line and column positions following each closing bracket
+      int startTagEnd = lineStarts[location.startLine - 1] + location.startColumn - 1;
+      int end         = lineStarts[location.endLine   - 1] + location.endColumn   - 1;
+      int start       = Math.max(0, text.lastIndexOf('<', startTagEnd - 1));
+      location.docOffsetStart       = base + start       - skip;
+      location.docOffsetStartTagEnd = base + startTagEnd - skip;
+      location.docOffsetEnd         = base + end         - skip;
+    }
+  }
+
+  private static int[] lineStarts(String text)
+  {
+    int count = 1;
+    for (int i = 0; i < text.length(); i++)
+      if (text.charAt(i) == '\n')
+        count++;
+    int[] lineStarts = new int[count];
+    int line = 1;
+    for (int i = 0; i < text.length(); i++)
+      if (text.charAt(i) == '\n')
+        lineStarts[line++] = i + 1;
+    return lineStarts;
+  }
+}
@@ -43,8 +43,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.Vector;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.swing.SwingUtilities;
-import javax.swing.text.AbstractDocument;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Caret;
 import javax.swing.text.Document;
@@ -76,6 +77,7 @@ import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * X3DPaletteUtilities.java
@@ -342,6 +344,30 @@ public final class X3DPaletteUtilitiesJdom
     }
   }
 
+  /**
+   * Report dangling USE references and duplicate DEF names from the symbol table.
+   * Does not rebuild jdom document
+   * @param target
+   */
+  public static void checkDefUseReferences(JTextComponent target)
+  {
+    X3DEditorSupport.X3dEditor myEd = (X3DEditorSupport.X3dEditor) getTopComponent(target);
+    if (myEd == null) return;
+
+    X3DSceneSnapshot snapshot = myEd.getParseService().getLatestSnapshot();
+    if (snapshot == null) return;
+    X3DSymbolTable symbolTable = snapshot.getSymbolTable(); // immutable, no locking needed
+    Set<String> danglingUseNames  = symbolTable.getDanglingUseNames();
+    Set<String> duplicateDefNames = symbolTable.getDuplicateDefNames();
+
+    InputOutput io = IOProvider.getDefault().getIO("XML check", false); // Name matches existing tab
+    OutputWriter ow = io.getOut();
+    for (String useName : danglingUseNames)
+      ow.println("Error: USE='" + useName + "' has no matching DEF in the same scope.");
+    for (String defName : duplicateDefNames)
+      ow.println("Error: DEF='" + defName + "' is defined more than once in the same scope.");
+  }
+
   /**
    *
    * @param elm
@@ -432,6 +458,7 @@ public final class X3DPaletteUtilitiesJdom
             }
         }
         checkRouteForwardRefs(target);
+        checkDefUseReferences(target);
         ow.println("X3D check complete");
         ow.println();
         // done in above buildJdomModel(target);
@@ -472,8 +499,10 @@ public final class X3DPaletteUtilitiesJdom
   }
 
   /**
-   * Method called from editing action, selecting action, etc; rebuilds
-   * jdom document and sets in editor
+   * Method called from editing action, selecting action, etc; returns
+   * jdom document matching current editor text, finishing any pending parse if the background
+   * parse has not caught up, so that offsets used for edits never lag the text.
+   * Returned document is a shared snapshot and must not be modified
    * @param target
    * @return
    * @throws java.io.IOException
@@ -487,11 +516,48 @@ public final class X3DPaletteUtilitiesJdom
         x3dEditorSupport =  x3dEditor.getX3dEditorSupport();
         x3dDataObject    = (X3DDataObject)x3dEditorSupport.getDataObject();
     }
-    jDOMresults res = _buildJdom(target.getText());
+    return getSnapshotForEdit(target).getJdomDocument();
+  }
+
+  /**
+   * Snapshot matching current editor text; returns at once if background parse has caught up.
+   * On the event thread this may be the most recent snapshot instead, see X3DParseService.awaitCurrentSnapshot()
+   * @param target editor pane of interest
+   * @return current snapshot
+   * @throws java.io.IOException
+   * @throws org.jdom.JDOMException
+   */
+  public static X3DSceneSnapshot getCurrentSnapshot(JTextComponent target) throws IOException, JDOMException
+  {
+    X3DEditorSupport.X3dEditor myEd = (X3DEditorSupport.X3dEditor) getTopComponent(target);
+    return myEd.getParseService().awaitCurrentSnapshot(target.getDocument());
+  }
+
+  /**
+   * Snapshot matching current editor text, for edits at its element offsets; never lags the text,
+   * see X3DParseService.awaitSnapshotForEdit()
+   * @param target editor pane of interest
+   * @return current snapshot
+   * @throws java.io.IOException if parsing fails or has not caught up in time
+   * @throws org.jdom.JDOMException if document is not well formed
+   */
+  public static X3DSceneSnapshot getSnapshotForEdit(JTextComponent target) throws IOException, JDOMException
+  {
     X3DEditorSupport.X3dEditor myEd = (X3DEditorSupport.X3dEditor) getTopComponent(target);
-    myEd.setJdomDoc(res.jdomDocument);
-    myEd.setJdomSaxLocations(res.saxLocations);
-    return res.jdomDocument;
+    return myEd.getParseService().awaitSnapshotForEdit(target.getDocument());
+  }
+
+  /**
+   * Most recent snapshot, which may lag current editor text; never blocks
+   * @param target editor pane of interest
+   * @return latest snapshot, or null if none parsed yet
+   */
+  public static X3DSceneSnapshot getLatestSnapshot(JTextComponent target)
+  {
+    X3DEditorSupport.X3dEditor myEd = (X3DEditorSupport.X3dEditor) getTopComponent(target);
+    if (myEd == null)
+      return null;
+    return myEd.getParseService().getLatestSnapshot();
   }
 
   public static X3DDataObject getX3dDataObject(JTextComponent target)
@@ -508,16 +574,45 @@ public final class X3DPaletteUtilitiesJdom
    * @throws java.io.IOException
    * @throws org.jdom.JDOMException
    */
-  private static jDOMresults _buildJdom(String s) throws IOException, JDOMException
+  static jDOMresults _buildJdom(String s) throws IOException, JDOMException
   {
     StringReader txtRdr = new StringReader(s);
-    myCheckXMLSupport xsup = new myCheckXMLSupport(new InputSource(txtRdr));  // just using to grab the reader from it
-    XMLReader rdr = xsup.getXMLReader();
+    XMLReader rdr = pooledReader.get();
     mySAXBuilder builder = new mySAXBuilder(false,rdr);
-    org.jdom.Document doc = builder.build(txtRdr);
-    mySaxHandler saxH = builder.getMySaxHandler();
-    jDOMresults res = new jDOMresults(doc,saxH.saxLocations);
-    return res;
+    try {
+      org.jdom.Document doc = builder.build(txtRdr);
+      mySaxHandler saxH = builder.getMySaxHandler();
+      jDOMresults res = new jDOMresults(doc,saxH.saxLocations);
+      return res;
+    }
+    finally {
+      resetReader(rdr);
+    }
+  }
+
+  /**
+   * One parser per thread, created on first use and reused for every later parse on that thread.
+   * XMLReader instances are not thread safe but may be reused once a parse completes;
+   * the catalog entity resolver installed by CheckXMLSupport stays in place across uses.
+   */
+  private static final ThreadLocal<XMLReader> pooledReader = ThreadLocal.withInitial(() ->
+      new myCheckXMLSupport(new InputSource(new StringReader(""))).getXMLReader()); // just using to grab the reader from it
+
+  private static final DefaultHandler emptyHandler = new DefaultHandler();
+
+  /** Release handlers from last parse so that pooled reader does not retain its JDOM document */
+  private static void resetReader(XMLReader rdr)
+  {
+    rdr.setContentHandler(emptyHandler);
+    rdr.setErrorHandler  (emptyHandler);
+    rdr.setDTDHandler    (emptyHandler);
+    try {
+      rdr.setProperty("http://xml.org/sax/properties/lexical-handler",     null);
+      rdr.setProperty("http://xml.org/sax/properties/declaration-handler", null);
+    }
+    catch (SAXException ex) {
+      // property not supported by this parser, nothing retained
+    }
   }
 
   /**
@@ -533,6 +628,17 @@ public final class X3DPaletteUtilitiesJdom
     return myEd.getJdomDoc();
   }
 
+  /**
+   * Return current DEF/USE symbol table; doesn't build it
+   * @param target
+   * @return symbol table, or null if no document has been parsed
+   */
+  public static X3DSymbolTable getSymbolTable(JTextComponent target)
+  {
+    X3DSceneSnapshot snapshot = getLatestSnapshot(target);
+    return (snapshot == null) ? null : snapshot.getSymbolTable();
+  }
+
   /** utility method for all DEF names
      * @param target component
      * @return list of all candidate USE names */
@@ -543,39 +649,14 @@ public final class X3DPaletteUtilitiesJdom
 
   public static Vector<String> getUSEvector(JTextComponent target, String nodeType)
   {
-    Vector<String> v = new Vector<>();
-    org.jdom.Document doc = getJdom(target);
-    if(doc == null)
-       return v; // missing document, empty vector
+    X3DSymbolTable symbolTable = getSymbolTable(target);
+    if(symbolTable == null)
+       return new Vector<>(); // missing document, empty vector
 
     // returns all DEF names if nodeType is blank
-    return collectDefs(doc.getRootElement(), nodeType, v);
+    return symbolTable.getDefNames(nodeType);
   }
   
-  /** Collect DEF names for elements of a given type, otherwise return all DEF names if no elementName is given */
-  @SuppressWarnings(value = "unchecked")
-  static Vector<String> collectDefs(org.jdom.Element element, String elementName, Vector<String> vectorOfStrings)
-  {
-      if (elementName == null)
-          elementName = new String();
-      
-        if (element.getName().equalsIgnoreCase(elementName) || elementName.isBlank())
-        {
-          org.jdom.Attribute attr = element.getAttribute("DEF");
-          if (attr != null) {
-            String DEFname = attr.getValue();
-            if (DEFname != null && DEFname.length() > 0)
-                vectorOfStrings.add(DEFname);
-          }
-        }
-        List<org.jdom.Element> childList = element.getChildren();
-        for (org.jdom.Element e : childList)
-        {
-          collectDefs(e, elementName, vectorOfStrings); // recurse down the tree, collecting DEFs
-        }
-        return vectorOfStrings; // tail recursion
-  }
-
   enum ValidationErrorResponse {
     ACCEPT("Accept"),
     UNDO("Discard"),
@@ -657,33 +738,44 @@ public final class X3DPaletteUtilitiesJdom
     }
     return false;
   }
+  /**
+   * Element locations with document offsets current for the editor text; the incremental
+   * model keeps offsets shifted as the document changes, so no recomputation is needed here.
+   * @param pane editor pane of interest
+   * @return element locations in document order
+   * @throws BadLocationException if something goes wrong
+   */
   public static Vector<ElementLocation> buildLocations(JTextComponent pane) throws BadLocationException
   {
-    X3DEditorSupport.X3dEditor x3dEtor = ((X3DEditorSupport.X3dEditor) getTopComponent(pane));
-    X3DEditorSupport x3dEtorSupport = x3dEtor.getX3dEditorSupport();
-    Vector<ElementLocation> saxLocations = x3dEtor.getJdomSaxLocations();
-    AbstractDocument abstractDocument = (AbstractDocument)x3dEtorSupport.getDocument();
-
-    javax.swing.text.Element root = abstractDocument.getDefaultRootElement();  // This is not an XML/jdom element
-    int count = root.getElementCount();
-
-    int[] linestarts = new int[count];
+    return buildLocationIndex(pane).asVector();
+  }
 
-    for (int i = 0; i < count; i++)
-    {
-      linestarts[i] = root.getElement(i).getStartOffset();
+  /**
+   * Offset index over element locations, brought up to date with the editor text.  Callers edit
+   * text at these offsets, so locations lagging the text are never returned.
+   * @param pane editor pane of interest
+   * @return element location index
+   * @throws BadLocationException if the document is malformed, or parsing has not caught up with it
+   */
+  public static ElementLocationIndex buildLocationIndex(JTextComponent pane) throws BadLocationException
+  {
+    X3DSceneSnapshot snapshot;
+    try {
+      snapshot = getSnapshotForEdit(pane);
     }
-
-    for (ElementLocation eloc : saxLocations) {
-      eloc.docOffsetEnd = linestarts[eloc.endLine - 1] + eloc.endColumn - 1;
-      // Point the docOffsetStart field to the opening left bracket
-      // using eloc.startCol w/ no subtract pointd here V
-      //                              blah blach blah"><
-      // subtract one for 1- to zero based counting
-      // subtract another so as start looking within the previouse bracketted element
-      eloc.docOffsetStart = fixStart(abstractDocument, linestarts[eloc.startLine - 1] + eloc.startColumn - 2);
+    catch (IOException | JDOMException ex) {
+      Logger.getLogger(X3DPaletteUtilitiesJdom.class.getName()).log(Level.FINE, "unable to update JDOM model: {0}", ex.getMessage());
+      throw new BadLocationException(ex.getMessage(), pane.getCaretPosition());
     }
-    return saxLocations;
+    return locationIndexOf(snapshot, pane);
+  }
+
+  private static ElementLocationIndex locationIndexOf(X3DSceneSnapshot snapshot, JTextComponent pane) throws BadLocationException
+  {
+    ElementLocationIndex index = snapshot.getLocationIndex();
+    if (index == null || index.size() == 0)
+      throw new BadLocationException("No parsed element locations available", pane.getCaretPosition());
+    return index;
   }
 
   /** Find and return a named element
@@ -708,15 +800,9 @@ public final class X3DPaletteUtilitiesJdom
    */
   public static ElementLocation findNamedElement(JTextComponent pane, String targetName, String nameSpace) throws BadLocationException
   {
-    Vector<ElementLocation> saxLocations = buildLocations(pane);
-    for(ElementLocation location : saxLocations) {
-      if(location.name.equals(targetName)) {
-        if(nameSpace == null || !nameSpace.equals(location.element.getNamespaceURI()))
-          continue;
-        return location;
-      }
-    }
-    return null;
+    ElementLocationIndex index = buildLocationIndex(pane);
+    int found = index.firstNamed(targetName, nameSpace);
+    return (found < 0) ? null : index.get(found);
   }
 
 // TODO finish testing if really needed
@@ -746,65 +832,43 @@ public final class X3DPaletteUtilitiesJdom
 
   public static ElementLocation findSelectedElement(JTextComponent pane) throws BadLocationException
   {
-    Vector<ElementLocation> saxLocations = buildLocations(pane);
-//    X3DEditorSupport.X3dEditor edi = ((X3DEditorSupport.X3dEditor) getTopComponent(pane));
-//    X3DEditorSupport supp = edi.getX3dEditorSupport();
-//    Vector<ElementLocation> saxLocations = edi.getJdomSaxLocations();
-//    AbstractDocument abDoc = (AbstractDocument)supp.getDocument();
-//
-     int pos = pane.getCaretPosition();
-	 while (pane.getText().charAt(pos) == ' ')
-		 pos++; // lean forward into element if adjacent
-	 if (pane.getText().charAt(pos) == '<')
-		 pos++; // lean forward into element if adjacent
-	 String selectionString = pane.getText().substring(pos); // debug diagnostic
-
-//    javax.swing.text.Element root = abDoc.getDefaultRootElement();  // This is not an XML/jdom element
-//    int count = root.getElementCount();
-//
-//    int[] linestarts = new int[count];
-//
-//    for (int i = 0; i < count; i++)
-//      linestarts[i] = root.getElement(i).getStartOffset();
-//
-//    for (ElementLocation eloc : saxLocations) {
-//      eloc.docOffsetEnd = linestarts[eloc.endLine - 1] + eloc.endCol - 1;
-//      // Point the docOffsetStart field to the opening left bracket
-//      // using eloc.startCol w/ no subtract pointd here V
-//      //                              blah blach blah"><
-//      // subtract one for 1- to zero based counting
-//      // subtract another so as start looking within the previouse bracketted element
-//      eloc.docOffsetStart = fixStart(abDoc, linestarts[eloc.startLine - 1] + eloc.startCol - 2);
-//    }
+    return findSelectedElement(pane, buildLocationIndex(pane));
+  }
 
-    boolean foundit = false;
-    int vi;
-    // loop from bottom up
-    for (vi = saxLocations.size() - 1; vi >= 0; vi--) {
-      ElementLocation vel = saxLocations.get(vi);  // vel = vector element location, vi = vector index
-      if ((pos > vel.docOffsetStart) && (pos < vel.docOffsetEnd)) {
-        foundit = true;
-        break;
-      }
-    }
-    if (foundit)
-      return saxLocations.get(vi);
-	else
-	{
-		// cursor out of bounds somehow - probably XML/DOCTYPE preamble - simply edit root X3D element
-		return saxLocations.firstElement();
-		//    throw new BadLocationException("Can't find selected element.", pos);
-	}
+  /**
+   * Find the element at the caret among the locations of a given snapshot, so that callers also reading
+   * that snapshot's symbol table see the same element objects
+   * @param pane editor pane of interest
+   * @param snapshot current snapshot, see getSnapshotForEdit()
+   * @return element location containing the caret
+   * @throws BadLocationException if the snapshot has no element locations
+   */
+  public static ElementLocation findSelectedElement(JTextComponent pane, X3DSceneSnapshot snapshot) throws BadLocationException
+  {
+    return findSelectedElement(pane, locationIndexOf(snapshot, pane));
   }
-  private static int fixStart(AbstractDocument doc, int pos) throws BadLocationException
+
+  private static ElementLocation findSelectedElement(JTextComponent pane, ElementLocationIndex index) throws BadLocationException
   {
-    int newpos = pos;
-    while (doc.getText(newpos, 1).charAt(0) != '<') {
-      newpos--;
-      if (newpos == 0)
-        break;
+    Document doc = pane.getDocument();
+    int length = doc.getLength();
+
+    // examine single characters rather than copying whole document text
+    int pos = pane.getCaretPosition();
+    while (pos < length && doc.getText(pos, 1).charAt(0) == ' ')
+      pos++; // lean forward into element if adjacent
+    if (pos < length && doc.getText(pos, 1).charAt(0) == '<')
+      pos++; // lean forward into element if adjacent
+
+    int found = index.innermostContaining(pos);
+    if (found >= 0)
+      return index.get(found);
+    else
+    {
+      // cursor out of bounds somehow - probably XML/DOCTYPE preamble - simply edit root X3D element
+      return index.get(0);
+      //    throw new BadLocationException("Can't find selected element.", pos);
     }
-    return newpos;
   }
 
   public static class mySAXBuilder extends org.jdom.input.SAXBuilder
@@ -908,12 +972,22 @@ public final class X3DPaletteUtilitiesJdom
      */
     public int docOffsetStart = -1;
 
+    /**
+     * Index in document following start tag closing bracket; equals docOffsetEnd for empty-element tags
+     */
+    public int docOffsetStartTagEnd = -1;
+
     /**
      * Ending index in document
      */
     public int docOffsetEnd = -1;
     public org.jdom.Element element;
 
+    /**
+     * Position within ElementLocationIndex, maintained by the index
+     */
+    int index = -1;
+
     public ElementLocation(String name, int startLine, int startCol, org.jdom.Element jdomElement)
     {
       this.name = name;
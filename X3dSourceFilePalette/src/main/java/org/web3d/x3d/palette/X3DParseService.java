@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 1995-2025 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *  * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.palette;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import org.jdom.JDOMException;
+import org.openide.util.RequestProcessor;
+
+/**
+ * X3DParseService.java
+ * Created on October 18, 2026
+ *
+ * Background parse/analysis service for one X3dEditor.  Document changes bump a
+ * version counter and (re)schedule a debounced parse task on a dedicated request
+ * processor; the task brings the incremental X3DJdomModel up to date and publishes
+ * an X3DSceneSnapshot sharing the model state.  Snapshots are acquired before being
+ * handed out, after which the model copies rather than splices that state, so
+ * readers never see a tree being spliced.
+ *
+ * Callers needing a snapshot matching the current text (edit actions, palette drops)
+ * use awaitCurrentSnapshot(), which returns immediately when the background parse
+ * has already caught up.  Otherwise other threads wait for the parse task, while the
+ * AWT event thread never does: it splices the pending edits itself when the model is
+ * idle, else it falls back to the most recently published snapshot.  Edit actions,
+ * which splice text at snapshot offsets, use awaitSnapshotForEdit() instead, which
+ * finishes the parse on the calling thread rather than accept a lagging snapshot.  Time the event
+ * thread spends parsing is accumulated for diagnostics; setting system property
+ * x3dedit.parse.synchronous=true parses on the calling thread instead, for
+ * before/after comparison.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class X3DParseService implements DocumentListener
+{
+  /** quiet period after typing before background parse begins */
+  public static final int DEBOUNCE_MILLIS = 400;
+
+  /** longest wait for a snapshot matching current text, on threads other than the event thread */
+  public static final long PARSE_TIMEOUT_MILLIS = 20000;
+
+  /** longest wait for the parse thread to release the model before an edit is refused */
+  public static final long EDIT_WAIT_MILLIS = 2000;
+
+  /** reason given when an edit is refused because parsing has not caught up with the text */
+  public static final String STILL_PARSING = "X3D-Edit is still parsing this document, please retry";
+
+  private static final boolean SYNCHRONOUS = Boolean.getBoolean("x3dedit.parse.synchronous");
+
+  private static final RequestProcessor PARSE_PROCESSOR = new RequestProcessor("X3D-Edit parse", 1, true);
+
+  // event dispatch thread blocking statistics, across all editors
+  private static final AtomicLong edtBlockCount      = new AtomicLong();
+  private static final AtomicLong edtBlockTotalNanos = new AtomicLong();
+  private static final AtomicLong edtBlockMaxNanos   = new AtomicLong();
+
+  private final X3DJdomModel          model     = new X3DJdomModel();
+  private final ReentrantLock         modelLock = new ReentrantLock(); // held while updating model and publishing
+  private final RequestProcessor.Task parseTask = PARSE_PROCESSOR.create(this::parse);
+  private final AtomicLong            documentVersion = new AtomicLong();
+
+  private volatile Document         document;
+  private volatile X3DSceneSnapshot latestSnapshot;
+  private volatile X3DSceneSnapshot acquiredSnapshot; // most recent snapshot handed out, never modified
+  private volatile Exception        lastFailure;
+  private volatile long             lastFailureVersion = -1;
+
+  /**
+   * Begin tracking a document, scheduling an initial parse
+   * @param newDocument editor document
+   */
+  public synchronized void attach(Document newDocument)
+  {
+    if (newDocument == document)
+      return;
+    if (document != null)
+      document.removeDocumentListener(this);
+    document = newDocument;
+    document.addDocumentListener(this);
+    documentVersion.incrementAndGet();
+    latestSnapshot   = null;
+    acquiredSnapshot = null;
+    if (!SYNCHRONOUS)
+      parseTask.schedule(0);
+  }
+
+  /**
+   * Stop tracking document and discard model state
+   */
+  public synchronized void detach()
+  {
+    parseTask.cancel();
+    if (document != null)
+      document.removeDocumentListener(this);
+    document         = null;
+    latestSnapshot   = null;
+    acquiredSnapshot = null;
+    PARSE_PROCESSOR.post(model::detach); // model is only touched on parse thread
+  }
+
+  @Override
+  public void insertUpdate(DocumentEvent e)
+  {
+    documentChanged();
+  }
+
+  @Override
+  public void removeUpdate(DocumentEvent e)
+  {
+    documentChanged();
+  }
+
+  @Override
+  public void changedUpdate(DocumentEvent e)
+  {
+    // attribute (style) changes do not affect XML content
+  }
+
+  private void documentChanged()
+  {
+    documentVersion.incrementAndGet();
+    if (!SYNCHRONOUS)
+      parseTask.schedule(DEBOUNCE_MILLIS); // rescheduling restarts the quiet period
+  }
+
+  /** Parse task body, runs on PARSE_PROCESSOR */
+  private void parse()
+  {
+    modelLock.lock();
+    try {
+      parseLocked();
+    }
+    finally {
+      modelLock.unlock();
+    }
+  }
+
+  /** Copy model state a reader acquired, runs on PARSE_PROCESSOR */
+  private void releaseAcquiredState()
+  {
+    modelLock.lock();
+    try {
+      model.releaseAcquiredState();
+    }
+    finally {
+      modelLock.unlock();
+    }
+  }
+
+  /**
+   * Parse on the calling thread only if no other thread is updating the model, and
+   * only a splice needing no copy is due, or nothing has been published yet to fall back on
+   * @return true if parsed
+   */
+  private boolean parseIfIdle()
+  {
+    if (!modelLock.tryLock())
+      return false;
+    try {
+      Document currentDocument = document;
+      if ((currentDocument == null) || ((latestSnapshot != null) &&
+          (model.isFullParseDue(currentDocument) || model.isCopyDue())))
+        return false; // leave full parses and copies of acquired state to the parse thread
+      parseLocked();
+      return true;
+    }
+    finally {
+      modelLock.unlock();
+    }
+  }
+
+  private void parseLocked()
+  {
+    Document currentDocument = document;
+    if (currentDocument == null)
+      return;
+    long version = documentVersion.get(); // read before parsing, so snapshot is never newer than its label
+    X3DSceneSnapshot prior = latestSnapshot;
+    if ((prior != null) && (prior.getVersion() == version))
+      return;
+    try {
+      model.update(currentDocument);
+      latestSnapshot = model.createSnapshot(version); // shares model state, no copy
+      lastFailure    = null;
+    }
+    catch (IOException | JDOMException | RuntimeException ex) {
+      lastFailure        = ex;
+      lastFailureVersion = version;
+    }
+  }
+
+  /**
+   * Most recently published snapshot, possibly older than current text; never blocks.
+   * The snapshot returned is acquired, so the model will not modify it.
+   * @return snapshot, or null if none parsed yet
+   */
+  public X3DSceneSnapshot getLatestSnapshot()
+  {
+    X3DSceneSnapshot snapshot = latestSnapshot;
+    if ((snapshot != null) && snapshot.acquire()) {
+      if (acquiredSnapshot != snapshot) {
+        acquiredSnapshot = snapshot;
+        PARSE_PROCESSOR.post(this::releaseAcquiredState); // copy now, rather than before a splice on the event thread
+      }
+      return snapshot;
+    }
+    // latest was retired by a splice now being published, previously acquired one is still intact
+    return acquiredSnapshot;
+  }
+
+  /**
+   * @param snapshot of interest
+   * @return true if snapshot reflects the current document text
+   */
+  public boolean isCurrent(X3DSceneSnapshot snapshot)
+  {
+    return (snapshot != null) && (snapshot.getVersion() == documentVersion.get());
+  }
+
+  /**
+   * Snapshot matching the current document text if it can be had without the event thread
+   * waiting.  Other threads wait for the parse thread if it has not caught up.  The event
+   * thread splices pending edits itself when the model is idle, otherwise it receives the
+   * most recent snapshot, which may lag the text; see isCurrent().
+   * @param currentDocument editor document, attached if not already tracked
+   * @return current snapshot, or most recent one when called on the event thread
+   * @throws IOException if parsing fails, or nothing has been parsed yet
+   * @throws JDOMException if document is not well formed
+   */
+  public X3DSceneSnapshot awaitCurrentSnapshot(Document currentDocument) throws IOException, JDOMException
+  {
+    attach(currentDocument);
+    X3DSceneSnapshot snapshot = getLatestSnapshot();
+    if (isCurrent(snapshot))
+      return snapshot; // background parse already caught up, no waiting
+
+    boolean eventThread = SwingUtilities.isEventDispatchThread();
+    long startTime = System.nanoTime();
+    try {
+      if (SYNCHRONOUS)
+        parse(); // prior behavior: parse on calling thread
+      else if (eventThread) {
+        if (!parseIfIdle()) {
+          parseTask.schedule(0); // skip remaining quiet period, but do not wait for it
+          if (snapshot == null)
+            throw new IOException(STILL_PARSING);
+          return snapshot;
+        }
+      }
+      else {
+        parseTask.schedule(0);
+        // bounded, since a caller holding the document write lock would otherwise wait forever
+        if (!parseTask.waitFinished(PARSE_TIMEOUT_MILLIS))
+          throw new IOException("X3D-Edit parse service timed out after " + PARSE_TIMEOUT_MILLIS + " msec");
+      }
+    }
+    catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("X3D-Edit parse service interrupted while waiting");
+    }
+    finally {
+      if (eventThread)
+        recordBlocking(System.nanoTime() - startTime);
+    }
+
+    return publishedSnapshot();
+  }
+
+  /**
+   * Snapshot matching the current document text, for callers about to splice text at its
+   * offsets.  Rather than fall back to a snapshot lagging the text, the calling thread
+   * finishes any pending parse itself, including a full parse, after waiting briefly for
+   * the parse thread.  The wait is bounded since edit actions may hold the document write
+   * lock, which the parse thread needs.
+   * @param currentDocument editor document, attached if not already tracked
+   * @return snapshot for which isCurrent() holds
+   * @throws IOException if parsing fails, or has not caught up with the text in time
+   * @throws JDOMException if document is not well formed
+   */
+  public X3DSceneSnapshot awaitSnapshotForEdit(Document currentDocument) throws IOException, JDOMException
+  {
+    attach(currentDocument);
+    X3DSceneSnapshot snapshot = getLatestSnapshot();
+    if (isCurrent(snapshot))
+      return snapshot;
+
+    boolean eventThread = SwingUtilities.isEventDispatchThread();
+    long startTime = System.nanoTime();
+    try {
+      if (!modelLock.tryLock(EDIT_WAIT_MILLIS, TimeUnit.MILLISECONDS))
+        throw new IOException(STILL_PARSING);
+      try {
+        parseLocked();
+      }
+      finally {
+        modelLock.unlock();
+      }
+    }
+    catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("X3D-Edit parse service interrupted while waiting");
+    }
+    finally {
+      if (eventThread)
+        recordBlocking(System.nanoTime() - startTime);
+    }
+
+    snapshot = publishedSnapshot();
+    if (!isCurrent(snapshot))
+      throw new IOException(STILL_PARSING); // text changed again meanwhile
+    return snapshot;
+  }
+
+  /**
+   * Most recently published snapshot, unless a later parse failed
+   * @throws IOException if parsing failed, or nothing has been parsed yet
+   * @throws JDOMException if document is not well formed
+   */
+  private X3DSceneSnapshot publishedSnapshot() throws IOException, JDOMException
+  {
+    X3DSceneSnapshot snapshot = getLatestSnapshot();
+    Exception failure = lastFailure;
+    if ((failure != null) && (lastFailureVersion >= ((snapshot == null) ? 0 : snapshot.getVersion()))) {
+      if (failure instanceof JDOMException)
+        throw (JDOMException) failure;
+      if (failure instanceof IOException)
+        throw (IOException) failure;
+      throw new IOException(failure.getMessage(), failure);
+    }
+    if (snapshot == null)
+      throw new IOException("X3D-Edit parse service produced no snapshot");
+    return snapshot;
+  }
+
+  private static void recordBlocking(long nanos)
+  {
+    edtBlockCount.incrementAndGet();
+    edtBlockTotalNanos.addAndGet(nanos);
+    edtBlockMaxNanos.accumulateAndGet(nanos, Math::max);
+  }
+
+  /**
+   * Summary of time the event dispatch thread has spent parsing
+   * @return one-line report
+   */
+  public static String getEdtBlockingReport()
+  {
+    long count = edtBlockCount.get();
+    long total = edtBlockTotalNanos.get();
+    return String.format("X3D-Edit %s parse: EDT parsed %d times, total %.1f ms, mean %.2f ms, max %.1f ms",
+        SYNCHRONOUS ? "synchronous" : "background", count, total / 1.0e6,
+        (count == 0) ? 0.0 : total / 1.0e6 / count, edtBlockMaxNanos.get() / 1.0e6);
+  }
+}
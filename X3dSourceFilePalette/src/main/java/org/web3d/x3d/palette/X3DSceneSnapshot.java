@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 1995-2025 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *  * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.palette;
+
+/**
+ * X3DSceneSnapshot.java
+ * Created on October 18, 2026
+ *
+ * Versioned scene snapshot produced by X3DParseService: the JDOM tree with its element
+ * location index and DEF/USE symbol table as left by one update of the working
+ * X3DJdomModel.  Publishing shares that state rather than copying it.  A reader must
+ * acquire a snapshot before use; from then on the model treats the shared state as
+ * read-only and copies it before its next splice, so an acquired snapshot is never
+ * modified and may be read on any thread.  A snapshot nobody acquired is simply
+ * retired when the model next modifies its state in place, and can no longer be acquired.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class X3DSceneSnapshot
+{
+  /**
+   * Working model state shared by the snapshots published from it; acquiring and retiring are exclusive
+   */
+  static final class Share
+  {
+    private boolean acquired;
+    private boolean retired;
+
+    /** @return true if readers may use the shared state, which the model must then leave unmodified */
+    synchronized boolean acquire()
+    {
+      if (retired)
+        return false;
+      acquired = true;
+      return true;
+    }
+
+    /** @return true if readers may be using the shared state; once acquired, it stays so */
+    synchronized boolean isAcquired()
+    {
+      return acquired;
+    }
+
+    /** @return true if the model may modify the shared state in place, false if it must copy it first */
+    synchronized boolean retire()
+    {
+      if (acquired)
+        return false;
+      retired = true;
+      return true;
+    }
+  }
+
+  private final long                 version;
+  private final org.jdom.Document    jdomDocument;
+  private final ElementLocationIndex locationIndex;
+  private final X3DSymbolTable       symbolTable;
+  private final Share                share;
+
+  X3DSceneSnapshot(long version, org.jdom.Document jdomDocument, ElementLocationIndex locationIndex,
+                   X3DSymbolTable symbolTable, Share share)
+  {
+    this.version       = version;
+    this.jdomDocument  = jdomDocument;
+    this.locationIndex = locationIndex;
+    this.symbolTable   = symbolTable;
+    this.share         = share;
+  }
+
+  /**
+   * Claim snapshot for reading, done by X3DParseService before handing it out
+   * @return false if the model has since modified this state and the snapshot must not be read
+   */
+  boolean acquire()
+  {
+    return share.acquire();
+  }
+
+  /** @return editor document version this snapshot reflects */
+  public long getVersion()
+  {
+    return version;
+  }
+
+  /** @return JDOM document, which callers must not modify */
+  public org.jdom.Document getJdomDocument()
+  {
+    return jdomDocument;
+  }
+
+  /** @return element location index with offsets valid for this version */
+  public ElementLocationIndex getLocationIndex()
+  {
+    return locationIndex;
+  }
+
+  /** @return DEF/USE symbol table for this version */
+  public X3DSymbolTable getSymbolTable()
+  {
+    return symbolTable;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "X3DSceneSnapshot[version " + version + ", " + locationIndex.size() + " elements]";
+  }
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 1995-2025 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *  * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.web3d.x3d.palette;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import org.jdom.Element;
+import static org.web3d.x3d.types.X3DSchemaData.*;
+
+/**
+ * X3DSymbolTable.java
+ * Created on October 18, 2026
+ *
+ * DEF/USE symbol table for the JDOM model of one X3D editor document.  Indexes DEF
+ * names by name and by scope (scene or ProtoBody), USE references, ROUTE
+ * endpoints and ProtoDeclare/ExternProtoDeclare declarations.  Built once per full
+ * parse and then maintained incrementally by X3DJdomModel as subtrees are replaced,
+ * so customizers obtain candidate lists and dangling-USE or duplicate-DEF checks
+ * without walking the whole tree.
+ *
+ * Not thread safe; guarded by the owning X3DJdomModel.  A table shared by an
+ * acquired X3DSceneSnapshot is never modified and may be read from any thread.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class X3DSymbolTable
+{
+  /** what was indexed for an element, so removal is exact even if the element was later modified */
+  private static final class Symbol
+  {
+    String  def, use, protoName, fromNode, toNode;
+    String  nodeType;
+    Element scope;
+    long    sequence; // order indexed, document order unless elements were spliced in later
+  }
+
+  private final Map<Element, Symbol>             symbols       = new IdentityHashMap<>();
+  private final Map<String, List<Element>>       defElements   = new HashMap<>();
+  private final Map<String, List<Element>>       useElements   = new HashMap<>();
+  private final Map<String, List<Element>>       routeElements = new HashMap<>();
+  private final Map<String, List<Element>>       protoElements = new LinkedHashMap<>();
+  private final Map<Element, Set<Element>>       scopeDefs     = new IdentityHashMap<>();
+  private final Map<Element, Element[]>          orderedDefs   = new IdentityHashMap<>(); // document order, dropped when scope changes
+  private final ElementLocationIndex documentOrder; // maintained alongside this table by the owning model
+  private long nextSequence;
+
+  /**
+   * Build symbol table for a complete JDOM document
+   * @param document parsed X3D scene, may be null
+   */
+  public X3DSymbolTable(org.jdom.Document document)
+  {
+    this(document, null);
+  }
+
+  /**
+   * Build symbol table for a complete JDOM document whose elements are located by an index
+   * @param document parsed X3D scene, may be null
+   * @param locationIndex locations of the same document, used to report elements in document order; may be null
+   */
+  public X3DSymbolTable(org.jdom.Document document, ElementLocationIndex locationIndex)
+  {
+    documentOrder = locationIndex;
+    if ((document != null) && document.hasRootElement())
+      addSubtree(document.getRootElement());
+  }
+
+  /**
+   * DEF names of all nodes of given type in document order, as a tree walk would collect them;
+   * a name defined more than once appears once per definition
+   * @param nodeType element name, matched ignoring case, or blank for all DEF names
+   * @return new vector which callers may modify
+   */
+  public Vector<String> getDefNames(String nodeType)
+  {
+    boolean allTypes = (nodeType == null) || nodeType.isBlank();
+    List<Element> defs = new ArrayList<>();
+    for (Set<Element> scoped : scopeDefs.values())
+      for (Element element : scoped)
+        if (allTypes || symbols.get(element).nodeType.equalsIgnoreCase(nodeType))
+          defs.add(element);
+    Element[] ordered;
+    if (documentOrder != null) {
+      synchronized (orderedDefs) { // location index is looked up lazily even when shared read-only
+        ordered = sortInDocumentOrder(defs);
+      }
+    }
+    else {
+      ordered = defs.toArray(new Element[defs.size()]);
+      Arrays.sort(ordered, (a, b) -> Long.compare(symbols.get(a).sequence, symbols.get(b).sequence));
+    }
+    Vector<String> names = new Vector<>(ordered.length);
+    for (Element element : ordered)
+      names.add(symbols.get(element).def);
+    return names;
+  }
+
+  /**
+   * @param defName DEF name of interest
+   * @return elements carrying that DEF name, in any scope
+   */
+  public List<Element> getDefElements(String defName)
+  {
+    return unmodifiable(defElements.get(defName));
+  }
+
+  /**
+   * @param useName USE name of interest
+   * @return elements referring to that name
+   */
+  public List<Element> getUseElements(String useName)
+  {
+    return unmodifiable(useElements.get(useName));
+  }
+
+  /**
+   * @param defName DEF name of interest
+   * @return ROUTE elements with that name as fromNode or toNode
+   */
+  public List<Element> getRouteElements(String defName)
+  {
+    return unmodifiable(routeElements.get(defName));
+  }
+
+  /**
+   * @param protoName prototype name of interest
+   * @return ProtoDeclare and ExternProtoDeclare elements with that name
+   */
+  public List<Element> getProtoDeclarations(String protoName)
+  {
+    return unmodifiable(protoElements.get(protoName));
+  }
+
+  /**
+   * @return names of all ProtoDeclare and ExternProtoDeclare elements
+   */
+  public Set<String> getProtoNames()
+  {
+    return Collections.unmodifiableSet(protoElements.keySet());
+  }
+
+  /**
+   * Elements with DEF names declared directly within a scope, i.e. not inside a nested ProtoBody
+   * @param scope ProtoBody element, or null for the scene
+   * @return DEF elements in document order, or insertion order if built without a location index
+   */
+  public List<Element> getDefElementsInScope(Element scope)
+  {
+    Set<Element> defs = scopeDefs.get(scope);
+    if (defs == null)
+      return Collections.<Element>emptyList();
+    if (documentOrder == null)
+      return new ArrayList<>(defs);
+    synchronized (orderedDefs) { // lazily filled even when shared read-only
+      Element[] ordered = orderedDefs.get(scope);
+      if (ordered == null) {
+        ordered = sortInDocumentOrder(defs);
+        orderedDefs.put(scope, ordered);
+      }
+      return new ArrayList<>(Arrays.asList(ordered));
+    }
+  }
+
+  /** splices append re-indexed elements, so restore document order; look up each position once */
+  private Element[] sortInDocumentOrder(Collection<Element> defs)
+  {
+    Element[] elements = defs.toArray(new Element[defs.size()]);
+    long[]    keys     = new long[elements.length];
+    for (int i = 0; i < elements.length; i++)
+      keys[i] = ((long) documentOrder.indexOf(elements[i]) << 32) | i;
+    Arrays.sort(keys);
+    Element[] ordered = new Element[elements.length];
+    for (int i = 0; i < keys.length; i++)
+      ordered[i] = elements[(int) keys[i]];
+    return ordered;
+  }
+
+  /**
+   * Names of USE references with no DEF of that name in their scope
+   * @return dangling USE names
+   */
+  public Set<String> getDanglingUseNames()
+  {
+    Set<String> dangling = new LinkedHashSet<>();
+    for (Map.Entry<String, List<Element>> entry : useElements.entrySet()) {
+      for (Element use : entry.getValue()) {
+        if (!isDefinedInScope(entry.getKey(), symbols.get(use).scope)) {
+          dangling.add(entry.getKey());
+          break;
+        }
+      }
+    }
+    return dangling;
+  }
+
+  /**
+   * Names declared by DEF more than once within the same scope
+   * @return duplicated DEF names
+   */
+  public Set<String> getDuplicateDefNames()
+  {
+    Set<String> duplicates = new LinkedHashSet<>();
+    for (Map.Entry<String, List<Element>> entry : defElements.entrySet()) {
+      List<Element> elements = entry.getValue();
+      if (elements.size() < 2)
+        continue;
+      Set<Element> scopes = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (Element element : elements) {
+        if (!scopes.add(symbols.get(element).scope)) {
+          duplicates.add(entry.getKey());
+          break;
+        }
+      }
+    }
+    return duplicates;
+  }
+
+  /**
+   * @param defName DEF name of interest
+   * @param scope ProtoBody element, or null for the scene
+   * @return true if an element in that scope carries the DEF name
+   */
+  public boolean isDefinedInScope(String defName, Element scope)
+  {
+    List<Element> elements = defElements.get(defName);
+    if (elements != null)
+      for (Element element : elements)
+        if (symbols.get(element).scope == scope)
+          return true;
+    return false;
+  }
+
+  /**
+   * Scope which DEF names of an element belong to, matching the ProtoBody boundary used by ROUTE checks
+   * @param element of interest
+   * @return nearest ProtoBody ancestor-or-self, or null for the scene
+   */
+  public static Element scopeOf(Element element)
+  {
+    for (Element e = element; e != null; e = e.getParentElement())
+      if (PROTOBODY_ELNAME.equals(e.getName()))
+        return e;
+    return null;
+  }
+
+  /**
+   * Index an element and all of its descendants; element must already be attached to its parent
+   * @param root of subtree
+   */
+  public void addSubtree(Element root)
+  {
+    addSubtree(root, scopeOf(root));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void addSubtree(Element element, Element scope)
+  {
+    if (PROTOBODY_ELNAME.equals(element.getName()))
+      scope = element;
+    addElement(element, scope);
+    for (Element child : (List<Element>) element.getChildren())
+      addSubtree(child, scope);
+  }
+
+  /**
+   * Remove an element and all of its descendants from the index
+   * @param root of subtree
+   */
+  @SuppressWarnings("unchecked")
+  public void removeSubtree(Element root)
+  {
+    removeElement(root);
+    for (Element child : (List<Element>) root.getChildren())
+      removeSubtree(child);
+  }
+
+  /**
+   * Index a single element, e.g. after its attributes were re-parsed
+   * @param element of interest, attached to its parent
+   */
+  public void addElement(Element element)
+  {
+    addElement(element, scopeOf(element));
+  }
+
+  private void addElement(Element element, Element scope)
+  {
+    Symbol symbol = new Symbol();
+    symbol.nodeType = element.getName();
+    symbol.scope    = scope;
+    symbol.sequence = nextSequence++;
+    symbol.def      = nonEmpty(element.getAttributeValue("DEF"));
+    symbol.use      = nonEmpty(element.getAttributeValue("USE"));
+    if (ROUTE_ELNAME.equals(symbol.nodeType)) {
+      symbol.fromNode = nonEmpty(element.getAttributeValue(ROUTE_ATTR_FROMNODE_NAME));
+      symbol.toNode   = nonEmpty(element.getAttributeValue(ROUTE_ATTR_TONODE_NAME));
+    }
+    else if (PROTODECLARE_ELNAME.equals(symbol.nodeType) || EXTERNPROTODECLARE_ELNAME.equals(symbol.nodeType))
+      symbol.protoName = nonEmpty(element.getAttributeValue(PROTODECLARE_ATTR_NAME_NAME));
+
+    if ((symbol.def == null) && (symbol.use == null) && (symbol.fromNode == null) && (symbol.toNode == null) && (symbol.protoName == null))
+      return; // nothing to index
+
+    symbols.put(element, symbol);
+    if (symbol.def != null) {
+      add(defElements, symbol.def, element);
+      scopeDefs.computeIfAbsent(scope, k -> new LinkedHashSet<>()).add(element);
+      dropOrder(scope);
+    }
+    if (symbol.use != null)
+      add(useElements, symbol.use, element);
+    if (symbol.fromNode != null)
+      add(routeElements, symbol.fromNode, element);
+    if ((symbol.toNode != null) && !symbol.toNode.equals(symbol.fromNode))
+      add(routeElements, symbol.toNode, element);
+    if (symbol.protoName != null)
+      add(protoElements, symbol.protoName, element);
+  }
+
+  private void dropOrder(Element scope)
+  {
+    synchronized (orderedDefs) {
+      orderedDefs.remove(scope);
+    }
+  }
+
+  /**
+   * Remove a single element from the index, e.g. before its attributes are re-parsed
+   * @param element of interest
+   */
+  public void removeElement(Element element)
+  {
+    Symbol symbol = symbols.remove(element);
+    if (symbol == null)
+      return;
+    if (symbol.def != null) {
+      remove(defElements, symbol.def, element);
+      dropOrder(symbol.scope);
+      Set<Element> defs = scopeDefs.get(symbol.scope);
+      if (defs != null) {
+        defs.remove(element);
+        if (defs.isEmpty())
+          scopeDefs.remove(symbol.scope);
+      }
+    }
+    if (symbol.use != null)
+      remove(useElements, symbol.use, element);
+    if (symbol.fromNode != null)
+      remove(routeElements, symbol.fromNode, element);
+    if ((symbol.toNode != null) && !symbol.toNode.equals(symbol.fromNode))
+      remove(routeElements, symbol.toNode, element);
+    if (symbol.protoName != null)
+      remove(protoElements, symbol.protoName, element);
+  }
+
+  private static String nonEmpty(String value)
+  {
+    return ((value == null) || value.isEmpty()) ? null : value;
+  }
+
+  private static void add(Map<String, List<Element>> map, String key, Element element)
+  {
+    map.computeIfAbsent(key, k -> new ArrayList<>(1)).add(element);
+  }
+
+  private static void remove(Map<String, List<Element>> map, String key, Element element)
+  {
+    List<Element> elements = map.get(key);
+    if (elements == null)
+      return;
+    for (int i = 0; i < elements.size(); i++) {
+      if (elements.get(i) == element) {
+        elements.remove(i);
+        break;
+      }
+    }
+    if (elements.isEmpty())
+      map.remove(key);
+  }
+
+  private static List<Element> unmodifiable(List<Element> elements)
+  {
+    return (elements == null) ? Collections.<Element>emptyList() : Collections.unmodifiableList(elements);
+  }
+}
@@ -1,12 +1,14 @@
 package org.web3d.x3d.palette;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.util.List;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
 import org.jdom.Attribute;
 import org.jdom.Element;
 import org.jdom.Namespace;
-import org.jdom.output.EscapeStrategy;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
 
@@ -24,13 +26,38 @@ import org.jdom.output.XMLOutputter;
  * It's distasteful because I lifted the relevant methods from the JDOM 1.0 source
  * and overrode the methods I needed to.  This might (probably will) break if JDOM is
  * ever updated.
+ *
+ * Attribute values are streamed straight to the Writer using a precomputed escape table, rather than copied into
+ * an escaped String per attribute.  Apostrophes are escaped since they delimit attribute values.  Long numeric arrays
+ * can optionally be wrapped every few tuples, and a subtree can be written straight into an editor Document.
  * 
  * @author Mike Bailey
  * @version $Id$
  */
 public class X3DXMLOutputter extends XMLOutputter
 {
-  
+  /** System property holding default tuples per line when wrapping long numeric arrays, 0 means no wrapping */
+  public static final String ARRAY_TUPLES_PER_LINE_PROPERTY = "x3dedit.output.arrayTuplesPerLine";
+  /** Numeric attribute values shorter than this are never wrapped */
+  public static final int    DEFAULT_ARRAY_WRAP_MINIMUM_LENGTH = 256;
+
+  /** Entity for each ASCII character that needs escaping inside an apostrophe-delimited attribute value, otherwise null */
+  private static final String[] ATTRIBUTE_ESCAPES = new String[128];
+  static
+  {
+    ATTRIBUTE_ESCAPES['<']  = "&lt;";
+    ATTRIBUTE_ESCAPES['>']  = "&gt;";
+    ATTRIBUTE_ESCAPES['&']  = "&amp;";
+    ATTRIBUTE_ESCAPES['\''] = "&apos;"; // outermost attribute quote character
+    ATTRIBUTE_ESCAPES['\r'] = "&#xD;";
+    ATTRIBUTE_ESCAPES['\t'] = "&#x9;";
+    ATTRIBUTE_ESCAPES['\n'] = "&#xA;";
+    // inner double quotes are deliberately left unescaped
+  }
+
+  private int arrayTuplesPerLine     = Integer.getInteger(ARRAY_TUPLES_PER_LINE_PROPERTY, 0);
+  private int arrayWrapMinimumLength = DEFAULT_ARRAY_WRAP_MINIMUM_LENGTH;
+
   public X3DXMLOutputter(Format fmt)
   {
     super(fmt);
@@ -40,6 +67,113 @@ public class X3DXMLOutputter extends XMLOutputter
   {
     super();
   }
+
+  /**
+   * Wrap long numeric array attribute values onto multiple lines.  Tuples are delimited by commas, as written by
+   * X3D-Edit when the insert commas option is set, or by -1 sentinels in index arrays such as coordIndex.
+   * @param tuplesPerLine tuples per line, 0 for no wrapping
+   * @param minimumLength values shorter than this are left on one line
+   */
+  public void setArrayLineWrapping(int tuplesPerLine, int minimumLength)
+  {
+    arrayTuplesPerLine     = Math.max(0, tuplesPerLine);
+    arrayWrapMinimumLength = minimumLength;
+  }
+
+  /** @return tuples per line when wrapping long numeric arrays, 0 means no wrapping */
+  public int getArrayTuplesPerLine()
+  {
+    return arrayTuplesPerLine;
+  }
+
+  /**
+   * Serialize element subtree straight into a text document, for example the editor document, in buffered chunks
+   * rather than as one intermediate String.  Caller holds any needed document lock and selects the thread.
+   * @param element subtree of interest
+   * @param document destination
+   * @param offset document position to insert at
+   * @return number of characters inserted
+   * @throws IOException if output fails
+   * @throws BadLocationException if offset is not within document
+   */
+  public int output(Element element, Document document, int offset) throws IOException, BadLocationException
+  {
+    DocumentWriter writer = new DocumentWriter(document, offset);
+    try {
+      output(element, writer);
+      writer.flush();
+    }
+    catch (IOException ex) {
+      if (ex.getCause() instanceof BadLocationException)
+        throw (BadLocationException) ex.getCause();
+      throw ex;
+    }
+    return writer.offset - offset;
+  }
+
+  /** Inserts buffered text into a Document, advancing the insertion offset */
+  private static final class DocumentWriter extends Writer
+  {
+    private final Document document;
+    private final char[]   buffer = new char[16 * 1024];
+    private int count;
+    private int offset;
+
+    DocumentWriter(Document document, int offset)
+    {
+      this.document = document;
+      this.offset   = offset;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException
+    {
+      while (len > 0) {
+        if (count == buffer.length)
+          flush();
+        int n = Math.min(len, buffer.length - count);
+        System.arraycopy(cbuf, off, buffer, count, n);
+        count += n;
+        off   += n;
+        len   -= n;
+      }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException
+    {
+      while (len > 0) {
+        if (count == buffer.length)
+          flush();
+        int n = Math.min(len, buffer.length - count);
+        str.getChars(off, off + n, buffer, count);
+        count += n;
+        off   += n;
+        len   -= n;
+      }
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+      if (count == 0)
+        return;
+      try {
+        document.insertString(offset, new String(buffer, 0, count), null);
+      }
+      catch (BadLocationException ex) {
+        throw new IOException(ex);
+      }
+      offset += count;
+      count = 0;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      flush();
+    }
+  }
   
   @Override
   protected void printAttributes(Writer out, List attributes, Element parent, XMLOutputter.NamespaceStack namespaces) throws IOException
@@ -52,101 +186,154 @@ public class X3DXMLOutputter extends XMLOutputter
         printNamespace(out, ns, namespaces);
       }
 
-      out.write(" ");
+      out.write(' ');
       printQualifiedName(out, attribute);
-      out.write("=");
+      out.write("='"); // apostrophe rather than double quote
 
-      out.write("'"); //out.write("\"");
-      out.write(escapeAttributeEntities(attribute.getValue()));
-      out.write("'"); //out.write("\"");
+      String value = attribute.getValue();
+      if ((arrayTuplesPerLine > 0) && (value.length() >= arrayWrapMinimumLength) && isNumericArray(value))
+           writeWrappedArray(out, value, attribute.getName().endsWith("Index"));
+      else writeEscapedAttribute(out, value);
+      out.write('\'');
     }
+  }
 
+  /**
+   * Write attribute value to destination, escaping characters in bulk runs using a precomputed table.
+   * Characters beyond ASCII are written directly for UTF-8 output, except surrogate pairs which become character references.
+   * @param out destination
+   * @param value attribute value
+   * @throws IOException if output fails
+   */
+  public static void writeEscapedAttribute(Writer out, String value) throws IOException
+  {
+    final int length = value.length();
+    int start = 0; // first character not yet written
+    for (int i = 0; i < length; i++)
+    {
+      char ch = value.charAt(i);
+      String entity;
+      int codePoint;
+      if (ch < 128)
+      {
+        entity = ATTRIBUTE_ESCAPES[ch];
+        if (entity == null)
+          continue;
+        codePoint = -1;
+      }
+      else if (Character.isHighSurrogate(ch)) // as escaped by the UTF-8 strategy of Format
+      {
+        entity = null;
+        codePoint = ch;
+        if ((i + 1 < length) && Character.isLowSurrogate(value.charAt(i + 1)))
+          codePoint = Character.toCodePoint(ch, value.charAt(i + 1)); // one reference for the whole pair
+      }
+      else continue;
+
+      if (i > start)
+        out.write(value, start, i - start);
+      if (entity != null)
+        out.write(entity);
+      else
+      {
+        out.write("&#x");
+        out.write(Integer.toHexString(codePoint));
+        out.write(';');
+        if (codePoint > Character.MAX_VALUE)
+          i++; // low surrogate consumed
+      }
+      start = i + 1;
+    }
+    if (start < length)
+      out.write(value, start, length - start);
   }
 
+  /**
+   * This will take the pre-defined entities in XML 1.0 and
+   * convert their character representation to the appropriate
+   * entity reference, suitable for apostrophe-delimited XML attributes.
+   *
+   * @param str <code>String</code> input to escape.
+   * @return <code>String</code> with escaped content, or the same input if no escaping is needed.
+   */
   @Override
-    /**
-     * This will take the pre-defined entities in XML 1.0 and
-     * convert their character representation to the appropriate
-     * entity reference, suitable for XML attributes.  It does not convert
-     * the single quote (') because it's not necessary as the outputter
-     * writes attributes surrounded by double-quotes.
-     *
-     * @param str <code>String</code> input to escape.
-     * @return <code>String</code> with escaped content.
-     */
-    public String escapeAttributeEntities(String str) {
-        StringBuffer buffer;
-        char ch;
-        String entity;
-        EscapeStrategy strategy = Format.getRawFormat().getEscapeStrategy(); //currentFormat.escapeStrategy;
-
-        buffer = null;
-        for (int i = 0; i < str.length(); i++) {
-            ch = str.charAt(i);
-            switch(ch) {
-                case '<' :
-                    entity = "&lt;";
-                    break;
-                case '>' :
-                    entity = "&gt;";
-                    break;
-/*
-                case '\'' :
-                    entity = "&apos;";
-                    break;
-
-                case '\"' :
-                    entity = "&quot;";
-                    break;
-*/
-                case '&' :
-                    entity = "&amp;";
-                    break;
-                case '\r' :
-                    entity = "&#xD;";
-                    break;
-                case '\t' :
-                    entity = "&#x9;";
-                    break;
-                case '\n' :
-                    entity = "&#xA;";
-                    break;
-                default :
-                    if (strategy.shouldEscape(ch)) {
-                        entity = "&#x" + Integer.toHexString(ch) + ";";
-                    }
-                    else {
-                        entity = null;
-                    }
-                    break;
-            }
-            if (buffer == null) {
-                if (entity != null) {
-                    // An entity occurred, so we'll have to use StringBuffer
-                    // (allocate room for it plus a few more entities).
-                    buffer = new StringBuffer(str.length() + 20);
-                    // Copy previous skipped characters and fall through
-                    // to pickup current character
-                    buffer.append(str.substring(0, i));
-                    buffer.append(entity);
-                }
-            }
-            else {
-                if (entity == null) {
-                    buffer.append(ch);
-                }
-                else {
-                    buffer.append(entity);
-                }
-            }
-        }
-
-        // If there were any entities, return the escaped characters
-        // that we put in the StringBuffer. Otherwise, just return
-        // the unmodified input string.
-        return (buffer == null) ? str : buffer.toString();
+  public String escapeAttributeEntities(String str)
+  {
+    int i = 0;
+    while ((i < str.length()) && !needsEscape(str.charAt(i)))
+      i++;
+    if (i == str.length())
+      return str; // usual case, nothing to copy
+    StringWriter buffer = new StringWriter(str.length() + 20);
+    try {
+      writeEscapedAttribute(buffer, str);
+    }
+    catch (IOException ex) {
+      throw new IllegalStateException(ex); // StringWriter does not fail
     }
+    return buffer.toString();
+  }
 
+  private static boolean needsEscape(char ch)
+  {
+    return (ch < 128) ? (ATTRIBUTE_ESCAPES[ch] != null) : Character.isHighSurrogate(ch);
+  }
+
+  /** @return whether value holds only numbers, whitespace and commas, so that no escaping is needed */
+  static boolean isNumericArray(String value)
+  {
+    for (int i = 0; i < value.length(); i++)
+    {
+      char ch = value.charAt(i);
+      if (!(((ch >= '0') && (ch <= '9')) || (ch == ' ') || (ch == ',') || (ch == '-') || (ch == '.') ||
+            (ch == '\n') || (ch == '\r') || (ch == '\t') || (ch == '+') || (ch == 'e') || (ch == 'E')))
+        return false;
+    }
+    return true;
+  }
+
+  private static boolean isArraySeparator(char ch)
+  {
+    return (ch == ',') || (ch == ' ') || (ch == '\n') || (ch == '\r') || (ch == '\t');
+  }
+
+  /**
+   * Write numeric array with single spaces between values and a line break after every arrayTuplesPerLine tuples,
+   * without creating intermediate strings.  Literal line breaks are attribute whitespace, so values are unchanged.
+   */
+  private void writeWrappedArray(Writer out, String value, boolean indexArray) throws IOException
+  {
+    final int length = value.length();
+    int tuples = 0;
+    boolean first = true;
+    boolean previousEndedTuple = false;
+    int i = 0;
+    while (i < length)
+    {
+      while ((i < length) && isArraySeparator(value.charAt(i)))
+        i++;
+      if (i == length)
+        break;
+      int start = i;
+      while ((i < length) && !isArraySeparator(value.charAt(i)))
+        i++;
+      int end = i;
+      while ((i < length) && (value.charAt(i) != ',') && isArraySeparator(value.charAt(i)))
+        i++;
+      boolean comma = (i < length) && (value.charAt(i) == ',');
+      boolean endOfTuple = comma || (indexArray && (end - start == 2) && value.startsWith("-1", start));
+
+      if (!first)
+        out.write((previousEndedTuple && ((tuples % arrayTuplesPerLine) == 0)) ? '\n' : ' ');
+      out.write(value, start, end - start);
+      if (comma)
+        out.write(',');
+      first = false;
+      previousEndedTuple = endOfTuple;
+      if (endOfTuple)
+        tuples++;
+    }
+  }
 
   private void printQualifiedName(Writer out, Attribute a) throws IOException
   {
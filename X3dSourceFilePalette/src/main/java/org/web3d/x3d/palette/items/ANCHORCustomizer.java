@@ -33,12 +33,12 @@ POSSIBILITY OF SUCH DAMAGE.
  */
 package org.web3d.x3d.palette.items;
 
-import java.util.Vector;
 import javax.swing.JTable;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.text.JTextComponent;
 import org.openide.util.HelpCtx;
 import org.web3d.x3d.X3DDataObject;
+import org.web3d.x3d.types.X3DMFStringParser;
 import static org.web3d.x3d.types.X3DSchemaData.GROUP_CONTAINERFIELD_CHOICES;
 import static org.web3d.x3d.types.X3DSchemaData.GROUP_CONTAINERFIELD_TOOLTIPS;
 
@@ -162,103 +162,13 @@ public class ANCHORCustomizer extends BaseCustomizer
 //      parameterTable.setKeyColumnIncluded(false);
 //      parameterTable.doTrailingTextEditButton(true); // TODO test
         
-        // properly escape characters in each parameter string before setting values into table
-        String inps = anchor.getParameterString();
-        String[] sa = new String[100];
-        int index = 0;
-        StringBuilder newString = new StringBuilder();
-
-        if (inps != null && inps.length() > 0)
-        {
-            boolean betweenStrings = true;
-            if (!inps.contains("\""))
-            {
-                sa[index] = inps; // single un"quoted" string only
-            }
-            else
-            {
-                for (int i = 0; i < inps.length(); i++)
-                {
-                    while (betweenStrings && (inps.substring(i, i+1).trim().length() == 0) && (i < inps.length() - 1))
-                    {
-                        i++;  // skip whitespace until ready to start next SFString
-                    }
-                    betweenStrings = false;
-                    if (inps.charAt(i) == '\"')// found opening quote
-                    {
-                        if ((i < inps.length() - 1)) i++; // skip this delimiting character, not part of SFString
-                    }
-                    else
-                    {
-                        System.out.println("new string started illegally, character index " + i);
-                    }
-
-                    while (i < inps.length())
-                    {
-                        // inside SFString, look for termination
-                        if ((inps.length() - i >= 2) && inps.substring(i, i + 2).equalsIgnoreCase("\\\"")) // skip escaped \"
-                        {
-                            newString.append(inps.substring(i, i + 2)); // found escaped quote within SFString, save both characters and keep building this string
-                            i = i + 2; // increment index, account for second character of two
-                        }
-                        else if (inps.charAt(i) == '\"') // found terminating ", done with this SFString
-                        {
-                            betweenStrings = true;
-                            sa[index] = newString.toString(); // save this SFString, ignore delimiter " character
-                            index++;
-                            newString = new StringBuilder(); // reset for next loop
-                            break;
-                        }
-                        else
-                        {
-                            newString.append(inps.charAt(i)); // keep building this string
-                             i++; // increment index
-                        }
-                    }
-                    if ((i == inps.length() - 1) && (newString.length() > 0))
-                    {
-                        System.out.println("encountered unterminated SFString, mismatched quotes: " + inps);
-                        sa[index] = newString.toString(); // save this SFString fragment anyway
-                    }
-                }
-            }
-        }
-
-        Vector<String> v = new Vector<>();
-        for (String s : sa)
-        {
-            if (s==null) break; // done
-
-            StringBuilder escapedString = new StringBuilder();
-            for (int c = 0; c < s.length(); c++)
-            {
-                // &amp; and &apos; and &quot; are already converted back to & and ' by XML parser
-
-                if (((s.length() - c) >= 2) && s.substring(c).startsWith("\\\\"))
-                {
-                    escapedString.append('\\');         // replace double backslash with single backslash
-                    c = c + 1;
-                }
-                else
-                {
-                    if (((s.length() - c) >= 2) && s.substring(c).startsWith("\\\""))
-                    {
-                        escapedString.append('"');         // replace \" with "
-                        c = c + 1;
-                    }
-                    else
-                    {
-                        escapedString.append(s.charAt(c)); // OK as is
-                    }
-                }
-            }
-            v.add(escapedString.toString());
-        }
-        if (v.size() > 0)
+        // properly unescape characters in each parameter string before setting values into table
+        String[] sa = X3DMFStringParser.parse(anchor.getParameterString(), false);
+        if (sa.length > 0)
         {
-          Object[][] oa = new Object[v.size()][1];
+          Object[][] oa = new Object[sa.length][1];
           int i=0;
-          for(String s : v) {
+          for(String s : sa) {
             oa[i] = new String[]{s};
             i++;
           }
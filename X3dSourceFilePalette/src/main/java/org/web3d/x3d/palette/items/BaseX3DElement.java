@@ -61,6 +61,8 @@ import org.web3d.x3d.X3DDataObject;
 import org.web3d.x3d.options.X3dEditUserPreferences;
 import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom;
 import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom.ElementLocation;
+import org.web3d.x3d.palette.X3DSceneSnapshot;
+import org.web3d.x3d.palette.X3DSymbolTable;
 import org.web3d.x3d.palette.X3DXMLOutputter;
 import org.web3d.x3d.sai.X3DFieldDefinition;
 import org.web3d.x3d.types.*;
@@ -92,6 +94,7 @@ public abstract class BaseX3DElement implements ActiveEditorDrop
 
   private JTextComponent targetTextComponent;
   protected ElementLocation elementLocation;
+  private X3DSceneSnapshot elementSnapshot; // snapshot elementLocation was found in, if known
   protected String parent; // non-null if known
 
   private boolean   traceEventsSelectionAvailable = false;
@@ -119,8 +122,8 @@ public abstract class BaseX3DElement implements ActiveEditorDrop
     this.targetTextComponent = targetComponent;
 
     try {
-      X3DPaletteUtilitiesJdom.buildJdom(targetComponent);  // rebuild JDOM tree
-      elementLocation = X3DPaletteUtilitiesJdom.findSelectedElement(targetTextComponent); // find caret position
+      elementSnapshot = X3DPaletteUtilitiesJdom.getSnapshotForEdit(targetComponent);  // rebuild JDOM tree
+      elementLocation = X3DPaletteUtilitiesJdom.findSelectedElement(targetTextComponent, elementSnapshot); // find caret position
     }
     catch(IOException | JDOMException | BadLocationException ex) {
       // semi-silently fail
@@ -226,8 +229,8 @@ public abstract class BaseX3DElement implements ActiveEditorDrop
           postInsert(targetComponent);
           X3DPaletteUtilitiesJdom.getTopComponent(targetTextComponent).requestActive();
 		  int newCaretLocation = start+4;
-		  if (newCaretLocation > targetTextComponent.getText().length()-1)
-			  newCaretLocation = targetTextComponent.getText().length()-1; // avoid overshoot exception
+		  if (newCaretLocation > targetTextComponent.getDocument().getLength()-1)
+			  newCaretLocation = targetTextComponent.getDocument().getLength()-1; // avoid overshoot exception, without copying text
           targetTextComponent.setCaretPosition(newCaretLocation);
         }
         catch (BadLocationException bad) {
@@ -242,8 +245,18 @@ public abstract class BaseX3DElement implements ActiveEditorDrop
   }
 
   public void setLocation(ElementLocation location)
+  {
+    setLocation(location, null);
+  }
+
+  /**
+   * @param location element being edited
+   * @param snapshot snapshot whose location index holds location, or null if unknown
+   */
+  public void setLocation(ElementLocation location, X3DSceneSnapshot snapshot)
   {
     elementLocation = location;
+    elementSnapshot = snapshot;
     if(location != null)
       if(location.parent != null)
         parent = location.parent.name;
@@ -3168,6 +3181,21 @@ public abstract class BaseX3DElement implements ActiveEditorDrop
     return v;
   }
 
+  /**
+   * DEF nodes sharing this element's scope (scene or enclosing ProtoBody), taken from the symbol
+   * table of the snapshot this element was found in rather than a tree walk, since the ProtoBody
+   * key only matches elements of that same snapshot.  Does not rebuild JDOM document
+   * @param targetComponent of interest
+   * @param markerList scope markers, used only if the element's snapshot is unknown
+   * @return DEF nodes in scope
+   */
+  protected List<Element> getScopedDefNodeList(JTextComponent targetComponent, Vector<String> markerList)
+  {
+    if ((elementSnapshot == null) || (elementLocation == null))
+      return getSpecialNodeList(targetComponent, markerList);
+    return elementSnapshot.getSymbolTable().getDefElementsInScope(X3DSymbolTable.scopeOf(elementLocation.element));
+  }
+
  /**
    * Get a complete list, except for branches whose names are in the list
    * Does not rebuild JDOM document
@@ -3591,9 +3619,6 @@ public abstract class BaseX3DElement implements ActiveEditorDrop
     return parseMFStringIntoStringArray(inputString,false);  // split around whitespace
   }
   
-  private static boolean splitOnSentinel = false;
-  private static String  sentinelString  = "-1";
-
   /**
    * Properly split MFString into String[] array of SFString elements
    * @param inputString  X3D MFString input value, held as a Java String
@@ -3601,16 +3626,11 @@ public abstract class BaseX3DElement implements ActiveEditorDrop
    * @param splitOnSentinel Whether to split strings on sentinelString marker
    * @param sentinelString  sentinel marker
    * @return String[] array holding SFString elements
+   * @see X3DMFStringParser
    */
   public static String[] parseMFStringIntoStringArray(String inputString, boolean removeQuotes, boolean splitOnSentinel, String sentinelString)
   {
-      BaseX3DElement.splitOnSentinel = splitOnSentinel;
-      BaseX3DElement.sentinelString  = sentinelString;
-      String[] result = parseMFStringIntoStringArray(inputString, removeQuotes);
-      // restore defaults
-      BaseX3DElement.splitOnSentinel = false;
-      BaseX3DElement.sentinelString  = "-1";
-      return result;
+      return X3DMFStringParser.parse(inputString, removeQuotes, splitOnSentinel, sentinelString); // re-entrant, no shared state
   }
 
   /**
@@ -3618,137 +3638,11 @@ public abstract class BaseX3DElement implements ActiveEditorDrop
    * @param inputString  X3D MFString input value, held as a Java String
    * @param removeQuotes Whether to remove "quote" marks surrounding SFString elements
    * @return String[] array holding SFString elements
+   * @see X3DMFStringParser
    */
   public static String[] parseMFStringIntoStringArray(String inputString, boolean removeQuotes)
   {
-    String[] sa = new String[0];
-    List<String> stringList = new ArrayList<>(); // switch to ArrayList to avoid unused null String elements
-
-    StringBuilder newString = new StringBuilder();
-    boolean betweenStrings = true; // whether parse algorithm is inside a quoted string element or between them inside intervening whitespace
-
-    if ((inputString== null) || inputString.isEmpty())
-    {
-         return sa;
-    }
-    if (!inputString.contains("\"") && !splitOnSentinel)
-    {
-        stringList.add(inputString); // single un"quoted" string only
-    }
-    else
-    {
-        for (int i = 0; i < inputString.length(); i++)
-        {
-            while (betweenStrings && (inputString.substring(i, i+1).trim().length() == 0) && (i < inputString.length() - 1))
-            {
-                i++;  // skip whitespace until ready to start next SFString element of MFString array
-            }
-            betweenStrings = false;
-            if (inputString.charAt(i) == '\"')// found opening quote
-            {
-                if ((i < inputString.length() - 1)) i++; // skip this delimiting character, not part of SFString
-            }
-            else if (removeQuotes)
-            {
-                System.out.println("new SFString element within MFString started illegally (without delimiting quote mark) at character index " + i);
-            }
-
-            while (i < inputString.length())
-            {
-                // inside SFString, look for termination
-                // found escaped quote within SFString, save both characters and keep building this string
-                if ((inputString.length() > i + 2) && inputString.substring(i, i + 2).equalsIgnoreCase("\\\"")) // capture embedded escaped \"
-                {
-                    newString.append(inputString.substring(i, i + 2));
-                    i = i + 2; // increment index, account for both characters
-                }
-                // special case of ambiguous termination by \" (instead of \"" or \\") is treated as \\"
-                else if ((inputString.length() == i + 2) && inputString.substring(i, i + 2).equalsIgnoreCase("\\\"")) // handle terminating escaped \"
-                {
-                    newString.append(inputString.charAt(i)); // capture / character only
-                    i++; // increment index, string will terminate on next loop
-                    System.out.println("parseIntoStringArray() encountered SFString terminated by escaped quote \\\" mismatch: " + inputString);
-                }
-                else  if ((inputString.length() >= i + 2) && inputString.substring(i, i + 2).equalsIgnoreCase("\\\\")) // capture escaped \\
-                {
-                    // found escaped backslash \\ within SFString, save both characters and keep building this string
-                    newString.append(inputString.substring(i, i + 2));
-                    i = i + 2; // increment index, account for both characters
-                }
-                else if (inputString.charAt(i) == '\"') // found terminating " and so done with this SFString
-                {
-                    betweenStrings = true;
-                    stringList.add(newString.toString()); // save this SFString, ignore delimiter " character
-                    newString = new StringBuilder(); // reset for next loop
-                    break;
-                }
-                else if (splitOnSentinel && inputString.substring(i).startsWith(sentinelString)) // found terminating sentinelString and so done with this SFString
-                {
-                    newString.append(sentinelString);
-                    i = i + sentinelString.length(); // increment index, account for sentinelString characters
-                    betweenStrings = true;
-                    stringList.add(newString.toString()); // save this SFString, include sentinelString characters
-                    newString = new StringBuilder(); // reset for next loop
-                    break;
-                }
-                else
-                {
-                    newString.append(inputString.charAt(i)); // keep building this string, character by character
-                    i++; // increment index
-                }
-            }
-            if ((i == inputString.length() - 1) && (newString.length() > 0))
-            {
-                System.out.println("parseIntoStringArray() encountered unterminated SFString, mismatched quotes: " + inputString);
-                stringList.add(newString.toString()); // save this SFString fragment anyway
-            }
-            else if (newString.length() > 0)
-                stringList.add(newString.toString()); // save this remaining SFString even though not trapped previously
-        }
-    }
-
-    sa = new String[stringList.size()];
-    int index = 0;
-
-    // now handle escape characters
-    for (String s : stringList)
-    {
-        StringBuilder escapedString = new StringBuilder();
-        for (int c = 0; c < s.length(); c++)
-        {
-            // &amp; and &apos; and &quot; are already converted back to & and ' by XML parser
-
-            if (((s.length() - c) >= 2) && s.substring(c).startsWith("\\\\"))
-            {
-                escapedString.append('\\');         // replace double backslash with single backslash
-                c = c + 1;
-            }
-            else
-            {
-                if (((s.length() - c) >= 2) && s.substring(c).startsWith("\\\""))
-                {
-                    escapedString.append('"');         // replace \" with "
-                    c = c + 1;
-                }
-                else
-                {
-                    escapedString.append(s.charAt(c)); // OK as is
-                }
-            }
-        }
-        sa[index] = escapedString.toString();
-
-        if (removeQuotes)
-        {
-            if ((sa[index].length() > 0) && (sa[index].charAt(0) == '"'))
-                 sa[index] = sa[index].substring(1);
-
-            if ((sa[index].length() > 0) && (sa[index].charAt(sa[index].length() - 1) == '"'))
-                 sa[index] = sa[index].substring(0, sa[index].length() - 1);
-        }
-        index++;
-    }
-    return sa;
+      return X3DMFStringParser.parse(inputString, removeQuotes);
   }
 
   public static String concatStringArray(String[] sa)
@@ -4085,6 +3979,20 @@ public abstract class BaseX3DElement implements ActiveEditorDrop
 
     return true;    // everything matches
   }
+  protected boolean arraysIdenticalOrNull(MFFloatBuffer buffer1, MFFloatBuffer buffer2)
+  {
+    if ((buffer1 == null) || buffer1.isEmpty())
+        return (buffer2 == null) || buffer2.isEmpty(); // if they're both empty, they're the same
+    return buffer1.equals(buffer2);
+  }
+
+  protected boolean arraysIdenticalOrNull(MFDoubleBuffer buffer1, MFDoubleBuffer buffer2)
+  {
+    if ((buffer1 == null) || buffer1.isEmpty())
+        return (buffer2 == null) || buffer2.isEmpty(); // if they're both empty, they're the same
+    return buffer1.equals(buffer2);
+  }
+
   protected boolean arraysIdenticalOrNull(SFDouble[][]vec1, SFDouble[][]vect2)
   {
     if(vec1.length==0 && vect2.length==0)  // if they're both empty, they're the same
@@ -4127,45 +4035,8 @@ public abstract class BaseX3DElement implements ActiveEditorDrop
    * @return resulting text
    */
   protected String formatStringArray(String[] sa) {
-    StringBuilder sb = new StringBuilder();
-
-    if ((sa.length > 0) && insertLineBreaks) sb.append("\n");
-    for(int i=0;i<sa.length;i++)
-    {
-      // special X3D and special XML characters must be escaped
-      String value = sa[i];
-      StringBuilder escapedValue = new StringBuilder();
-      for (int c=0;c<value.length();c++)
-      {
-          if      (value.charAt(c) == '"')
-          {
-               escapedValue.append('\\');            // replace " character with \" characters for X3D escaping
-               escapedValue.append("\"");            // take care between use of " and &quot; here
-          }
-          else if (value.charAt(c) == '&')
-               escapedValue.append("&amp;");         // replace & character with &amp;  characters
-          else if (value.charAt(c) == '\'')
-               escapedValue.append("&apos;");        // replace ' character with &apos; characters
-          else if (value.charAt(c) == '<')
-               escapedValue.append("&lt;");          // replace < character with &lt;   characters
-//       else if (value.charAt(c) == '>')
-//             escapedValue.append("&gt;");          // replace > character with &gt;   characters; not required/essential
-          else if (value.charAt(c) == '\\')
-               escapedValue.append("\\\\");          // replace \ character with \\     characters
-          else if ((value.charAt(c)) > 127)     // replace special characters with XML character entity
-               escapedValue.append("&#").append((int)(value.charAt(c))).append(";");
-          else escapedValue.append(value.charAt(c)); // otherwise no change, pass along the unescaped character
-      }
-      sb.append("\"");
-      sb.append(escapedValue);
-      sb.append("\"");
-      if ((i < sa.length-1) && insertCommas) sb.append(",");
-      if (insertLineBreaks)                  sb.append("\n");
-      else if (i < sa.length-1)              sb.append(" "); // replace intermediate space
-      // note that only a single blank character appears between array elements in X3D canonicalization (C14N) form,
-      // X3D-Edit comma and line break options are provided as an author convenience
-    }
-    return sb.toString();
+    // special X3D and special XML characters are escaped by X3DMFStringParser
+    return X3DMFStringParser.format(sa, insertCommas, insertLineBreaks);
   }
 
   protected String formatBooleanArray(boolean[] ba, boolean newInsertCommas, boolean newInsertLineBreaks)
@@ -4280,8 +4151,8 @@ public abstract class BaseX3DElement implements ActiveEditorDrop
   {
       insertCommas                 = false;
       insertLineBreaks             = false;
-      breakLinesAfterIndexSentinel = newBreakLinesAfterIndexSentinel;
-      return formatIntArray(parseToSFIntArray(parseX(intArrayString)));
+      breakLinesAfterIndexSentinel = false; // reset, value is passed directly
+      return MFInt32Buffer.parse(intArrayString).format(false, false, newBreakLinesAfterIndexSentinel); // single-pass tokenizer
   }
 
   protected String formatIntArray(SFInt32[] ia, boolean newInsertCommas, boolean newInsertLineBreaks)
@@ -4387,6 +4258,44 @@ public abstract class BaseX3DElement implements ActiveEditorDrop
     return sb.toString();
   }
 
+  protected String formatFloatArray(MFFloatBuffer buffer, boolean newInsertCommas, boolean newInsertLineBreaks)
+  {
+      insertCommas     = newInsertCommas;
+      insertLineBreaks = newInsertLineBreaks;
+      return formatFloatArray(buffer);
+  }
+
+  protected String formatFloatArray(MFFloatBuffer buffer, boolean newInsertCommas, boolean newInsertLineBreaks, int newNumberTuplesBetweenLineBreaks)
+  {
+      insertCommas     = newInsertCommas;
+      insertLineBreaks = newInsertLineBreaks;
+      numberTuplesBetweenLineBreaks = newNumberTuplesBetweenLineBreaks;
+      return formatFloatArray(buffer);
+  }
+
+  /** Format primitive buffer without creating per-value objects; output matches formatFloatArray(SFFloat[][])
+   * @param buffer values of interest
+   * @return attribute text */
+  protected String formatFloatArray(MFFloatBuffer buffer)
+  {
+    return buffer.format(insertCommas, insertLineBreaks, numberTuplesBetweenLineBreaks);
+  }
+
+  protected String formatDoubleArray(MFDoubleBuffer buffer, boolean newInsertCommas, boolean newInsertLineBreaks)
+  {
+      insertCommas     = newInsertCommas;
+      insertLineBreaks = newInsertLineBreaks;
+      return formatDoubleArray(buffer);
+  }
+
+  /** Format primitive buffer without creating per-value objects; output matches formatDoubleArray(SFDouble[][])
+   * @param buffer values of interest
+   * @return attribute text */
+  protected String formatDoubleArray(MFDoubleBuffer buffer)
+  {
+    return buffer.format(insertCommas, insertLineBreaks, numberTuplesBetweenLineBreaks);
+  }
+
   protected String formatDoubleArray(SFDouble[][] sfdaa, boolean newInsertCommas, boolean newInsertLineBreaks)
   {
       insertCommas     = newInsertCommas;
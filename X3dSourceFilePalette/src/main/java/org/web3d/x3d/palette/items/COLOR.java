@@ -53,7 +53,7 @@ import static org.web3d.x3d.types.X3DSchemaData4.*;
  */
 public class COLOR extends X3DColorNode
 {
-  private SFFloat[][] colors, colorsDefault;
+  private MFFloatBuffer colors, colorsDefault;
   private boolean insertCommas, insertLineBreaks = false;
 
   public COLOR()
@@ -74,7 +74,7 @@ public class COLOR extends X3DColorNode
       sa = new String[]{};
     else
       sa = parse3(COLOR_ATTR_COLOR_DFLT);
-    colors = colorsDefault = parseToSFFloatTable(sa, 3);
+    colors = colorsDefault = MFFloatBuffer.parse(sa, 3);
   }
 
   @Override
@@ -85,8 +85,7 @@ public class COLOR extends X3DColorNode
 
     attr = root.getAttribute(COLOR_ATTR_COLOR_NAME);
     if (attr != null) {
-      String[] sa = parseX(attr.getValue());
-      colors = parseToSFFloatTable(sa, 3);
+      colors = MFFloatBuffer.parse(attr.getValue(), 3);
       if (attr.getValue().contains(","))
         insertCommas = true;
       if (attr.getValue().contains("\n")
@@ -95,7 +94,7 @@ public class COLOR extends X3DColorNode
       if (insertCommas)                   insertLineBreaks = true; // workaround default, if commas were present then most likely lineBreaks also
     }
     else
-      colors = new SFFloat[][]{}; // empty array
+      colors = new MFFloatBuffer(new float[0], 3); // empty array
   }
 
   @Override
@@ -121,30 +120,16 @@ public class COLOR extends X3DColorNode
 
   public String[][] getColors()
   {
-    if (colors.length == 0)
+    if (colors.isEmpty())
       return new String[][]{{ }}; // something to start with
 
-    String[][] saa = new String[colors.length][colors[0].length];
-    for (int r = 0; r < colors.length; r++) {
-      for (int c = 0; c < colors[0].length; c++)
-        saa[r][c] = colors[r][c].toString();
-    }
-    return saa;
+    return colors.toStringTable();
   }
 
   public void setColors(String[][] saa)
   {
-    if (saa.length == 0) {
-      colors = new SFFloat[][]{};
-      return;
-    }
-
-    colors = new SFFloat[saa.length][saa[0].length]; // x,y,z
-    for (int r = 0; r < saa.length; r++) {
-      for (int c = 0; c < saa[0].length; c++) {
-        colors[r][c] = new SFFloat(saa[r][c], 0.0f, 1.0f);
-      }
-    }
+    colors = MFFloatBuffer.parse(saa); // x,y,z, empty if no rows
+    colors.testLimits(0.0f, 1.0f);    // single notification for all out-of-range values
   }
 
   /**
@@ -181,6 +166,6 @@ public class COLOR extends X3DColorNode
 
   public boolean isNil()
   {
-    return !(colors != null && colors.length > 0);
+    return !(colors != null && !colors.isEmpty());
   }
 }
@@ -54,7 +54,7 @@ import static org.web3d.x3d.types.X3DSchemaData4.*;
  */
 public class COLORRGBA extends X3DColorNode
 {
-  private SFFloat[][] colors,colorsDefault;
+  private MFFloatBuffer colors, colorsDefault;
   private boolean insertCommas, insertLineBreaks = false;
   
   public COLORRGBA()
@@ -75,7 +75,7 @@ public class COLORRGBA extends X3DColorNode
       sa = new String[]{};
     else
       sa = parse4(COLORRGBA_ATTR_COLOR_DFLT);
-    colors = colorsDefault = parseToSFFloatTable(sa,4);
+    colors = colorsDefault = MFFloatBuffer.parse(sa, 4);
   }
 
   @Override
@@ -87,14 +87,13 @@ public class COLORRGBA extends X3DColorNode
     attr = root.getAttribute(COLORRGBA_ATTR_COLOR_NAME);
    if (attr != null)
    {
-         String[]sa = parseX(attr.getValue());
-         colors = parseToSFFloatTable(sa,4);
+         colors = MFFloatBuffer.parse(attr.getValue(), 4);
          if (attr.getValue().contains(","))  insertCommas     = true;
          if (attr.getValue().contains("\n") ||
              attr.getValue().contains("\r")) insertLineBreaks = true; // TODO not working, line breaks not being passed from JDOM
          if (insertCommas)                   insertLineBreaks = true; // workaround default, if commas were present then most likely lineBreaks also
     }
-    else colors = new SFFloat[][]{}; // empty array
+    else colors = new MFFloatBuffer(new float[0], 4); // empty array
   }
   
   @Override
@@ -120,31 +119,16 @@ public class COLORRGBA extends X3DColorNode
 
   public String[][] getColors()
   {
-   if(colors.length == 0)
+    if (colors.isEmpty())
       return new String[][]{{ }}; // something to start with
-    
-    String[][] saa = new String[colors.length][colors[0].length];
-    for(int r=0;r<colors.length;r++) {
-      for(int c=0;c<colors[0].length;c++)
-        saa[r][c] = colors[r][c].toString();
-    }
-    return saa;
 
+    return colors.toStringTable();
   }
   
   public void setColors(String[][] saa)
   {
-    if(saa.length == 0) {
-      colors = new SFFloat[][]{};
-      return;
-    }
-    
-    colors = new SFFloat[saa.length][saa[0].length]; // x,y,z,a
-    for (int r=0;r<saa.length; r++) {
-      for(int c=0;c<saa[0].length;c++) {
-        colors[r][c] =  new SFFloat(saa[r][c],0.0f,1.0f);
-      }
-    }  
+    colors = MFFloatBuffer.parse(saa); // x,y,z,a, empty if no rows
+    colors.testLimits(0.0f, 1.0f);    // single notification for all out-of-range values
   }
 
     /**
@@ -177,6 +161,6 @@ public class COLORRGBA extends X3DColorNode
 
   public boolean isNil()
   {
-    return !(colors != null && colors.length > 0);
+    return !(colors != null && !colors.isEmpty());
   }
 }
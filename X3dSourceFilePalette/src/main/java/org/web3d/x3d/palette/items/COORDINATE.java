@@ -54,7 +54,7 @@ import static org.web3d.x3d.types.X3DSchemaData4.*;
  */
 public class COORDINATE extends X3DCoordinateNode
 {
-  private SFFloat[][] point, pointDefault;
+  private MFVec3fBuffer point, pointDefault;
   private boolean ddouble;
   private boolean insertCommas, insertLineBreaks = false;
   private int numberTuplesBetweenLineBreaks = 1;
@@ -79,15 +79,7 @@ public class COORDINATE extends X3DCoordinateNode
     
     String[] sa = parseX(COORDINATE_ATTR_POINT_DFLT);
     if ((sa.length  == 0) || (sa[0].length()  == 0)) return;
-    point = pointDefault = new SFFloat[sa.length/3][3];
-    int r = point.length;
-    if(r <= 0)
-      return;
-    int c = point[0].length;
-    int i = 0;
-    for(int ir=0;ir<r;ir++)
-      for(int ic=0;ic<c;ic++)
-        point[ir][ic] = pointDefault[ir][ic] = buildSFFloat(sa[i++]); // default, no limits
+    point = pointDefault = MFVec3fBuffer.parse(sa); // default, no limits
   }
 
   @Override
@@ -103,14 +95,13 @@ public class COORDINATE extends X3DCoordinateNode
     attr = root.getAttribute(COORDINATE_ATTR_POINT_NAME);
     if (attr != null)
     {
-         String[] sa = parseX(attr.getValue());
-         point = makeSFFloatArray(sa,3);
+         point = MFVec3fBuffer.parse(attr.getValue()); // single-pass tokenizer, no per-value objects
          if (attr.getValue().contains(","))  insertCommas     = true;
          if (attr.getValue().contains("\n") ||
              attr.getValue().contains("\r")) insertLineBreaks = true; // TODO not working, line breaks not being passed from JDOM
          if (insertCommas)                     insertLineBreaks = true; // workaround default, if commas were present then most likely lineBreaks also
     }
-    else point = new SFFloat[][]{}; // empty array
+    else point = new MFVec3fBuffer(new float[0]); // empty array
   }
   
   @Override
@@ -137,21 +128,18 @@ public class COORDINATE extends X3DCoordinateNode
   public String[][] getPoint()
   {
     if(!isNil())
-      return makeStringArray(point);
+      return point.toStringTable();
     return new String[][]{{ }}; // something to start with
   }
 
   public boolean isNil()
   {
-    return !(point != null && point.length>0);
+    return !(point != null && !point.isEmpty());
   }
 
   public void setPoint(String[][] saa)
   {
-    if(saa != null && saa.length > 0)
-      point = makeSFFloatArray(saa);
-    else
-      point = new SFFloat[][]{}; 
+    point = MFVec3fBuffer.parse(saa); // empty if no rows
   }
   
   public boolean isDouble()
@@ -54,7 +54,7 @@ import static org.web3d.x3d.types.X3DSchemaData4.*;
  */
 public class GEOCOORDINATE extends X3DCoordinateNode
 {
-  private SFDouble[][] point, pointDefault;
+  private MFDoubleBuffer point, pointDefault;
   
   private String[] geoSystem;
   
@@ -72,15 +72,7 @@ public class GEOCOORDINATE extends X3DCoordinateNode
   public void initialize()
   {    
     String[] sa = parseX(GEOCOORDINATE_ATTR_POINT_DFLT);
-    point = pointDefault = new SFDouble[sa.length/3][3];
-    int r = point.length;
-    if(r > 0) {
-      int c = point[0].length;
-      int i = 0;
-      for(int ir=0;ir<r;ir++)
-        for(int ic=0;ic<c;ic++)
-          point[ir][ic] = pointDefault[ir][ic] = buildSFDouble(sa[i++]); // default, no limits
-    }
+    point = pointDefault = MFDoubleBuffer.parse(sa, 3); // default, no limits
     geoSystem = GEOCOORDINATE_ATTR_GEOSYSTEM_DFLT;
   }
 
@@ -93,11 +85,10 @@ public class GEOCOORDINATE extends X3DCoordinateNode
     
     attr = root.getAttribute(GEOCOORDINATE_ATTR_POINT_NAME);
     if (attr != null) {
-      String[] sa = parseX(attr.getValue());      
-      point = makeSFDoubleArray(sa,3);
+      point = MFDoubleBuffer.parse(attr.getValue(), 3); // single-pass tokenizer, no per-value objects
     }
     else
-      point = new SFDouble[][]{}; // empty array
+      point = new MFDoubleBuffer(new double[0], 3); // empty array
     
     attr = root.getAttribute(GEOCOORDINATE_ATTR_GEOSYSTEM_NAME);
     if (attr != null)
@@ -140,17 +131,14 @@ public class GEOCOORDINATE extends X3DCoordinateNode
 
   public String[][] getPoint()
   {
-    if(point != null && point.length > 0)
-      return makeStringArray(point);
+    if(point != null && !point.isEmpty())
+      return point.toStringTable();
     return new String[][]{{"0","0","0"}}; // something to start with
   }
   
   public void setPoint(String[][] saa)
   {
-    if(saa != null && saa.length > 0)
-      point = makeSFDoubleArray(saa);
-    else
-      point = new SFDouble[][]{};
+    point = MFDoubleBuffer.parse(saa); // empty if no rows
   }
   
   public String getGeoSystem()
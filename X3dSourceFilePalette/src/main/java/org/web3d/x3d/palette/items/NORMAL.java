@@ -53,8 +53,8 @@ import static org.web3d.x3d.types.X3DSchemaData4.*;
  */
 public class NORMAL extends X3DNormalNode
 {
-  private SFFloat[][] vector;
-  private SFFloat[][] vectorDefault;
+  private MFVec3fBuffer vector;
+  private MFVec3fBuffer vectorDefault;
   private boolean insertCommas, insertLineBreaks = false;
 
   public NORMAL()
@@ -84,7 +84,7 @@ public class NORMAL extends X3DNormalNode
       sa = new String[]{};
     else
       sa = parse3(NORMAL_ATTR_VECTOR_DFLT);
-    vector = vectorDefault = parseToSFFloatTable(sa,3);
+    vector = vectorDefault = MFVec3fBuffer.parse(sa);
   }
 
   /**
@@ -97,8 +97,7 @@ public class NORMAL extends X3DNormalNode
 
     org.jdom.Attribute attr = root.getAttribute(NORMAL_ATTR_VECTOR_NAME);
     if (attr != null) {
-      String[] sa = parseX(attr.getValue());
-      vector = makeSFFloatArray(sa, 3); //new SFFloat[sa.length/3][3];
+      vector = MFVec3fBuffer.parse(attr.getValue()); // single-pass tokenizer, no per-value objects
       if (attr.getValue().contains(","))
         insertCommas = true;
       if (attr.getValue().contains("\n")
@@ -107,7 +106,7 @@ public class NORMAL extends X3DNormalNode
       if (insertCommas)                   insertLineBreaks = true; // workaround default, if commas were present then most likely lineBreaks also
     }
     else
-      vector = new SFFloat[][]{ }; // empty array
+      vector = new MFVec3fBuffer(new float[0]); // empty array
   }
 
   @Override
@@ -129,18 +128,15 @@ public class NORMAL extends X3DNormalNode
   // Attribute getters and setters
   public String[][] getVector()
   {
-    if (vector == null || vector.length == 0)
+    if (vector == null || vector.isEmpty())
       return new String[0][];
 
-    return makeStringArray(vector);
+    return vector.toStringTable();
   }
 
   public void setVector(String[][] saa)
   {
-    if (saa != null && saa.length > 0)
-      vector = makeSFFloatArray(saa);
-    else
-      vector = new SFFloat[][]{}; // empty array
+    vector = MFVec3fBuffer.parse(saa); // empty if no rows
   }
 
   /**
@@ -177,6 +173,6 @@ public class NORMAL extends X3DNormalNode
 
   public boolean isNil()
   {
-    return !(vector != null && vector.length > 0);
+    return !(vector != null && !vector.isEmpty());
   }
 }
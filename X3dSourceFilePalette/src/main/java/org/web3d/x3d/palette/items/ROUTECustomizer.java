@@ -36,7 +36,9 @@ package org.web3d.x3d.palette.items;
 
 import java.awt.Color;
 import java.awt.Component;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
@@ -51,6 +53,8 @@ import org.openide.NotifyDescriptor;
 import org.openide.util.HelpCtx;
 
 import org.openide.util.NbBundle;
+import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom;
+import org.web3d.x3d.palette.X3DSymbolTable;
 import org.web3d.x3d.palette.items.FIELDdefaults.RouteDefault;
 import org.web3d.x3d.palette.items.FieldRenderer.FieldBaseComboEditor;
 import org.web3d.x3d.palette.items.FieldRenderer.FieldEditor;
@@ -138,12 +142,11 @@ public class ROUTECustomizer extends BaseCustomizer
   @SuppressWarnings("unchecked")
   private void fillNodeCombos()
   {
-    Vector<Element> v = route.getSpecialNodeList(target, protoBodyMarker);
+    List<Element> v = route.getScopedDefNodeList(target, protoBodyMarker);
     Vector vx = new Vector(v.size() > 0 ? v.size() : 1);
 
-   int index = -1;
+   Map<String,List<Element>> priorDEFs = new HashMap<>();
    for (Element el : v) {
-      index ++;
       if (el.getName().equalsIgnoreCase(ROUTE_ELNAME)) //"ROUTE"
         continue;
       Attribute attr = el.getAttribute("DEF");
@@ -151,23 +154,21 @@ public class ROUTECustomizer extends BaseCustomizer
         continue;
       vx.add(new xNode(el));
 
-      // check, warn if duplicate DEF names exist
-      for (int i=0; i < index; i++)
+      // check, warn if duplicate DEF names exist; prior DEFs are hashed rather than rescanned for each node
+      List<Element> priorList = priorDEFs.computeIfAbsent(attr.getValue(), k -> new ArrayList<>(1));
+      for (Element prior : priorList)
       {
-        Attribute priorDEF = v.get(i).getAttribute("DEF");
-        if ((priorDEF != null) && (priorDEF.toString().equals(attr.toString())))
-        {
             String nodeMessage;
-            if (v.get(i).getName().equals(el.getName()))
+            if (prior.getName().equals(el.getName()))
                  nodeMessage = " for two " + el.getName() + " nodes";
-            else nodeMessage = " for a " + v.get(i).getName() + " node and a " + el.getName() + " node";
+            else nodeMessage = " for a " + prior.getName() + " node and a " + el.getName() + " node";
             NotifyDescriptor descriptor = new NotifyDescriptor.Message(
                     "<html><p align='center'>Found duplicated DEF name " + attr.toString() +
                     "</p><br /><p align='center'> " + nodeMessage +
                     "</p><br /><p align='center'>Please find duplicate DEF names in your scene, then rename or remove them!</p></html>", NotifyDescriptor.WARNING_MESSAGE);
             DialogDisplayer.getDefault().notify(descriptor);
-        }
       }
+      priorList.add(el);
     }
 
     if (vx.size() > 1)
@@ -1069,25 +1070,19 @@ public class ROUTECustomizer extends BaseCustomizer
     String pinst = elm.getAttributeValue(PROTOINSTANCE_ATTR_NAME_NAME); // name
     if(pinst == null)
       return null;
-    Map<String,Vector<Element>> hm = route.getNodeMap(target); // need access to declares      //,noProtoDecls);
-    Vector<Element> v1 = hm.get(PROTODECLARE_ELNAME);
-    Vector<Element> v2 = hm.get(EXTERNPROTODECLARE_ELNAME);
-    Vector<Element> vf = new Vector<Element>();
-    if(v1 != null)
-      vf.addAll(v1);
-    if(v2 != null)
-      vf.addAll(v2);
-    if(vf.size()<=0)
+    X3DSymbolTable symbolTable = X3DPaletteUtilitiesJdom.getSymbolTable(target); // need access to declares
+    if(symbolTable == null)
       return null;
+    List<Element> vf = symbolTable.getProtoDeclarations(pinst);
 
+    // ProtoDeclare takes precedence over ExternProtoDeclare of same name
     for(Element e : vf) {
-      String pdecl = e.getAttributeValue(PROTODECLARE_ATTR_NAME_NAME);
-      if(pdecl.equals(pinst)) {
-        if(e.getName().equals(PROTODECLARE_ELNAME))
-          return e.getChild(PROTOINTERFACE_ELNAME);  // I found the proto declare, if it doesn't have a protoInterface child, cest la vie.
-        else //if(e.getName().equals(EXTERNPROTODECLARE_ELNAME))
-          return e;
-      }
+      if(e.getName().equals(PROTODECLARE_ELNAME))
+        return e.getChild(PROTOINTERFACE_ELNAME);  // I found the proto declare, if it doesn't have a protoInterface child, cest la vie.
+    }
+    for(Element e : vf) {
+      if(e.getName().equals(EXTERNPROTODECLARE_ELNAME))
+        return e;
     }
     return null;
   }
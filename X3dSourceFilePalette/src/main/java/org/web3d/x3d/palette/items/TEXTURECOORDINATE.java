@@ -31,7 +31,6 @@ POSSIBILITY OF SUCH DAMAGE.
 
 package org.web3d.x3d.palette.items;
 
-import java.util.Arrays;
 import javax.swing.text.JTextComponent;
 import org.web3d.x3d.types.X3DTextureCoordinateNode;
 
@@ -54,7 +53,7 @@ public class TEXTURECOORDINATE extends X3DTextureCoordinateNode
 {
   private String   mapping, mappingDefault;
   
-  private SFFloat[][] point, pointDefault;
+  private MFFloatBuffer point, pointDefault;
 
   public TEXTURECOORDINATE()
   {
@@ -73,15 +72,7 @@ public class TEXTURECOORDINATE extends X3DTextureCoordinateNode
     
     String[] sa = parseX(TEXTURECOORDINATE_ATTR_POINT_DFLT);
         
-    point = pointDefault = new SFFloat[sa.length/2][2];
-    int r = point.length;
-    if(r <= 0)
-      return;
-    int c = point[0].length;
-    int i = 0;
-    for(int ir=0;ir<r;ir++)
-      for(int ic=0;ic<c;ic++)
-        point[ir][ic] = pointDefault[ir][ic] = buildSFFloat(sa[i++]); // default, no limits
+    point = pointDefault = MFFloatBuffer.parse(sa, 2); // default, no limits
 
   }
 
@@ -97,11 +88,10 @@ public class TEXTURECOORDINATE extends X3DTextureCoordinateNode
     
     attr = root.getAttribute(TEXTURECOORDINATE_ATTR_POINT_NAME);
     if (attr != null) {
-      String[] sa = parseX(attr.getValue());      
-      point = makeSFFloatArray(sa,2);
+      point = MFFloatBuffer.parse(attr.getValue(), 2); // single-pass tokenizer, no per-value objects
     }
     else
-      point = new SFFloat[][]{}; // empty array
+      point = new MFFloatBuffer(new float[0], 2); // empty array
   }
 
   @Override
@@ -122,7 +112,7 @@ public class TEXTURECOORDINATE extends X3DTextureCoordinateNode
       sb.append(getMapping());
       sb.append("'");
     }
-    if (TEXTURECOORDINATE_ATTR_POINT_REQD || !Arrays.equals(point, pointDefault)) {
+    if (TEXTURECOORDINATE_ATTR_POINT_REQD || !arraysIdenticalOrNull(point, pointDefault)) {
       sb.append(" ");
       sb.append(TEXTURECOORDINATE_ATTR_POINT_NAME);
       sb.append("='");
@@ -134,22 +124,19 @@ public class TEXTURECOORDINATE extends X3DTextureCoordinateNode
 
   public String[][] getPoint()
   {
-    if(point != null && point.length > 0)
-      return makeStringArray(point);
+    if(point != null && !point.isEmpty())
+      return point.toStringTable();
     return new String[][]{{ }}; // something to start with
   }
 
   public void setPoint(String[][] saa)
   {
-    if(saa != null && saa.length > 0)
-      point = makeSFFloatArray(saa);
-    else
-      point = new SFFloat[][]{}; 
+    point = MFFloatBuffer.parse(saa); // empty if no rows
   }
 
   public boolean isNil()
   {
-    return !(point != null && point.length>0);
+    return !(point != null && !point.isEmpty());
   }
 
     /**
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 1995-2025 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *  * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.web3d.x3d.types;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * X3DMFStringParser.java
+ * Created on October 18, 2026
+ *
+ * Re-entrant MFString parser and serializer.  Parsing makes a single pass over the attribute value, examining each
+ * character a constant number of times, and keeps all state (including sentinel splitting) in local variables so that
+ * concurrent callers cannot disturb each other.  Results match the prior BaseX3DElement.parseMFStringIntoStringArray
+ * algorithm, including its recovery from unquoted or unterminated SFString values.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class X3DMFStringParser
+{
+  private X3DMFStringParser()
+  {
+    // static utility methods only
+  }
+
+  /**
+   * Properly split MFString into String[] array of SFString elements
+   * @param inputString  X3D MFString input value, held as a Java String
+   * @param removeQuotes Whether to remove "quote" marks surrounding SFString elements
+   * @return String[] array holding SFString elements
+   */
+  public static String[] parse(String inputString, boolean removeQuotes)
+  {
+    return parse(inputString, removeQuotes, false, "-1");
+  }
+
+  /**
+   * Properly split MFString into String[] array of SFString elements
+   * @param inputString  X3D MFString input value, held as a Java String
+   * @param removeQuotes Whether to remove "quote" marks surrounding SFString elements
+   * @param splitOnSentinel Whether to split strings on sentinelString marker
+   * @param sentinelString  sentinel marker, kept at the end of each split element
+   * @return String[] array holding SFString elements
+   */
+  public static String[] parse(String inputString, boolean removeQuotes, boolean splitOnSentinel, String sentinelString)
+  {
+    if ((inputString == null) || inputString.isEmpty())
+         return new String[0];
+
+    List<String> stringList = new ArrayList<>();
+    if ((inputString.indexOf('"') < 0) && !splitOnSentinel)
+    {
+        stringList.add(inputString); // single un"quoted" string only
+    }
+    else
+    {
+        splitElements(inputString, removeQuotes, splitOnSentinel, sentinelString, stringList);
+    }
+
+    String[] sa = new String[stringList.size()];
+    StringBuilder unescaped = new StringBuilder();
+    for (int index = 0; index < sa.length; index++)
+    {
+        sa[index] = unescape(stringList.get(index), unescaped);
+        if (removeQuotes)
+            sa[index] = stripQuotes(sa[index]);
+    }
+    return sa;
+  }
+
+  /**
+   * First pass: split into still-escaped SFString elements.  Every branch advances the index or leaves the inner
+   * loop, and the outer loop resumes after the terminating character, so each character is examined a bounded
+   * number of times.
+   */
+  private static void splitElements(String inputString, boolean removeQuotes, boolean splitOnSentinel, String sentinelString,
+                                    List<String> stringList)
+  {
+    final int length = inputString.length();
+    StringBuilder newString = new StringBuilder();
+    boolean betweenStrings = true; // whether inside a quoted SFString element or between them inside intervening whitespace
+
+    for (int i = 0; i < length; i++)
+    {
+        while (betweenStrings && (inputString.charAt(i) <= ' ') && (i < length - 1)) // whitespace, as String.trim()
+        {
+            i++;  // skip whitespace until ready to start next SFString element of MFString array
+        }
+        betweenStrings = false;
+        if (inputString.charAt(i) == '"') // found opening quote
+        {
+            if (i < length - 1) i++; // skip this delimiting character, not part of SFString
+        }
+        else if (removeQuotes)
+        {
+            System.out.println("new SFString element within MFString started illegally (without delimiting quote mark) at character index " + i);
+        }
+
+        while (i < length)
+        {
+            char c = inputString.charAt(i);
+            boolean escapedQuote = (c == '\\') && (i + 1 < length) && (inputString.charAt(i + 1) == '"');
+            if (escapedQuote && (length > i + 2)) // capture embedded escaped \"
+            {
+                newString.append(c).append('"');
+                i = i + 2; // increment index, account for both characters
+            }
+            // special case of ambiguous termination by \" (instead of \"" or \\") is treated as \\"
+            else if (escapedQuote) // handle terminating escaped \"
+            {
+                newString.append(c); // capture \ character only
+                i++; // increment index, string will terminate on next loop
+                System.out.println("parseIntoStringArray() encountered SFString terminated by escaped quote \\\" mismatch: " + inputString);
+            }
+            else if ((c == '\\') && (i + 1 < length) && (inputString.charAt(i + 1) == '\\')) // capture escaped \\
+            {
+                newString.append(c).append('\\');
+                i = i + 2; // increment index, account for both characters
+            }
+            else if (c == '"') // found terminating " and so done with this SFString
+            {
+                betweenStrings = true;
+                stringList.add(newString.toString()); // save this SFString, ignore delimiter " character
+                newString.setLength(0); // reset for next element
+                break;
+            }
+            else if (splitOnSentinel && inputString.startsWith(sentinelString, i)) // found terminating sentinelString and so done with this SFString
+            {
+                newString.append(sentinelString);
+                i = i + sentinelString.length(); // increment index, account for sentinelString characters
+                betweenStrings = true;
+                stringList.add(newString.toString()); // save this SFString, include sentinelString characters
+                newString.setLength(0); // reset for next element
+                break;
+            }
+            else
+            {
+                newString.append(c); // keep building this string, character by character
+                i++;
+            }
+        }
+        if ((i == length - 1) && (newString.length() > 0))
+        {
+            System.out.println("parseIntoStringArray() encountered unterminated SFString, mismatched quotes: " + inputString);
+            stringList.add(newString.toString()); // save this SFString fragment anyway
+        }
+        else if (newString.length() > 0)
+            stringList.add(newString.toString()); // save this remaining SFString even though not trapped previously
+    }
+  }
+
+  /** Second pass over one element: replace \\ with \ and \" with " */
+  private static String unescape(String s, StringBuilder escapedString)
+  {
+    if (s.indexOf('\\') < 0)
+        return s; // nothing to do
+    escapedString.setLength(0);
+    final int length = s.length();
+    for (int c = 0; c < length; c++)
+    {
+        // &amp; and &apos; and &quot; are already converted back to & and ' by XML parser
+        char next = (c + 1 < length) ? s.charAt(c + 1) : 0;
+        if ((s.charAt(c) == '\\') && ((next == '\\') || (next == '"')))
+        {
+            escapedString.append(next); // replace \\ with \ and \" with "
+            c = c + 1;
+        }
+        else escapedString.append(s.charAt(c)); // OK as is
+    }
+    return escapedString.toString();
+  }
+
+  private static String stripQuotes(String value)
+  {
+    int start = 0, end = value.length();
+    if ((end > 0) && (value.charAt(0) == '"'))
+         start = 1;
+    if ((end > start) && (value.charAt(end - 1) == '"'))
+         end--;
+    return value.substring(start, end);
+  }
+
+  /**
+   * Serialize string array as an MFString attribute value, escaping values as needed to become a legal XML attribute
+   * @param sa input string array
+   * @param insertCommas whether to insert commas between SFString elements
+   * @param insertLineBreaks whether to insert line breaks between SFString elements
+   * @return resulting text, matching BaseX3DElement.formatStringArray()
+   */
+  public static String format(String[] sa, boolean insertCommas, boolean insertLineBreaks)
+  {
+    int estimate = 0;
+    for (String value : sa)
+      estimate += value.length() + 3;
+    StringBuilder sb = new StringBuilder(estimate + 1);
+
+    if ((sa.length > 0) && insertLineBreaks) sb.append('\n');
+    for (int i = 0; i < sa.length; i++)
+    {
+      sb.append('"');
+      appendEscaped(sb, sa[i]);
+      sb.append('"');
+      if ((i < sa.length-1) && insertCommas) sb.append(',');
+      if (insertLineBreaks)                  sb.append('\n');
+      else if (i < sa.length-1)              sb.append(' '); // replace intermediate space
+      // note that only a single blank character appears between array elements in X3D canonicalization (C14N) form,
+      // X3D-Edit comma and line break options are provided as an author convenience
+    }
+    return sb.toString();
+  }
+
+  /** special X3D and special XML characters must be escaped */
+  private static void appendEscaped(StringBuilder escapedValue, String value)
+  {
+    for (int c = 0; c < value.length(); c++)
+    {
+      char ch = value.charAt(c);
+      if      (ch == '"')
+           escapedValue.append("\\\"");          // replace " character with \" characters for X3D escaping
+      else if (ch == '&')
+           escapedValue.append("&amp;");         // replace & character with &amp;  characters
+      else if (ch == '\'')
+           escapedValue.append("&apos;");        // replace ' character with &apos; characters
+      else if (ch == '<')
+           escapedValue.append("&lt;");          // replace < character with &lt;   characters
+      else if (ch == '\\')
+           escapedValue.append("\\\\");          // replace \ character with \\     characters
+      else if (ch > 127)                         // replace special characters with XML character entity
+           escapedValue.append("&#").append((int) ch).append(';');
+      else escapedValue.append(ch);              // otherwise no change, pass along the unescaped character
+    }
+  }
+}
@@ -0,0 +1,583 @@
+/*
+ * Copyright (c) 1995-2025 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *  * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (https://www.nps.edu and https://MovesInstitute.nps.edu)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.web3d.x3d.types;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+
+/**
+ * X3DNumberLists.java
+ * Created on October 18, 2026
+ *
+ * Single-pass tokenizer and formatter for X3D numeric list attributes (MFFloat, MFVec3f, MFDouble, MFInt32 and so on).
+ * Values are parsed straight from the attribute characters into primitive arrays, and written straight to any
+ * Appendable (StringBuilder, Writer, CharBuffer), without creating a String or SF object per value.
+ * All methods are stateless and thread safe.
+ *
+ * Results match the prior String-based methods: separators are whitespace and any of <code>, ; : /</code> as in
+ * X3DSchemaData4.parseX(), parsed values match X3DPrimitiveTypes.parseFloatValue() and friends, and formatted values
+ * match X3DPrimitiveTypes.floatFormat (6 fraction digits) and doubleFormat (11 fraction digits) with half-even rounding.
+ * Uncommon values (many significant digits, large exponents, infinity, malformed text) fall back to those methods.
+ *
+ * MOVES Institute
+ * Naval Postgraduate School, Monterey, CA, USA
+ * www.nps.edu
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class X3DNumberLists
+{
+  /** fraction digits written for single-precision values, matching X3DPrimitiveTypes.floatFormat */
+  public static final int FLOAT_FRACTION_DIGITS  = 6;
+  /** fraction digits written for double-precision values, matching X3DPrimitiveTypes.doubleFormat */
+  public static final int DOUBLE_FRACTION_DIGITS = 11;
+
+  private static final float[]  FLOAT_POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+  private static final double[] POWERS_OF_TEN = {
+      1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,  1e8,  1e9,  1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22}; // each exactly representable
+  private static final long[]   LONG_POWERS_OF_TEN = {
+      1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+      10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+      1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L};
+
+  private static final long   FLOAT_EXACT_MANTISSA  = 1L << 24;
+  private static final long   DOUBLE_EXACT_MANTISSA = 1L << 53;
+  /**
+   * DecimalFormat rounds the shortest round-trip digits of a value, which can differ from rounding its exact binary
+   * value once a unit in the last place exceeds the last written fraction digit. Below these limits the two agree:
+   * float values times 10^6 are exact doubles, and doubles below 2^16 have ulp 2^-37, finer than 10^-11.
+   */
+  private static final double FLOAT_FIXED_LIMIT     = 0x1p53;
+  private static final double DOUBLE_FIXED_LIMIT    = 0x1p16;
+  private static final int    MAXIMUM_FAST_DIGITS   = 18;     // significant digits that fit in a long mantissa
+
+  /** DecimalFormat is not thread safe, so uncommon values fall back to a per-thread copy of the shared formats */
+  private static final ThreadLocal<DecimalFormat> FLOAT_FORMAT  =
+          ThreadLocal.withInitial(() -> (DecimalFormat) X3DPrimitiveTypes.floatFormat.clone());
+  private static final ThreadLocal<DecimalFormat> DOUBLE_FORMAT =
+          ThreadLocal.withInitial(() -> (DecimalFormat) X3DPrimitiveTypes.doubleFormat.clone());
+
+  private X3DNumberLists()
+  {
+    // static utility methods only
+  }
+
+  /**
+   * Decimal scanner state, one per parse call rather than one per value
+   */
+  private static final class DecimalScanner
+  {
+    long    mantissa;
+    int     exponent;
+    boolean negative;
+
+    /**
+     * Scan a plain decimal value such as -12.5e-3
+     * @return true if value has the plain form and fits the mantissa, otherwise caller uses slow path
+     */
+    boolean scan(CharSequence text, int start, int end)
+    {
+      int i = start;
+      mantissa = 0;
+      exponent = 0;
+      negative = false;
+      char c = text.charAt(i);
+      if ((c == '-') || (c == '+')) {
+        negative = (c == '-');
+        i++;
+      }
+      int digits = 0, significantDigits = 0;
+      while ((i < end) && ((c = text.charAt(i)) >= '0') && (c <= '9')) {
+        if ((mantissa != 0) || (c != '0')) significantDigits++;
+        mantissa = mantissa * 10 + (c - '0');
+        digits++;
+        i++;
+      }
+      if ((i < end) && (text.charAt(i) == '.')) {
+        i++;
+        while ((i < end) && ((c = text.charAt(i)) >= '0') && (c <= '9')) {
+          if ((mantissa != 0) || (c != '0')) significantDigits++;
+          mantissa = mantissa * 10 + (c - '0');
+          exponent--;
+          digits++;
+          i++;
+        }
+      }
+      if ((digits == 0) || (significantDigits > MAXIMUM_FAST_DIGITS))
+        return false;
+      if ((i < end) && (((c = text.charAt(i)) == 'e') || (c == 'E'))) {
+        i++;
+        boolean negativeExponent = false;
+        if ((i < end) && (((c = text.charAt(i)) == '-') || (c == '+'))) {
+          negativeExponent = (c == '-');
+          i++;
+        }
+        int exponentDigits = 0, exponentValue = 0;
+        while ((i < end) && ((c = text.charAt(i)) >= '0') && (c <= '9')) {
+          exponentValue = exponentValue * 10 + (c - '0');
+          if (++exponentDigits > 4)
+            return false;
+          i++;
+        }
+        if (exponentDigits == 0)
+          return false;
+        exponent += negativeExponent ? -exponentValue : exponentValue;
+      }
+      return (i == end);
+    }
+  }
+
+  /**
+   * @param c character of interest
+   * @return whether character separates values, matching X3DSchemaData4.parseX()
+   */
+  public static boolean isSeparator(char c)
+  {
+    switch (c)
+    {
+      case ' ': case '\t': case '\n': case '\r': case '\f': case '\u000B':
+      case ',': case ';':  case ':':  case '/':
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static int skipSeparators(CharSequence text, int index, int length)
+  {
+    while ((index < length) && isSeparator(text.charAt(index)))
+      index++;
+    return index;
+  }
+
+  private static int tokenEnd(CharSequence text, int index, int length)
+  {
+    while ((index < length) && !isSeparator(text.charAt(index)))
+      index++;
+    return index;
+  }
+
+  /** initial array capacity: short values average at least a few characters plus separator */
+  private static int initialCapacity(int length)
+  {
+    return Math.min((length / 2) + 1, Math.max(16, length / 6));
+  }
+
+  private static int grow(int capacity)
+  {
+    return capacity + (capacity >> 1) + 16;
+  }
+
+  /**
+   * Parse all values in an attribute string.
+   * @param text attribute text, may be null
+   * @return parsed values, empty if text is null or blank
+   * @throws NumberFormatException if a value is not numeric, as SFFloat does
+   */
+  public static float[] parseFloats(CharSequence text)
+  {
+    if (text == null)
+      return new float[0];
+    int length = text.length();
+    float[] values = new float[initialCapacity(length)];
+    int count = 0;
+    DecimalScanner scanner = new DecimalScanner();
+    int index = skipSeparators(text, 0, length);
+    while (index < length)
+    {
+      int end = tokenEnd(text, index, length);
+      if (count == values.length)
+        values = Arrays.copyOf(values, grow(count));
+      values[count++] = parseFloat(text, index, end, scanner);
+      index = skipSeparators(text, end, length);
+    }
+    return (count == values.length) ? values : Arrays.copyOf(values, count);
+  }
+
+  /**
+   * Parse all values in an attribute string.
+   * @param text attribute text, may be null
+   * @return parsed values, empty if text is null or blank
+   * @throws NumberFormatException if a value is not numeric, as SFDouble does
+   */
+  public static double[] parseDoubles(CharSequence text)
+  {
+    if (text == null)
+      return new double[0];
+    int length = text.length();
+    double[] values = new double[initialCapacity(length)];
+    int count = 0;
+    DecimalScanner scanner = new DecimalScanner();
+    int index = skipSeparators(text, 0, length);
+    while (index < length)
+    {
+      int end = tokenEnd(text, index, length);
+      if (count == values.length)
+        values = Arrays.copyOf(values, grow(count));
+      values[count++] = parseDouble(text, index, end, scanner);
+      index = skipSeparators(text, end, length);
+    }
+    return (count == values.length) ? values : Arrays.copyOf(values, count);
+  }
+
+  /**
+   * Parse all values in an attribute string.
+   * @param text attribute text, may be null
+   * @return parsed values, empty if text is null or blank
+   * @throws NumberFormatException if a value is not an integer, as SFInt32 does
+   */
+  public static int[] parseInts(CharSequence text)
+  {
+    if (text == null)
+      return new int[0];
+    int length = text.length();
+    int[] values = new int[initialCapacity(length)];
+    int count = 0;
+    int index = skipSeparators(text, 0, length);
+    while (index < length)
+    {
+      int end = tokenEnd(text, index, length);
+      if (count == values.length)
+        values = Arrays.copyOf(values, grow(count));
+      values[count++] = parseInt(text, index, end);
+      index = skipSeparators(text, end, length);
+    }
+    return (count == values.length) ? values : Arrays.copyOf(values, count);
+  }
+
+  private static float parseFloat(CharSequence text, int start, int end, DecimalScanner scanner)
+  {
+    if (scanner.scan(text, start, end))
+    {
+      long mantissa = scanner.mantissa;
+      int  exponent = scanner.exponent;
+      float value = Float.NaN;
+      if ((mantissa <= FLOAT_EXACT_MANTISSA) && (exponent >= -10) && (exponent <= 10))
+      {
+        // both operands exact, so a single correctly rounded float operation gives the correct result
+        value = (exponent < 0) ? (mantissa / FLOAT_POWERS_OF_TEN[-exponent]) : (mantissa * FLOAT_POWERS_OF_TEN[exponent]);
+      }
+      else if ((mantissa <= DOUBLE_EXACT_MANTISSA) && (exponent >= -22) && (exponent <= 22))
+      {
+        double exact = (exponent < 0) ? (mantissa / POWERS_OF_TEN[-exponent]) : (mantissa * POWERS_OF_TEN[exponent]);
+        value = (float) exact;
+        // double rounding only differs from direct rounding when the double lands exactly halfway between two floats
+        if ((double) value != exact)
+        {
+          float neighbor = (exact > value) ? Math.nextUp(value) : Math.nextDown(value);
+          if (exact == ((double) value + (double) neighbor) * 0.5)
+            value = Float.NaN;
+        }
+      }
+      if (!Float.isNaN(value))
+        return X3DPrimitiveTypes.normalize(scanner.negative ? -value : value);
+    }
+    return X3DPrimitiveTypes.parseFloatValue(text.subSequence(start, end).toString());
+  }
+
+  private static double parseDouble(CharSequence text, int start, int end, DecimalScanner scanner)
+  {
+    if (scanner.scan(text, start, end) &&
+        (scanner.mantissa <= DOUBLE_EXACT_MANTISSA) && (scanner.exponent >= -22) && (scanner.exponent <= 22))
+    {
+      // both operands exact, so a single correctly rounded double operation gives the correct result
+      double value = (scanner.exponent < 0) ? (scanner.mantissa / POWERS_OF_TEN[-scanner.exponent])
+                                            : (scanner.mantissa * POWERS_OF_TEN[ scanner.exponent]);
+      return scanner.negative ? -value : value;
+    }
+    return X3DPrimitiveTypes.parseDoubleValue(text.subSequence(start, end).toString());
+  }
+
+  private static int parseInt(CharSequence text, int start, int end)
+  {
+    int i = start;
+    boolean negative = false;
+    char c = text.charAt(i);
+    if ((c == '-') || (c == '+')) {
+      negative = (c == '-');
+      i++;
+    }
+    long value = 0;
+    int digits = 0;
+    while ((i < end) && ((c = text.charAt(i)) >= '0') && (c <= '9') && (digits < 11)) {
+      value = value * 10 + (c - '0');
+      digits++;
+      i++;
+    }
+    if (negative)
+      value = -value;
+    if ((i == end) && (digits > 0) && (value >= Integer.MIN_VALUE) && (value <= Integer.MAX_VALUE))
+      return (int) value;
+    return X3DPrimitiveTypes.parseIntValue(text.subSequence(start, end).toString()); // reports or throws as before
+  }
+
+  /**
+   * Append single-precision value, matching SFFloat.toString()
+   * @param out destination
+   * @param value of interest, NaN is written as empty text
+   * @throws IOException if destination fails
+   */
+  public static void appendFloat(Appendable out, float value) throws IOException
+  {
+    if (Float.isNaN(value))
+      return;
+    if (!appendFixed(out, value, FLOAT_FRACTION_DIGITS, FLOAT_FIXED_LIMIT))
+      out.append(FLOAT_FORMAT.get().format(value));
+  }
+
+  /**
+   * Append double-precision value, matching SFDouble.toString()
+   * @param out destination
+   * @param value of interest, NaN is written as empty text
+   * @throws IOException if destination fails
+   */
+  public static void appendDouble(Appendable out, double value) throws IOException
+  {
+    if (Double.isNaN(value))
+      return;
+    if (!appendFixed(out, value, DOUBLE_FRACTION_DIGITS, DOUBLE_FIXED_LIMIT))
+      out.append(DOUBLE_FORMAT.get().format(value));
+  }
+
+  /**
+   * @param value of interest
+   * @return text matching SFFloat.toString()
+   */
+  public static String toString(float value)
+  {
+    StringBuilder sb = new StringBuilder(12);
+    appendFloat(sb, value);
+    return sb.toString();
+  }
+
+  /**
+   * @param value of interest
+   * @return text matching SFDouble.toString()
+   */
+  public static String toString(double value)
+  {
+    StringBuilder sb = new StringBuilder(20);
+    appendDouble(sb, value);
+    return sb.toString();
+  }
+
+  /** StringBuilder variants never throw IOException */
+  private static void appendFloat(StringBuilder sb, float value)
+  {
+    try {
+      appendFloat((Appendable) sb, value);
+    }
+    catch (IOException ex) {
+      throw new IllegalStateException(ex); // not possible
+    }
+  }
+
+  private static void appendDouble(StringBuilder sb, double value)
+  {
+    try {
+      appendDouble((Appendable) sb, value);
+    }
+    catch (IOException ex) {
+      throw new IllegalStateException(ex); // not possible
+    }
+  }
+
+  /**
+   * Write value rounded half-even to fractionDigits, trailing zeros removed, as DecimalFormat "0.###" patterns do.
+   * Rounding uses the exact binary value: the fraction times the scale is computed exactly with fused multiply-add.
+   * @return false if value is outside the fast range and was not written
+   */
+  private static boolean appendFixed(Appendable out, double value, int fractionDigits, double limit) throws IOException
+  {
+    double magnitude = Math.abs(value);
+    if (!(magnitude < limit)) // also excludes infinity
+      return false;
+    double whole    = Math.floor(magnitude);
+    double fraction = magnitude - whole; // exact
+    double scale    = POWERS_OF_TEN[fractionDigits];
+    double product  = fraction * scale;
+    double error    = Math.fma(fraction, scale, -product); // product + error is exact
+    double rounded  = Math.rint(product);                   // half-even
+    double difference = product - rounded;
+    if      ((difference ==  0.5) && (error > 0)) rounded += 1; // not an exact tie after all
+    else if ((difference == -0.5) && (error < 0)) rounded -= 1;
+
+    long integerPart  = (long) whole;
+    long fractionPart = (long) rounded;
+    if (fractionPart >= LONG_POWERS_OF_TEN[fractionDigits]) {
+      integerPart++;
+      fractionPart -= LONG_POWERS_OF_TEN[fractionDigits];
+    }
+    if (Double.doubleToRawLongBits(value) < 0) // DecimalFormat keeps sign of negative zero and of values rounding to zero
+      out.append('-');
+    appendDigits(out, integerPart, digitCount(integerPart));
+    if (fractionPart != 0) {
+      int digits = fractionDigits;
+      while ((fractionPart % 10) == 0) {
+        fractionPart /= 10;
+        digits--;
+      }
+      out.append('.');
+      appendDigits(out, fractionPart, digits);
+    }
+    return true;
+  }
+
+  private static int digitCount(long value)
+  {
+    int digits = 1;
+    while ((digits < LONG_POWERS_OF_TEN.length) && (value >= LONG_POWERS_OF_TEN[digits]))
+      digits++;
+    return digits;
+  }
+
+  /** append non-negative value zero-padded to width digits */
+  private static void appendDigits(Appendable out, long value, int width) throws IOException
+  {
+    for (int digit = width - 1; digit >= 0; digit--) {
+      long power = LONG_POWERS_OF_TEN[digit];
+      out.append((char) ('0' + (value / power)));
+      value %= power;
+    }
+  }
+
+  /**
+   * Write values as tuples using X3D-Edit array formatting conventions, matching BaseX3DElement.formatFloatArray(SFFloat[][])
+   * @param out destination
+   * @param values of interest
+   * @param count number of values to write
+   * @param tupleSize number of values per tuple
+   * @param insertCommas whether to insert commas between tuples
+   * @param insertLineBreaks whether to insert line breaks between tuples
+   * @param numberTuplesBetweenLineBreaks tuples per line when breaking lines
+   * @throws IOException if destination fails
+   */
+  public static void writeFloats(Appendable out, float[] values, int count, int tupleSize,
+          boolean insertCommas, boolean insertLineBreaks, int numberTuplesBetweenLineBreaks) throws IOException
+  {
+    int rowLength = (tupleSize <= 0) ? 0 : count / tupleSize;
+    if (rowLength == 0)
+      return;
+    if (insertLineBreaks) out.append('\n');
+    int index = 0;
+    for (int indexRow = 0; indexRow < rowLength; indexRow++)
+    {
+      for (int indexColumn = 0; indexColumn < tupleSize; indexColumn++)
+      {
+        if (indexColumn > 0)
+          out.append(' ');
+        appendFloat(out, values[index++]);
+      }
+      writeTupleSeparator(out, indexRow, rowLength, insertCommas, insertLineBreaks, numberTuplesBetweenLineBreaks);
+    }
+  }
+
+  /**
+   * Write values as tuples using X3D-Edit array formatting conventions, matching BaseX3DElement.formatDoubleArray(SFDouble[][])
+   * @param out destination
+   * @param values of interest
+   * @param count number of values to write
+   * @param tupleSize number of values per tuple
+   * @param insertCommas whether to insert commas between tuples
+   * @param insertLineBreaks whether to insert line breaks between tuples
+   * @param numberTuplesBetweenLineBreaks tuples per line when breaking lines
+   * @throws IOException if destination fails
+   */
+  public static void writeDoubles(Appendable out, double[] values, int count, int tupleSize,
+          boolean insertCommas, boolean insertLineBreaks, int numberTuplesBetweenLineBreaks) throws IOException
+  {
+    int rowLength = (tupleSize <= 0) ? 0 : count / tupleSize;
+    if (rowLength == 0)
+      return;
+    if (insertLineBreaks) out.append('\n');
+    int index = 0;
+    for (int indexRow = 0; indexRow < rowLength; indexRow++)
+    {
+      for (int indexColumn = 0; indexColumn < tupleSize; indexColumn++)
+      {
+        if (indexColumn > 0)
+          out.append(' ');
+        appendDouble(out, values[index++]);
+      }
+      writeTupleSeparator(out, indexRow, rowLength, insertCommas, insertLineBreaks, numberTuplesBetweenLineBreaks);
+    }
+  }
+
+  private static void writeTupleSeparator(Appendable out, int indexRow, int rowLength,
+          boolean insertCommas, boolean insertLineBreaks, int numberTuplesBetweenLineBreaks) throws IOException
+  {
+    if      ((indexRow < rowLength-1) && insertCommas)
+             out.append(',');
+    if      (insertLineBreaks &&
+             ((numberTuplesBetweenLineBreaks <= 1) || ((indexRow+1) % numberTuplesBetweenLineBreaks) == 0))
+             out.append('\n');
+    else if (indexRow < rowLength-1)
+             out.append(' ');
+  }
+
+  /**
+   * Write integer values, matching BaseX3DElement.formatIntArray(SFInt32[])
+   * @param out destination
+   * @param values of interest
+   * @param count number of values to write
+   * @param insertCommas whether to insert commas between values
+   * @param insertLineBreaks whether to insert line breaks between values
+   * @param breakLinesAfterIndexSentinel whether to break lines after each -1 sentinel
+   * @throws IOException if destination fails
+   */
+  public static void writeInts(Appendable out, int[] values, int count,
+          boolean insertCommas, boolean insertLineBreaks, boolean breakLinesAfterIndexSentinel) throws IOException
+  {
+    if ((count > 0) && insertLineBreaks) out.append('\n');
+    for (int i = 0; i < count; i++)
+    {
+      int value = values[i];
+      if (value < 0) {
+        out.append('-');
+        if (value == Integer.MIN_VALUE)
+             out.append("2147483648");
+        else appendDigits(out, -value, digitCount(-value));
+      }
+      else appendDigits(out, value, digitCount(value));
+      if ((i < count-1) && insertCommas) out.append(',');
+      if (insertLineBreaks || (breakLinesAfterIndexSentinel && (value <= -1)))
+          out.append('\n');
+      else if (i < count-1)              out.append(' '); // replace intermediate space
+    }
+  }
+}
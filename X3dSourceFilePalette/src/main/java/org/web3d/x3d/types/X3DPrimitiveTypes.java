@@ -37,6 +37,8 @@ package org.web3d.x3d.types;
 import java.awt.Color;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Locale;
 import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
@@ -292,22 +294,7 @@ public class X3DPrimitiveTypes
     {
       this.min = min;
       this.max = max;
-      Integer _i;
-      if((s == null) || s.trim().isEmpty())  // default value for empty string is 0
-        _i = 0;
-      else
-      {
-          try
-          {
-              _i = Integer.valueOf(delocalizeNumericValue(s.trim()));
-          }
-          catch (NumberFormatException ex)
-          {
-              System.out.println ("SFInt32 constructor error: " + ex.getMessage());
-              System.out.println ("   avoiding delocalization of value \"" + s.trim() + "\"");
-              _i = Integer.valueOf(s.trim());
-          }
-      }
+      int _i = parseIntValue(s);
       if(!skipTest)
         testLimits(_i);
       this.i = _i;
@@ -376,22 +363,7 @@ public class X3DPrimitiveTypes
     {
       this.min = min;
       this.max = max;
-      Float _f;
-      if((s == null) || s.trim().isEmpty())  // default value for empty string is 0.0f
-        _f = 0.0f;
-      else
-      {
-          try
-          {
-              _f = normalize(Float.parseFloat(delocalizeNumericValue(s.trim())));
-          }
-          catch (NumberFormatException ex)
-          {
-              System.out.println ("SFFloat constructor error: " + ex.getMessage());
-              System.out.println ("   avoiding delocalization of value \"" + s.trim() + "\")");
-              _f = normalize(Float.parseFloat(s.trim()));
-          }
-      }
+      float _f = parseFloatValue(s);
       if(!skipTest)
         testLimits(_f);
       this.f = _f;
@@ -422,7 +394,7 @@ public class X3DPrimitiveTypes
     {
           try
           {
-              return f.isNaN() ? "" : delocalizeNumericValue(floatFormat.format(f)); //""+f;
+              return formatFloatValue(f); // thread safe, avoids shared DecimalFormat for common values
           }
           catch (NumberFormatException ex)
           {
@@ -473,22 +445,7 @@ public class X3DPrimitiveTypes
     {
       this.min = min;
       this.max = max;
-      Double _d;
-      if((s == null) || s.trim().isEmpty())  // default value for empty string is 0.0f
-        _d = 0.0;
-      else
-      {
-          try
-          {
-              _d = Double.parseDouble(delocalizeNumericValue(s.trim()));
-          }
-          catch (NumberFormatException ex)
-          {
-              System.out.println ("SFDouble constructor error: " + ex.getMessage());
-              System.out.println ("   avoiding delocalization of value \"" + s.trim() + "\"");
-              _d = Double.parseDouble(s.trim());
-          }
-      }
+      double _d = parseDoubleValue(s);
       if(!skipTest)
         testLimits(_d);
       this.d = _d;
@@ -508,7 +465,7 @@ public class X3DPrimitiveTypes
     {
           try
           {
-              return d.isNaN() ? "" : delocalizeNumericValue(doubleFormat.format(d)); //""+d;
+              return formatDoubleValue(d); // thread safe, avoids shared DecimalFormat for common values
           }
           catch (NumberFormatException ex)
           {
@@ -537,6 +494,616 @@ public class X3DPrimitiveTypes
 
   }
 
+  /** Parse single-precision value following SFFloat rules: empty means 0, delocalized, normalized
+   * @param s value text
+   * @return parsed value */
+  public static float parseFloatValue(String s)
+  {
+      if ((s == null) || s.trim().isEmpty())  // default value for empty string is 0.0f
+          return 0.0f;
+      String trimmed = s.trim();
+      try
+      {
+          return normalize(Float.parseFloat(delocalizeNumericValue(trimmed)));
+      }
+      catch (NumberFormatException ex)
+      {
+          System.out.println ("SFFloat constructor error: " + ex.getMessage());
+          System.out.println ("   avoiding delocalization of value \"" + trimmed + "\")");
+          return normalize(Float.parseFloat(trimmed));
+      }
+  }
+
+  /** Parse double-precision value following SFDouble rules: empty means 0, delocalized
+   * @param s value text
+   * @return parsed value */
+  public static double parseDoubleValue(String s)
+  {
+      if ((s == null) || s.trim().isEmpty())  // default value for empty string is 0.0
+          return 0.0;
+      String trimmed = s.trim();
+      try
+      {
+          return Double.parseDouble(delocalizeNumericValue(trimmed));
+      }
+      catch (NumberFormatException ex)
+      {
+          System.out.println ("SFDouble constructor error: " + ex.getMessage());
+          System.out.println ("   avoiding delocalization of value \"" + trimmed + "\"");
+          return Double.parseDouble(trimmed);
+      }
+  }
+
+  /** Parse integer value following SFInt32 rules: empty means 0, delocalized
+   * @param s value text
+   * @return parsed value */
+  public static int parseIntValue(String s)
+  {
+      if ((s == null) || s.trim().isEmpty())  // default value for empty string is 0
+          return 0;
+      String trimmed = s.trim();
+      try
+      {
+          return Integer.parseInt(delocalizeNumericValue(trimmed));
+      }
+      catch (NumberFormatException ex)
+      {
+          System.out.println ("SFInt32 constructor error: " + ex.getMessage());
+          System.out.println ("   avoiding delocalization of value \"" + trimmed + "\"");
+          return Integer.parseInt(trimmed);
+      }
+  }
+
+  /** @param value of interest
+   * @return text matching SFFloat.toString() */
+  public static String formatFloatValue(float value)
+  {
+      return X3DNumberLists.toString(value);
+  }
+
+  /** @param value of interest
+   * @return text matching SFDouble.toString() */
+  public static String formatDoubleValue(double value)
+  {
+      return X3DNumberLists.toString(value);
+  }
+
+  /** Report values outside of allowed range once for a whole array, rather than once per value */
+  private static void notifyOutOfRange(int count, String firstValue, Object min, Object max, String typeName)
+  {
+      String message = "Attribute value error:  " + count + " " + typeName + " value" + ((count == 1) ? " is" : "s are") +
+                       " outside of allowed range [" + ((min == null) ? "" : min) + ".." + ((max == null) ? "" : max) +
+                       "], first offending value " + firstValue;
+      NotifyDescriptor descriptor = new NotifyDescriptor.Confirmation(
+              message, typeName + " value problem", NotifyDescriptor.PLAIN_MESSAGE);
+      DialogDisplayer.getDefault().notify(descriptor);
+  }
+
+  /** StringBuilder destinations never throw IOException */
+  private static IllegalStateException unexpected(IOException ex)
+  {
+      return new IllegalStateException("unexpected StringBuilder failure", ex);
+  }
+
+  /**
+   * MFFloatBuffer holds X3D multiple-field float values (MFFloat, MFVec2f, MFVec3f, MFColor, MFColorRGBA and so on)
+   * as a single primitive array of fixed-size tuples, rather than an SFFloat object per value.
+   * Instances are immutable once built.
+   */
+  public static class MFFloatBuffer implements X3Dtype
+  {
+    protected final float[] values;
+    protected final int     tupleSize;
+
+    /**
+     * @param values backing values, not copied
+     * @param tupleSize number of values per tuple, for example 3 for MFVec3f
+     */
+    public MFFloatBuffer(float[] values, int tupleSize)
+    {
+      if (tupleSize <= 0)
+        throw new IllegalArgumentException("MFFloatBuffer tupleSize must be positive, found " + tupleSize);
+      this.values    = values;
+      this.tupleSize = tupleSize;
+    }
+
+    /**
+     * Build from split attribute values; a trailing partial tuple is ignored, matching parseToSFFloatTable()
+     * @param sa attribute values
+     * @param tupleSize number of values per tuple
+     * @return new buffer
+     */
+    public static MFFloatBuffer parse(String[] sa, int tupleSize)
+    {
+      return new MFFloatBuffer(parseValues(sa, tupleSize), tupleSize);
+    }
+
+    /**
+     * Build directly from attribute text using the single-pass tokenizer; a trailing partial tuple is ignored
+     * @param text attribute text
+     * @param tupleSize number of values per tuple
+     * @return new buffer
+     */
+    public static MFFloatBuffer parse(CharSequence text, int tupleSize)
+    {
+      return new MFFloatBuffer(wholeTuples(X3DNumberLists.parseFloats(text), tupleSize), tupleSize);
+    }
+
+    protected static float[] wholeTuples(float[] parsed, int tupleSize)
+    {
+      int count = (parsed.length / tupleSize) * tupleSize;
+      return (count == parsed.length) ? parsed : Arrays.copyOf(parsed, count);
+    }
+
+    protected static float[] parseValues(String[] sa, int tupleSize)
+    {
+      int count = (sa.length / tupleSize) * tupleSize;
+      float[] parsed = new float[count];
+      for (int i = 0; i < count; i++)
+        parsed[i] = parseFloatValue(sa[i]);
+      return parsed;
+    }
+
+    /**
+     * Build from table rows, for example customizer table data
+     * @param saa rows of values, all the same width
+     * @return new buffer, empty if no rows
+     */
+    public static MFFloatBuffer parse(String[][] saa)
+    {
+      if ((saa == null) || (saa.length == 0) || (saa[0].length == 0))
+        return new MFFloatBuffer(new float[0], 1);
+      return new MFFloatBuffer(parseTable(saa), saa[0].length);
+    }
+
+    protected static float[] parseTable(String[][] saa)
+    {
+      int width = saa[0].length;
+      float[] parsed = new float[saa.length * width];
+      int i = 0;
+      for (String[] row : saa)
+        for (int c = 0; c < width; c++)
+          parsed[i++] = parseFloatValue(row[c]);
+      return parsed;
+    }
+
+    /** @return total number of float values */
+    public int size()
+    {
+      return values.length;
+    }
+
+    /** @return number of values per tuple */
+    public int getTupleSize()
+    {
+      return tupleSize;
+    }
+
+    /** @return number of tuples */
+    public int getTupleCount()
+    {
+      return values.length / tupleSize;
+    }
+
+    /** @return whether buffer holds no values */
+    public boolean isEmpty()
+    {
+      return values.length == 0;
+    }
+
+    /** @param index value index
+     * @return value */
+    public float get(int index)
+    {
+      return values[index];
+    }
+
+    /** @param tuple tuple index
+     * @param component index within tuple
+     * @return value */
+    public float get(int tuple, int component)
+    {
+      return values[tuple * tupleSize + component];
+    }
+
+    /** @return copy of values */
+    public float[] toArray()
+    {
+      return values.clone();
+    }
+
+    /**
+     * Check all values against limits in a single pass, notifying author once if any fall outside
+     * @param min minimum allowed value, or null
+     * @param max maximum allowed value, or null
+     * @return number of values outside of limits
+     */
+    public int testLimits(Float min, Float max)
+    {
+      float low  = (min == null) ? Float.NEGATIVE_INFINITY : min;
+      float high = (max == null) ? Float.POSITIVE_INFINITY : max;
+      int count = 0, first = -1;
+      for (int i = 0; i < values.length; i++) {
+        if ((values[i] < low) || (values[i] > high)) {
+          if (first < 0) first = i;
+          count++;
+        }
+      }
+      if (count > 0)
+        notifyOutOfRange(count, formatFloatValue(values[first]), min, max, "Float");
+      return count;
+    }
+
+    /** @return values as table rows of text, matching SFFloat.toString() */
+    public String[][] toStringTable()
+    {
+      String[][] saa = new String[getTupleCount()][tupleSize];
+      int i = 0;
+      for (String[] row : saa)
+        for (int c = 0; c < tupleSize; c++)
+          row[c] = formatFloatValue(values[i++]);
+      return saa;
+    }
+
+    /**
+     * @param insertCommas whether to insert commas between tuples
+     * @param insertLineBreaks whether to insert line breaks between tuples
+     * @param numberTuplesBetweenLineBreaks tuples per line when breaking lines
+     * @return attribute text
+     */
+    public String format(boolean insertCommas, boolean insertLineBreaks, int numberTuplesBetweenLineBreaks)
+    {
+      StringBuilder sb = new StringBuilder(values.length * 8);
+      try {
+        write(sb, insertCommas, insertLineBreaks, numberTuplesBetweenLineBreaks);
+      }
+      catch (IOException ex) {
+        throw unexpected(ex);
+      }
+      return sb.toString();
+    }
+
+    /**
+     * Write attribute text straight to destination, without intermediate strings
+     * @param out destination, for example Writer or StringBuilder
+     * @param insertCommas whether to insert commas between tuples
+     * @param insertLineBreaks whether to insert line breaks between tuples
+     * @param numberTuplesBetweenLineBreaks tuples per line when breaking lines
+     * @throws IOException if destination fails
+     */
+    public void write(Appendable out, boolean insertCommas, boolean insertLineBreaks, int numberTuplesBetweenLineBreaks) throws IOException
+    {
+      X3DNumberLists.writeFloats(out, values, values.length, tupleSize,
+                                 insertCommas, insertLineBreaks, numberTuplesBetweenLineBreaks);
+    }
+
+    @Override
+    public String toString()
+    {
+      return format(false, false, 1);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      return (obj instanceof MFFloatBuffer) &&
+             (((MFFloatBuffer)obj).tupleSize == tupleSize) &&
+             Arrays.equals(((MFFloatBuffer)obj).values, values); // same comparison as Float.compare
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return 31 * tupleSize + Arrays.hashCode(values);
+    }
+  }
+
+  /**
+   * MFVec3fBuffer holds X3D MFVec3f values as x,y,z triples in a single primitive array
+   */
+  public static class MFVec3fBuffer extends MFFloatBuffer
+  {
+    public MFVec3fBuffer(float[] values)
+    {
+      super(values, 3);
+    }
+
+    /** @param sa attribute values
+     * @return new buffer, ignoring any trailing partial triple */
+    public static MFVec3fBuffer parse(String[] sa)
+    {
+      return new MFVec3fBuffer(parseValues(sa, 3));
+    }
+
+    /** @param text attribute text
+     * @return new buffer, ignoring any trailing partial triple */
+    public static MFVec3fBuffer parse(CharSequence text)
+    {
+      return new MFVec3fBuffer(wholeTuples(X3DNumberLists.parseFloats(text), 3));
+    }
+
+    /** @param saa rows of x,y,z values, for example customizer table data
+     * @return new buffer, empty if no rows */
+    public static MFVec3fBuffer parse(String[][] saa)
+    {
+      if ((saa == null) || (saa.length == 0) || (saa[0].length == 0))
+        return new MFVec3fBuffer(new float[0]);
+      if (saa[0].length != 3)
+        throw new IllegalArgumentException("MFVec3fBuffer requires 3 columns, found " + saa[0].length);
+      return new MFVec3fBuffer(parseTable(saa));
+    }
+
+    public float getX(int tuple) { return values[3 * tuple];     }
+    public float getY(int tuple) { return values[3 * tuple + 1]; }
+    public float getZ(int tuple) { return values[3 * tuple + 2]; }
+  }
+
+  /**
+   * MFDoubleBuffer holds X3D multiple-field double values (MFDouble, MFVec3d, MFTime and so on)
+   * as a single primitive array of fixed-size tuples, rather than an SFDouble object per value.
+   * Instances are immutable once built.
+   */
+  public static class MFDoubleBuffer implements X3Dtype
+  {
+    protected final double[] values;
+    protected final int      tupleSize;
+
+    /**
+     * @param values backing values, not copied
+     * @param tupleSize number of values per tuple, for example 3 for MFVec3d
+     */
+    public MFDoubleBuffer(double[] values, int tupleSize)
+    {
+      if (tupleSize <= 0)
+        throw new IllegalArgumentException("MFDoubleBuffer tupleSize must be positive, found " + tupleSize);
+      this.values    = values;
+      this.tupleSize = tupleSize;
+    }
+
+    /**
+     * Build from split attribute values; a trailing partial tuple is ignored, matching parseToSFDoubleTable()
+     * @param sa attribute values
+     * @param tupleSize number of values per tuple
+     * @return new buffer
+     */
+    public static MFDoubleBuffer parse(String[] sa, int tupleSize)
+    {
+      int count = (sa.length / tupleSize) * tupleSize;
+      double[] parsed = new double[count];
+      for (int i = 0; i < count; i++)
+        parsed[i] = parseDoubleValue(sa[i]);
+      return new MFDoubleBuffer(parsed, tupleSize);
+    }
+
+    /**
+     * Build directly from attribute text using the single-pass tokenizer; a trailing partial tuple is ignored
+     * @param text attribute text
+     * @param tupleSize number of values per tuple
+     * @return new buffer
+     */
+    public static MFDoubleBuffer parse(CharSequence text, int tupleSize)
+    {
+      double[] parsed = X3DNumberLists.parseDoubles(text);
+      int count = (parsed.length / tupleSize) * tupleSize;
+      return new MFDoubleBuffer((count == parsed.length) ? parsed : Arrays.copyOf(parsed, count), tupleSize);
+    }
+
+    /**
+     * Build from table rows, for example customizer table data
+     * @param saa rows of values, all the same width
+     * @return new buffer, empty if no rows
+     */
+    public static MFDoubleBuffer parse(String[][] saa)
+    {
+      if ((saa == null) || (saa.length == 0) || (saa[0].length == 0))
+        return new MFDoubleBuffer(new double[0], 1);
+      int width = saa[0].length;
+      double[] parsed = new double[saa.length * width];
+      int i = 0;
+      for (String[] row : saa)
+        for (int c = 0; c < width; c++)
+          parsed[i++] = parseDoubleValue(row[c]);
+      return new MFDoubleBuffer(parsed, width);
+    }
+
+    public int     size()          { return values.length; }
+    public int     getTupleSize()  { return tupleSize; }
+    public int     getTupleCount() { return values.length / tupleSize; }
+    public boolean isEmpty()       { return values.length == 0; }
+
+    /** @param index value index
+     * @return value */
+    public double get(int index)
+    {
+      return values[index];
+    }
+
+    /** @param tuple tuple index
+     * @param component index within tuple
+     * @return value */
+    public double get(int tuple, int component)
+    {
+      return values[tuple * tupleSize + component];
+    }
+
+    /** @return copy of values */
+    public double[] toArray()
+    {
+      return values.clone();
+    }
+
+    /** @return values as table rows of text, matching SFDouble.toString() */
+    public String[][] toStringTable()
+    {
+      String[][] saa = new String[getTupleCount()][tupleSize];
+      int i = 0;
+      for (String[] row : saa)
+        for (int c = 0; c < tupleSize; c++)
+          row[c] = formatDoubleValue(values[i++]);
+      return saa;
+    }
+
+    /**
+     * @param insertCommas whether to insert commas between tuples
+     * @param insertLineBreaks whether to insert line breaks between tuples
+     * @param numberTuplesBetweenLineBreaks tuples per line when breaking lines
+     * @return attribute text
+     */
+    public String format(boolean insertCommas, boolean insertLineBreaks, int numberTuplesBetweenLineBreaks)
+    {
+      StringBuilder sb = new StringBuilder(values.length * 12);
+      try {
+        write(sb, insertCommas, insertLineBreaks, numberTuplesBetweenLineBreaks);
+      }
+      catch (IOException ex) {
+        throw unexpected(ex);
+      }
+      return sb.toString();
+    }
+
+    /**
+     * Write attribute text straight to destination, without intermediate strings
+     * @param out destination, for example Writer or StringBuilder
+     * @param insertCommas whether to insert commas between tuples
+     * @param insertLineBreaks whether to insert line breaks between tuples
+     * @param numberTuplesBetweenLineBreaks tuples per line when breaking lines
+     * @throws IOException if destination fails
+     */
+    public void write(Appendable out, boolean insertCommas, boolean insertLineBreaks, int numberTuplesBetweenLineBreaks) throws IOException
+    {
+      X3DNumberLists.writeDoubles(out, values, values.length, tupleSize,
+                                  insertCommas, insertLineBreaks, numberTuplesBetweenLineBreaks);
+    }
+
+    @Override
+    public String toString()
+    {
+      return format(false, false, 1);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      return (obj instanceof MFDoubleBuffer) &&
+             (((MFDoubleBuffer)obj).tupleSize == tupleSize) &&
+             Arrays.equals(((MFDoubleBuffer)obj).values, values); // same comparison as Double.compare
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return 31 * tupleSize + Arrays.hashCode(values);
+    }
+  }
+
+  /**
+   * MFInt32Buffer holds X3D MFInt32 values, such as index arrays, in a single primitive array
+   */
+  public static class MFInt32Buffer implements X3Dtype
+  {
+    protected final int[] values;
+
+    /** @param values backing values, not copied */
+    public MFInt32Buffer(int[] values)
+    {
+      this.values = values;
+    }
+
+    /** @param sa attribute values
+     * @return new buffer */
+    public static MFInt32Buffer parse(String[] sa)
+    {
+      int[] parsed = new int[sa.length];
+      for (int i = 0; i < sa.length; i++)
+        parsed[i] = parseIntValue(sa[i]);
+      return new MFInt32Buffer(parsed);
+    }
+
+    /** @param text attribute text
+     * @return new buffer, parsed with the single-pass tokenizer */
+    public static MFInt32Buffer parse(CharSequence text)
+    {
+      return new MFInt32Buffer(X3DNumberLists.parseInts(text));
+    }
+
+    public int     size()            { return values.length; }
+    public boolean isEmpty()         { return values.length == 0; }
+    public int     get(int index)    { return values[index]; }
+
+    /** @return copy of values */
+    public int[] toArray()
+    {
+      return values.clone();
+    }
+
+    /**
+     * Check all values against limits in a single pass
+     * @param min minimum allowed value, or null
+     * @param max maximum allowed value, or null
+     * @throws IllegalArgumentException if any value is outside of limits, as SFInt32 does
+     */
+    public void testLimits(Integer min, Integer max) throws IllegalArgumentException
+    {
+      int low  = (min == null) ? Integer.MIN_VALUE : min;
+      int high = (max == null) ? Integer.MAX_VALUE : max;
+      for (int value : values) {
+        if (value < low)
+          throw new IllegalArgumentException("Attribute validation error:  entered value " + value + " is less than minimum of " + min);
+        if (value > high)
+          throw new IllegalArgumentException("Attribute validation error:  entered value " + value + " exceeds maximum of " + max);
+      }
+    }
+
+    /**
+     * @param insertCommas whether to insert commas between values
+     * @param insertLineBreaks whether to insert line breaks between values
+     * @param breakLinesAfterIndexSentinel whether to break lines after each -1 sentinel
+     * @return attribute text, matching BaseX3DElement.formatIntArray(SFInt32[])
+     */
+    public String format(boolean insertCommas, boolean insertLineBreaks, boolean breakLinesAfterIndexSentinel)
+    {
+      StringBuilder sb = new StringBuilder(values.length * 4);
+      try {
+        write(sb, insertCommas, insertLineBreaks, breakLinesAfterIndexSentinel);
+      }
+      catch (IOException ex) {
+        throw unexpected(ex);
+      }
+      return sb.toString();
+    }
+
+    /**
+     * Write attribute text straight to destination, without intermediate strings
+     * @param out destination, for example Writer or StringBuilder
+     * @param insertCommas whether to insert commas between values
+     * @param insertLineBreaks whether to insert line breaks between values
+     * @param breakLinesAfterIndexSentinel whether to break lines after each -1 sentinel
+     * @throws IOException if destination fails
+     */
+    public void write(Appendable out, boolean insertCommas, boolean insertLineBreaks, boolean breakLinesAfterIndexSentinel) throws IOException
+    {
+      X3DNumberLists.writeInts(out, values, values.length, insertCommas, insertLineBreaks, breakLinesAfterIndexSentinel);
+    }
+
+    @Override
+    public String toString()
+    {
+      return format(false, false, false);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      return (obj instanceof MFInt32Buffer) && Arrays.equals(((MFInt32Buffer)obj).values, values);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Arrays.hashCode(values);
+    }
+  }
+
   public static class SFFloat_orig implements X3Dtype
   {
     protected float f;
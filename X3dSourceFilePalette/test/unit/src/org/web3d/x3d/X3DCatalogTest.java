@@ -0,0 +1,155 @@
+package org.web3d.x3d;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import org.web3d.x3d.actions.qualityassurance.X3dGrammarValidator;
+import org.web3d.x3d.actions.qualityassurance.X3dGrammarValidator.Grammar;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.xml.sax.InputSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that X3DCatalog compiles each X3D schema once and shares it, matches system IDs
+ * by suffix, and lists layer stylesheets again after they change, and (via main) times cold
+ * and warm grammar validation against the prior schema compilation per validation.
+ *
+ * @author agent
+ */
+public class X3DCatalogTest {
+
+    static final String SCHEMA_40 = "https://www.web3d.org/specifications/x3d-4.0.xsd";
+
+    static final String SCENE =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<!DOCTYPE X3D PUBLIC \"ISO//Web3D//DTD X3D 4.0//EN\" \"https://www.web3d.org/specifications/x3d-4.0.dtd\">\n" +
+        "<X3D profile='Interchange' version='4.0'><Scene><Transform><Shape><Box size='1 1 1'/></Shape></Transform></Scene></X3D>\n";
+
+    public static void main(String args[]) throws Exception {
+        int repeats = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+        PrintWriter quiet = new PrintWriter(new StringWriter());
+
+        // cold timings are only available on first use within this JVM
+        long start = System.nanoTime();
+        X3dGrammarValidator.validate(SCENE, "cold.x3d", Grammar.SCHEMA, quiet);
+        long schemaColdNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        X3dGrammarValidator.validate(SCENE, "cold.x3d", Grammar.DTD, quiet);
+        long dtdColdNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            X3dGrammarValidator.validate(SCENE, "warm.x3d", Grammar.SCHEMA, quiet);
+        long schemaWarmNanos = (System.nanoTime() - start) / repeats;
+        start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            X3dGrammarValidator.validate(SCENE, "warm.x3d", Grammar.DTD, quiet);
+        long dtdWarmNanos = (System.nanoTime() - start) / repeats;
+
+        start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            priorSchemaValidation(SCENE);
+        long priorNanos = (System.nanoTime() - start) / repeats;
+
+        System.out.println(repeats + " validations of " + SCENE.length() + " characters");
+        System.out.printf("  schema, cold (grammar compiled):   %8.2f msec%n", schemaColdNanos / 1e6);
+        System.out.printf("  schema, warm (grammar reused):     %8.2f msec%n", schemaWarmNanos / 1e6);
+        System.out.printf("  DTD, cold (reader created):        %8.2f msec%n", dtdColdNanos    / 1e6);
+        System.out.printf("  DTD, warm (reader reused):         %8.2f msec%n", dtdWarmNanos    / 1e6);
+        System.out.printf("  prior, schema compiled every time: %8.2f msec%n", priorNanos      / 1e6);
+    }
+
+    /** Prior SchemaValidationAction approach: new factory and schema compilation for every validation */
+    static void priorSchemaValidation(String scene) throws Exception {
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        InputSource schemaSource = X3DCatalog.getInstance().resolveEntity(null, SCHEMA_40);
+        Schema schema = schemaFactory.newSchema(new StreamSource(schemaSource.getByteStream(), schemaSource.getSystemId()));
+        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+        parserFactory.setNamespaceAware(true);
+        Validator validator = schema.newValidator();
+        validator.setResourceResolver(X3DCatalog.getResourceResolver()); // DOCTYPE resolved locally
+        validator.validate(new SAXSource(parserFactory.newSAXParser().getXMLReader(), new InputSource(new StringReader(scene))));
+    }
+
+    @Test
+    public void testCompiledSchemaReused() throws Exception {
+        Schema first = X3DCatalog.getX3dSchema("4.0");
+        assertNotNull("X3D 4.0 schema", first);
+        assertTrue(X3DCatalog.isX3dSchemaCached("4.0"));
+        assertSame(first, X3DCatalog.getX3dSchema("4.0"));
+        assertNull(X3DCatalog.getX3dSchema("9.9"));
+        assertFalse(X3DCatalog.isX3dSchemaCached("9.9"));
+
+        StringWriter report = new StringWriter();
+        boolean valid = X3dGrammarValidator.validate(SCENE, "reused.x3d", Grammar.SCHEMA, new PrintWriter(report, true));
+        assertTrue(report.toString(), valid);
+        assertFalse(report.toString(), report.toString().contains("including grammar compilation"));
+        assertSame(first, X3DCatalog.getX3dSchema("4.0"));
+    }
+
+    @Test
+    public void testSystemIdSuffixes() throws Exception {
+        assertNotNull(X3DCatalog.findSystem("https://www.web3d.org/specifications/x3d-4.0.dtd"));
+        assertNotNull(X3DCatalog.findSystem("../specifications/x3d-4.0.dtd?version=4.0#top"));
+        assertNotNull(X3DCatalog.findSystem("x3d-4.0.dtd"));
+        assertNull(X3DCatalog.findSystem("https://www.web3d.org/specifications/x3d-4.0.dtd/other.dtd"));
+
+        Path catalog = Files.createTempFile("X3DCatalogTest", ".cat");
+        try {
+            Files.write(catalog, ("SYSTEM \"vendor/extensions.dtd\" \"vendor-extensions.dtd\"\n"
+                                + "SYSTEM \"extensions.dtd\" \"any-extensions.dtd\"\n").getBytes(StandardCharsets.UTF_8));
+            X3DCatalog.loadUserCatalog(catalog.toString());
+        }
+        finally {
+            Files.delete(catalog);
+        }
+        assertTrue(X3DCatalog.findSystem("https://example.org/vendor/extensions.dtd").endsWith("/vendor-extensions.dtd"));
+        assertTrue(X3DCatalog.findSystem("https://example.org/vendor/extensions.dtd#ids").endsWith("/vendor-extensions.dtd"));
+        assertTrue(X3DCatalog.findSystem("https://example.org/other/extensions.dtd").endsWith("/any-extensions.dtd"));
+        assertNull(X3DCatalog.findSystem("https://example.org/vendor/myextensions.dtd"));
+    }
+
+    @Test
+    public void testTransformListingFollowsFolderChanges() throws Exception {
+        FileObject folder = FileUtil.createFolder(FileUtil.getConfigRoot(), "X3dTransforms");
+        FileObject first = stylesheet(folder, "X3DCatalogTestFirst.xslt");
+        try {
+            X3DCatalog catalog = X3DCatalog.getInstance();
+            assertEquals(first.toURI().toString(), catalog.resolve("X3DCatalogTestFirst.xslt", null).getSystemId());
+
+            FileObject second = stylesheet(folder, "X3DCatalogTestSecond.xslt"); // added after listing
+            Source source = catalog.resolve("X3DCatalogTestSecond.xslt", null);
+            assertNotNull("added stylesheet found", source);
+            assertEquals(second.toURI().toString(), source.getSystemId());
+            second.delete();
+            assertNull("deleted stylesheet dropped", catalog.resolve("X3DCatalogTestSecond.xslt", null));
+        }
+        finally {
+            first.delete();
+        }
+    }
+
+    private static FileObject stylesheet(FileObject folder, String name) throws Exception {
+        FileObject fo = folder.createData(name);
+        try (OutputStream out = fo.getOutputStream()) {
+            out.write("<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'/>".getBytes(StandardCharsets.UTF_8));
+        }
+        return fo;
+    }
+}
@@ -0,0 +1,187 @@
+package org.web3d.x3d;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that editor text snapshots are complete and unaffected by later edits, that files are
+ * decoded in their declared encoding, and (via main) compares the prior save, read back and parse cycle with parsing a snapshot.
+ *
+ * @author agent
+ */
+public class X3DTextSnapshotTest {
+
+    public static void main(String args[]) throws Exception {
+        int shapeCount = (args.length > 0) ? Integer.parseInt(args[0]) : 50000;
+        PlainDocument document = new PlainDocument();
+        String text = buildScene(shapeCount);
+        document.insertString(0, text, null);
+        document.insertString(text.indexOf('\n', text.length() / 2) + 1, "<!-- edit -->", null); // gap in middle, as after typing
+        File scene = new File(Files.createTempDirectory("snapshotBenchmark").toFile(), "large.x3d");
+        XMLReader reader = newReader();
+        long checksum = 0;
+        for (int warmup = 0; warmup < 3; warmup++)
+            checksum += saveAndReadBack(document, scene, reader) + parse(X3DTextSnapshot.of(document, scene.toURI().toString(), scene, true), reader);
+
+        int repeats = 10;
+        long start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            checksum += saveAndReadBack(document, scene, reader);
+        long savedNanos = (System.nanoTime() - start) / repeats;
+        start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            checksum += parse(X3DTextSnapshot.of(document, scene.toURI().toString(), scene, true), reader);
+        long snapshotNanos = (System.nanoTime() - start) / repeats;
+
+        System.out.println(shapeCount + " shapes, " + document.getLength() + " characters, checksum " + checksum);
+        System.out.printf("  prior save, read back and parse: %8.1f msec%n", savedNanos / 1e6);
+        System.out.printf("  snapshot of editor text, parse:  %8.1f msec%n", snapshotNanos / 1e6);
+    }
+
+    static String buildScene(int shapeCount) {
+        StringBuilder scene = new StringBuilder("<X3D profile='Interchange' version='4.0'>\n<Scene>\n");
+        for (int i = 0; i < shapeCount; i++)
+            scene.append("  <Shape><Box size='").append(i).append(" 1 1'/></Shape>\n");
+        scene.append("</Scene>\n</X3D>\n");
+        return scene.toString();
+    }
+
+    static XMLReader newReader() throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newSAXParser().getXMLReader();
+    }
+
+    /** Prior conversion input: document saved to file, then file read and parsed */
+    static long saveAndReadBack(PlainDocument document, File scene, XMLReader reader) throws Exception {
+        try (Writer writer = Files.newBufferedWriter(scene.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(document.getText(0, document.getLength()));
+        }
+        return parse(new InputSource(scene.toURI().toString()), reader);
+    }
+
+    static long parse(X3DTextSnapshot snapshot, XMLReader reader) throws Exception {
+        return parse(snapshot.newInputSource(), reader);
+    }
+
+    static long parse(InputSource inputSource, XMLReader reader) throws Exception {
+        long[] count = new long[1];
+        reader.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                count[0]++;
+            }
+        });
+        reader.parse(inputSource);
+        return count[0];
+    }
+
+    @Test
+    public void testSnapshotUnaffectedByLaterEdits() throws Exception {
+        PlainDocument document = new PlainDocument();
+        String scene = buildScene(200);
+        document.insertString(0, scene, null);
+        int middle = scene.indexOf("<Shape><Box size='100 ");
+        document.insertString(middle, "<Group/>", null); // content gap now mid-document, so text is read in two segments
+        String expected = document.getText(0, document.getLength());
+
+        X3DTextSnapshot snapshot = X3DTextSnapshot.of(document, "file:/tmp/scene.x3d", null, true);
+        document.remove(0, 10);
+        document.insertString(middle, "<Transform/>", null);
+
+        assertEquals(expected.length(), snapshot.length());
+        assertEquals(expected, snapshot.toString());
+        assertEquals(expected, read(snapshot.newReader()));
+        assertEquals(expected, read(snapshot.newReader())); // each reader starts over
+        assertEquals('<', snapshot.charAt(middle));
+        assertEquals("<Group/>", snapshot.subSequence(middle, middle + 8).toString());
+        assertEquals("Group", snapshot.subSequence(middle, middle + 8).subSequence(1, 6).toString());
+        assertTrue(snapshot.isModified());
+        assertNull(snapshot.getFile());
+        assertEquals("file:/tmp/scene.x3d", snapshot.newInputSource().getSystemId());
+        assertEquals("file:/tmp/scene.x3d", snapshot.newStreamSource().getSystemId());
+        assertEquals(2 + 200 * 2 + 1, parse(snapshot, newReader()));
+
+        StringWriter copy = new StringWriter();
+        snapshot.writeTo(copy);
+        assertEquals(expected, copy.toString());
+        try {
+            snapshot.charAt(snapshot.length());
+            fail("index past end should be rejected");
+        }
+        catch (IndexOutOfBoundsException expectedException) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadFile() throws IOException, BadLocationException {
+        File file = new File(Files.createTempDirectory("snapshotTest").toFile(), "scene.x3d");
+        String scene = "<X3D profile='Interchange' version='4.0'><head><meta content='Größe ±1'/></head></X3D>\n";
+        Files.write(file.toPath(), ("\uFEFF" + scene).getBytes(StandardCharsets.UTF_8));
+        X3DTextSnapshot snapshot = X3DTextSnapshot.read(file);
+        assertEquals(scene, snapshot.toString()); // byte order mark dropped
+        assertFalse(snapshot.isModified());
+        assertEquals(file, snapshot.getFile());
+        assertEquals(file.toURI().toString(), snapshot.getSystemId());
+        assertEquals(scene, read(X3DTextSnapshot.newReader(snapshot)));
+        assertEquals("plain", read(X3DTextSnapshot.newReader("plain")));
+
+        PlainDocument empty = new PlainDocument();
+        assertEquals(0, X3DTextSnapshot.of(empty, null, null, false).length());
+    }
+
+    @Test
+    public void testReadDeclaredEncoding() throws IOException {
+        File directory = Files.createTempDirectory("snapshotTest").toFile();
+        String body = "<X3D profile='Interchange' version='4.0'><head><meta content='Größe ±1'/></head></X3D>\n";
+
+        String latin = "<?xml version=\"1.0\" encoding='ISO-8859-1'?>\n" + body;
+        File latinFile = new File(directory, "latin.x3d");
+        Files.write(latinFile.toPath(), latin.getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals(latin, X3DTextSnapshot.read(latinFile).toString());
+
+        String utf16 = "<?xml version=\"1.0\" encoding=\"UTF-16\"?>\n" + body;
+        File utf16File = new File(directory, "utf16.x3d");
+        Files.write(utf16File.toPath(), utf16.getBytes(StandardCharsets.UTF_16)); // big endian with byte order mark
+        assertEquals(utf16, X3DTextSnapshot.read(utf16File).toString());
+        Files.write(utf16File.toPath(), utf16.getBytes(StandardCharsets.UTF_16LE)); // no byte order mark
+        assertEquals(utf16, X3DTextSnapshot.read(utf16File).toString());
+
+        assertEquals(StandardCharsets.UTF_8, X3DTextSnapshot.xmlEncoding("<?xml version='1.0'?><X3D/>".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(StandardCharsets.UTF_8, X3DTextSnapshot.xmlEncoding(body.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(StandardCharsets.ISO_8859_1, X3DTextSnapshot.xmlEncoding(latin)); // decoded text, encoded again as declared
+        assertEquals(StandardCharsets.UTF_8, X3DTextSnapshot.xmlEncoding(body));
+        try {
+            X3DTextSnapshot.xmlEncoding("<?xml version='1.0' encoding='no-such-encoding'?><X3D/>".getBytes(StandardCharsets.UTF_8));
+            fail("unsupported encoding should be reported");
+        }
+        catch (java.io.UnsupportedEncodingException expected) {
+            // expected
+        }
+    }
+
+    static String read(Reader reader) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[4096];
+        for (int count; (count = reader.read(buffer)) >= 0; )
+            text.append(buffer, 0, count);
+        return text.toString();
+    }
+}
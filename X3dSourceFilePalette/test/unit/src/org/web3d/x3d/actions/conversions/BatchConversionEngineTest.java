@@ -0,0 +1,186 @@
+package org.web3d.x3d.actions.conversions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+import org.web3d.x3d.X3DTextSnapshot;
+import org.xml.sax.InputSource;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks batch conversion of a small directory tree using a local stylesheet, including results
+ * mirrored under an output directory and scenes in other encodings, and (via main)
+ * reports throughput for a tree of generated scenes at increasing parallelism.
+ *
+ * @author agent
+ */
+public class BatchConversionEngineTest {
+
+    /** Minimal stand-in for X3dToJson.xslt, counting Shape nodes */
+    static final String STYLESHEET =
+        "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>" +
+        "<xsl:output method='text'/>" +
+        "<xsl:template match='/'>{ \"shapes\": <xsl:value-of select='count(//Shape)'/> }</xsl:template>" +
+        "</xsl:stylesheet>";
+
+    public static void main(String args[]) throws Exception {
+        int sceneCount = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+        File root = Files.createTempDirectory("batchBenchmark").toFile();
+        File stylesheets = createStylesheets();
+        for (int i = 0; i < sceneCount; i++)
+            writeScene(new File(root, "scene" + i + ".x3d"), 200 + (i % 10) * 400);
+        List<File> scenes = BatchConversionEngine.findScenes(root);
+        BatchConversionEngine warmup = newEngine(stylesheets);
+        warmup.setProgressListener(message -> { });
+        warmup.run(scenes, EnumSet.of(BatchConversionEngine.Conversion.JSON, BatchConversionEngine.Conversion.GZIP));
+        for (int parallelism : new int[] {1, 2, 4, Runtime.getRuntime().availableProcessors()}) {
+            BatchConversionEngine engine = newEngine(stylesheets);
+            engine.setParallelism(parallelism);
+            engine.setProgressListener(message -> { });
+            long start = System.nanoTime();
+            List<BatchConversionEngine.Result> results = engine.run(scenes, EnumSet.of(BatchConversionEngine.Conversion.JSON, BatchConversionEngine.Conversion.GZIP));
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("parallelism %2d: %5d conversions in %6d msec%n", parallelism, results.size(), elapsed / 1000000);
+        }
+    }
+
+    static BatchConversionEngine newEngine(File stylesheets) {
+        BatchConversionEngine engine = new BatchConversionEngine();
+        engine.setStylesheetDirectory(stylesheets);
+        // scenes carry no DOCTYPE and stylesheet has no includes, so resolvers are never consulted
+        engine.setResolvers((publicId, systemId) -> new InputSource(new StringReader("")),
+                            (href, base) -> new StreamSource(new StringReader("")));
+        return engine;
+    }
+
+    static File createStylesheets() throws IOException {
+        File directory = Files.createTempDirectory("batchStylesheets").toFile();
+        Files.writeString(new File(directory, "X3dToJson.xslt").toPath(), STYLESHEET, StandardCharsets.UTF_8);
+        return directory;
+    }
+
+    static void writeScene(File file, int shapeCount) throws IOException {
+        StringBuilder scene = new StringBuilder("<X3D profile='Interchange' version='4.0'><Scene>");
+        for (int i = 0; i < shapeCount; i++)
+            scene.append("<Shape><Box size='").append(i).append(" 1 1'/></Shape>");
+        scene.append("</Scene></X3D>");
+        Files.writeString(file.toPath(), scene, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testDirectoryTree() throws Exception {
+        File root = Files.createTempDirectory("batchTest").toFile();
+        File nested = new File(root, "nested");
+        nested.mkdir();
+        writeScene(new File(root, "a.x3d"), 2);
+        writeScene(new File(nested, "b.x3d"), 3);
+        writeScene(new File(nested, "bTidy.x3d"), 1); // prior batch result, skipped
+        writeScene(new File(nested, "bFiltered.x3d"), 1); // prior CAD filter result, skipped
+        Files.writeString(new File(root, "notes.txt").toPath(), "not a scene");
+
+        List<File> scenes = BatchConversionEngine.findScenes(root);
+        assertEquals(2, scenes.size());
+
+        BatchConversionEngine engine = newEngine(createStylesheets());
+        engine.setParallelism(2);
+        StringBuilder progress = new StringBuilder();
+        engine.setProgressListener(message -> progress.append(message).append('\n'));
+        List<BatchConversionEngine.Result> results = engine.run(scenes,
+                EnumSet.of(BatchConversionEngine.Conversion.GZIP, BatchConversionEngine.Conversion.JSON));
+
+        assertEquals(4, results.size());
+        assertTrue(progress.toString(), progress.toString().contains("[4/4]"));
+        for (BatchConversionEngine.Result result : results)
+            assertTrue(result.getError(), result.isSuccess());
+        assertEquals(new File(root, "a.json"), results.get(0).getOutput()); // scene order, then conversion order
+        assertEquals("{ \"shapes\": 3 }", Files.readString(new File(nested, "b.json").toPath()).trim());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(new File(nested, "b.x3d.gz").toPath()))) {
+            assertEquals(Files.readString(new File(nested, "b.x3d").toPath()), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        String report = BatchConversionEngine.formatReport(results, 1000000);
+        assertTrue(report, report.contains("4 conversions, 0 failed"));
+    }
+
+    @Test
+    public void testOutputDirectoryMirrorsSourceTree() throws Exception {
+        File root = Files.createTempDirectory("batchMirror").toFile();
+        File first  = new File(new File(root, "first"),  "scene.x3d");
+        File second = new File(new File(root, "second"), "scene.x3d");
+        first.getParentFile().mkdir();
+        second.getParentFile().mkdir();
+        writeScene(first, 1);
+        writeScene(second, 2);
+        File output = Files.createTempDirectory("batchMirrorOutput").toFile();
+
+        BatchConversionEngine engine = newEngine(createStylesheets());
+        engine.setOutputDirectory(output);
+        List<BatchConversionEngine.Result> results = engine.run(BatchConversionEngine.findScenes(root),
+                EnumSet.of(BatchConversionEngine.Conversion.JSON));
+        for (BatchConversionEngine.Result result : results)
+            assertTrue(result.getError(), result.isSuccess());
+        assertEquals(new File(output, "first/scene.json").getAbsoluteFile(), results.get(0).getOutput().getAbsoluteFile());
+        assertEquals("{ \"shapes\": 1 }", Files.readString(new File(output, "first/scene.json").toPath()).trim());
+        assertEquals("{ \"shapes\": 2 }", Files.readString(new File(output, "second/scene.json").toPath()).trim());
+    }
+
+    @Test
+    public void testDeclaredEncodingCanonicalized() throws Exception {
+        File root = Files.createTempDirectory("batchEncoding").toFile();
+        File scene = new File(root, "latin.x3d");
+        Files.write(scene.toPath(), ("<?xml version='1.0' encoding='ISO-8859-1'?>\n" +
+            "<X3D profile='Interchange' version='4.0'><head><meta name='title' content='Größe'/></head><Scene/></X3D>\n")
+            .getBytes(StandardCharsets.ISO_8859_1));
+        BatchConversionEngine engine = newEngine(createStylesheets());
+        List<BatchConversionEngine.Result> results = engine.run(List.of(scene), EnumSet.of(BatchConversionEngine.Conversion.C14N));
+        assertTrue(results.get(0).getError(), results.get(0).isSuccess());
+        String canonical = X3DTextSnapshot.read(results.get(0).getOutput()).toString();
+        assertTrue(canonical, canonical.contains("Größe"));
+    }
+
+    @Test
+    public void testOtherEncodingsCompressedOnly() throws Exception {
+        File root = Files.createTempDirectory("batchGzip").toFile();
+        writeScene(new File(root, "a.x3d"), 1);
+        Files.writeString(new File(root, "c.x3dv").toPath(), "#X3D V4.0 utf8\nShape { geometry Box { } }\n");
+        Files.writeString(new File(root, "d.wrl").toPath(), "#VRML V2.0 utf8\nShape { geometry Box { } }\n");
+        assertEquals(1, BatchConversionEngine.findScenes(root).size());
+        List<File> scenes = BatchConversionEngine.findScenes(root, true);
+        assertEquals(3, scenes.size());
+
+        BatchConversionEngine engine = newEngine(createStylesheets());
+        engine.setGzipLevel(9);
+        engine.setProgressListener(message -> { });
+        List<BatchConversionEngine.Result> results = engine.run(scenes,
+                EnumSet.of(BatchConversionEngine.Conversion.GZIP, BatchConversionEngine.Conversion.JSON));
+        assertEquals(4, results.size()); // JSON for the .x3d scene only
+        for (BatchConversionEngine.Result result : results)
+            assertTrue(result.getError(), result.isSuccess());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(new File(root, "c.x3dv.gz").toPath()))) {
+            assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).startsWith("#X3D V4.0"));
+        }
+        assertTrue(new File(root, "d.wrl.gz").exists());
+    }
+
+    @Test
+    public void testFailureRecorded() throws Exception {
+        File root = Files.createTempDirectory("batchFailure").toFile();
+        File broken = new File(root, "broken.x3d");
+        Files.writeString(broken.toPath(), "<X3D><Scene>", StandardCharsets.UTF_8); // not well formed
+        BatchConversionEngine engine = newEngine(createStylesheets());
+        engine.setProgressListener(message -> { });
+        List<BatchConversionEngine.Result> results = engine.run(List.of(broken), EnumSet.of(BatchConversionEngine.Conversion.JSON));
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(BatchConversionEngine.formatReport(results, 0).contains("1 failed"));
+    }
+}
@@ -0,0 +1,119 @@
+package org.web3d.x3d.actions.conversions;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.web3d.vrml.sav.ContentHandler;
+import xj3d.filter.AbstractFilter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that stage probes attribute chain time to the right filter and that failed runs are reported,
+ * and (via main) compares the prior serialized CAD filter batch with isolated concurrent runs.
+ *
+ * @author agent
+ */
+public class CadFilterPipelineTest {
+
+    /**
+     * Benchmark over CAD scenes in the given directory, optionally followed by filter names.
+     * Needs the Xj3D jars on the classpath.
+     */
+    public static void main(String args[]) throws Exception {
+        List<File> scenes = BatchConversionEngine.findScenes(new File(args[0]));
+        String[] filters = (args.length > 1) ? Arrays.copyOfRange(args, 1, args.length)
+                                             : new String[] { "Triangulation", "ReIndex", "GenNormals" };
+        File outputDirectory = Files.createTempDirectory("cadFiltered").toFile();
+        BatchConversionEngine engine = new BatchConversionEngine();
+        engine.setCadFilters(filters, new String[] { CadFilterHelper.XJ3D_FILTERARG_LOGLEVEL, "WARNING" });
+        engine.setOutputDirectory(outputDirectory);
+        List<String> stages = new ArrayList<>();
+        engine.setProgressListener(stages::add);
+        System.out.println(scenes.size() + " scenes, filters " + String.join(",", filters) + ", " +
+                           Runtime.getRuntime().availableProcessors() + " processors");
+        for (int parallelism : new int[] {1, 1, Runtime.getRuntime().availableProcessors()}) { // first run warms up
+            engine.setParallelism(parallelism);
+            stages.clear();
+            long start = System.nanoTime();
+            List<BatchConversionEngine.Result> results = engine.run(scenes, EnumSet.of(BatchConversionEngine.Conversion.CAD_FILTER));
+            long failures = results.stream().filter(result -> !result.isSuccess()).count();
+            System.out.printf("  %2d threads%s: %10.1f msec, %d failed%n", parallelism, (parallelism == 1) ? " (prior, serialized)" : "",
+                              (System.nanoTime() - start) / 1e6, failures);
+        }
+        stages.stream().limit(5).forEach(line -> System.out.println("    " + line));
+    }
+
+    /** Filter that takes a known time per node before passing it on */
+    public static class SlowFilter extends AbstractFilter {
+        @Override
+        public void startNode(String name, String defName) {
+            pause(20);
+            super.startNode(name, defName);
+        }
+    }
+
+    private static void pause(long millis) {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (System.nanoTime() < end)
+            Thread.onSpinWait();
+    }
+
+    @Test
+    public void testStageProbes() throws Exception {
+        List<String> exported = new ArrayList<>();
+        ContentHandler exporter = (ContentHandler) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ContentHandler.class }, (proxy, method, args) -> {
+            if (method.getName().equals("startNode")) {
+                pause(5);
+                exported.add((String) args[0]);
+            }
+            return null;
+        });
+        // chain as CDFFilter links it: parser -> probe -> filter -> probe -> exporter
+        CadFilterPipeline.StageProbe first  = new CadFilterPipeline.StageProbe();
+        SlowFilter                   filter = new SlowFilter();
+        CadFilterPipeline.StageProbe last   = new CadFilterPipeline.StageProbe();
+        first.setContentHandler(filter);
+        filter.setContentHandler(last);
+        last.setContentHandler(exporter);
+        assertTrue(first.getContentHandler() instanceof ContentHandler);
+        assertNotSame(filter, first.getContentHandler()); // timed proxy
+
+        for (int i = 0; i < 3; i++) {
+            first.startNode("Shape", null);
+            first.endNode();
+        }
+        assertEquals(Arrays.asList("Shape", "Shape", "Shape"), exported);
+        long[] downstreamNanos = CadFilterPipeline.StageProbe.takeDownstreamNanos();
+        assertEquals(2, downstreamNanos.length);
+        long filterNanos = downstreamNanos[0] - downstreamNanos[1];
+        assertTrue(filterNanos + " filter nanos", filterNanos >= TimeUnit.MILLISECONDS.toNanos(60));
+        assertTrue(downstreamNanos[1] + " export nanos", downstreamNanos[1] >= TimeUnit.MILLISECONDS.toNanos(15));
+        assertTrue(downstreamNanos[1] < filterNanos);
+        assertEquals(0, CadFilterPipeline.StageProbe.takeDownstreamNanos().length); // forgotten once taken
+    }
+
+    @Test
+    public void testFailureReported() throws Exception {
+        File directory = Files.createTempDirectory("cadFilterTest").toFile();
+        CadFilterPipeline pipeline = new CadFilterPipeline(new String[] { CadFilterHelper.XJ3D_FILTER_IDENTITY },
+                                                           new String[] { CadFilterHelper.XJ3D_FILTERARG_LOGLEVEL, "WARNING" });
+        pipeline.setStageTiming(true); // off by default
+        try {
+            pipeline.filter(new File(directory, "missing.x3d"), new File(directory, "missingFiltered.x3d"));
+            fail("missing scene should be reported");
+        }
+        catch (java.io.IOException expected) {
+            assertEquals(0, CadFilterPipeline.StageProbe.takeDownstreamNanos().length); // probes of failed run forgotten
+        }
+        pipeline.close();
+    }
+}
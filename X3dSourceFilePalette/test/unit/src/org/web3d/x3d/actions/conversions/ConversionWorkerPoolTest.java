@@ -0,0 +1,261 @@
+package org.web3d.x3d.actions.conversions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.openide.windows.OutputListener;
+import org.openide.windows.OutputWriter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks job ordering, per-job output streaming, restoring of System.out and System.err, cancellation and
+ * timeouts of the warm worker pool, and (via main) compares per-conversion latency of a new JVM per job
+ * (prior ProcessRunner.execJava) with a warm worker.
+ *
+ * @author agent
+ */
+public class ConversionWorkerPoolTest {
+
+    public static void main(String args[]) throws Exception {
+        int runs = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+        File scene = File.createTempFile("workerBenchmark", ".x3d");
+        Files.writeString(scene.toPath(), buildScene(2000, new Random(19)), StandardCharsets.UTF_8);
+        String path = scene.getAbsolutePath();
+        TestWriter ow = new TestWriter();
+        System.out.println("conversion: " + Convert.description());
+
+        long processNanos = 0;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            assertEquals(0, ProcessRunner.execJavaProcess(ow, Convert.class.getName(), path));
+            processNanos += System.nanoTime() - start;
+        }
+        ConversionWorkerPool pool = new ConversionWorkerPool("benchmark", 1);
+        long firstNanos = 0;
+        long warmNanos = 0;
+        for (int i = 0; i <= runs; i++) {
+            long start = System.nanoTime();
+            assertEquals(Integer.valueOf(0), pool.submitMain(ow, 0, Convert.class.getName(), path).get());
+            if (i == 0)
+                firstNanos = System.nanoTime() - start;
+            else
+                warmNanos += System.nanoTime() - start;
+        }
+        pool.shutdown();
+        System.out.printf("  new JVM per conversion (prior execJava): %8.1f msec average of %d%n", processNanos / 1e6 / runs, runs);
+        System.out.printf("  worker pool, first conversion:           %8.1f msec%n", firstNanos / 1e6);
+        System.out.printf("  worker pool, warm conversions:           %8.1f msec average of %d%n", warmNanos / 1e6 / runs, runs);
+        scene.delete();
+    }
+
+    static String buildScene(int shapeCount, Random random) {
+        StringBuilder scene = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<X3D profile='Interchange' version='4.0'>\n  <Scene>\n");
+        for (int i = 0; i < shapeCount; i++)
+            scene.append("    <Transform DEF='T").append(i).append("' translation='").append(random.nextInt(100)).append(' ')
+                 .append(random.nextInt(100)).append(" 0'><Shape><Box size='1 1 1'/></Shape></Transform>\n");
+        scene.append("  </Scene>\n</X3D>\n");
+        return scene.toString();
+    }
+
+    /** Stand-in conversion main: Xj3D .x3d to .x3dv when Xj3D converter is present, otherwise identity XSLT copy */
+    public static class Convert {
+        public static void main(String args[]) throws Exception {
+            File source = new File(args[0]);
+            try {
+                Class<?> xj3d = Class.forName("xj3d.converter.Xj3DConv");
+                xj3d.getMethod("convert", File.class, String.class)
+                    .invoke(xj3d.getConstructor().newInstance(), source, args[0] + ".x3dv");
+            }
+            catch (ClassNotFoundException ex) {
+                javax.xml.transform.TransformerFactory.newDefaultInstance().newTransformer().transform(
+                    new javax.xml.transform.stream.StreamSource(source), new javax.xml.transform.stream.StreamResult(new ByteArrayOutputStream()));
+            }
+            System.out.println("converted " + source.getName());
+        }
+
+        static String description() {
+            try {
+                Class.forName("xj3d.converter.Xj3DConv");
+                return "Xj3DConv .x3d to .x3dv";
+            }
+            catch (ClassNotFoundException ex) {
+                return "Xj3DConv not on classpath, identity XSLT copy instead";
+            }
+        }
+    }
+
+    /** Prints its arguments, as a converter main reporting progress */
+    public static class Echo {
+        public static void main(String args[]) {
+            for (String arg : args)
+                System.out.println("echo " + arg);
+            System.err.print("no newline");
+        }
+    }
+
+    /** Output window stand-in */
+    static class TestWriter extends OutputWriter {
+        final StringWriter text;
+
+        TestWriter() {
+            this(new StringWriter());
+        }
+
+        private TestWriter(StringWriter text) {
+            super(text);
+            this.text = text;
+        }
+
+        @Override
+        public void println(String s, OutputListener listener) {
+            println(s);
+        }
+
+        @Override
+        public void reset() {
+            text.getBuffer().setLength(0);
+        }
+
+        @Override
+        public synchronized String toString() {
+            flush();
+            return text.toString();
+        }
+    }
+
+    @Test
+    public void testOrderAndOutput() throws Exception {
+        ConversionWorkerPool pool = new ConversionWorkerPool("test", 1);
+        TestWriter first  = new TestWriter();
+        TestWriter second = new TestWriter();
+        StringBuilder order = new StringBuilder();
+        CountDownLatch later = new CountDownLatch(1);
+        CountDownLatch printed = new CountDownLatch(1);
+        ConversionWorkerPool.Job<Integer> a = pool.submit("a", first, 0, () -> {
+            System.out.println("from a");
+            new Thread(() -> { // as a converter's own pooled thread, outliving the job
+                try {
+                    later.await();
+                }
+                catch (InterruptedException ex) {
+                    return;
+                }
+                System.out.println("from thread started by a, after a finished");
+                printed.countDown();
+            }).start();
+            Thread.sleep(100);
+            order.append('a');
+            return 1;
+        });
+        ConversionWorkerPool.Job<Integer> b = pool.submit("b", second, 0, () -> {
+            order.append('b');
+            return 2;
+        });
+        assertEquals(Integer.valueOf(2), b.get());
+        assertEquals(Integer.valueOf(1), a.get());
+        assertEquals("ab", order.toString()); // queued in submission order
+        later.countDown();
+        assertTrue(printed.await(5, TimeUnit.SECONDS));
+        assertEquals("from a\n", first.toString().replace("\r", "")); // target is not inherited by other threads
+        assertEquals("", second.toString());
+        assertTrue(a.getRunNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(b.getQueuedNanos() >= a.getRunNanos() / 2);
+
+        TestWriter echo = new TestWriter();
+        assertEquals(Integer.valueOf(0), pool.submitMain(echo, 0, Echo.class.getName(), "x3d", "x3dv").get());
+        assertEquals("echo x3d\necho x3dv\nno newline\n", echo.toString().replace("\r", ""));
+
+        try {
+            pool.submit("failing", null, 0, () -> { throw new IllegalStateException("bad scene"); }).get();
+            fail("job exception should be rethrown");
+        }
+        catch (IllegalStateException expected) {
+            assertEquals("bad scene", expected.getMessage());
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testStreamsRestored() throws Exception {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ConversionWorkerPool pool = new ConversionWorkerPool("test", 1);
+        assertSame(out, System.out); // nothing replaced until a job runs
+        TestWriter ow = new TestWriter();
+        assertEquals(Boolean.TRUE, pool.submit("routed", ow, 0, () -> {
+            System.out.println("routed");
+            return System.out != out && System.err != err;
+        }).get());
+        assertEquals("routed\n", ow.toString().replace("\r", ""));
+        assertSame(out, System.out); // put back once no routed job is running
+        assertSame(err, System.err);
+        assertFalse(ConversionWorkerPool.OutputRouter.isInstalled());
+
+        CountDownLatch started = new CountDownLatch(1);
+        pool.submit("running at shutdown", ow, 0, () -> {
+            started.countDown();
+            Thread.sleep(10000);
+            return null;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertNotSame(out, System.out);
+        pool.shutdown();
+        assertSame(out, System.out);
+        assertSame(err, System.err);
+    }
+
+    @Test
+    public void testCancelAndTimeout() throws Exception {
+        ConversionWorkerPool pool = new ConversionWorkerPool("test", 1);
+        TestWriter ow = new TestWriter();
+        ConversionWorkerPool.Job<Object> slow = pool.submit("slow", ow, 200, () -> {
+            Thread.sleep(10000);
+            return null;
+        });
+        CountDownLatch ran = new CountDownLatch(1);
+        ConversionWorkerPool.Job<Object> queued = pool.submit("queued", ow, 0, () -> {
+            ran.countDown();
+            return null;
+        });
+        queued.cancel();
+        try {
+            slow.get();
+            fail("slow job should time out");
+        }
+        catch (CancellationException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("slow timed out after 200 msec"));
+        }
+        assertTrue(ow.toString().contains("slow timed out"));
+        try {
+            queued.get();
+            fail("cancelled job should not run");
+        }
+        catch (CancellationException expected) {
+            assertEquals(1, ran.getCount());
+        }
+
+        // job ignoring interruption is abandoned, and a replacement worker runs the next job
+        AtomicBoolean release = new AtomicBoolean();
+        ConversionWorkerPool.Job<Object> stuck = pool.submit("stuck", null, 100, () -> {
+            while (!release.get())
+                Thread.onSpinWait();
+            return null;
+        });
+        ConversionWorkerPool.Job<String> next = pool.submit("next", null, 0, () -> "done");
+        assertEquals("done", next.get());
+        assertFalse(stuck.getRunNanos() == 0);
+        release.set(true);
+        pool.shutdown();
+    }
+}
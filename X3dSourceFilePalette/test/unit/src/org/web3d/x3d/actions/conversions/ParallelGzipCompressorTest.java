@@ -0,0 +1,166 @@
+package org.web3d.x3d.actions.conversions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that block-parallel gzip output is a standard gzip stream matching its input, and (via main)
+ * compares time and size with the prior single-threaded GZIPOutputStream copy through a 4 KB buffer.
+ *
+ * @author agent
+ */
+public class ParallelGzipCompressorTest {
+
+    public static void main(String args[]) throws Exception {
+        int megabytes = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        File source = File.createTempFile("terrain", ".x3d");
+        File output = File.createTempFile("terrain", ".x3d.gz");
+        Files.write(source.toPath(), buildTerrain(megabytes * 1024 * 1024, new Random(18)));
+        ParallelGzipCompressor compressor = new ParallelGzipCompressor();
+        for (int warmup = 0; warmup < 2; warmup++) {
+            priorGzip(source, output);
+            compressor.compress(source, output);
+        }
+        long start = System.nanoTime();
+        priorGzip(source, output);
+        long priorNanos = System.nanoTime() - start;
+        long priorBytes = output.length();
+        System.out.println(source.length() + " bytes, " + Runtime.getRuntime().availableProcessors() + " processors");
+        System.out.println("  prior GZIPOutputStream, 4 KB buffer: " + ParallelGzipCompressor.describe(source.length(), priorBytes, priorNanos));
+        for (int parallelism : new int[] {1, 2, 4, Runtime.getRuntime().availableProcessors()}) {
+            compressor.setParallelism(parallelism);
+            start = System.nanoTime();
+            long bytes = compressor.compress(source, output);
+            System.out.printf("  parallel blocks, %2d threads:          %s%n", parallelism,
+                              ParallelGzipCompressor.describe(source.length(), bytes, System.nanoTime() - start));
+        }
+        source.delete();
+        output.delete();
+    }
+
+    /** ElevationGrid heights as exported by terrain tools, compressible but not trivially so */
+    static byte[] buildTerrain(int size, Random random) {
+        StringBuilder text = new StringBuilder(size + 100);
+        text.append("<X3D profile='Interchange' version='4.0'>\n<Scene>\n<Shape><ElevationGrid height='");
+        float height = 100;
+        while (text.length() < size) {
+            height += (random.nextFloat() - 0.5f) * 2;
+            text.append(Math.round(height * 100) / 100f).append(' ');
+        }
+        text.append("'/></Shape>\n</Scene>\n</X3D>\n");
+        return text.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    /** Prior GzipX3dAction copy loop */
+    static void priorGzip(File source, File output) throws IOException {
+        try (InputStream fis = Files.newInputStream(source.toPath());
+             OutputStream gzos = new GZIPOutputStream(Files.newOutputStream(output.toPath()))) {
+            byte[] buf = new byte[4096];
+            int ret;
+            while ((ret = fis.read(buf)) > 0)
+                gzos.write(buf, 0, ret);
+        }
+    }
+
+    static byte[] gunzip(File file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File directory = Files.createTempDirectory("gzipTest").toFile();
+        File source = new File(directory, "terrain.x3d");
+        File output = new File(directory, "terrain.x3d.gz");
+        byte[] input = buildTerrain(1024 * 1024 + 12345, new Random(2026)); // blocks end mid-number, last block partial
+        Files.write(source.toPath(), input);
+
+        ParallelGzipCompressor compressor = new ParallelGzipCompressor();
+        compressor.setBlockSize(64 * 1024);
+        for (int parallelism : new int[] {1, 4}) {
+            compressor.setParallelism(parallelism);
+            long bytes = compressor.compress(source, output);
+            assertEquals(output.length(), bytes);
+            assertArrayEquals(input, gunzip(output));
+        }
+        // dictionary priming keeps ratio close to a single stream
+        File prior = new File(directory, "prior.x3d.gz");
+        priorGzip(source, prior);
+        assertTrue(output.length() + " vs " + prior.length(), output.length() < prior.length() * 1.01);
+
+        compressor.setLevel(1);
+        assertArrayEquals(input, gunzip(compress(compressor, source, output)));
+        assertTrue(output.length() > prior.length());
+        compressor.setLevel(0); // stored blocks
+        assertArrayEquals(input, gunzip(compress(compressor, source, output)));
+        assertTrue(output.length() > input.length);
+    }
+
+    private static File compress(ParallelGzipCompressor compressor, File source, File output) throws IOException {
+        compressor.compress(source, output);
+        return output;
+    }
+
+    @Test
+    public void testEmptyAndSmallFiles() throws Exception {
+        File directory = Files.createTempDirectory("gzipTest").toFile();
+        File output = new File(directory, "out.gz");
+        ParallelGzipCompressor compressor = new ParallelGzipCompressor();
+        for (int size : new int[] {0, 1, 100}) {
+            File source = new File(directory, "scene" + size + ".wrl");
+            byte[] input = new byte[size];
+            Arrays.fill(input, (byte) 'x');
+            Files.write(source.toPath(), input);
+            compressor.compress(source, output);
+            assertArrayEquals(input, gunzip(output));
+        }
+        try {
+            compressor.compress(new File(directory, "missing.x3d"), output);
+            fail("missing source should be reported");
+        }
+        catch (IOException expected) {
+            assertFalse(output.exists()); // partial output removed
+        }
+        try {
+            compressor.setLevel(10);
+            fail("level beyond 9 should be rejected");
+        }
+        catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCrc32Combine() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            byte[] first  = new byte[random.nextInt(5000)];
+            byte[] second = new byte[random.nextInt(5000)];
+            random.nextBytes(first);
+            random.nextBytes(second);
+            CRC32 whole = new CRC32();
+            whole.update(first);
+            whole.update(second);
+            assertEquals(whole.getValue(), ParallelGzipCompressor.crc32Combine(crc(first), crc(second), second.length));
+        }
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+}
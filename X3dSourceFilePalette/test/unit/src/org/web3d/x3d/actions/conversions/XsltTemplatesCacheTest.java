@@ -0,0 +1,120 @@
+package org.web3d.x3d.actions.conversions;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.xml.transform.Templates;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that XsltTemplatesCache returns the same compiled stylesheet for repeated requests, recompiles
+ * after the stylesheet file changes, and keeps stylesheets compiled with different URIResolvers apart,
+ * and (via main) compares a cache hit with compiling the stylesheet on every run.
+ *
+ * @author agent
+ */
+public class XsltTemplatesCacheTest {
+
+    private static final String INCLUDING =
+        "<xsl:stylesheet version='2.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>" +
+        "<xsl:output method='text'/><xsl:include href='part.xslt'/>" +
+        "<xsl:template match='/'><xsl:call-template name='part'/></xsl:template></xsl:stylesheet>";
+
+    private File stylesheet;
+
+    public static void main(String args[]) throws Exception {
+        int runs = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+        StringBuilder sb = new StringBuilder("<xsl:stylesheet version='2.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>");
+        for (int i = 0; i < 500; i++)
+            sb.append("<xsl:template match='Node").append(i).append("[@DEF]'><xsl:value-of select='concat(@DEF, \" \", count(*))'/></xsl:template>");
+        sb.append("</xsl:stylesheet>");
+        File file = File.createTempFile("XsltTemplatesCacheBenchmark", ".xslt");
+        Files.writeString(file.toPath(), sb, StandardCharsets.UTF_8);
+
+        long start = System.nanoTime();
+        XsltTemplatesCache.getSaxonTemplates(file.getPath(), true, null, null);
+        long firstNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+            XsltTemplatesCache.getSaxonTemplates(file.getPath(), true, null, null);
+        long hitNanos = (System.nanoTime() - start) / runs;
+        start = System.nanoTime();
+        for (int i = 0; i < runs; i++) // prior approach: new factory and compilation for every conversion
+            new net.sf.saxon.TransformerFactoryImpl(XsltTemplatesCache.newSaxonConfiguration()).newTemplates(new StreamSource(file));
+        long compileNanos = (System.nanoTime() - start) / runs;
+        file.delete();
+
+        System.out.println("stylesheet of " + sb.length() + " characters, " + XsltTemplatesCache.getStatistics());
+        System.out.printf("  first request, compiled:   %10.3f msec%n", firstNanos   / 1e6);
+        System.out.printf("  later requests, cache hit: %10.3f msec%n", hitNanos     / 1e6);
+        System.out.printf("  prior, compiled every run: %10.3f msec%n", compileNanos / 1e6);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        stylesheet = File.createTempFile("XsltTemplatesCacheTest", ".xslt");
+        Files.writeString(stylesheet.toPath(), INCLUDING, StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() {
+        stylesheet.delete();
+    }
+
+    @Test
+    public void testCacheHit() throws Exception {
+        URIResolver resolver = part("first");
+        Templates templates = XsltTemplatesCache.getSaxonTemplates(stylesheet.getPath(), true, null, resolver);
+        assertSame(templates, XsltTemplatesCache.getSaxonTemplates(stylesheet.getPath(), true, null, resolver));
+        assertEquals("first", transform(templates));
+    }
+
+    @Test
+    public void testRecompiledWhenStylesheetChanges() throws Exception {
+        URIResolver resolver = part("first");
+        Templates templates = XsltTemplatesCache.getSaxonTemplates(stylesheet.getPath(), true, null, resolver);
+        Files.writeString(stylesheet.toPath(), INCLUDING.replace("<xsl:call-template name='part'/>", "changed "), StandardCharsets.UTF_8);
+        assertTrue(stylesheet.setLastModified(stylesheet.lastModified() + 2000)); // same size would otherwise match within timestamp resolution
+
+        Templates recompiled = XsltTemplatesCache.getSaxonTemplates(stylesheet.getPath(), true, null, resolver);
+        assertNotSame(templates, recompiled);
+        assertEquals("changed ", transform(recompiled));
+        assertSame(recompiled, XsltTemplatesCache.getSaxonTemplates(stylesheet.getPath(), true, null, resolver));
+    }
+
+    @Test
+    public void testResolverIsPartOfKey() throws Exception {
+        URIResolver first  = part("first");
+        URIResolver second = part("second");
+        Templates firstTemplates  = XsltTemplatesCache.getSaxonTemplates(stylesheet.getPath(), true, null, first);
+        Templates secondTemplates = XsltTemplatesCache.getSaxonTemplates(stylesheet.getPath(), true, null, second);
+        assertNotSame(firstTemplates, secondTemplates);
+        assertEquals("first",  transform(firstTemplates));
+        assertEquals("second", transform(secondTemplates));
+        assertSame(firstTemplates, XsltTemplatesCache.getSaxonTemplates(stylesheet.getPath(), true, null, first));
+    }
+
+    /** resolver supplying part.xslt, whose named template writes given text */
+    private static URIResolver part(String text) {
+        return (href, base) -> href.endsWith("part.xslt")
+            ? new StreamSource(new StringReader("<xsl:stylesheet version='2.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>" +
+                  "<xsl:template name='part'>" + text + "</xsl:template></xsl:stylesheet>"), "part.xslt")
+            : null;
+    }
+
+    private static String transform(Templates templates) throws Exception {
+        StringWriter result = new StringWriter();
+        templates.newTransformer().transform(new StreamSource(new StringReader("<X3D/>")), new StreamResult(result));
+        return result.toString();
+    }
+}
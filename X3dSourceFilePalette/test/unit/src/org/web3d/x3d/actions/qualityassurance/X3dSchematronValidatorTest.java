@@ -0,0 +1,163 @@
+package org.web3d.x3d.actions.qualityassurance;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks in-memory chaining of SVRL into the text report, diagnostic collection and line location, and
+ * (via main) compares wall-clock time and temp-file bytes of the prior two-file approach on a large scene.
+ *
+ * @author agent
+ */
+public class X3dSchematronValidatorTest {
+
+    /** Minimal stand-in for X3dSchematronValidityChecks.xslt: Shape without geometry fails, Group reports */
+    static final String CHECKS =
+        "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform' xmlns:svrl='http://purl.oclc.org/dsdl/svrl'>" +
+        "<xsl:template match='/'><svrl:schematron-output>" +
+        "<xsl:for-each select='//Shape'><svrl:fired-rule context='Shape' id='ShapeRule'/>" +
+        "<xsl:if test='not(Box|Sphere)'><svrl:failed-assert test='Box|Sphere'>" +
+        "<xsl:attribute name='location'><xsl:call-template name='path'/></xsl:attribute>" +
+        "<svrl:text>Shape  DEF='<xsl:value-of select='@DEF'/>'\n has no geometry</svrl:text></svrl:failed-assert></xsl:if></xsl:for-each>" +
+        "<xsl:for-each select='//Group'><svrl:successful-report role='warning' id='emptyGroup' test='not(*)'>" +
+        "<xsl:attribute name='location'><xsl:call-template name='path'/>/@DEF</xsl:attribute>" +
+        "<svrl:text>Group is empty</svrl:text></svrl:successful-report></xsl:for-each>" +
+        "</svrl:schematron-output></xsl:template>" +
+        "<xsl:template name='path'><xsl:for-each select='ancestor-or-self::*'>/*:<xsl:value-of select='local-name()'/>" +
+        "[namespace-uri()=''][<xsl:value-of select='count(preceding-sibling::*[local-name()=local-name(current())])+1'/>]</xsl:for-each></xsl:template>" +
+        "</xsl:stylesheet>";
+
+    /** Minimal stand-in for SvrlReportText.xslt */
+    static final String REPORT =
+        "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform' xmlns:svrl='http://purl.oclc.org/dsdl/svrl'>" +
+        "<xsl:output method='text'/>" +
+        "<xsl:template match='/'><xsl:for-each select='//svrl:failed-assert|//svrl:successful-report'>" +
+        "<xsl:value-of select='normalize-space(svrl:text)'/><xsl:text>&#10;</xsl:text></xsl:for-each></xsl:template>" +
+        "</xsl:stylesheet>";
+
+    static final URIResolver NO_INCLUDES = (href, base) -> new StreamSource(new StringReader(""));
+
+    public static void main(String args[]) throws Exception {
+        int shapeCount = (args.length > 0) ? Integer.parseInt(args[0]) : 50000;
+        TransformerFactory factory = TransformerFactory.newDefaultInstance(); // XSLT 1.0 stand-ins need no Saxon
+        Templates checks = factory.newTemplates(new StreamSource(new StringReader(CHECKS)));
+        Templates report = factory.newTemplates(new StreamSource(new StringReader(REPORT)));
+        String scene = buildScene(shapeCount);
+        long checksum = 0;
+        for (int warmup = 0; warmup < 3; warmup++)
+            checksum += twoFilePasses(scene, checks, report)[0] + inMemory(scene, checks, report).getDiagnostics().size();
+
+        int repeats = 5;
+        long tempBytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            tempBytes = twoFilePasses(scene, checks, report)[1];
+        long filesNanos = (System.nanoTime() - start) / repeats;
+        start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            checksum += inMemory(scene, checks, report).getDiagnostics().size();
+        long memoryNanos = (System.nanoTime() - start) / repeats;
+
+        System.out.println(shapeCount + " shapes, " + scene.length() + " characters, checksum " + checksum);
+        System.out.printf("  prior .svrl and .txt temp files:  %8.1f msec, %,d bytes written and read back%n", filesNanos / 1e6, tempBytes);
+        System.out.printf("  chained in memory, with location: %8.1f msec, 0 bytes%n", memoryNanos / 1e6);
+    }
+
+    /** Shapes grouped 100 per Transform, every tenth one missing geometry */
+    static String buildScene(int shapeCount) {
+        StringBuilder scene = new StringBuilder("<X3D profile='Interchange' version='4.0'>\n<Scene>\n");
+        for (int i = 0; i < shapeCount; i++) {
+            if (i % 100 == 0)
+                scene.append("  <Transform>\n");
+            if (i % 10 == 0)
+                scene.append("    <Shape DEF='S").append(i).append("'><Appearance/></Shape>\n");
+            else
+                scene.append("    <Shape><Box size='").append(i).append(" 1 1'/></Shape>\n");
+            if ((i % 100 == 99) || (i == shapeCount - 1))
+                scene.append("  </Transform>\n");
+        }
+        scene.append("  <Group DEF='G'/>\n</Scene>\n</X3D>\n");
+        return scene.toString();
+    }
+
+    /** Prior SchematronValidationAction approach: SVRL to temp file, then report to second temp file, then read */
+    static long[] twoFilePasses(String scene, Templates checks, Templates report) throws Exception {
+        File svrl = File.createTempFile("SchematronIntermediate", ".svrl");
+        File text = File.createTempFile("SchematronReport", ".txt");
+        try {
+            checks.newTransformer().transform(new StreamSource(new StringReader(scene)), new StreamResult(svrl));
+            report.newTransformer().transform(new StreamSource(svrl), new StreamResult(text));
+            long lines = Files.readAllLines(text.toPath(), StandardCharsets.UTF_8).size();
+            return new long[] {lines, 2 * (svrl.length() + text.length())};
+        }
+        finally {
+            svrl.delete();
+            text.delete();
+        }
+    }
+
+    static X3dSchematronValidator.Report inMemory(String scene, Templates checks, Templates report) throws Exception {
+        X3dSchematronValidator.Report result = X3dSchematronValidator.validate(new StreamSource(new StringReader(scene)), checks, report, NO_INCLUDES, null);
+        X3dSchematronValidator.locate(scene, result.getDiagnostics());
+        return result;
+    }
+
+    @Test
+    public void testDiagnosticsLocated() throws Exception {
+        TransformerFactory factory = TransformerFactory.newDefaultInstance(); // XSLT 1.0 stand-ins need no Saxon
+        Templates checks = factory.newTemplates(new StreamSource(new StringReader(CHECKS)));
+        Templates report = factory.newTemplates(new StreamSource(new StringReader(REPORT)));
+        String scene = buildScene(25);
+        X3dSchematronValidator.Report result = inMemory(scene, checks, report);
+
+        List<X3dSchematronValidator.Diagnostic> diagnostics = result.getDiagnostics();
+        assertEquals(4, diagnostics.size());
+        assertEquals(3, result.getErrorCount());
+        X3dSchematronValidator.Diagnostic second = diagnostics.get(1);
+        assertEquals("error", second.getSeverity());
+        assertEquals("ShapeRule", second.getRuleId());
+        assertEquals("Shape DEF='S10' has no geometry", second.getMessage());
+        assertEquals(14, second.getLine()); // X3D, Scene and Transform on lines 1 to 3, shape 10 on line 4 + 10
+        assertTrue(second.getColumn() > 0);
+        assertEquals("error [line 14, column " + second.getColumn() + "] ShapeRule: Shape DEF='S10' has no geometry", second.toString());
+
+        X3dSchematronValidator.Diagnostic group = diagnostics.get(3);
+        assertEquals("warning", group.getSeverity());
+        assertEquals("emptyGroup", group.getRuleId());
+        assertFalse(group.isError());
+        assertEquals(30, group.getLine());
+
+        // text report is still produced by the second stylesheet
+        String[] lines = result.getText().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("Group is empty", lines[3]);
+
+        // diagnostics only, as shown by the Schematron action: no text report pass
+        X3dSchematronValidator.Report diagnosticsOnly = inMemory(scene, checks, null);
+        assertNull(diagnosticsOnly.getText());
+        assertEquals(4, diagnosticsOnly.getDiagnostics().size());
+        assertEquals(second.toString(), diagnosticsOnly.getDiagnostics().get(1).toString());
+    }
+
+    @Test
+    public void testNormalizeLocation() {
+        assertEquals("/X3D[1]/Scene[1]", X3dSchematronValidator.normalizeLocation("/*:X3D[namespace-uri()=''][1]/*:Scene[namespace-uri()=''][1]/@DEF"));
+        assertEquals("/X3D[1]/Scene[1]/Shape[3]", X3dSchematronValidator.normalizeLocation("/Q{}X3D[1]/Q{}Scene[1]/Q{}Shape[3]"));
+        assertEquals("/X3D[1]/head[1]", X3dSchematronValidator.normalizeLocation("/X3D/head/text()[2]"));
+        assertEquals("", X3dSchematronValidator.normalizeLocation(""));
+        assertEquals("", X3dSchematronValidator.normalizeLocation(null));
+        assertEquals("", X3dSchematronValidator.normalizeLocation("Shape"));
+    }
+}
@@ -0,0 +1,217 @@
+package org.web3d.x3d.actions.qualityassurance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumSet;
+import java.util.List;
+import javax.swing.text.PlainDocument;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import org.web3d.x3d.X3DCatalog;
+import org.web3d.x3d.X3DTextSnapshot;
+import org.web3d.x3d.actions.qualityassurance.X3dValidationOrchestrator.Check;
+import org.web3d.x3d.actions.qualityassurance.X3dValidationOrchestrator.Stage;
+import org.web3d.x3d.tools.X3dDoctypeChecker;
+import org.web3d.x3d.tools.X3dValuesRegexChecker;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that concurrent single-parse validation merges diagnostics of every check in document order, and
+ * (via main) compares it with the prior sequence of checks that each re-read and re-parsed the scene.
+ *
+ * @author agent
+ */
+public class X3dValidationOrchestratorTest {
+
+    static final String DOCTYPE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<!DOCTYPE X3D PUBLIC \"ISO//Web3D//DTD X3D 4.0//EN\" \"https://www.web3d.org/specifications/x3d-4.0.dtd\">\n";
+
+    /** Minimal stand-in for X3dToX3dvClassicVrmlEncoding.xslt */
+    static final String CLASSIC_VRML =
+        "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>" +
+        "<xsl:output method='text'/>" +
+        "<xsl:template match='*'><xsl:value-of select='local-name()'/> { <xsl:apply-templates/> }</xsl:template>" +
+        "</xsl:stylesheet>";
+
+    public static void main(String args[]) throws Exception {
+        int shapeCount = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+        File stylesheets = createStylesheets();
+        File scene = new File(Files.createTempDirectory("orchestratorBenchmark").toFile(), "large.x3d");
+        Files.writeString(scene.toPath(), DOCTYPE + X3dSchematronValidatorTest.buildScene(shapeCount), StandardCharsets.UTF_8);
+        X3dValidationOrchestrator orchestrator = newOrchestrator(stylesheets);
+        TransformerFactory factory = TransformerFactory.newDefaultInstance(); // XSLT 1.0 stand-ins need no Saxon
+        Templates[] templates = {
+            factory.newTemplates(new StreamSource(new StringReader(X3dSchematronValidatorTest.CHECKS))),
+            factory.newTemplates(new StreamSource(new StringReader(X3dSchematronValidatorTest.REPORT))),
+            factory.newTemplates(new StreamSource(new StringReader(CLASSIC_VRML)))};
+        long checksum = 0;
+        for (int warmup = 0; warmup < 2; warmup++)
+            checksum += priorSequence(scene, templates) + orchestrator.validate(scene).getDiagnostics().size();
+
+        int repeats = 3;
+        long start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            checksum += priorSequence(scene, templates);
+        long priorNanos = (System.nanoTime() - start) / repeats;
+        X3dValidationOrchestrator.Result result = null;
+        start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            result = orchestrator.validate(scene);
+        long orchestratedNanos = (System.nanoTime() - start) / repeats;
+
+        System.out.println(shapeCount + " shapes, " + scene.length() + " bytes, " + Runtime.getRuntime().availableProcessors()
+                         + " processors, checksum " + checksum);
+        System.out.printf("  prior sequence, one read and parse per check: %8.1f msec%n", priorNanos / 1e6);
+        System.out.printf("  orchestrated, two parses, checks concurrent:  %8.1f msec%n", orchestratedNanos / 1e6);
+        System.out.print(result.formatTimings());
+    }
+
+    static X3dValidationOrchestrator newOrchestrator(File stylesheets) {
+        X3dValidationOrchestrator orchestrator = new X3dValidationOrchestrator();
+        orchestrator.setStylesheetDirectory(stylesheets);
+        return orchestrator;
+    }
+
+    static File createStylesheets() throws IOException {
+        File directory = Files.createTempDirectory("orchestratorStylesheets").toFile();
+        Files.writeString(new File(directory, "X3dSchematronValidityChecks.xslt").toPath(), X3dSchematronValidatorTest.CHECKS, StandardCharsets.UTF_8);
+        Files.writeString(new File(directory, "SvrlReportText.xslt").toPath(),              X3dSchematronValidatorTest.REPORT, StandardCharsets.UTF_8);
+        Files.writeString(new File(directory, "X3dToX3dvClassicVrmlEncoding.xslt").toPath(), CLASSIC_VRML,                     StandardCharsets.UTF_8);
+        return directory;
+    }
+
+    /** Prior ComprehensiveValidationAction order, each check reading and parsing the file itself */
+    static long priorSequence(File scene, Templates[] templates) throws Exception {
+        long count = 0;
+        sceneSource(scene).getXMLReader().parse(sceneSource(scene).getInputSource()); // well formed
+        for (X3dGrammarValidator.Grammar grammar : X3dGrammarValidator.Grammar.values()) {
+            String text = Files.readString(scene.toPath(), StandardCharsets.UTF_8);
+            X3dGrammarValidator.validate(text, scene.toURI().toString(), grammar, new PrintWriter(new StringWriter()));
+        }
+        count += new X3dDoctypeChecker().processScene(scene.getPath()).length();
+        count += new X3dValuesRegexChecker(scene.getPath()).processScene().length();
+        File svrl = File.createTempFile("SchematronIntermediate", ".svrl");
+        File report = File.createTempFile("SchematronReport", ".txt");
+        templates[0].newTransformer().transform(sceneSource(scene), new StreamResult(svrl));
+        templates[1].newTransformer().transform(new StreamSource(svrl), new StreamResult(report));
+        count += Files.readAllLines(report.toPath()).size();
+        svrl.delete();
+        report.delete();
+        templates[2].newTransformer().transform(sceneSource(scene), new StreamResult(new StringWriter()));
+        return count;
+    }
+
+    /** Scene parsed with DOCTYPE resolved locally, as X3D-Edit parsers do */
+    static SAXSource sceneSource(File scene) throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        reader.setEntityResolver(X3DCatalog.getInstance());
+        return new SAXSource(reader, new InputSource(scene.toURI().toString()));
+    }
+
+    @Test
+    public void testMergedInDocumentOrder() throws Exception {
+        File scene = new File(Files.createTempDirectory("orchestratorTest").toFile(), "problems.x3d");
+        Files.writeString(scene.toPath(), DOCTYPE +                     // lines 1 and 2
+            "<X3D profile='Interchange' version='4.0'>\n" +             // 3
+            "<Scene>\n" +                                               // 4
+            "<Transform>\n" +                                           // 5
+            "  <Shape DEF='S0'><Appearance/></Shape>\n" +               // 6, Schematron error
+            "  <Shape><Box size='1 1 1'/></Shape>\n" +                  // 7
+            "</Transform>\n" +                                          // 8
+            "<Bogus/>\n" +                                              // 9, DTD and schema errors
+            "<Group DEF='G'/>\n" +                                      // 10, Schematron warning
+            "</Scene>\n" +
+            "</X3D>\n", StandardCharsets.UTF_8);
+        X3dValidationOrchestrator.Result result = newOrchestrator(createStylesheets()).validate(scene);
+
+        List<X3dValidationOrchestrator.Diagnostic> diagnostics = result.getDiagnostics();
+        int previousLine = 0;
+        for (X3dValidationOrchestrator.Diagnostic diagnostic : diagnostics) {
+            assertTrue(diagnostic.toString(), Math.max(diagnostic.getLine(), 0) >= previousLine);
+            previousLine = Math.max(diagnostic.getLine(), 0);
+        }
+        assertEquals(0, result.getErrorCount(Check.WELL_FORMED));
+        assertEquals(1, result.getErrorCount(Check.SCHEMATRON));
+        assertEquals(0, result.getErrorCount(Check.CLASSIC_VRML));
+        assertTrue(result.getErrorCount(Check.DTD)    > 0);
+        assertTrue(result.getErrorCount(Check.SCHEMA) > 0);
+        for (X3dValidationOrchestrator.Diagnostic diagnostic : diagnostics) {
+            if ((diagnostic.getCheck() == Check.DTD) || (diagnostic.getCheck() == Check.SCHEMA)) // Bogus, or content of Scene at its end tag;
+                assertTrue(diagnostic.toString(), (diagnostic.getLine() == 9) || (diagnostic.getLine() == 11)); // DTD-defaulted containerField not passed on to schema
+        }
+        assertEquals(9, find(diagnostics, Check.DTD,    "error").getLine());
+        assertEquals(9, find(diagnostics, Check.SCHEMA, "error").getLine());
+        assertEquals(6,  find(diagnostics, Check.SCHEMATRON, "error").getLine());
+        assertEquals(10, find(diagnostics, Check.SCHEMATRON, "warning").getLine());
+        assertEquals("X3D Schematron check error [line 6, column " + find(diagnostics, Check.SCHEMATRON, "error").getColumn()
+                   + "]: ShapeRule: Shape DEF='S0' has no geometry", find(diagnostics, Check.SCHEMATRON, "error").toString());
+
+        for (Stage stage : Stage.values()) {
+            assertTrue(stage.name(), result.hasRun(stage));
+            assertTrue(stage.name(), result.getNanos(stage) > 0);
+        }
+        List<Stage> criticalPath = result.getCriticalPath();
+        assertEquals(Stage.READ, criticalPath.get(0));
+        assertTrue(result.formatTimings().contains("critical path: read scene > "));
+    }
+
+    @Test
+    public void testNotWellFormed() throws Exception {
+        File scene = new File(Files.createTempDirectory("orchestratorTest").toFile(), "broken.x3d");
+        Files.writeString(scene.toPath(), "<X3D profile='Interchange' version='4.0'>\n<Scene>\n</X3D>\n", StandardCharsets.UTF_8);
+        X3dValidationOrchestrator orchestrator = newOrchestrator(createStylesheets());
+        orchestrator.setStages(EnumSet.of(Stage.SCHEMATRON));
+        X3dValidationOrchestrator.Result result = orchestrator.validate(scene);
+
+        assertEquals(1, result.getErrorCount(Check.WELL_FORMED));
+        assertEquals(3, find(result.getDiagnostics(), Check.WELL_FORMED, "fatal").getLine());
+        assertTrue(find(result.getDiagnostics(), Check.SCHEMATRON, "info").getMessage().startsWith("skipped"));
+        assertTrue(result.hasRun(Stage.TREE));      // prerequisites of requested stage
+        assertTrue(result.hasRun(Stage.STREAMING));
+        assertFalse(result.hasRun(Stage.REGEX));
+        assertFalse(result.hasRun(Check.CLASSIC_VRML));
+    }
+
+    @Test
+    public void testUnsavedSnapshot() throws Exception {
+        File scene = new File(Files.createTempDirectory("orchestratorTest").toFile(), "saved.x3d");
+        String saved = DOCTYPE + "<X3D profile='Interchange' version='4.0'>\n<Scene>\n<Group DEF='G'/>\n</Scene>\n</X3D>\n";
+        Files.writeString(scene.toPath(), saved, StandardCharsets.UTF_8);
+        PlainDocument document = new PlainDocument();
+        document.insertString(0, saved, null);
+        document.insertString(saved.indexOf("<Group"), "<Bogus/>\n", null); // unsaved edit, line 5
+        X3DTextSnapshot snapshot = X3DTextSnapshot.of(document, scene.toURI().toString(), scene, true);
+        X3dValidationOrchestrator.Result result = newOrchestrator(createStylesheets()).validate(snapshot);
+
+        assertEquals(5, find(result.getDiagnostics(), Check.DTD, "error").getLine());
+        assertEquals(6, find(result.getDiagnostics(), Check.SCHEMATRON, "warning").getLine());
+        assertTrue(result.hasRun(Stage.DOCTYPE));   // file-based checkers given a copy of editor text
+        assertTrue(result.hasRun(Stage.REGEX));
+        assertEquals(saved, Files.readString(scene.toPath(), StandardCharsets.UTF_8)); // scene file not saved
+    }
+
+    static X3dValidationOrchestrator.Diagnostic find(List<X3dValidationOrchestrator.Diagnostic> diagnostics, Check check, String severity) {
+        for (X3dValidationOrchestrator.Diagnostic diagnostic : diagnostics) {
+            if ((diagnostic.getCheck() == check) && diagnostic.getSeverity().equals(severity))
+                return diagnostic;
+        }
+        fail("no " + severity + " from " + check + " in " + diagnostics);
+        return null;
+    }
+}
@@ -0,0 +1,136 @@
+package org.web3d.x3d.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumSet;
+
+import org.junit.Test;
+import org.web3d.x3d.actions.conversions.BatchConversionEngine.Conversion;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks command-line parsing and a headless run over a small tree holding scenes and a BVH motion file,
+ * and (via main) reports single-JVM throughput for a large tree of generated scenes.
+ *
+ * @author agent
+ */
+public class X3dEditCommandLineTest {
+
+    static final String STYLESHEET =
+        "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>" +
+        "<xsl:output method='text'/>" +
+        "<xsl:template match='/'>{ \"shapes\": <xsl:value-of select='count(//Shape)'/> }</xsl:template>" +
+        "</xsl:stylesheet>";
+
+    static final String MOTION =
+        "HIERARCHY\nROOT Hips\n{\n\tOFFSET 0.00 0.00 0.00\n\tCHANNELS 6 Xposition Yposition Zposition Zrotation Xrotation Yrotation\n" +
+        "\tJOINT Chest\n\t{\n\t\tOFFSET 0.00 5.21 0.00\n\t\tCHANNELS 3 Zrotation Xrotation Yrotation\n" +
+        "\t\tEnd Site\n\t\t{\n\t\t\tOFFSET 0.00 4.0 0.00\n\t\t}\n\t}\n}\n" +
+        "MOTION\nFrames: 2\nFrame Time: 0.033333\n" +
+        "8.03 35.01 88.36 -3.41 14.78 -164.35 13.09 40.30 -24.60\n" +
+        "7.81 35.10 86.47 -3.78 12.94 -166.97 12.64 42.57 -22.34\n";
+
+    public static void main(String args[]) throws Exception {
+        int sceneCount = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+        File root = Files.createTempDirectory("commandLineBenchmark").toFile();
+        File stylesheets = createStylesheets();
+        for (int i = 0; i < sceneCount; i++) {
+            File directory = new File(root, "archive" + (i % 100));
+            directory.mkdirs();
+            writeScene(new File(directory, "scene" + i + ".x3d"), 5 + (i % 10) * 20);
+        }
+        long start = System.nanoTime();
+        int status = X3dEditCommandLine.run(new String[] {"--convert", "json,gzip", "--stylesheets", stylesheets.getPath(), "--quiet",
+                                                          "--report", new File(root, "report.txt").getPath(), root.getPath()},
+                                            System.out, System.err);
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d scenes, exit status %d, %d msec, %.2f msec per scene%n", sceneCount, status, elapsed / 1000000,
+                          elapsed / 1000000.0 / sceneCount);
+    }
+
+    static File createStylesheets() throws Exception {
+        File directory = Files.createTempDirectory("commandLineStylesheets").toFile();
+        Files.writeString(new File(directory, "X3dToJson.xslt").toPath(), STYLESHEET, StandardCharsets.UTF_8);
+        return directory;
+    }
+
+    static void writeScene(File file, int shapeCount) throws Exception {
+        StringBuilder scene = new StringBuilder("<X3D profile='Interchange' version='4.0'><Scene>");
+        for (int i = 0; i < shapeCount; i++)
+            scene.append("<Shape><Box size='").append(i).append(" 1 1'/></Shape>");
+        scene.append("</Scene></X3D>");
+        Files.writeString(file.toPath(), scene, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testParseOptions() {
+        X3dEditCommandLine.Options options = X3dEditCommandLine.parseOptions(
+            new String[] {"--convert", "JSON, classic-vrml", "--check", "dtd,schematron", "--threads", "3", "a.x3d", "dir"});
+        assertEquals(EnumSet.of(Conversion.JSON, Conversion.CLASSIC_VRML, Conversion.DTD_VALIDATION, Conversion.SCHEMATRON),
+                     options.conversions);
+        assertEquals(3, options.threads);
+        assertEquals(2, options.paths.size());
+
+        options = X3dEditCommandLine.parseOptions(new String[] {"--cadfilter", "IFSToITS,Center", "a.x3d"});
+        assertTrue(options.conversions.contains(Conversion.CAD_FILTER));
+        assertEquals(2, options.cadFilters.size());
+
+        for (String[] args : new String[][] {{"--convert", "pdf", "a.x3d"}, {"--check", "json", "a.x3d"}, {"--threads", "0", "a.x3d"},
+                                             {"--frobnicate", "a.x3d"}, {"--convert"}, {"--quiet"}}) {
+            try {
+                X3dEditCommandLine.parseOptions(args);
+                fail("should reject " + String.join(" ", args));
+            }
+            catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testRunTree() throws Exception {
+        File root = Files.createTempDirectory("commandLineTest").toFile();
+        File sub = new File(root, "sub");
+        sub.mkdir();
+        writeScene(new File(root, "one.x3d"), 2);
+        writeScene(new File(sub, "two.x3d"), 3);
+        Files.writeString(new File(sub, "walk.bvh").toPath(), MOTION, StandardCharsets.UTF_8);
+        File report = new File(root, "report.txt");
+
+        int status = X3dEditCommandLine.run(new String[] {"--convert", "json", "--threads", "2", "--stylesheets", createStylesheets().getPath(),
+                                                          "--quiet", root.getPath()},
+                                            new PrintStream(new ByteArrayOutputStream()), System.err);
+        assertEquals(0, status);
+        assertEquals("{ \"shapes\": 3 }", Files.readString(new File(sub, "two.json").toPath(), StandardCharsets.UTF_8));
+
+        // motion converted first, then gets requested conversions too; gzip needs no DTD for the HAnim scene
+        status = X3dEditCommandLine.run(new String[] {"--convert", "gzip", "--bvh", "--report", report.getPath(), root.getPath()},
+                                        new PrintStream(new ByteArrayOutputStream()), System.err);
+        assertEquals(0, status);
+        assertTrue(Files.readString(new File(sub, "walk.x3d").toPath(), StandardCharsets.UTF_8).contains("HAnimHumanoid"));
+        assertTrue(new File(sub, "walk.x3d.gz").isFile());
+        assertTrue(new File(root, "one.x3d.gz").isFile());
+        String reportText = Files.readString(report.toPath(), StandardCharsets.UTF_8);
+        assertTrue(reportText, reportText.contains("3 conversions, 0 failed"));
+        assertTrue(reportText, reportText.contains("BVH_TO_X3D"));
+
+        // with --output, the motion scene and its results mirror the motion's subdirectory as other results do
+        File output = Files.createTempDirectory("commandLineOutput").toFile();
+        status = X3dEditCommandLine.run(new String[] {"--convert", "gzip", "--bvh", "--output", output.getPath(), "--quiet", sub.getPath(), new File(root, "one.x3d").getPath()},
+                                        new PrintStream(new ByteArrayOutputStream()), System.err);
+        assertEquals(0, status);
+        assertTrue(new File(output, "sub/walk.x3d").isFile());
+        assertTrue(new File(output, "sub/walk.x3d.gz").isFile());
+        assertTrue(new File(output, "sub/two.x3d.gz").isFile());
+        assertTrue(new File(output, "one.x3d.gz").isFile());
+        assertFalse(new File(output, "walk.x3d").exists());
+
+        status = X3dEditCommandLine.run(new String[] {"--convert", "gzip", new File(root, "missing.x3d").getPath()},
+                                        new PrintStream(new ByteArrayOutputStream()), new PrintStream(new ByteArrayOutputStream()));
+        assertEquals(2, status);
+    }
+}
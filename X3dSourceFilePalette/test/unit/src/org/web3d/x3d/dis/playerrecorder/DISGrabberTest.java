@@ -0,0 +1,229 @@
+package org.web3d.x3d.dis.playerrecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.web3d.x3d.dis.playerrecorder.DISGrabber.*;
+
+/**
+ * Checks ring buffer order and overflow accounting, and that a capture of a local multicast burst writes
+ * every kept PDU with a matching index record; the burst is skipped where multicast loopback is unavailable.
+ * Run main as a benchmark to compare received, written and dropped counts with the prior capture loop that
+ * wrote each packet on the receive thread.
+ *
+ * @author agent
+ */
+public class DISGrabberTest {
+
+    static final int ENTITY_STATE_LENGTH = 144;
+
+    public static void main(String args[]) throws Exception {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+        InetAddress group = InetAddress.getByName(DEFAULT_ADDRESS);
+        for (int trial = 0; trial < 2; trial++) { // first trial warms up
+            int port = 3100 + trial;
+            PriorGrabber prior = new PriorGrabber(group, port);
+            prior.start();
+            long nanos = send(group, port, count);
+            Thread.sleep(500);
+            prior.stop();
+            report("prior, writes on receive thread", count, nanos, prior.received, prior.received, count - prior.received);
+
+            DISGrabber grabber = new DISGrabber(group, port + 10, Long.MAX_VALUE);
+            grabber.start();
+            nanos = send(group, port + 10, count);
+            Thread.sleep(500);
+            grabber.stop();
+            while (grabber.isRunning())
+                Thread.sleep(10);
+            report("ring buffer and batched writer", count, nanos, grabber.getReceivedCount(), grabber.getWrittenCount(),
+                   count - grabber.getWrittenCount());
+            System.out.println("    dropped on ring overflow " + grabber.getDroppedCount() + ", queue high-water mark " +
+                               grabber.getQueueHighWaterMark() + " of " + grabber.getQueueCapacity());
+        }
+    }
+
+    private static void report(String name, int sent, long sendNanos, long received, long written, long lost) {
+        System.out.printf("  %-32s sent %,d at %,.0f PDU/s: received %,d, written %,d, lost %,d%n",
+                          name, sent, sent / (sendNanos / 1e9), received, written, lost);
+    }
+
+    /** EntityState-sized PDU with sequence number after the 12-byte header */
+    static byte[] pdu(int sequence) {
+        ByteBuffer pdu = ByteBuffer.allocate(ENTITY_STATE_LENGTH);
+        pdu.put((byte) 7).put((byte) 1).put((byte) 1).put((byte) 1); // version, exercise, EntityState, family
+        pdu.putInt(sequence);                                          // timestamp
+        pdu.putShort(PDU_LENGTH_FIELD_OFFSET, (short) ENTITY_STATE_LENGTH);
+        pdu.putInt(PDU_HEADER_LENGTH, sequence);
+        return pdu.array();
+    }
+
+    /** Send as fast as the socket allows */
+    static long send(InetAddress group, int port, int count) throws IOException {
+        try (MulticastSocket sender = new MulticastSocket()) {
+            sender.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = pdu(i);
+                sender.send(new DatagramPacket(bytes, bytes.length, group, port));
+            }
+            return System.nanoTime() - start;
+        }
+    }
+
+    /** @return whether a datagram sent to group reaches a socket joined to it on this host */
+    static boolean multicastLoopbackAvailable(InetAddress group, int port) {
+        try (MulticastSocket socket = new MulticastSocket(port)) {
+            socket.joinGroup(new InetSocketAddress(group, port), null);
+            socket.setSoTimeout(2000);
+            send(group, port, 1);
+            byte[] buffer = new byte[MAX_PDU_SIZE];
+            socket.receive(new DatagramPacket(buffer, buffer.length));
+            return true;
+        }
+        catch (IOException ex) {
+            return false; // no multicast capable interface, or receive timed out
+        }
+    }
+
+    /** Prior DISGrabber loop: per packet getFilePointer, data and index writes and length before receiving again */
+    static class PriorGrabber {
+        final MulticastSocket socket;
+        final RandomAccessFile randFile;
+        final RandomAccessFile randIndexFile;
+        volatile long received;
+        Thread thread;
+
+        PriorGrabber(InetAddress group, int port) throws IOException {
+            socket = new MulticastSocket(port);
+            socket.joinGroup(new InetSocketAddress(group, port), null);
+            File file = File.createTempFile("PriorGrabber", DEFAULT_BINARY_FILE_ENDING);
+            file.deleteOnExit();
+            File indexFile = new File(file.getPath() + ".idx");
+            indexFile.deleteOnExit();
+            randFile = new RandomAccessFile(file, "rw");
+            randIndexFile = new RandomAccessFile(indexFile, "rw");
+        }
+
+        void start() {
+            thread = new Thread(() -> {
+                byte[] buffer = new byte[MAX_PDU_SIZE];
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                ByteBuffer bb = ByteBuffer.allocate(IDXFILE_RECORD_SIZE);
+                try {
+                    while (true) {
+                        socket.receive(packet);
+                        bb.putLong(IDXFILE_FILEPTR_IDX, randFile.getFilePointer());
+                        bb.putLong(IDXFILE_RECDNANOTIME_IDX, System.nanoTime());
+                        bb.putInt(IDXFILE_RECORDSIZE_IDX, packet.getLength());
+                        randFile.write(buffer, 0, packet.getLength());
+                        randIndexFile.write(bb.array());
+                        randFile.length();
+                        received++;
+                    }
+                }
+                catch (IOException ex) {
+                    // socket closed
+                }
+            });
+            thread.start();
+        }
+
+        void stop() throws Exception {
+            socket.close();
+            thread.join();
+            randFile.close();
+            randIndexFile.close();
+        }
+    }
+
+    /** Receive into the ring without a socket, as the receive thread would */
+    private static void produce(DISCaptureRing ring, int sequence) {
+        DatagramPacket packet = ring.nextPacket();
+        byte[] bytes = pdu(sequence);
+        System.arraycopy(bytes, 0, packet.getData(), packet.getOffset(), bytes.length);
+        packet.setLength(bytes.length);
+        ring.commit(sequence * 1000L);
+    }
+
+    @Test
+    public void testRingOrderAndOverflow() {
+        DISCaptureRing ring = new DISCaptureRing(3, MAX_PDU_SIZE); // rounded up to 4
+        assertEquals(4, ring.getCapacity());
+        for (int i = 0; i < 6; i++)
+            produce(ring, i);
+        assertEquals(6, ring.getReceivedCount());
+        assertEquals(2, ring.getDroppedCount()); // newest dropped, oldest kept for writer
+        assertEquals(4, ring.getHighWaterMark());
+        assertEquals(4, ring.available());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(ENTITY_STATE_LENGTH, ring.getLength(i));
+            assertEquals(i * 1000L, ring.getNanoTime(i));
+            assertEquals(i, ByteBuffer.wrap(ring.getData(), ring.getOffset(i), ENTITY_STATE_LENGTH).getInt(ring.getOffset(i) + PDU_HEADER_LENGTH));
+        }
+        ring.release(3);
+        produce(ring, 6); // wraps around into a released slot
+        assertEquals(2, ring.available());
+        assertEquals(3000L, ring.getNanoTime(0));
+        assertEquals(6000L, ring.getNanoTime(1));
+        assertEquals(2, ring.getDroppedCount());
+    }
+
+    @Test
+    public void testCaptureBurst() throws Exception {
+        InetAddress group = InetAddress.getByName(DEFAULT_ADDRESS);
+        int port = 3200 + (int) (ProcessHandle.current().pid() % 500);
+        Assume.assumeTrue("multicast loopback unavailable", multicastLoopbackAvailable(group, port));
+        DISGrabber grabber = new DISGrabber(group, port, Long.MAX_VALUE);
+        grabber.setQueueCapacity(1024);
+        int[] notifications = new int[1];
+        grabber.addReceivedListener((instance, total) -> notifications[0]++);
+        grabber.start();
+        int count = 5000;
+        send(group, port, count);
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((grabber.getWrittenCount() + grabber.getDroppedCount() < count) && (System.currentTimeMillis() < deadline))
+            Thread.sleep(20);
+        grabber.stop();
+        while (grabber.isRunning())
+            Thread.sleep(10);
+
+        long written = grabber.getWrittenCount();
+        assertTrue("nothing captured", written > 0);
+        assertEquals(grabber.getReceivedCount() - grabber.getDroppedCount(), written);
+        assertTrue(grabber.getQueueHighWaterMark() <= grabber.getQueueCapacity());
+        assertTrue(notifications[0] > 0 && notifications[0] <= written); // batched
+        File[] files = grabber.getSaveFileSet();
+        byte[] data = Files.readAllBytes(files[0].toPath());
+        assertEquals(written * ENTITY_STATE_LENGTH, data.length);
+        assertEquals(written * IDXFILE_RECORD_SIZE, files[1].length());
+        byte[] index = Files.readAllBytes(files[1].toPath());
+        int lastSequence = -1;
+        long lastTime = -1;
+        for (int i = 0; i < written; i++) {
+            ByteBuffer record = ByteBuffer.wrap(index, i * IDXFILE_RECORD_SIZE, IDXFILE_RECORD_SIZE).slice();
+            assertEquals(1, record.get(2)); // EntityState type byte
+            long filePointer = record.getLong(IDXFILE_FILEPTR_IDX);
+            assertEquals((long) i * ENTITY_STATE_LENGTH, filePointer);
+            assertEquals(ENTITY_STATE_LENGTH, record.getInt(IDXFILE_RECORDSIZE_IDX));
+            long time = record.getLong(IDXFILE_RECDNANOTIME_IDX);
+            assertTrue(time >= lastTime);
+            lastTime = time;
+            int sequence = ByteBuffer.wrap(data).getInt((int) filePointer + PDU_HEADER_LENGTH);
+            assertTrue(sequence > lastSequence); // in order, gaps only where dropped
+            lastSequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package org.web3d.x3d.dis.playerrecorder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.web3d.x3d.dis.playerrecorder.DISGrabber.*;
+
+/**
+ * Checks index columns read through the mapping, refresh of a growing index with mappings grown in whole steps,
+ * list row removal and time search,
+ * and (via main) compares heap use and load time of the prior List of byte[] records with the mapped index, and
+ * seeking to a capture time by scanning records with binary search.
+ *
+ * @author agent
+ */
+public class DISPduIndexTest {
+
+    public static void main(String args[]) throws Exception {
+        int records = (args.length > 0) ? Integer.parseInt(args[0]) : 10_000_000; // several segments
+        File indexFile = File.createTempFile("DISPduIndexTest", DEFAULT_BINARY_INDEX_FILE_ENDING);
+        indexFile.deleteOnExit();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(indexFile), 1 << 20)) {
+            appendRecords(out, 0, records);
+        }
+        System.out.printf("%,d records, %,d byte index file%n", records, indexFile.length());
+
+        long before = usedHeap();
+        long start = System.nanoTime();
+        List<byte[]> prior = new ArrayList<>();
+        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(indexFile))) {
+            try {
+                do {
+                    byte[] buf = new byte[IDXFILE_RECORD_SIZE];
+                    if (bis.read(buf) != IDXFILE_RECORD_SIZE)
+                        break;
+                    prior.add(buf);
+                }
+                while (true);
+            }
+            catch (OutOfMemoryError ex) {
+                System.out.printf("  prior List<byte[]> ran out of heap after %,d records%n", prior.size());
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        if (prior.size() == records)
+            System.out.printf("  prior List<byte[]>: %8.1f msec, %,d bytes heap%n", nanos / 1e6, usedHeap() - before);
+        prior = null;
+
+        before = usedHeap();
+        start = System.nanoTime();
+        DISPduIndex index = new DISPduIndex(indexFile);
+        DISPduListModel model = new DISPduListModel();
+        model.setIndex(index);
+        nanos = System.nanoTime() - start;
+        long checksum = 0;
+        for (int i = 0; i < records; i++)
+            checksum += index.getFilePointer(i) + index.getLength(i);
+        System.out.printf("  mapped DISPduIndex: %8.1f msec, %,d bytes heap, %,d rows, checksum %d%n",
+                          nanos / 1e6, usedHeap() - before, model.getSize(), checksum);
+
+        Random random = new Random(25);
+        long[] targets = new long[100];
+        for (int i = 0; i < targets.length; i++)
+            targets[i] = (long) (random.nextDouble() * index.getDuration());
+        for (int trial = 0; trial < 2; trial++) { // first trial warms up
+            start = System.nanoTime();
+            checksum = 0;
+            for (long target : targets) { // prior way to a time, stepping through records
+                int record = 0;
+                while (record < index.size() && index.getNanoTime(record) < target)
+                    record++;
+                checksum += record;
+            }
+            long scanNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            long found = 0;
+            for (long target : targets)
+                found += index.findRecord(target);
+            nanos = System.nanoTime() - start;
+            System.out.printf("  seek to capture time: scan %10.3f msec, binary search %10.6f msec per seek (%s)%n",
+                              scanNanos / 1e6 / targets.length, nanos / 1e6 / targets.length, (found == checksum) ? "same records" : "differ");
+        }
+        index.close();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** Index records as DISGrabber writes them: PDU type cycles, 144-byte PDUs a millisecond apart */
+    static void appendRecords(OutputStream out, int first, int count) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(IDXFILE_RECORD_SIZE);
+        for (int i = first; i < first + count; i++) {
+            record.put(0, (byte) 7).put(1, (byte) 1).put(2, (byte) (1 + i % 72));
+            record.putLong(IDXFILE_FILEPTR_IDX, 144L * i);
+            record.putLong(IDXFILE_RECDNANOTIME_IDX, 1_000_000L * i);
+            record.putInt(IDXFILE_RECORDSIZE_IDX, 144);
+            out.write(record.array());
+        }
+    }
+
+    @Test
+    public void testColumnsAndRefresh() throws Exception {
+        File indexFile = File.createTempFile("DISPduIndexTest", DEFAULT_BINARY_INDEX_FILE_ENDING);
+        indexFile.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(indexFile)) {
+            appendRecords(out, 0, 100);
+            out.write(new byte[5]); // partial record still being written
+            out.flush();
+            try (DISPduIndex index = new DISPduIndex(indexFile)) {
+                assertEquals(100, index.size());
+                assertEquals(72, index.getPduType(71));
+                assertEquals(1, index.getPduType(72));
+                assertEquals(7, index.getHeaderByte(72, 0));
+                assertEquals(144L * 99, index.getFilePointer(99));
+                assertEquals(1_000_000L * 99, index.getNanoTime(99));
+                assertEquals(144, index.getLength(99));
+                try {
+                    index.getLength(100);
+                    fail("partial record should not be readable");
+                }
+                catch (IndexOutOfBoundsException expected) {
+                    // expected
+                }
+
+                out.getChannel().truncate(100L * IDXFILE_RECORD_SIZE);
+                out.getChannel().position(100L * IDXFILE_RECORD_SIZE);
+                appendRecords(out, 100, 50); // capture continues
+                assertEquals(100, index.size());
+                assertEquals(150, index.refresh());
+                assertEquals(144L * 149, index.getFilePointer(149));
+                assertEquals(144L * 50, index.getFilePointer(50)); // earlier records still mapped
+            }
+        }
+    }
+
+    @Test
+    public void testRemapInSteps() throws Exception {
+        File indexFile = File.createTempFile("DISPduIndexTest", DEFAULT_BINARY_INDEX_FILE_ENDING);
+        indexFile.deleteOnExit();
+        int step = DISPduIndex.RECORDS_PER_REMAP;
+        int written = 0;
+        try (FileOutputStream out = new FileOutputStream(indexFile);
+             DISPduIndex index = new DISPduIndex(indexFile)) {
+            for (int batch = 0; written < 2 * step + 10; batch++) { // small batches, as a capture flushes them
+                int count = 1 + batch % 700;
+                appendRecords(out, written, count);
+                written += count;
+                assertEquals(written, index.refresh());
+                assertEquals(written & -step, index.mappedSize()); // mapped only in whole steps
+                assertEquals(144L * (written - 1), index.getFilePointer(written - 1));
+            }
+            for (int i = 0; i < written; i++) { // mapped and heap tail records alike
+                assertEquals(144L * i, index.getFilePointer(i));
+                assertEquals(1_000_000L * i, index.getNanoTime(i));
+            }
+        }
+        try (DISPduIndex reopened = new DISPduIndex(indexFile)) {
+            assertEquals(written, reopened.size());
+            assertEquals(written & -step, reopened.mappedSize());
+            assertEquals(1_000_000L * (written - 1), reopened.getNanoTime(written - 1));
+        }
+    }
+
+    @Test
+    public void testListModel() throws Exception {
+        File indexFile = File.createTempFile("DISPduIndexTest", DEFAULT_BINARY_INDEX_FILE_ENDING);
+        indexFile.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(indexFile);
+             DISPduIndex index = new DISPduIndex(indexFile)) {
+            DISPduListModel model = new DISPduListModel();
+            List<String> events = new ArrayList<>();
+            model.addListDataListener(new ListDataListener() {
+                @Override
+                public void intervalAdded(ListDataEvent e) {
+                    events.add("+" + e.getIndex0() + "-" + e.getIndex1());
+                }
+
+                @Override
+                public void intervalRemoved(ListDataEvent e) {
+                    events.add("-" + e.getIndex0() + "-" + e.getIndex1());
+                }
+
+                @Override
+                public void contentsChanged(ListDataEvent e) {
+                    events.add("~" + e.getIndex0() + "-" + e.getIndex1());
+                }
+            });
+            model.setIndex(index);
+            assertEquals(0, model.getSize());
+            appendRecords(out, 0, 10);
+            assertEquals(10, model.refresh());
+            assertEquals(0, model.refresh());
+            assertEquals(Integer.valueOf(9), model.getElementAt(9));
+
+            model.remove(new int[] {2, 3, 7, 9});
+            assertEquals(6, model.getSize());
+            assertEquals(4, model.getRecord(2));
+            assertEquals(6, model.getRecord(4));
+            assertEquals(8, model.getRecord(5));
+
+            appendRecords(out, 10, 2); // rows added after removal follow on from last record, even if removed
+            assertEquals(2, model.refresh());
+            assertEquals(10, model.getRecord(6));
+            assertEquals(11, model.getRecord(7));
+            assertEquals(List.of("+0-9", "-6-9", "~2-5", "+6-7"), events);
+
+            model.clear();
+            assertEquals(0, model.getSize());
+            assertNull(model.getIndex());
+        }
+    }
+
+    @Test
+    public void testFindRecord() throws Exception {
+        File indexFile = File.createTempFile("DISPduIndexTest", DEFAULT_BINARY_INDEX_FILE_ENDING);
+        indexFile.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(indexFile);
+             DISPduIndex index = new DISPduIndex(indexFile)) {
+            assertEquals(0, index.findRecord(0));
+            assertEquals(0, index.getDuration());
+            appendRecords(out, 0, 1000); // a millisecond apart
+            index.refresh();
+            assertEquals(999_000_000L, index.getDuration());
+            assertEquals(0, index.findRecord(-5));
+            assertEquals(0, index.findRecord(0));
+            assertEquals(1, index.findRecord(1));
+            assertEquals(470, index.findRecord(470_000_000L));
+            assertEquals(471, index.findRecord(470_000_001L));
+            assertEquals(999, index.findRecord(999_000_000L));
+            assertEquals(1000, index.findRecord(999_000_001L)); // after last PDU
+
+            DISPduListModel model = new DISPduListModel();
+            model.setIndex(index);
+            assertEquals(470, model.findRow(470));
+            model.remove(new int[] {10, 11, 470});
+            assertEquals(9, model.findRow(9));
+            assertEquals(10, model.findRow(11)); // removed, so next row listed
+            assertEquals(468, model.findRow(470));
+            assertEquals(468, model.findRow(471));
+            assertEquals(997, model.findRow(1000));
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package org.web3d.x3d.dis.playerrecorder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.web3d.x3d.dis.playerrecorder.DISGrabber.*;
+
+/**
+ * Checks PDUs read from mapped capture segments, including ones crossing a segment boundary, a replay
+ * received over loopback multicast, time range replay forward, looped and reverse, and seeking while
+ * waiting for a distant PDU or paused, and (via main) compares as-fast-as-possible send rate of the prior
+ * RandomAccessFile and DatagramPacket replay path with sending from the mapping through a DatagramChannel.
+ *
+ * @author agent
+ */
+public class DISPlayerTest {
+
+    public static void main(String args[]) throws Exception {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 500000;
+        File[] files = writeCapture(count, 0);
+        InetAddress group = InetAddress.getByName(DEFAULT_ADDRESS);
+        System.out.printf("%,d PDUs of 144 to 1,344 bytes, %,d byte capture, sent as fast as possible, %d processors%n",
+                          count, files[0].length(), Runtime.getRuntime().availableProcessors());
+        for (int trial = 0; trial < 2; trial++) { // first trial warms up
+            int port = 3400 + trial;
+            long start = System.nanoTime();
+            priorReplay(files, group, port);
+            long priorNanos = System.nanoTime() - start;
+
+            DISPlayer player = new DISPlayer(files);
+            player.setMulticastGroup(group);
+            player.setPort(port);
+            player.setSpeed(DISReplayScheduler.AS_FAST_AS_POSSIBLE);
+            CountDownLatch stopped = new CountDownLatch(1);
+            player.addStoppedtListener(message -> stopped.countDown());
+            start = System.nanoTime();
+            player.start();
+            stopped.await();
+            long mappedNanos = System.nanoTime() - start;
+            System.out.printf("  prior RandomAccessFile, DatagramPacket: %,10.0f PDU/s%n", count / (priorNanos / 1e9));
+            System.out.printf("  mapped, DatagramChannel:               %,10.0f PDU/s%n", count / (mappedNanos / 1e9));
+        }
+    }
+
+    /** Prior DISPlayer per-PDU path, without its 10 msec fast-play sleep */
+    static void priorReplay(File[] files, InetAddress group, int port) throws IOException {
+        try (RandomAccessFile randFile = new RandomAccessFile(files[0], "rw");
+             RandomAccessFile randIndexFile = new RandomAccessFile(files[1], "rw");
+             MulticastSocket socket = new MulticastSocket(port)) {
+            socket.joinGroup(new InetSocketAddress(group, port), null);
+            byte[] indexBA = new byte[IDXFILE_RECORD_SIZE];
+            byte[] pktBA   = new byte[MAX_PDU_SIZE];
+            ByteBuffer byte2LongBB = ByteBuffer.allocate(IDXFILE_RECORD_SIZE);
+            ByteBuffer byte2wordBB = ByteBuffer.allocate(2);
+            for (int nextIndexRecord = 0; ; nextIndexRecord++) {
+                randIndexFile.seek(nextIndexRecord * indexBA.length);
+                if (randIndexFile.read(indexBA) != indexBA.length)
+                    break;
+                byte2LongBB.clear();
+                byte2LongBB.put(indexBA);
+                randFile.seek(byte2LongBB.getLong(IDXFILE_FILEPTR_IDX));
+                randFile.read(pktBA);
+                byte2wordBB.clear();
+                byte2wordBB.put(pktBA, PDU_LENGTH_FIELD_OFFSET, PDU_LENGTH_FIELD_LENGTH);
+                int len = byte2wordBB.getShort(0);
+                socket.send(new DatagramPacket(pktBA, len, group, port));
+            }
+        }
+    }
+
+    /** Length of PDU i, varied so that PDUs fall across segment boundaries */
+    static int length(int i) {
+        return 144 + 8 * (i % 151);
+    }
+
+    /** Capture and index files as DISGrabber writes them, each PDU holding its sequence number */
+    static File[] writeCapture(int count, long nanosApart) throws IOException {
+        File data = File.createTempFile("DISPlayerTest", DEFAULT_BINARY_FILE_ENDING);
+        File index = new File(data.getPath() + DEFAULT_BINARY_INDEX_FILE_ENDING);
+        data.deleteOnExit();
+        index.deleteOnExit();
+        try (OutputStream dataOut  = new BufferedOutputStream(new FileOutputStream(data), 1 << 20);
+             OutputStream indexOut = new BufferedOutputStream(new FileOutputStream(index), 1 << 20)) {
+            ByteBuffer record = ByteBuffer.allocate(IDXFILE_RECORD_SIZE);
+            long filePointer = 0;
+            for (int i = 0; i < count; i++) {
+                int length = length(i);
+                ByteBuffer pdu = ByteBuffer.allocate(length);
+                pdu.put((byte) 7).put((byte) 1).put((byte) 1).put((byte) 1);
+                pdu.putShort(PDU_LENGTH_FIELD_OFFSET, (short) length);
+                pdu.putInt(PDU_HEADER_LENGTH, i);
+                pdu.put(length - 1, (byte) i);
+                dataOut.write(pdu.array());
+                record.put(0, pdu.array(), 0, IDXFILE_PDUHDR_IDX_SIZE);
+                record.putLong(IDXFILE_FILEPTR_IDX, filePointer);
+                record.putLong(IDXFILE_RECDNANOTIME_IDX, i * nanosApart);
+                record.putInt(IDXFILE_RECORDSIZE_IDX, length);
+                indexOut.write(record.array());
+                filePointer += length;
+            }
+        }
+        return new File[] {data, index};
+    }
+
+    @Test
+    public void testMappedSegments() throws Exception {
+        File[] files = writeCapture(3000, 0);
+        try (DISPduIndex index = new DISPduIndex(files[1]);
+             DISPduData data = new DISPduData(files[0], 100_000)) { // several segments, PDUs crossing boundaries
+            assertEquals(files[0].length(), data.size());
+            int crossing = 0;
+            for (int i = 0; i < index.size(); i++) {
+                long filePointer = index.getFilePointer(i);
+                int length = index.getLength(i);
+                if (filePointer / 100_000 != (filePointer + length - 1) / 100_000)
+                    crossing++;
+                data.readAhead(filePointer, false);
+                ByteBuffer pdu = data.getPdu(filePointer, length);
+                assertEquals(length, pdu.remaining());
+                assertEquals(i, pdu.getInt(pdu.position() + PDU_HEADER_LENGTH));
+                assertEquals((byte) i, pdu.get(pdu.position() + length - 1));
+            }
+            assertTrue(crossing > 0);
+            for (int i = index.size() - 1; i >= 0; i--)
+                data.readAhead(index.getFilePointer(i), true);
+            try {
+                data.getPdu(data.size() - 10, 20);
+                fail("PDU beyond end should be rejected");
+            }
+            catch (IndexOutOfBoundsException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testReplayReceived() throws Exception {
+        InetAddress group = InetAddress.getByName(DEFAULT_ADDRESS);
+        int port = 3700 + (int) (ProcessHandle.current().pid() % 200);
+        int count = 200;
+        File[] files = writeCapture(count, TimeUnit.MICROSECONDS.toNanos(500)); // 100 msec at 1x
+        try (MulticastSocket receiver = new MulticastSocket(port)) {
+            receiver.joinGroup(new InetSocketAddress(group, port), null);
+            receiver.setSoTimeout(2000);
+            receiver.setReceiveBufferSize(1 << 20);
+
+            DISPlayer player = new DISPlayer(files);
+            player.setMulticastGroup(group);
+            player.setPort(port);
+            player.setSpeed(2.0);
+            List<Integer> sent = new ArrayList<>();
+            player.addSentListener((packet, record, reverse) -> {
+                assertEquals(length(record), packet.remaining());
+                sent.add(record);
+            });
+            String[] stopMessage = new String[1];
+            CountDownLatch stopped = new CountDownLatch(1);
+            player.addStoppedtListener(message -> {
+                stopMessage[0] = message;
+                stopped.countDown();
+            });
+            long start = System.nanoTime();
+            player.start();
+
+            byte[] buffer = new byte[MAX_PDU_SIZE];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            for (int i = 0; i < count; i++) {
+                try {
+                    receiver.receive(packet);
+                }
+                catch (SocketTimeoutException ex) {
+                    fail("received only " + i + " of " + count);
+                }
+                assertEquals(length(i), packet.getLength());
+                assertEquals(i, ByteBuffer.wrap(buffer).getInt(PDU_HEADER_LENGTH));
+                assertEquals((byte) i, buffer[packet.getLength() - 1]);
+            }
+            assertTrue(stopped.await(5, TimeUnit.SECONDS));
+            long elapsed = System.nanoTime() - start;
+            assertTrue(elapsed / 1e6 + " msec", elapsed >= TimeUnit.MILLISECONDS.toNanos(49)); // 99.5 msec at 2x
+            assertEquals(count, sent.size());
+            assertEquals(Integer.valueOf(count - 1), sent.get(count - 1));
+            assertTrue(stopMessage[0], stopMessage[0].startsWith("End of File, replay 2.0x, 200 PDUs timed"));
+            assertFalse(player.isRunning());
+        }
+    }
+
+    /** Replay as fast as possible, returning records sent and reason for stopping */
+    private static List<Integer> replay(DISPlayer player, int start, String[] stopMessage) throws InterruptedException {
+        List<Integer> sent = Collections.synchronizedList(new ArrayList<>());
+        player.addSentListener((packet, record, reverse) -> sent.add(record));
+        CountDownLatch stopped = new CountDownLatch(1);
+        player.addStoppedtListener(message -> {
+            stopMessage[0] = message;
+            stopped.countDown();
+        });
+        player.start(start);
+        assertTrue(stopped.await(10, TimeUnit.SECONDS));
+        return sent;
+    }
+
+    private static DISPlayer player(File[] files) throws IOException {
+        DISPlayer player = new DISPlayer(files);
+        player.setMulticastGroup(InetAddress.getByName(DEFAULT_ADDRESS));
+        player.setPort(3900 + (int) (ProcessHandle.current().pid() % 100));
+        player.setSpeed(DISReplayScheduler.AS_FAST_AS_POSSIBLE);
+        return player;
+    }
+
+    private static List<Integer> records(int first, int last) {
+        List<Integer> records = new ArrayList<>();
+        for (int i = first; (first <= last) ? i <= last : i >= last; i += (first <= last) ? 1 : -1)
+            records.add(i);
+        return records;
+    }
+
+    @Test
+    public void testTimeRange() throws Exception {
+        long millisecond = TimeUnit.MILLISECONDS.toNanos(1);
+        File[] files = writeCapture(300, millisecond);
+        String[] stopMessage = new String[1];
+
+        DISPlayer player = player(files);
+        player.setTimeRange(100 * millisecond, 199 * millisecond);
+        assertEquals(records(100, 199), replay(player, 0, stopMessage)); // selection before range starts at range
+        assertTrue(stopMessage[0], stopMessage[0].startsWith("End of range"));
+
+        player = player(files);
+        player.setTimeRange(100 * millisecond, 199 * millisecond);
+        player.setLoop(true);
+        player.setCount(250);
+        List<Integer> looped = records(150, 199);
+        looped.addAll(records(100, 199));
+        looped.addAll(records(100, 199));
+        assertEquals(looped, replay(player, 150, stopMessage));
+        assertTrue(stopMessage[0], stopMessage[0].startsWith("Requested count completed"));
+
+        player = player(files);
+        player.setTimeRange(100 * millisecond + 1, 199 * millisecond + 1); // between PDUs
+        player.setReversePlay(true);
+        assertEquals(records(150, 101), replay(player, 150, stopMessage));
+        assertTrue(stopMessage[0], stopMessage[0].startsWith("Beginning of range"));
+
+        player = player(files);
+        player.setTimeRange(5 * millisecond + 1, 5 * millisecond + 2); // holds no PDUs
+        assertEquals(List.of(), replay(player, 0, stopMessage));
+        assertTrue(stopMessage[0], stopMessage[0].startsWith("End of range"));
+        player = player(files);
+        player.setTimeRange(5 * millisecond + 1, 5 * millisecond + 2);
+        player.setReversePlay(true);
+        assertEquals(List.of(), replay(player, 0, stopMessage));
+        assertTrue(stopMessage[0], stopMessage[0].startsWith("Beginning of range"));
+        try {
+            player.setTimeRange(2, 1);
+            fail("backward range should be rejected");
+        }
+        catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSeekWhileWaiting() throws Exception {
+        File[] files = writeCapture(50, TimeUnit.MILLISECONDS.toNanos(100)); // 5 sec, 20 sec at slowest
+        DISPlayer player = player(files);
+        player.setSpeed(DISReplayScheduler.MIN_SPEED);
+        CountDownLatch firstSent = new CountDownLatch(1);
+        player.addSentListener((packet, record, reverse) -> firstSent.countDown());
+        String[] stopMessage = new String[1];
+        long start = System.nanoTime();
+        new Thread(() -> {
+            try {
+                firstSent.await();
+                player.seekTime(TimeUnit.MILLISECONDS.toNanos(4900)); // while waiting 400 msec for second PDU
+            }
+            catch (InterruptedException ex) {
+                // ignore
+            }
+        }).start();
+        assertEquals(List.of(0, 49), replay(player, 0, stopMessage));
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed / 1e6 + " msec", elapsed < TimeUnit.MILLISECONDS.toNanos(300));
+        assertTrue(stopMessage[0], stopMessage[0].startsWith("End of File"));
+    }
+
+    @Test
+    public void testSeekWhilePaused() throws Exception {
+        File[] files = writeCapture(50, 0);
+        DISPlayer player = player(files);
+        player.addSentListener((packet, record, reverse) -> {
+            if (record == 0)
+                player.pause(); // on replay thread, so nothing further is sent before pausing
+        });
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                player.seek(40);
+                Thread.sleep(100); // replay thread moves to record 40 while still paused
+                player.resume();
+            }
+            catch (InterruptedException ex) {
+                // ignore
+            }
+        }).start();
+        String[] stopMessage = new String[1];
+        List<Integer> expected = new ArrayList<>(List.of(0));
+        expected.addAll(records(40, 49));
+        assertEquals(expected, replay(player, 0, stopMessage));
+        assertTrue(stopMessage[0], stopMessage[0].startsWith("End of File"));
+    }
+}
@@ -0,0 +1,149 @@
+package org.web3d.x3d.dis.playerrecorder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that replay deadlines hold absolute capture timing at several speeds, reverse play, speed changes,
+ * and as fast as possible, and (via main) compares end-of-replay drift of the prior per-packet relative
+ * Thread.sleep pacing with the deadline scheduler.
+ *
+ * @author agent
+ */
+public class DISReplaySchedulerTest {
+
+    static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public static void main(String args[]) throws Exception {
+        int packets = (args.length > 0) ? Integer.parseInt(args[0]) : 5000;
+        long[] captureTimes = captureTimes(packets, new Random(23));
+        long intended = captureTimes[packets - 1];
+        System.out.printf("%,d PDUs over %.1f sec of capture, 0 to 2 msec apart%n", packets, intended / 1e9);
+        for (double speed : new double[] {1.0, 4.0}) {
+            long start = System.nanoTime();
+            long lastTime = -1;
+            for (long nanoTime : captureTimes) {   // prior DISPlayer pacing
+                if (lastTime > 0) {
+                    long interval = (long) (Math.abs(nanoTime - lastTime) / speed);
+                    Thread.sleep(interval / 1000000l, (int) (interval % 1000000l));
+                }
+                lastTime = nanoTime;
+            }
+            long priorDrift = (System.nanoTime() - start) - (long) (intended / speed);
+
+            DISReplayScheduler scheduler = new DISReplayScheduler();
+            scheduler.setSpeed(speed);
+            start = System.nanoTime();
+            for (long nanoTime : captureTimes)
+                scheduler.awaitDeadline(nanoTime);
+            long drift = (System.nanoTime() - start) - (long) (intended / speed);
+            System.out.printf("  %.0fx prior relative Thread.sleep: drift at end %9.3f msec%n", speed, priorDrift / 1e6);
+            System.out.printf("  %.0fx deadline scheduler:         drift at end %9.3f msec, %s%n", speed, drift / 1e6,
+                              scheduler.getTimingReport());
+        }
+    }
+
+    /** Increasing capture times starting at 0, as relativized by DISGrabber */
+    static long[] captureTimes(int count, Random random) {
+        long[] times = new long[count];
+        for (int i = 1; i < count; i++)
+            times[i] = times[i - 1] + random.nextInt(2 * (int) MILLISECOND);
+        return times;
+    }
+
+    @Test
+    public void testDeadlines() throws Exception {
+        long[] captureTimes = captureTimes(200, new Random(1)); // about 200 msec
+        for (double speed : new double[] {1.0, 2.0}) {
+            DISReplayScheduler scheduler = new DISReplayScheduler();
+            scheduler.setSpeed(speed);
+            long start = System.nanoTime();
+            for (long nanoTime : captureTimes) {
+                scheduler.awaitDeadline(nanoTime);
+                assertTrue("sent early", System.nanoTime() - start >= (long) (nanoTime / speed));
+            }
+            long elapsed = System.nanoTime() - start;
+            long intended = (long) (captureTimes[captureTimes.length - 1] / speed);
+            assertTrue(elapsed / 1e6 + " msec for " + intended / 1e6, elapsed - intended < 20 * MILLISECOND); // no accumulated drift
+            assertEquals(captureTimes.length, scheduler.getScheduledCount());
+            assertTrue(scheduler.getMaxErrorNanos() >= scheduler.getMeanErrorNanos());
+            assertTrue(scheduler.getTimingReport(), scheduler.getTimingReport().contains(speed + "x, 200 PDUs timed"));
+        }
+    }
+
+    @Test
+    public void testReverseAndRebase() throws Exception {
+        DISReplayScheduler scheduler = new DISReplayScheduler();
+        long start = System.nanoTime();
+        for (long nanoTime = 50 * MILLISECOND; nanoTime >= 0; nanoTime -= 10 * MILLISECOND)
+            scheduler.awaitDeadline(nanoTime); // reverse play counts distance back from first PDU
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed / 1e6 + " msec", elapsed >= 50 * MILLISECOND && elapsed < 70 * MILLISECOND);
+
+        // after a pause, timeline continues from last PDU sent rather than catching up
+        scheduler.reset();
+        scheduler.awaitDeadline(0);
+        Thread.sleep(50);
+        scheduler.rebase(0);
+        start = System.nanoTime();
+        scheduler.awaitDeadline(10 * MILLISECOND);
+        assertTrue(System.nanoTime() - start >= 10 * MILLISECOND);
+    }
+
+    @Test
+    public void testSpeedChanges() throws Exception {
+        DISReplayScheduler scheduler = new DISReplayScheduler();
+        scheduler.setSpeed(DISReplayScheduler.AS_FAST_AS_POSSIBLE);
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++)
+            assertEquals(0, scheduler.awaitDeadline(i * 1000 * MILLISECOND)); // 1000 sec of capture
+        assertTrue(System.nanoTime() - start < 1000 * MILLISECOND);
+        assertEquals(0, scheduler.getScheduledCount());
+        assertTrue(scheduler.getTimingReport().contains("as fast as possible"));
+
+        // speeding up while waiting for a distant PDU brings it forward
+        DISReplayScheduler waiting = new DISReplayScheduler();
+        waiting.awaitDeadline(0);
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException ex) {
+                // ignore
+            }
+            waiting.setSpeed(DISReplayScheduler.MAX_SPEED);
+        }).start();
+        start = System.nanoTime();
+        waiting.awaitDeadline(10_000 * MILLISECOND); // 10 sec at 1x, about 150 msec after change
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed / 1e6 + " msec", elapsed > 100 * MILLISECOND && elapsed < 1000 * MILLISECOND);
+
+        for (double invalid : new double[] {0, 0.1, 101, Double.NaN}) {
+            try {
+                scheduler.setSpeed(invalid);
+                fail(invalid + " should be rejected");
+            }
+            catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testInterrupted() throws Exception {
+        DISReplayScheduler scheduler = new DISReplayScheduler();
+        scheduler.awaitDeadline(0);
+        Thread.currentThread().interrupt();
+        try {
+            scheduler.awaitDeadline(60_000 * MILLISECOND);
+            fail("interrupt should end wait");
+        }
+        catch (InterruptedException expected) {
+            assertFalse(Thread.currentThread().isInterrupted());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.web3d.x3d.palette;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jdom.Element;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom.ElementLocation;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks ElementLocationIndex lookups against the prior linear scan, and
+ * (via main) measures lookup cost on a large synthetic scene.
+ *
+ * @author agent
+ */
+public class ElementLocationIndexTest {
+
+    /** characters per synthetic element start tag, and per end tag */
+    private static final int TAG_WIDTH = 20;
+
+    private List<ElementLocation> locations;
+    private ElementLocationIndex instance;
+
+    public static void main(String args[]) {
+        int elementCount = (args.length > 0) ? Integer.parseInt(args[0]) : 500000;
+        int lookupCount  = 1000000;
+        ElementLocationIndexTest test = new ElementLocationIndexTest();
+        List<ElementLocation> scene = buildScene(elementCount);
+        ElementLocationIndex index = new ElementLocationIndex(scene);
+        int documentLength = scene.get(0).docOffsetEnd;
+        Random random = new Random(1);
+        int[] carets = new int[lookupCount];
+        for (int i = 0; i < lookupCount; i++)
+            carets[i] = random.nextInt(documentLength);
+
+        long checksum = 0;
+        for (int warmup = 0; warmup < 5; warmup++)
+            for (int caret : carets)
+                checksum += index.innermostContaining(caret);
+        long start = System.nanoTime();
+        for (int caret : carets)
+            checksum += index.innermostContaining(caret);
+        long indexNanos = System.nanoTime() - start;
+
+        index.shift(scene.size() / 2, 0, 7); // pending shift exercises the Fenwick path
+        start = System.nanoTime();
+        for (int caret : carets)
+            checksum += index.innermostContaining(caret);
+        long shiftedNanos = System.nanoTime() - start;
+
+        int linearLookups = 200;
+        start = System.nanoTime();
+        for (int i = 0; i < linearLookups; i++)
+            checksum += linearScan(scene, carets[i]);
+        long linearNanos = System.nanoTime() - start;
+
+        System.out.println(elementCount + " elements, checksum " + checksum);
+        System.out.printf("indexed lookup:                %10.1f ns%n", indexNanos   / (double) lookupCount);
+        System.out.printf("indexed lookup, shift pending: %10.1f ns%n", shiftedNanos / (double) lookupCount);
+        System.out.printf("prior linear scan:             %10.1f ns%n", linearNanos  / (double) linearLookups);
+        test.setUp();
+        test.testInnermostContaining();
+    }
+
+    /**
+     * Synthetic scene: root containing groups of Transform/Shape/Box triples, offsets contiguous
+     */
+    static List<ElementLocation> buildScene(int elementCount) {
+        List<ElementLocation> scene = new ArrayList<>(elementCount);
+        ElementLocation root = location("Scene", null, 0);
+        scene.add(root);
+        int offset = TAG_WIDTH;
+        while (scene.size() + 3 <= elementCount) {
+            ElementLocation transform = location("Transform", root, offset);
+            ElementLocation shape     = location("Shape", transform, offset + TAG_WIDTH);
+            ElementLocation box       = location("Box", shape, offset + 2 * TAG_WIDTH);
+            box.docOffsetEnd       = box.docOffsetStartTagEnd;          // empty-element tag
+            shape.docOffsetEnd     = box.docOffsetEnd + TAG_WIDTH;
+            transform.docOffsetEnd = shape.docOffsetEnd + TAG_WIDTH;
+            scene.add(transform);
+            scene.add(shape);
+            scene.add(box);
+            offset = transform.docOffsetEnd;
+        }
+        root.docOffsetEnd = offset + TAG_WIDTH;
+        return scene;
+    }
+
+    private static ElementLocation location(String name, ElementLocation parent, int start) {
+        ElementLocation location = new ElementLocation(name, 1, 1, new Element(name));
+        location.parent = parent;
+        location.docOffsetStart = start;
+        location.docOffsetStartTagEnd = start + TAG_WIDTH;
+        return location;
+    }
+
+    /** Prior X3DPaletteUtilitiesJdom.findSelectedElement algorithm: bottom-up linear scan */
+    static int linearScan(List<ElementLocation> scene, int pos) {
+        for (int vi = scene.size() - 1; vi >= 0; vi--) {
+            ElementLocation vel = scene.get(vi);
+            if ((pos > vel.docOffsetStart) && (pos < vel.docOffsetEnd))
+                return vi;
+        }
+        return -1;
+    }
+
+    @Before
+    public void setUp() {
+        locations = buildScene(3001);
+        instance = new ElementLocationIndex(locations);
+    }
+
+    @Test
+    public void testInnermostContaining() {
+        int length = locations.get(0).docOffsetEnd;
+        for (int pos = 0; pos <= length; pos++)
+            assertEquals("caret " + pos, linearScan(locations, pos), instance.innermostContaining(pos));
+    }
+
+    @Test
+    public void testShiftAfterInsertion() {
+        // insert 5 characters inside the start tag of the second Transform
+        int transform = 4;
+        int editAt = instance.start(transform) + 3;
+        instance.shiftStartTagEnd(transform, 5);
+        instance.shift(transform + 1, transform, 5);
+
+        ElementLocation shifted = instance.get(transform);
+        assertEquals(editAt - 3, shifted.docOffsetStart);
+        assertEquals(editAt - 3 + TAG_WIDTH + 5, shifted.docOffsetStartTagEnd);
+        assertEquals(locations.get(0).docOffsetEnd, instance.end(0)); // root refreshed through parent chain
+        assertEquals(instance.start(transform + 1), shifted.docOffsetStartTagEnd);
+        assertEquals(instance.start(transform - 1), locations.get(transform - 1).docOffsetStart);
+        assertEquals(transform + 1, instance.innermostContaining(instance.start(transform + 1) + 1));
+    }
+
+    @Test
+    public void testReplaceChangingShape() {
+        int transform = 1;
+        int subtreeEnd = instance.subtreeEnd(transform);
+        assertEquals(4, subtreeEnd);
+
+        ElementLocation parent = instance.get(0);
+        ElementLocation replacement = location("Group", parent, instance.start(transform));
+        replacement.docOffsetEnd = replacement.docOffsetStartTagEnd;
+        List<ElementLocation> replacements = new ArrayList<>();
+        replacements.add(replacement);
+        int delta = replacement.docOffsetEnd - instance.end(transform);
+
+        instance.replace(transform, subtreeEnd, replacements);
+        instance.shift(transform + 1, 0, delta);
+
+        assertEquals(locations.size() - 2, instance.size());
+        assertEquals(replacement.docOffsetEnd, instance.start(transform + 1));
+        assertEquals(0, instance.parent(transform));
+        assertEquals(transform, instance.firstNamed("Group", ""));
+        assertEquals(-1, instance.firstNamed("Group", null));
+    }
+}
@@ -0,0 +1,212 @@
+package org.web3d.x3d.palette;
+
+import java.util.List;
+
+import javax.swing.text.PlainDocument;
+
+import org.jdom.Attribute;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3d.x3d.palette.X3DPaletteUtilitiesJdom.ElementLocation;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that X3DJdomModel attribute, insertion and deletion splices leave the
+ * same JDOM document, offsets and DEF names as a full reparse of the edited text,
+ * that an insert directly under Scene re-parses only the text between its
+ * neighbouring siblings, and (via main) compares incremental update cost with the prior full reparse.
+ *
+ * @author agent
+ */
+public class X3DJdomModelTest {
+
+    private static final String SCENE =
+        "<?xml version='1.0' encoding='UTF-8'?>\n" +
+        "<X3D profile='Immersive' version='4.0'>\n" +
+        "  <Scene>\n" +
+        "    <Transform DEF='T1' translation='0 1 0'>\n" +
+        "      <Shape DEF='S1'>\n" +
+        "        <Box size='1 1 1'/>\n" +
+        "      </Shape>\n" +
+        "    </Transform>\n" +
+        "    <Group DEF='G1'>\n" +
+        "      <Shape USE='S1'/>\n" +
+        "    </Group>\n" +
+        "  </Scene>\n" +
+        "</X3D>\n";
+
+    private PlainDocument document;
+    private X3DJdomModel  model;
+
+    public static void main(String args[]) throws Exception {
+        int transformCount = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+        StringBuilder sb = new StringBuilder("<X3D profile='Immersive' version='4.0'><Scene>\n");
+        for (int i = 0; i < transformCount; i++)
+            sb.append("<Transform DEF='T").append(i).append("' translation='0 0 0'><Shape><Box size='1 1 1'/></Shape></Transform>\n");
+        sb.append("</Scene></X3D>\n");
+        PlainDocument doc = new PlainDocument();
+        doc.insertString(0, sb.toString(), null);
+        X3DJdomModel incremental = new X3DJdomModel();
+        incremental.update(doc);
+
+        int edits = 200;
+        int editAt = sb.indexOf("translation='0", sb.length() / 2) + "translation='0".length();
+        long incrementalNanos = 0, fullNanos = 0;
+        for (int i = 0; i < edits; i++) {
+            doc.insertString(editAt, "1", null);
+            long start = System.nanoTime();
+            incremental.update(doc);
+            incrementalNanos += System.nanoTime() - start;
+
+            X3DJdomModel full = new X3DJdomModel(); // prior approach: every update parses everything
+            start = System.nanoTime();
+            full.update(doc);
+            fullNanos += System.nanoTime() - start;
+            full.detach();
+        }
+        System.out.println(transformCount + " Transforms, " + incremental.getIncrementalParseCount() + " incremental updates");
+        System.out.printf("incremental attribute splice: %10.3f ms%n", incrementalNanos / 1e6 / edits);
+        System.out.printf("prior full reparse:           %10.3f ms%n", fullNanos        / 1e6 / edits);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        document = new PlainDocument();
+        document.insertString(0, SCENE, null);
+        model = new X3DJdomModel();
+        model.update(document);
+        assertEquals(1, model.getFullParseCount());
+    }
+
+    @Test
+    public void testAttributeEditSplice() throws Exception {
+        int at = SCENE.indexOf("translation='0") + "translation='".length();
+        document.insertString(at, "5", null);
+        document.remove(at + 2, 1); // "0 1 0" becomes "501 0"
+        assertIncremental();
+        assertEquals("501 0", model.getJdomDocument().getRootElement().getChild("Scene")
+                .getChild("Transform").getAttributeValue("translation"));
+        assertSameAsFullParse();
+
+        document.replace(SCENE.indexOf("DEF='G1'") + 5, 2, "G2", null); // DEF rename within start tag
+        assertIncremental();
+        assertTrue(model.getSymbolTable().getDefNames("").contains("G2"));
+        assertFalse(model.getSymbolTable().getDefNames("").contains("G1"));
+        assertSameAsFullParse();
+    }
+
+    @Test
+    public void testInsertSplice() throws Exception {
+        int at = SCENE.indexOf("</Group>");
+        document.insertString(at, "  <Transform DEF='T2'><Shape/></Transform>\n    ", null);
+        assertIncremental();
+        assertTrue(model.getSymbolTable().getDefNames("").contains("T2"));
+        assertSameAsFullParse();
+    }
+
+    @Test
+    public void testInsertUnderSceneReparsesOnlyBetweenSiblings() throws Exception {
+        String inserted = "<Group DEF='G3'><Shape/></Group>\n    ";
+        document.insertString(SCENE.indexOf("<Group DEF='G1'>"), inserted, null);
+        assertIncremental();
+        // from end of preceding Transform to start of following Group, not the whole Scene
+        assertEquals("\n    ".length() + inserted.length(), model.getLastReparseLength());
+        assertTrue(model.getSymbolTable().getDefNames("").contains("G3"));
+        assertSameAsFullParse();
+
+        int at = document.getText(0, document.getLength()).indexOf("</Scene>");
+        document.insertString(at, "  <Shape/>\n  ", null); // appended after last child, up to the end tag
+        assertIncremental();
+        assertEquals("\n  ".length() + "  <Shape/>\n  ".length(), model.getLastReparseLength());
+        assertSameAsFullParse();
+    }
+
+    @Test
+    public void testEndTagEditSplicesAmongSiblings() throws Exception {
+        int at = SCENE.indexOf("</Group>") + "</Group".length();
+        document.insertString(at, " ", null); // within end tag, so Group is re-parsed as a child of Scene
+        assertIncremental();
+        String text = document.getText(0, document.getLength());
+        // Group is the last child, so from end of preceding Transform up to the Scene end tag
+        assertEquals(text.indexOf("</Scene>") - text.indexOf("    </Transform>") - "    </Transform>".length(),
+                     model.getLastReparseLength());
+        assertSameAsFullParse();
+
+        document.remove(at - "Group".length(), "Group".length()); // end tag no longer matches
+        long fullParses = model.getFullParseCount();
+        try {
+            model.update(document);
+            fail("mismatched end tag accepted");
+        }
+        catch (org.jdom.JDOMException expected) {
+            assertEquals(fullParses, model.getFullParseCount()); // failed full parse is not counted
+        }
+    }
+
+    @Test
+    public void testDeleteSplice() throws Exception {
+        int from = SCENE.indexOf("      <Shape DEF='S1'>");
+        int to   = SCENE.indexOf("    </Transform>");
+        document.remove(from, to - from);
+        assertIncremental();
+        assertFalse(model.getSymbolTable().getDefNames("").contains("S1"));
+        assertSameAsFullParse();
+    }
+
+    @Test
+    public void testStartTagMarkupFallsBackToFullParse() throws Exception {
+        // typing "></Group><Group" inside a start tag splits one element into two
+        int at = SCENE.indexOf("DEF='G1'") + "DEF='G1'".length();
+        document.insertString(at, "></Group><Group", null);
+        long fullParses = model.getFullParseCount();
+        model.update(document);
+        assertEquals(fullParses + 1, model.getFullParseCount());
+        assertEquals(2, model.getJdomDocument().getRootElement().getChild("Scene").getChildren("Group").size());
+        assertSameAsFullParse();
+    }
+
+    /** update model and confirm no full reparse was needed */
+    private void assertIncremental() throws Exception {
+        long fullParses = model.getFullParseCount();
+        long splices    = model.getIncrementalParseCount();
+        model.update(document);
+        assertEquals("full parses", fullParses, model.getFullParseCount());
+        assertEquals("splices", splices + 1, model.getIncrementalParseCount());
+    }
+
+    /** compare spliced model with a fresh full parse of the same text */
+    private void assertSameAsFullParse() throws Exception {
+        X3DJdomModel reference = new X3DJdomModel();
+        reference.update(document);
+        XMLOutputter outputter = new XMLOutputter(Format.getRawFormat());
+        assertEquals(outputter.outputString(reference.getJdomDocument()), outputter.outputString(model.getJdomDocument()));
+
+        List<ElementLocation> expected = reference.getSaxLocations();
+        List<ElementLocation> actual   = model.getSaxLocations();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ElementLocation e = expected.get(i);
+            ElementLocation a = actual.get(i);
+            String what = i + " " + e.name;
+            assertEquals(what, e.name, a.name);
+            assertEquals(what, e.docOffsetStart, a.docOffsetStart);
+            assertEquals(what, e.docOffsetStartTagEnd, a.docOffsetStartTagEnd);
+            assertEquals(what, e.docOffsetEnd, a.docOffsetEnd);
+            assertEquals(what, attributes(e), attributes(a));
+            assertSame(what, a.element, model.getLocationIndex().get(i).element);
+        }
+        assertEquals(reference.getSymbolTable().getDefNames(""), model.getSymbolTable().getDefNames(""));
+        assertEquals(reference.getSymbolTable().getDanglingUseNames(), model.getSymbolTable().getDanglingUseNames());
+        reference.detach();
+    }
+
+    private static String attributes(ElementLocation location) {
+        StringBuilder sb = new StringBuilder();
+        for (Object attribute : location.element.getAttributes())
+            sb.append(((Attribute) attribute).getQualifiedName()).append('=').append(((Attribute) attribute).getValue()).append(' ');
+        return sb.toString();
+    }
+}
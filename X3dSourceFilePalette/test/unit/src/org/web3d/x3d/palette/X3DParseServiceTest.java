@@ -0,0 +1,261 @@
+package org.web3d.x3d.palette;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.PlainDocument;
+
+import org.jdom.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that X3DParseService publishes snapshots sharing the X3DJdomModel state,
+ * that an acquired snapshot is never modified by later splices, that stale snapshots
+ * are reported as such, that state a reader acquired can be copied ahead of the next
+ * splice, that the event thread falls back to the last published
+ * snapshot rather than waiting, except for edits, which always receive a snapshot
+ * matching the text.  Main compares snapshot publication cost with the
+ * prior deep copy of the whole scene on every parse.
+ *
+ * @author agent
+ */
+public class X3DParseServiceTest {
+
+    private static final String SCENE =
+        "<X3D profile='Immersive' version='4.0'>\n" +
+        "  <Scene>\n" +
+        "    <Transform DEF='T1' translation='0 1 0'>\n" +
+        "      <Shape DEF='S1'/>\n" +
+        "    </Transform>\n" +
+        "  </Scene>\n" +
+        "</X3D>\n";
+
+    private PlainDocument   document;
+    private X3DParseService service;
+
+    public static void main(String args[]) throws Exception {
+        int transformCount = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+        StringBuilder sb = new StringBuilder("<X3D profile='Immersive' version='4.0'><Scene>\n");
+        for (int i = 0; i < transformCount; i++)
+            sb.append("<Transform DEF='T").append(i).append("' translation='0 0 0'><Shape><Box size='1 1 1'/></Shape></Transform>\n");
+        sb.append("</Scene></X3D>\n");
+        PlainDocument doc = new PlainDocument();
+        doc.insertString(0, sb.toString(), null);
+        X3DJdomModel model = new X3DJdomModel();
+        model.update(doc);
+
+        int edits = 50;
+        int editAt = sb.indexOf("translation='0", sb.length() / 2) + "translation='0".length();
+        long sharedNanos = 0, acquiredNanos = 0, copyNanos = 0;
+        for (int i = 0; i < edits; i++) { // typing: published, never read before next edit
+            doc.insertString(editAt, "1", null);
+            long start = System.nanoTime();
+            model.update(doc);
+            model.createSnapshot(i);
+            sharedNanos += System.nanoTime() - start;
+        }
+        for (int i = 0; i < edits; i++) { // read after every edit: copied before next splice
+            doc.insertString(editAt, "1", null);
+            long start = System.nanoTime();
+            model.update(doc);
+            model.createSnapshot(edits + i).acquire();
+            acquiredNanos += System.nanoTime() - start;
+
+            start = System.nanoTime(); // prior approach: deep copy of tree and symbols on every parse
+            org.jdom.Document copy = (org.jdom.Document) model.getJdomDocument().clone();
+            new X3DSymbolTable(copy);
+            copyNanos += System.nanoTime() - start;
+        }
+        System.out.println(transformCount + " Transforms, " + model.getCopyCount() + " copies of acquired state");
+        System.out.printf("splice, shared snapshot unread:   %10.3f ms%n", sharedNanos   / 1e6 / edits);
+        System.out.printf("splice, shared snapshot acquired: %10.3f ms%n", acquiredNanos / 1e6 / edits);
+        System.out.printf("prior deep copy alone:            %10.3f ms%n", copyNanos     / 1e6 / edits);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        document = new PlainDocument();
+        document.insertString(0, SCENE, null);
+        service = new X3DParseService();
+    }
+
+    @After
+    public void tearDown() {
+        service.detach();
+    }
+
+    @Test
+    public void testSnapshotSharesModelState() throws Exception {
+        X3DJdomModel model = new X3DJdomModel();
+        model.update(document);
+        X3DSceneSnapshot snapshot = model.createSnapshot(1);
+        assertSame(model.getJdomDocument(),  snapshot.getJdomDocument());
+        assertSame(model.getLocationIndex(), snapshot.getLocationIndex());
+        assertSame(model.getSymbolTable(),   snapshot.getSymbolTable());
+
+        // nobody acquired it, so the next splice modifies the shared state in place and retires the snapshot
+        editTranslation("0 2 0");
+        model.update(document);
+        assertEquals(0, model.getCopyCount());
+        assertEquals(1, model.getIncrementalParseCount());
+        assertFalse(snapshot.acquire());
+    }
+
+    @Test
+    public void testAcquiredSnapshotIsNotModified() throws Exception {
+        X3DJdomModel model = new X3DJdomModel();
+        model.update(document);
+        X3DSceneSnapshot snapshot = model.createSnapshot(1);
+        assertTrue(snapshot.acquire());
+
+        editTranslation("0 2 0");
+        model.update(document);
+        assertEquals(1, model.getCopyCount());
+        assertEquals(1, model.getIncrementalParseCount());
+        assertEquals("0 1 0", transform(snapshot.getJdomDocument()).getAttributeValue("translation"));
+        assertEquals("0 2 0", transform(model.getJdomDocument()).getAttributeValue("translation"));
+        assertNotSame(snapshot.getLocationIndex(), model.getLocationIndex());
+
+        // the copy is not acquired, so further splices need no copy
+        editTranslation("0 3 0");
+        model.update(document);
+        assertEquals(1, model.getCopyCount());
+        assertEquals("0 1 0", transform(snapshot.getJdomDocument()).getAttributeValue("translation"));
+    }
+
+    @Test
+    public void testAcquiredStateCopiedAhead() throws Exception {
+        X3DJdomModel model = new X3DJdomModel();
+        model.update(document);
+        X3DSceneSnapshot snapshot = model.createSnapshot(1);
+        model.releaseAcquiredState(); // nobody acquired it, nothing to copy
+        assertEquals(0, model.getCopyCount());
+        assertTrue(snapshot.acquire());
+        assertTrue(model.isCopyDue());
+
+        model.releaseAcquiredState(); // as the parse thread does once a snapshot is acquired
+        assertEquals(1, model.getCopyCount());
+        assertFalse(model.isCopyDue());
+        editTranslation("0 2 0");
+        model.update(document); // splice, as the event thread may, needs no further copy
+        assertEquals(1, model.getCopyCount());
+        assertEquals(1, model.getIncrementalParseCount());
+        assertEquals("0 1 0", transform(snapshot.getJdomDocument()).getAttributeValue("translation"));
+        assertEquals("0 2 0", transform(model.getJdomDocument()).getAttributeValue("translation"));
+    }
+
+    @Test
+    public void testStaleSnapshot() throws Exception {
+        X3DSceneSnapshot first = service.awaitCurrentSnapshot(document); // off the event thread, waits
+        assertTrue(service.isCurrent(first));
+
+        editTranslation("0 2 0");
+        assertFalse(service.isCurrent(first));
+        assertSame(first, service.getLatestSnapshot()); // debounce period, nothing newer published
+
+        X3DSceneSnapshot second = service.awaitCurrentSnapshot(document);
+        assertTrue(service.isCurrent(second));
+        assertTrue(second.getVersion() > first.getVersion());
+        assertEquals("0 1 0", transform(first.getJdomDocument()).getAttributeValue("translation"));
+        assertEquals("0 2 0", transform(second.getJdomDocument()).getAttributeValue("translation"));
+    }
+
+    @Test
+    public void testEventThreadSplicesWithoutWaiting() throws Exception {
+        X3DSceneSnapshot first = service.awaitCurrentSnapshot(document);
+        editTranslation("0 2 0");
+        X3DSceneSnapshot[] result = new X3DSceneSnapshot[1];
+        long start = System.nanoTime();
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result[0] = service.awaitCurrentSnapshot(document);
+            }
+            catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue(service.isCurrent(result[0]));
+        assertNotSame(first, result[0]);
+        assertTrue("spliced inline, not after debounce: " + elapsedMillis + " ms", elapsedMillis < X3DParseService.DEBOUNCE_MILLIS);
+    }
+
+    @Test
+    public void testEventThreadFallsBackToLastPublished() throws Exception {
+        X3DSceneSnapshot first = service.awaitCurrentSnapshot(document);
+        int at = SCENE.indexOf("</Transform>");
+        document.remove(at, "</Transform>".length()); // malformed: a full parse is then due, and fails
+        try {
+            service.awaitCurrentSnapshot(document);
+            fail("malformed document accepted");
+        }
+        catch (org.jdom.JDOMException expected) {
+            // reported once to the caller that asked for the current text
+        }
+
+        document.insertString(0, " ", null); // still malformed, full parse still due
+        X3DSceneSnapshot[] result = new X3DSceneSnapshot[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result[0] = service.awaitCurrentSnapshot(document);
+            }
+            catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        assertSame(first, result[0]);
+        assertFalse(service.isCurrent(result[0]));
+    }
+
+    @Test
+    public void testEditSnapshotNeverLags() throws Exception {
+        X3DSceneSnapshot first = service.awaitCurrentSnapshot(document);
+        int at = SCENE.indexOf("</Transform>");
+        document.remove(at, "</Transform>".length());
+        try {
+            service.awaitCurrentSnapshot(document); // full parse now due
+            fail("malformed document accepted");
+        }
+        catch (org.jdom.JDOMException expected) {
+            // expected
+        }
+        Exception[] failure = new Exception[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                service.awaitSnapshotForEdit(document);
+            }
+            catch (Exception ex) {
+                failure[0] = ex;
+            }
+        });
+        assertTrue("edit refused while malformed", failure[0] instanceof org.jdom.JDOMException);
+
+        document.insertString(at, "</Transform>", null); // well formed again, full parse still due
+        X3DSceneSnapshot[] result = new X3DSceneSnapshot[2];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result[0] = service.awaitCurrentSnapshot(document);
+                result[1] = service.awaitSnapshotForEdit(document);
+            }
+            catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        assertSame("event thread falls back for reading", first, result[0]);
+        assertTrue("event thread finishes parse for editing", service.isCurrent(result[1]));
+        assertEquals(document.getText(0, document.getLength()).indexOf("<Shape"),
+                     result[1].getLocationIndex().get(3).docOffsetStart);
+    }
+
+    private void editTranslation(String value) throws Exception {
+        String text = document.getText(0, document.getLength());
+        int at = text.indexOf("translation='") + "translation='".length();
+        document.replace(at, text.indexOf('\'', at) - at, value, null);
+    }
+
+    private static Element transform(org.jdom.Document jdomDocument) {
+        return jdomDocument.getRootElement().getChild("Scene").getChild("Transform");
+    }
+}
@@ -0,0 +1,161 @@
+package org.web3d.x3d.palette;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.text.PlainDocument;
+
+import org.jdom.Element;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that X3DSymbolTable reports scope DEF nodes and DEF names in document order
+ * after DEF nodes are added, renamed and removed through X3DJdomModel splices, and
+ * (via main) compares scope lookup cost with the prior tree walk.
+ *
+ * @author agent
+ */
+public class X3DSymbolTableTest {
+
+    private static final String SCENE =
+        "<X3D profile='Immersive' version='4.0'>\n" +
+        "  <Scene>\n" +
+        "    <Group DEF='A'>\n" +
+        "      <Shape DEF='S'/>\n" +
+        "    </Group>\n" +
+        "    <Group DEF='B'>\n" +
+        "    </Group>\n" +
+        "    <Group DEF='C'/>\n" +
+        "  </Scene>\n" +
+        "</X3D>\n";
+
+    private PlainDocument document;
+    private X3DJdomModel  model;
+
+    public static void main(String args[]) throws Exception {
+        int groupCount = (args.length > 0) ? Integer.parseInt(args[0]) : 50000;
+        StringBuilder sb = new StringBuilder("<X3D profile='Immersive' version='4.0'><Scene>\n");
+        for (int i = 0; i < groupCount; i++)
+            sb.append("<Group DEF='G").append(i).append("'><Shape><Box/></Shape></Group>\n");
+        sb.append("</Scene></X3D>\n");
+        PlainDocument doc = new PlainDocument();
+        doc.insertString(0, sb.toString(), null);
+        X3DJdomModel model = new X3DJdomModel();
+        model.update(doc);
+        int lookups = 20;
+        long checksum = 0, sortNanos = 0, cachedNanos = 0, walkNanos = 0;
+        for (int i = 0; i < lookups; i++) {
+            doc.insertString(sb.indexOf("<Shape>"), "<Transform DEF='X'/>", null); // splice appends out of order
+            model.update(doc);
+            long start = System.nanoTime();
+            checksum += model.getSymbolTable().getDefElementsInScope(null).size();
+            sortNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            checksum += model.getSymbolTable().getDefElementsInScope(null).size();
+            cachedNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            checksum += treeWalk(model.getJdomDocument().getRootElement(), new ArrayList<>()).size();
+            walkNanos += System.nanoTime() - start;
+        }
+        System.out.println(groupCount + " DEF nodes, checksum " + checksum);
+        System.out.printf("symbol table, sorted after splice: %10.3f ms%n", sortNanos   / 1e6 / lookups);
+        System.out.printf("symbol table, unchanged scope:     %10.3f ms%n", cachedNanos / 1e6 / lookups);
+        System.out.printf("prior tree walk:                   %10.3f ms%n", walkNanos   / 1e6 / lookups);
+    }
+
+    /** Prior BaseX3DElement approach: walk the whole tree collecting DEF nodes */
+    @SuppressWarnings("unchecked")
+    static List<Element> treeWalk(Element element, List<Element> result) {
+        if (element.getAttributeValue("DEF") != null)
+            result.add(element);
+        for (Element child : (List<Element>) element.getChildren())
+            treeWalk(child, result);
+        return result;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        document = new PlainDocument();
+        document.insertString(0, SCENE, null);
+        model = new X3DJdomModel();
+        model.update(document);
+    }
+
+    @Test
+    public void testInitialDocumentOrder() {
+        assertEquals("A S B C", scopeDefs());
+    }
+
+    @Test
+    public void testAddRenameRemoveThroughSplices() throws Exception {
+        // added inside A: the splice re-indexes A's subtree, which previously moved it to the end
+        document.insertString(SCENE.indexOf("    </Group>"), "      <Transform DEF='X'/>\n", null);
+        update();
+        assertEquals("A S X B C", scopeDefs());
+
+        // renamed within the start tag of B
+        String text = document.getText(0, document.getLength());
+        document.insertString(text.indexOf("DEF='B'") + "DEF='B".length(), "2", null);
+        update();
+        assertEquals("A S X B2 C", scopeDefs());
+
+        // removed from inside A
+        text = document.getText(0, document.getLength());
+        int from = text.indexOf("      <Shape DEF='S'/>\n");
+        document.remove(from, "      <Shape DEF='S'/>\n".length());
+        update();
+        assertEquals("A X B2 C", scopeDefs());
+
+        X3DJdomModel reference = new X3DJdomModel();
+        reference.update(document);
+        assertEquals(names(reference.getSymbolTable().getDefElementsInScope(null)), scopeDefs());
+        assertEquals(names(treeWalk(model.getJdomDocument().getRootElement(), new ArrayList<>())), scopeDefs());
+        reference.detach();
+    }
+
+    @Test
+    public void testProtoBodyScope() throws Exception {
+        String proto = "    <ProtoDeclare name='P'><ProtoBody><Group DEF='P1'/><Group DEF='P2'/></ProtoBody></ProtoDeclare>\n";
+        document.insertString(SCENE.indexOf("  </Scene>"), proto, null);
+        update();
+        Element protoBody = model.getJdomDocument().getRootElement().getChild("Scene")
+                .getChild("ProtoDeclare").getChild("ProtoBody");
+        assertEquals("P1 P2", names(model.getSymbolTable().getDefElementsInScope(protoBody)));
+        assertEquals("A S B C", scopeDefs());
+    }
+
+    @Test
+    public void testDefNamesInDocumentOrder() throws Exception {
+        // spliced in before A, and a second C, so neither sorted nor deduplicated order would match
+        document.insertString(SCENE.indexOf("    <Group DEF='A'>"), "    <Transform DEF='Z'/>\n", null);
+        update();
+        String text = document.getText(0, document.getLength());
+        document.insertString(text.indexOf("  </Scene>"), "    <Group DEF='C'/>\n", null);
+        update();
+        assertEquals("[Z, A, S, B, C, C]", model.getSymbolTable().getDefNames("").toString());
+        assertEquals("[A, B, C, C]", model.getSymbolTable().getDefNames("group").toString());
+        assertEquals(names(treeWalk(model.getJdomDocument().getRootElement(), new ArrayList<>())),
+                     String.join(" ", model.getSymbolTable().getDefNames("")));
+        assertEquals("[Z, A, S, B, C, C]", new X3DSymbolTable(model.getJdomDocument()).getDefNames(null).toString());
+    }
+
+    private void update() throws Exception {
+        long fullParses = model.getFullParseCount();
+        model.update(document);
+        assertEquals("spliced, not reparsed", fullParses, model.getFullParseCount());
+    }
+
+    private String scopeDefs() {
+        return names(model.getSymbolTable().getDefElementsInScope(null));
+    }
+
+    private static String names(List<Element> elements) {
+        StringBuilder sb = new StringBuilder();
+        for (Element element : elements)
+            sb.append(sb.length() == 0 ? "" : " ").append(element.getAttributeValue("DEF"));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,202 @@
+package org.web3d.x3d.palette;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Random;
+import javax.swing.text.PlainDocument;
+
+import org.jdom.Attribute;
+import org.jdom.Element;
+import org.jdom.output.EscapeStrategy;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks streaming attribute output against the prior escapeAttributeEntities copy, numeric array wrapping and
+ * Document output, and (via main) compares serialization time for a large synthetic scene, default 100 MB.
+ *
+ * @author agent
+ */
+public class X3DXMLOutputterTest {
+
+    public static void main(String args[]) throws Exception {
+        X3DXMLOutputterTest test = new X3DXMLOutputterTest();
+        test.testMatchesPriorOutputter();
+        test.testEscapes();
+        test.testArrayLineWrapping();
+        test.testDocumentOutput();
+
+        int megabytes = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        Element scene = buildScene(megabytes * 1024 * 1024, new Random(megabytes));
+        XMLOutputter prior = new PriorOutputter();
+        XMLOutputter streaming = new X3DXMLOutputter();
+        long checksum = 0;
+        for (int warmup = 0; warmup < 2; warmup++)
+            checksum += time(prior, scene) + time(streaming, scene);
+
+        long start = System.nanoTime();
+        checksum += time(prior, scene);
+        long priorNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        checksum += time(streaming, scene);
+        long streamingNanos = System.nanoTime() - start;
+
+        System.out.println(megabytes + " MB scene, checksum " + checksum);
+        System.out.printf("  prior X3DXMLOutputter:     %8.1f ms%n", priorNanos     / 1e6);
+        System.out.printf("  streaming X3DXMLOutputter: %8.1f ms%n", streamingNanos / 1e6);
+    }
+
+    /** Serialize to a discarding Writer, so that timing reflects outputter rather than destination */
+    private static long time(XMLOutputter outputter, Element scene) throws IOException {
+        CountingWriter writer = new CountingWriter();
+        outputter.output(scene, writer);
+        return writer.count;
+    }
+
+    private static final class CountingWriter extends Writer {
+        long count;
+        @Override public void write(char[] cbuf, int off, int len) { count += len; }
+        @Override public void write(String str, int off, int len)  { count += len; }
+        @Override public void write(int c)                         { count++; }
+        @Override public void flush() { }
+        @Override public void close() { }
+    }
+
+    /** Shapes with IndexedFaceSet coordinates, as typical of large converted CAD scenes */
+    static Element buildScene(long approximateCharacters, Random random) {
+        Element scene = new Element("Scene");
+        long characters = 0;
+        while (characters < approximateCharacters) {
+            StringBuilder point = new StringBuilder();
+            StringBuilder index = new StringBuilder();
+            for (int i = 0; i < 3000; i++) {
+                point.append(random.nextInt(20000) / 1000.0f).append(' ')
+                     .append(random.nextInt(20000) / 1000.0f).append(' ')
+                     .append(random.nextInt(20000) / 1000.0f).append(", ");
+                index.append(i).append(' ').append((i + 1) % 3000).append(' ').append((i + 2) % 3000).append(" -1 ");
+            }
+            Element shape = new Element("Shape");
+            Element faceSet = new Element("IndexedFaceSet").setAttribute("coordIndex", index.toString());
+            faceSet.addContent(new Element("Coordinate").setAttribute("point", point.toString()));
+            shape.addContent(new Element("Appearance").addContent(new Element("Material")
+                 .setAttribute("diffuseColor", "0.8 0.2 0.2").setAttribute("description", "<red> & \"shiny\"")));
+            shape.addContent(faceSet);
+            scene.addContent(shape);
+            characters += point.length() + index.length() + 200;
+        }
+        return scene;
+    }
+
+    @Test
+    public void testMatchesPriorOutputter() throws IOException {
+        Element scene = buildScene(200000, new Random(2026));
+        scene.setAttribute("info", "tab\tcr\rlf\n<&> \"quoted\" é 中");
+        assertEquals(new PriorOutputter().outputString(scene), new X3DXMLOutputter().outputString(scene));
+        assertEquals(new PriorOutputter(Format.getPrettyFormat()).outputString(scene),
+                     new X3DXMLOutputter(Format.getPrettyFormat()).outputString(scene));
+    }
+
+    @Test
+    public void testEscapes() {
+        X3DXMLOutputter outputter = new X3DXMLOutputter();
+        String plain = "0 1 2";
+        assertTrue(plain == outputter.escapeAttributeEntities(plain)); // no copy when nothing to escape
+        assertEquals("&lt;a&gt; &amp; &#x9;&#xD;&#xA;\"", outputter.escapeAttributeEntities("<a> & \t\r\n\""));
+        assertEquals("Don&apos;t", outputter.escapeAttributeEntities("Don't")); // apostrophe delimits attributes
+        assertEquals("x&#x1f600;y", outputter.escapeAttributeEntities("x😀y")); // one reference per pair
+        assertEquals("<a b='c&apos;d' />", outputter.outputString(new Element("a").setAttribute("b", "c'd")));
+    }
+
+    @Test
+    public void testArrayLineWrapping() {
+        X3DXMLOutputter outputter = new X3DXMLOutputter();
+        outputter.setArrayLineWrapping(2, 0);
+        Element coordinate = new Element("Coordinate").setAttribute("point", " 0 0 0, 1  1 1 ,2 2 2,3 3 3");
+        assertEquals("<Coordinate point='0 0 0, 1 1 1,\n2 2 2, 3 3 3' />", outputter.outputString(coordinate));
+
+        Element faceSet = new Element("IndexedFaceSet").setAttribute("coordIndex", "0 1 2 -1 2 3 0 -1 4 5 6 -1")
+                                                      .setAttribute("description", "0 1 2 -1 2 3 0 -1 4 5 6 -1");
+        outputter.setArrayLineWrapping(1, 0);
+        assertEquals("<IndexedFaceSet coordIndex='0 1 2 -1\n2 3 0 -1\n4 5 6 -1' description='0 1 2 -1 2 3 0 -1 4 5 6 -1' />",
+                     outputter.outputString(faceSet));
+
+        outputter.setArrayLineWrapping(1, 1000); // short values unchanged
+        assertEquals(new PriorOutputter().outputString(faceSet), outputter.outputString(faceSet));
+        outputter.setArrayLineWrapping(1, 0);    // non-numeric values unchanged
+        Element text = new Element("Text").setAttribute("string", "\"1, 2\" \"3\"");
+        assertEquals(new PriorOutputter().outputString(text), outputter.outputString(text));
+    }
+
+    @Test
+    public void testDocumentOutput() throws Exception {
+        Element scene = buildScene(100000, new Random(7));
+        PlainDocument document = new PlainDocument();
+        document.insertString(0, "<X3D></X3D>", null);
+        int length = new X3DXMLOutputter().output(scene, document, 5);
+        String expected = new X3DXMLOutputter().outputString(scene);
+        assertEquals(expected.length(), length);
+        assertEquals("<X3D>" + expected + "</X3D>", document.getText(0, document.getLength()));
+        try {
+            new X3DXMLOutputter().output(scene, document, document.getLength() + 10);
+            fail("invalid offset should be reported");
+        }
+        catch (javax.swing.text.BadLocationException expected2) {
+            // expected
+        }
+    }
+
+    /** Prior X3DXMLOutputter attribute output, copied for comparison */
+    static class PriorOutputter extends XMLOutputter {
+        PriorOutputter() { super(); }
+        PriorOutputter(Format format) { super(format); }
+
+        @Override
+        protected void printAttributes(Writer out, List attributes, Element parent, XMLOutputter.NamespaceStack namespaces) throws IOException {
+            for (int i = 0; i < attributes.size(); i++) {
+                Attribute attribute = (Attribute) attributes.get(i);
+                out.write(" ");
+                out.write(attribute.getQualifiedName());
+                out.write("=");
+                out.write("'");
+                out.write(escapeAttributeEntities(attribute.getValue()));
+                out.write("'");
+            }
+        }
+
+        @Override
+        public String escapeAttributeEntities(String str) {
+            StringBuffer buffer = null;
+            EscapeStrategy strategy = Format.getRawFormat().getEscapeStrategy();
+            for (int i = 0; i < str.length(); i++) {
+                char ch = str.charAt(i);
+                String entity;
+                switch (ch) {
+                    case '<':  entity = "&lt;";  break;
+                    case '>':  entity = "&gt;";  break;
+                    case '&':  entity = "&amp;"; break;
+                    case '\r': entity = "&#xD;"; break;
+                    case '\t': entity = "&#x9;"; break;
+                    case '\n': entity = "&#xA;"; break;
+                    default:   entity = strategy.shouldEscape(ch) ? "&#x" + Integer.toHexString(ch) + ";" : null; break;
+                }
+                if (buffer == null) {
+                    if (entity != null) {
+                        buffer = new StringBuffer(str.length() + 20);
+                        buffer.append(str.substring(0, i));
+                        buffer.append(entity);
+                    }
+                }
+                else if (entity == null)
+                    buffer.append(ch);
+                else
+                    buffer.append(entity);
+            }
+            return (buffer == null) ? str : buffer.toString();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.web3d.x3d.types;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.web3d.x3d.types.X3DPrimitiveTypes.*;
+
+/**
+ * Checks primitive MF field buffers against the SFFloat/SFDouble values they replace, and
+ * (via main) compares retained heap of SFFloat[][] versus MFVec3fBuffer for a large point array.
+ *
+ * @author agent
+ */
+public class MFFloatBufferTest {
+
+    public static void main(String args[]) {
+        int vertexCount = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        String[] sa = buildPoints(vertexCount);
+
+        long before = usedMemory();
+        SFFloat[][] boxed = new SFFloat[vertexCount][3];
+        for (int i = 0; i < sa.length; i++)
+            boxed[i / 3][i % 3] = new SFFloat(sa[i]);
+        long boxedBytes = usedMemory() - before;
+
+        before = usedMemory();
+        MFVec3fBuffer buffer = MFVec3fBuffer.parse(sa);
+        long bufferBytes = usedMemory() - before;
+
+        System.out.println(vertexCount + " vertices, " + boxed.length + " rows, " + buffer.getTupleCount() + " tuples");
+        System.out.printf("SFFloat[][]   retained: %8.1f MB%n", boxedBytes  / 1048576.0);
+        System.out.printf("MFVec3fBuffer retained: %8.1f MB%n", bufferBytes / 1048576.0);
+        MFFloatBufferTest test = new MFFloatBufferTest();
+        test.testParseMatchesSFFloat();
+        test.testFormat();
+    }
+
+    static String[] buildPoints(int vertexCount) {
+        String[] sa = new String[vertexCount * 3];
+        for (int i = 0; i < sa.length; i++)
+            sa[i] = Float.toString((i % 2001) * 0.001f - 1.0f);
+        return sa;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void testParseMatchesSFFloat() {
+        String[] sa = {"0", "-1.5", "1E-3", "", " 2 ", "0.3333333", "1e10"};
+        MFFloatBuffer buffer = MFFloatBuffer.parse(sa, 1);
+        assertEquals(sa.length, buffer.size());
+        String[][] table = buffer.toStringTable();
+        for (int i = 0; i < sa.length; i++) {
+            SFFloat expected = new SFFloat(sa[i]);
+            assertEquals(sa[i], expected.getValue(), buffer.get(i), 0.0f);
+            assertEquals(sa[i], expected.toString(), table[i][0]);
+        }
+
+        MFDoubleBuffer doubles = MFDoubleBuffer.parse(sa, 1);
+        for (int i = 0; i < sa.length; i++)
+            assertEquals(sa[i], new SFDouble(sa[i]).toString(), doubles.toStringTable()[i][0]);
+    }
+
+    @Test
+    public void testTuples() {
+        MFVec3fBuffer points = MFVec3fBuffer.parse(new String[]{"1", "2", "3", "4", "5", "6", "7"});
+        assertEquals(2, points.getTupleCount());          // trailing partial tuple ignored
+        assertEquals(5.0f, points.getY(1), 0.0f);
+        assertEquals(points, MFVec3fBuffer.parse(points.toStringTable()));
+
+        assertTrue(MFFloatBuffer.parse(new String[0][]).isEmpty());
+        try {
+            MFVec3fBuffer.parse(new String[][]{{"1", "2"}});
+            fail("MFVec3fBuffer requires three columns");
+        }
+        catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFormat() {
+        MFFloatBuffer colors = MFFloatBuffer.parse(new String[]{"1", "0", "0", "0", "1", "0"}, 3);
+        assertEquals("1 0 0 0 1 0",       colors.format(false, false, 1));
+        assertEquals("1 0 0, 0 1 0",      colors.format(true,  false, 1));
+        assertEquals("\n1 0 0,\n0 1 0\n", colors.format(true,  true,  1)); // leading break, as formatFloatArray(SFFloat[][])
+        assertEquals("", new MFFloatBuffer(new float[0], 3).format(true, true, 1));
+
+        MFInt32Buffer index = MFInt32Buffer.parse(new String[]{"0", "1", "2", "-1", "2", "3", "0", "-1"});
+        assertEquals(8, index.size());
+        index.testLimits(-1, null); // sentinel values allowed, no exception
+        assertEquals(-1, index.get(7));
+    }
+}
@@ -0,0 +1,223 @@
+package org.web3d.x3d.types;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fuzz test proving X3DMFStringParser output matches the prior BaseX3DElement.parseMFStringIntoStringArray algorithm
+ * (copied verbatim below as legacyParse), and (via main) comparing cost on long MFString values.
+ *
+ * @author agent
+ */
+public class X3DMFStringParserTest {
+
+    private static final char[] ALPHABET = {'"', '"', '\\', ' ', ' ', '\t', '\n', '-', '1', 'a', 'b', ',', '\'', '&', '\u00e9'};
+
+    public static void main(String args[]) {
+        new X3DMFStringParserTest().testFuzzEquivalence();
+        for (int elementCount : new int[] {1000, 5000, 20000}) {
+            StringBuilder urls  = new StringBuilder();
+            StringBuilder index = new StringBuilder();
+            for (int i = 0; i < elementCount; i++) {
+                urls.append(" \"https://www.web3d.org/x3d/content/examples/scene").append(i).append(".x3d\"");
+                index.append(' ').append(i).append(' ').append(i + 1).append(' ').append(i + 2).append(" -1");
+            }
+            measure("url MFString",              urls.toString().trim(),  false);
+            measure("coordIndex sentinel split", index.toString().trim(), true);
+        }
+    }
+
+    private static void measure(String label, String input, boolean splitOnSentinel) {
+        long checksum = 0;
+        for (int warmup = 0; warmup < 3; warmup++)
+            checksum += X3DMFStringParser.parse(input, !splitOnSentinel, splitOnSentinel, "-1").length;
+        long start = System.nanoTime();
+        checksum += X3DMFStringParser.parse(input, !splitOnSentinel, splitOnSentinel, "-1").length;
+        long parseNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        checksum += legacyParse(input, !splitOnSentinel, splitOnSentinel, "-1").length;
+        long legacyNanos = System.nanoTime() - start;
+        System.out.printf("%-26s %8d characters: prior %10.2f ms, single pass %7.2f ms (checksum %d)%n",
+                          label, input.length(), legacyNanos / 1e6, parseNanos / 1e6, checksum);
+    }
+
+    static String randomInput(Random random) {
+        int length = random.nextInt(40);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            sb.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        return sb.toString();
+    }
+
+    @Test
+    public void testFuzzEquivalence() {
+        Random random = new Random(3);
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // both versions report recovered errors
+        try {
+            for (int i = 0; i < 500000; i++) {
+                String input = randomInput(random);
+                boolean removeQuotes    = random.nextBoolean();
+                boolean splitOnSentinel = random.nextInt(4) == 0;
+                String  sentinel        = random.nextBoolean() ? "-1" : "a";
+                assertArrayEquals("input [" + input + "] removeQuotes=" + removeQuotes + " splitOnSentinel=" + splitOnSentinel + " " + sentinel,
+                        legacyParse(input, removeQuotes, splitOnSentinel, sentinel),
+                        X3DMFStringParser.parse(input, removeQuotes, splitOnSentinel, sentinel));
+            }
+        }
+        finally {
+            System.setOut(console);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        String[] values = {"a \"quoted\" word", "back\\slash", "", "plain"};
+        String attribute = X3DMFStringParser.format(values, false, false);
+        assertEquals("\"a \\\"quoted\\\" word\" \"back\\\\slash\" \"\" \"plain\"", attribute);
+        assertArrayEquals(values, X3DMFStringParser.parse(attribute, true));
+        assertEquals("\n\"x\",\n\"y\"\n", X3DMFStringParser.format(new String[] {"x", "y"}, true, true));
+        assertArrayEquals(new String[] {"0 1 2 -1", "3 4 5 -1"}, X3DMFStringParser.parse("0 1 2 -1 3 4 5 -1", false, true, "-1"));
+    }
+
+    /** Prior BaseX3DElement implementation, with static sentinel fields passed as parameters */
+    static String[] legacyParse(String inputString, boolean removeQuotes, boolean splitOnSentinel, String sentinelString)
+    {
+      String[] sa = new String[0];
+      List<String> stringList = new ArrayList<>(); // switch to ArrayList to avoid unused null String elements
+
+      StringBuilder newString = new StringBuilder();
+      boolean betweenStrings = true; // whether parse algorithm is inside a quoted string element or between them inside intervening whitespace
+
+      if ((inputString== null) || inputString.isEmpty())
+      {
+           return sa;
+      }
+      if (!inputString.contains("\"") && !splitOnSentinel)
+      {
+          stringList.add(inputString); // single un"quoted" string only
+      }
+      else
+      {
+          for (int i = 0; i < inputString.length(); i++)
+          {
+              while (betweenStrings && (inputString.substring(i, i+1).trim().length() == 0) && (i < inputString.length() - 1))
+              {
+                  i++;  // skip whitespace until ready to start next SFString element of MFString array
+              }
+              betweenStrings = false;
+              if (inputString.charAt(i) == '\"')// found opening quote
+              {
+                  if ((i < inputString.length() - 1)) i++; // skip this delimiting character, not part of SFString
+              }
+              else if (removeQuotes)
+              {
+                  System.out.println("new SFString element within MFString started illegally (without delimiting quote mark) at character index " + i);
+              }
+
+              while (i < inputString.length())
+              {
+                  // inside SFString, look for termination
+                  // found escaped quote within SFString, save both characters and keep building this string
+                  if ((inputString.length() > i + 2) && inputString.substring(i, i + 2).equalsIgnoreCase("\\\"")) // capture embedded escaped \"
+                  {
+                      newString.append(inputString.substring(i, i + 2));
+                      i = i + 2; // increment index, account for both characters
+                  }
+                  // special case of ambiguous termination by \" (instead of \"" or \\") is treated as \\"
+                  else if ((inputString.length() == i + 2) && inputString.substring(i, i + 2).equalsIgnoreCase("\\\"")) // handle terminating escaped \"
+                  {
+                      newString.append(inputString.charAt(i)); // capture / character only
+                      i++; // increment index, string will terminate on next loop
+                      System.out.println("parseIntoStringArray() encountered SFString terminated by escaped quote \\\" mismatch: " + inputString);
+                  }
+                  else  if ((inputString.length() >= i + 2) && inputString.substring(i, i + 2).equalsIgnoreCase("\\\\")) // capture escaped \\
+                  {
+                      // found escaped backslash \\ within SFString, save both characters and keep building this string
+                      newString.append(inputString.substring(i, i + 2));
+                      i = i + 2; // increment index, account for both characters
+                  }
+                  else if (inputString.charAt(i) == '\"') // found terminating " and so done with this SFString
+                  {
+                      betweenStrings = true;
+                      stringList.add(newString.toString()); // save this SFString, ignore delimiter " character
+                      newString = new StringBuilder(); // reset for next loop
+                      break;
+                  }
+                  else if (splitOnSentinel && inputString.substring(i).startsWith(sentinelString)) // found terminating sentinelString and so done with this SFString
+                  {
+                      newString.append(sentinelString);
+                      i = i + sentinelString.length(); // increment index, account for sentinelString characters
+                      betweenStrings = true;
+                      stringList.add(newString.toString()); // save this SFString, include sentinelString characters
+                      newString = new StringBuilder(); // reset for next loop
+                      break;
+                  }
+                  else
+                  {
+                      newString.append(inputString.charAt(i)); // keep building this string, character by character
+                      i++; // increment index
+                  }
+              }
+              if ((i == inputString.length() - 1) && (newString.length() > 0))
+              {
+                  System.out.println("parseIntoStringArray() encountered unterminated SFString, mismatched quotes: " + inputString);
+                  stringList.add(newString.toString()); // save this SFString fragment anyway
+              }
+              else if (newString.length() > 0)
+                  stringList.add(newString.toString()); // save this remaining SFString even though not trapped previously
+          }
+      }
+
+      sa = new String[stringList.size()];
+      int index = 0;
+
+      // now handle escape characters
+      for (String s : stringList)
+      {
+          StringBuilder escapedString = new StringBuilder();
+          for (int c = 0; c < s.length(); c++)
+          {
+              // &amp; and &apos; and &quot; are already converted back to & and ' by XML parser
+
+              if (((s.length() - c) >= 2) && s.substring(c).startsWith("\\\\"))
+              {
+                  escapedString.append('\\');         // replace double backslash with single backslash
+                  c = c + 1;
+              }
+              else
+              {
+                  if (((s.length() - c) >= 2) && s.substring(c).startsWith("\\\""))
+                  {
+                      escapedString.append('"');         // replace \" with "
+                      c = c + 1;
+                  }
+                  else
+                  {
+                      escapedString.append(s.charAt(c)); // OK as is
+                  }
+              }
+          }
+          sa[index] = escapedString.toString();
+
+          if (removeQuotes)
+          {
+              if ((sa[index].length() > 0) && (sa[index].charAt(0) == '"'))
+                   sa[index] = sa[index].substring(1);
+
+              if ((sa[index].length() > 0) && (sa[index].charAt(sa[index].length() - 1) == '"'))
+                   sa[index] = sa[index].substring(0, sa[index].length() - 1);
+          }
+          index++;
+      }
+      return sa;
+    }
+}
@@ -0,0 +1,172 @@
+package org.web3d.x3d.types;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.web3d.x3d.types.X3DPrimitiveTypes.*;
+import static org.web3d.x3d.types.X3DSchemaData4.parseX;
+
+/**
+ * Checks the single-pass tokenizer and formatter against the prior parseX/SFFloat/DecimalFormat methods, and
+ * (via main) compares throughput on 10k and 1M element arrays.
+ *
+ * @author agent
+ */
+public class X3DNumberListsTest {
+
+    public static void main(String args[]) {
+        X3DNumberListsTest test = new X3DNumberListsTest();
+        test.testParseMatchesPriorMethods();
+        test.testFormatMatchesDecimalFormat();
+        test.testSeparatorsAndFallback();
+
+        for (int valueCount : new int[] {10000, 1000000}) {
+            String text = buildText(valueCount, new Random(valueCount));
+            float[] parsed = X3DNumberLists.parseFloats(text);
+            int repeats = Math.max(3, 20000000 / valueCount / 10);
+            long checksum = 0;
+            for (int warmup = 0; warmup < 3; warmup++)
+                checksum += priorParse(text).length + X3DNumberLists.parseFloats(text).length
+                          + priorFormat(parsed).length() + MFFloatBuffer.parse(text, 3).format(true, true, 1).length();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < repeats; i++)
+                checksum += priorParse(text).length;
+            long priorParseNanos = (System.nanoTime() - start) / repeats;
+            start = System.nanoTime();
+            for (int i = 0; i < repeats; i++)
+                checksum += X3DNumberLists.parseFloats(text).length;
+            long parseNanos = (System.nanoTime() - start) / repeats;
+
+            start = System.nanoTime();
+            for (int i = 0; i < repeats; i++)
+                checksum += priorFormat(parsed).length();
+            long priorFormatNanos = (System.nanoTime() - start) / repeats;
+            MFFloatBuffer buffer = new MFFloatBuffer(parsed, 3);
+            start = System.nanoTime();
+            for (int i = 0; i < repeats; i++)
+                checksum += buffer.format(true, true, 1).length();
+            long formatNanos = (System.nanoTime() - start) / repeats;
+
+            System.out.println(valueCount + " values, checksum " + checksum);
+            System.out.printf("  parse  prior parseX + SFFloat:        %8.1f ns/value%n", priorParseNanos  / (double) valueCount);
+            System.out.printf("  parse  X3DNumberLists.parseFloats:    %8.1f ns/value%n", parseNanos       / (double) valueCount);
+            System.out.printf("  format prior SFFloat.toString tuples: %8.1f ns/value%n", priorFormatNanos / (double) valueCount);
+            System.out.printf("  format X3DNumberLists.writeFloats:    %8.1f ns/value%n", formatNanos      / (double) valueCount);
+        }
+    }
+
+    /** Typical exported geometry: comma-separated triples with 4 to 8 significant digits */
+    static String buildText(int valueCount, Random random) {
+        StringBuilder sb = new StringBuilder(valueCount * 10);
+        for (int i = 0; i < valueCount; i++) {
+            float value = (random.nextFloat() - 0.5f) * (float) Math.pow(10, random.nextInt(4));
+            sb.append(floatFormat.format(value));
+            sb.append(((i % 3) == 2) ? ", " : " ");
+        }
+        return sb.toString();
+    }
+
+    /** Prior BaseX3DElement path: regex split, then parse and box each value */
+    static SFFloat[] priorParse(String text) {
+        String[] sa = parseX(text);
+        SFFloat[] values = new SFFloat[sa.length];
+        for (int i = 0; i < sa.length; i++)
+            values[i] = new SFFloat(sa[i]);
+        return values;
+    }
+
+    /** Prior BaseX3DElement.formatFloatArray(SFFloat[][]) path with commas and line breaks */
+    static String priorFormat(float[] values) {
+        StringBuilder sb = new StringBuilder("\n");
+        for (int i = 0; i < values.length; i++) {
+            sb.append(floatFormat.format(values[i]));
+            if ((i % 3) == 2)
+                sb.append((i < values.length - 1) ? ",\n" : "\n");
+            else
+                sb.append(" ");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testParseMatchesPriorMethods() {
+        Random random = new Random(2026);
+        for (int i = 0; i < 200000; i++) {
+            String token;
+            switch (i % 5) {
+                case 0:  token = Float.toString(Float.intBitsToFloat(random.nextInt()));   break;
+                case 1:  token = Double.toString(random.nextGaussian() * 1000);            break;
+                case 2:  token = Long.toString(random.nextLong() % 100000000L) + "." + random.nextInt(1000000); break;
+                case 3:  token = random.nextInt(2000) - 1000 + "e" + (random.nextInt(90) - 45);  break;
+                default: token = "0." + Math.abs(random.nextInt());                         break;
+            }
+            if (token.contains("NaN"))
+                continue;
+            float[] floats = X3DNumberLists.parseFloats(token);
+            assertEquals(token, 1, floats.length);
+            assertEquals(token, Float.floatToIntBits(parseFloatValue(token)), Float.floatToIntBits(floats[0]));
+            double[] doubles = X3DNumberLists.parseDoubles(token);
+            assertEquals(token, Double.doubleToLongBits(parseDoubleValue(token)), Double.doubleToLongBits(doubles[0]));
+        }
+        for (int i = 0; i < 10000; i++) {
+            int value = random.nextInt();
+            assertEquals(value, X3DNumberLists.parseInts(" " + value + " ")[0]);
+        }
+        assertEquals(-1, X3DNumberLists.parseInts("+0 -1")[1]);
+    }
+
+    @Test
+    public void testFormatMatchesDecimalFormat() {
+        Random random = new Random(18);
+        float[] specialFloats = {0f, -0f, 0.5f, 0.0078125f, -0.0000001f, 0.0000005f, 1.0000005f, 16777216f, 9.1e9f, 1e20f,
+                                 Float.MAX_VALUE, Float.MIN_VALUE, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (float value : specialFloats)
+            assertEquals(Float.toString(value), floatFormat.format(value), X3DNumberLists.toString(value));
+        double[] specialDoubles = {0, -0.0, 0.5e-11, 1.5e-11, 2.5e-11, 0.1, 45035.99609375, 1e15 + 0.3, 0x1p53, 1e300, -1e-300};
+        for (double value : specialDoubles)
+            assertEquals(Double.toString(value), doubleFormat.format(value), X3DNumberLists.toString(value));
+        assertEquals("", X3DNumberLists.toString(Float.NaN));
+
+        for (int i = 0; i < 300000; i++) {
+            float f = (i % 2 == 0) ? Float.intBitsToFloat(random.nextInt())
+                                   : (random.nextFloat() - 0.5f) * (float) Math.pow(10, random.nextInt(12) - 4);
+            if (!Float.isNaN(f))
+                assertEquals(Float.toString(f), floatFormat.format(f), X3DNumberLists.toString(f));
+            double d = (i % 2 == 0) ? Double.longBitsToDouble(random.nextLong())
+                                    : (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 8);
+            if (!Double.isNaN(d))
+                assertEquals(Double.toString(d), doubleFormat.format(d), X3DNumberLists.toString(d));
+        }
+    }
+
+    @Test
+    public void testSeparatorsAndFallback() {
+        float[] values = X3DNumberLists.parseFloats("  1,2 ,3;\n4\t5:6/7 , , 8  ");
+        assertEquals(8, values.length);
+        assertEquals(8f, values[7], 0f);
+        assertEquals(0, X3DNumberLists.parseFloats(" \n ").length);
+        assertEquals(0, X3DNumberLists.parseFloats(null).length);
+
+        float[] unusual = X3DNumberLists.parseFloats("1.2345678901234567890123 -Infinity .5 5. 0x1p3 1e-50");
+        assertEquals(1.2345679f, unusual[0], 0f);
+        assertEquals(Float.NEGATIVE_INFINITY, unusual[1], 0f);
+        assertEquals(0.5f, unusual[2], 0f);
+        assertEquals(5f, unusual[3], 0f);
+        assertEquals(8f, unusual[4], 0f);
+        assertEquals(0f, unusual[5], 0f); // normalized, as SFFloat does
+        try {
+            X3DNumberLists.parseFloats("1 two 3");
+            fail("non-numeric value should be rejected as SFFloat does");
+        }
+        catch (NumberFormatException expected) {
+            // expected
+        }
+
+        int[] index = X3DNumberLists.parseInts("0 1 2 -1, 2 3 0 -1");
+        assertEquals("\n0,\n1,\n2,\n-1,\n2,\n3,\n0,\n-1\n", new MFInt32Buffer(index).format(true, true, false));
+        assertEquals("0 1 2 -1\n2 3 0 -1\n", new MFInt32Buffer(index).format(false, false, true));
+    }
+}